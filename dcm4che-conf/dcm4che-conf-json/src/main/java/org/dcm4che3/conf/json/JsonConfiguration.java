@@ -403,6 +403,7 @@ public class JsonConfiguration {
             writer.writeNotDef("dcmMaxOpsInvoked",
                     conn.getMaxOpsInvoked(), Connection.SYNCHRONOUS_MODE);
             writer.writeNotDef("dcmPackPDV", conn.isPackPDV(), true);
+            writer.writeNotDef("dcmPendingRSPCoalesceDelay", conn.getPendingRSPCoalesceDelay(), 0);
             writer.writeNotEmpty("dcmTLSProtocol", conn.getTlsProtocols(), Connection.DEFAULT_TLS_PROTOCOLS);
             writer.writeNotDef("dcmTLSNeedClientAuth", conn.isTlsNeedClientAuth(), true);
             writer.writeEnd();
@@ -516,6 +517,9 @@ public class JsonConfiguration {
                             case "dcmPackPDV":
                                 conn.setPackPDV(reader.booleanValue());
                                 break;
+                            case "dcmPendingRSPCoalesceDelay":
+                                conn.setPendingRSPCoalesceDelay(reader.intValue());
+                                break;
                             default:
                                 reader.skipUnknownProperty();
                         }
@@ -941,6 +941,7 @@ public final class LdapDicomConfiguration implements DicomConfiguration {
         LdapUtils.storeNotDef(ldapObj, attrs, "dcmMaxOpsInvoked",
                 conn.getMaxOpsInvoked(), Connection.SYNCHRONOUS_MODE);
         LdapUtils.storeNotDef(ldapObj, attrs, "dcmPackPDV", conn.isPackPDV(), true);
+        LdapUtils.storeNotDef(ldapObj, attrs, "dcmPendingRSPCoalesceDelay", conn.getPendingRSPCoalesceDelay(), 0);
         LdapUtils.storeNotEmpty(ldapObj, attrs, "dcmTLSProtocol", conn.getTlsProtocols(), Connection.DEFAULT_TLS_PROTOCOLS);
         LdapUtils.storeNotDef(ldapObj, attrs, "dcmTLSNeedClientAuth", conn.isTlsNeedClientAuth(), true);
         return attrs;
@@ -1365,6 +1366,7 @@ public final class LdapDicomConfiguration implements DicomConfiguration {
         conn.setMaxOpsInvoked(LdapUtils.intValue(attrs.get("dcmMaxOpsInvoked"),
                 Connection.SYNCHRONOUS_MODE));
         conn.setPackPDV(LdapUtils.booleanValue(attrs.get("dcmPackPDV"), true));
+        conn.setPendingRSPCoalesceDelay(LdapUtils.intValue(attrs.get("dcmPendingRSPCoalesceDelay"), 0));
     }
 
     private void loadApplicationEntities(Device device, String deviceDN)
@@ -1668,6 +1670,10 @@ public final class LdapDicomConfiguration implements DicomConfiguration {
                 a.isPackPDV(),
                 b.isPackPDV(),
                 true);
+        LdapUtils.storeDiff(ldapObj, mods, "dcmPendingRSPCoalesceDelay",
+                a.getPendingRSPCoalesceDelay(),
+                b.getPendingRSPCoalesceDelay(),
+                0);
         return mods;
     }
 
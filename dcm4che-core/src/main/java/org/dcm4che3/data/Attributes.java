@@ -56,6 +56,7 @@ import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.ByteUtils;
 import org.dcm4che3.util.DateUtils;
+import org.dcm4che3.util.StringPool;
 import org.dcm4che3.util.StringUtils;
 import org.dcm4che3.util.TagUtils;
 import org.slf4j.Logger;
@@ -257,27 +258,50 @@ public class Attributes implements Serializable {
             }
     }
 
+    /**
+     * Replaces string values of this data set and of all nested items by
+     * their canonical representation returned by {@link String#intern()}.
+     * Use {@link #internalizeStringValues(boolean, StringPool)} with a
+     * {@link org.dcm4che3.util.BoundedStringPool} to share values without
+     * growing the JVM string table.
+     *
+     * @param decode {@code true} to also decode string values not yet
+     *               decoded from their specific character set
+     */
     public void internalizeStringValues(boolean decode) {
+        internalizeStringValues(decode, StringPool.STRING_INTERN);
+    }
+
+    /**
+     * Replaces string values of this data set and of all nested items by
+     * their canonical representation from the specified pool, so repeated
+     * values share the same {@code String} instance.
+     *
+     * @param decode {@code true} to also decode string values not yet
+     *               decoded from their specific character set
+     * @param pool   the pool providing the canonical instances
+     */
+    public void internalizeStringValues(boolean decode, StringPool pool) {
         SpecificCharacterSet cs = getSpecificCharacterSet();
-        for (int i = 0; i < values.length; i++) {
+        for (int i = 0; i < size; i++) {
             VR vr = vrs[i];
             Object value = values[i];
             if (vr.isStringType()) {
                 if (value instanceof byte[]) {
                     if (!decode)
                         continue;
-                    value = vr.toStrings((byte[]) value, bigEndian, cs);
+                    values[i] = value = vr.toStrings((byte[]) value, bigEndian, cs);
                 }
                 if (value instanceof String)
-                    values[i] = ((String) value).intern();
+                    values[i] = pool.intern((String) value);
                 else if (value instanceof String[]) {
                     String[] ss = (String[]) value;
                     for (int j = 0; j < ss.length; j++)
-                        ss[j] = ss[j].intern();
+                        ss[j] = pool.intern(ss[j]);
                 }
             } else if (value instanceof Sequence)
                 for (Attributes item : (Sequence) value)
-                    item.internalizeStringValues(decode);
+                    item.internalizeStringValues(decode, pool);
         }
     }
 
@@ -2695,33 +2719,34 @@ public class Attributes implements Serializable {
     }
 
     public ValidationResult validate(IOD iod) {
-        ValidationResult result = new ValidationResult();
-        HashMap<String,Boolean> resolvedConditions = new HashMap<String,Boolean>();
-        for (IOD.DataElement el : iod) {
-            validate(el, result, resolvedConditions);
-        }
-        return result;
+        return iod.validator().validate(this);
     }
 
     public void validate(DataElement el, ValidationResult result) {
-        validate(el, result, null);
+        IOD.Condition condition = el.getCondition();
+        if (condition != null && !condition.match(this))
+            return;
+
+        validate(el, indexOf(el.tag), result, null);
     }
 
-    private void validate(DataElement el, ValidationResult result,
-            Map<String, Boolean> processedConditions) {
-        IOD.Condition condition = el.getCondition();
-        if (condition != null) {
-            String id = condition.id();
-            Boolean match = id != null ? processedConditions.get(id) : null;
-            if (match == null) {
-                match = condition.match(this);
-                if (id != null)
-                    processedConditions.put(id, match);
-            }
-            if (!match)
-                return;
-        }
-        int index = indexOf(el.tag);
+    /**
+     * Returns the index of the attribute with the specified tag, starting
+     * the search at {@code fromIndex}. Used for merge-style traversals of
+     * sorted tag lists, where subsequent lookups never go backwards.
+     *
+     * @return index of the attribute, if it is contained; otherwise,
+     *         <tt>(-(<i>insertion point</i>) - 1)</tt>
+     */
+    int indexOf(int tag, int fromIndex) {
+        int i = fromIndex;
+        while (i < size && tags[i] < tag)
+            i++;
+        return i < size && tags[i] == tag ? i : -(i + 1);
+    }
+
+    void validate(DataElement el, int index, ValidationResult result,
+            IODValidator[] codeValidators) {
         if (index < 0) {
             if (el.type == IOD.DataElementType.TYPE_1 
                     || el.type == IOD.DataElementType.TYPE_2) {
@@ -2759,11 +2784,13 @@ public class Attributes implements Serializable {
                 return;
             }
             if (validVals instanceof Code[]) {
+                if (codeValidators == null)
+                    codeValidators = IODValidator.compile((Code[]) validVals);
                 boolean invalidItem = false;
                 ValidationResult[] itemValidationResults = new ValidationResult[seqSize];
                 for (int i = 0; i < seqSize; i++) {
                     ValidationResult itemValidationResult =
-                            validateCode(seq.get(i), (Code[]) validVals);
+                            validateCode(seq.get(i), codeValidators);
                     invalidItem = invalidItem || !itemValidationResult.isValid();
                     itemValidationResults[i] = itemValidationResult;
                 }
@@ -2796,9 +2823,8 @@ public class Attributes implements Serializable {
                                 continue;
                         }
                         matchingItems[j]++;
-                        for (IOD.DataElement itemEl : itemIOD) {
-                            item.validate(itemEl, itemValidationResult, resolvedItemConditions);
-                        }
+                        itemIOD.validator().validate(item, itemValidationResult,
+                                resolvedItemConditions);
                     }
                     invalidItem = invalidItem || !itemValidationResult.isValid();
                     itemValidationResults[i] = itemValidationResult;
@@ -2857,10 +2883,11 @@ public class Attributes implements Serializable {
         return n > 0 ? Arrays.copyOf(missingItems, n) : null;
     }
 
-    private ValidationResult validateCode(Attributes item, Code[] validVals) {
+    private ValidationResult validateCode(Attributes item,
+            IODValidator[] codeValidators) {
         ValidationResult result = null;
-        for (Code code : validVals) {
-            result = item.validate(IOD.valueOf(code));
+        for (IODValidator codeValidator : codeValidators) {
+            result = codeValidator.validate(item);
             if (result.isValid())
                 break;
         }
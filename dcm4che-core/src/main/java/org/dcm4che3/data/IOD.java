@@ -363,6 +363,8 @@ public class IOD extends ArrayList<IOD.DataElement> {
     private DataElementType type;
     private Condition condition;
     private int lineNumber = -1;
+    private transient volatile IODValidator validator;
+    private transient int validatorModCount;
 
     public void setType(DataElementType type) {
         this.type = type;
@@ -388,6 +390,22 @@ public class IOD extends ArrayList<IOD.DataElement> {
         this.lineNumber = lineNumber;
     }
 
+    /**
+     * Returns the validator compiled from this IOD. The validator is
+     * compiled on first invocation and re-compiled if Data Elements were
+     * added or removed since then.
+     *
+     * @return compiled validator
+     */
+    public IODValidator validator() {
+        IODValidator validator = this.validator;
+        if (validator == null || validatorModCount != modCount) {
+            validatorModCount = modCount;
+            this.validator = validator = IODValidator.compile(this);
+        }
+        return validator;
+    }
+
     public void parse(String uri) throws IOException {
         try {
             SAXParserFactory f = SAXParserFactory.newInstance();
@@ -39,16 +39,21 @@
 package org.dcm4che3.data;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
 /**
+ * Thread-safe cache of loaded IODs. IODs are compiled to their
+ * {@link IODValidator} on load, so the compiled program is shared by all
+ * threads using the cache.
+ *
  * @author Gunter Zeilinger <gunterze@gmail.com>
  */
 public class IODCache {
 
-    private final HashMap<String, IOD> map = new HashMap<String, IOD>();
+    private final ConcurrentHashMap<String, IOD> map =
+            new ConcurrentHashMap<String, IOD>();
 
     public void clear() {
         map.clear();
@@ -56,8 +61,17 @@ public class IODCache {
 
     public IOD get(String uri) throws IOException {
         IOD iod = map.get(uri);
-        if (iod == null)
-            map.put(uri, iod = IOD.load(uri));
+        if (iod == null) {
+            iod = IOD.load(uri);
+            iod.validator();
+            IOD prev = map.putIfAbsent(uri, iod);
+            if (prev != null)
+                iod = prev;
+        }
         return iod;
     }
+
+    public IODValidator getValidator(String uri) throws IOException {
+        return get(uri).validator();
+    }
 }
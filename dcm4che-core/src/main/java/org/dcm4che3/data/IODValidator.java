@@ -0,0 +1,242 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Validation program compiled from an {@link IOD}.
+ * <p>
+ * The Data Elements of the IOD are sorted by tag, so a data set can be
+ * validated in one merge-style pass over its (also sorted) attributes. Only
+ * the collected validation results are reordered afterwards, so they are
+ * reported in the order of the IOD, as by validating the Data Elements one
+ * by one. Conditions are numbered at compile time and their evaluation is
+ * memoized in a {@code byte[]} per validation run. Compiled validators are
+ * immutable and may be shared by multiple threads.
+ */
+public final class IODValidator {
+
+    private static final byte UNRESOLVED = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private static final Comparator<IOD.DataElement> TAG_ORDER =
+            new Comparator<IOD.DataElement>() {
+        @Override
+        public int compare(IOD.DataElement o1, IOD.DataElement o2) {
+            return o1.tag < o2.tag ? -1 : o1.tag == o2.tag ? 0 : 1;
+        }
+    };
+
+    private final IOD.DataElement[] elements;
+    private final int[] tags;
+    private final Comparator<IOD.DataElement> iodOrder;
+    private final IOD.Condition[] conditions;
+    private final int[] conditionIndex;
+    private final Code[][] codes;
+    private final IODValidator[][] codeValidators;
+
+    private IODValidator(IOD iod) {
+        elements = iod.toArray(new IOD.DataElement[iod.size()]);
+        iodOrder = iodOrder(elements);
+        Arrays.sort(elements, TAG_ORDER);
+        int n = elements.length;
+        tags = new int[n];
+        conditionIndex = new int[n];
+        codes = new Code[n][];
+        codeValidators = new IODValidator[n][];
+        IdentityHashMap<IOD.Condition, Integer> condIndexByRef =
+                new IdentityHashMap<IOD.Condition, Integer>();
+        IOD.Condition[] conds = new IOD.Condition[n];
+        int numConds = 0;
+        for (int i = 0; i < n; i++) {
+            IOD.DataElement el = elements[i];
+            tags[i] = el.tag;
+            IOD.Condition cond = el.getCondition();
+            if (cond == null) {
+                conditionIndex[i] = -1;
+            } else {
+                Integer index = condIndexByRef.get(cond);
+                if (index == null)
+                    index = indexOfConditionWithId(conds, numConds, cond.id());
+                if (index < 0) {
+                    index = numConds;
+                    conds[numConds++] = cond;
+                }
+                condIndexByRef.put(cond, index);
+                conditionIndex[i] = index;
+            }
+            Object values = el.getValues();
+            if (values instanceof Code[]) {
+                codes[i] = (Code[]) values;
+                codeValidators[i] = compile((Code[]) values);
+            }
+        }
+        conditions = Arrays.copyOf(conds, numConds);
+    }
+
+    private static Comparator<IOD.DataElement> iodOrder(
+            IOD.DataElement[] elements) {
+        final IdentityHashMap<IOD.DataElement, Integer> positions =
+                new IdentityHashMap<IOD.DataElement, Integer>(elements.length);
+        for (int i = elements.length; --i >= 0;)
+            positions.put(elements[i], i);
+        return new Comparator<IOD.DataElement>() {
+            @Override
+            public int compare(IOD.DataElement o1, IOD.DataElement o2) {
+                return positions.get(o1) - positions.get(o2);
+            }
+        };
+    }
+
+    private static int indexOfConditionWithId(IOD.Condition[] conds, int n,
+            String id) {
+        if (id != null)
+            for (int i = 0; i < n; i++)
+                if (id.equals(conds[i].id()))
+                    return i;
+        return -1;
+    }
+
+    /**
+     * Compiles the specified IOD. Item IODs of Sequence Data Elements are
+     * compiled lazily by {@link IOD#validator()} on first use.
+     *
+     * @param iod IOD to compile
+     * @return compiled validator
+     */
+    public static IODValidator compile(IOD iod) {
+        return new IODValidator(iod);
+    }
+
+    static IODValidator[] compile(Code[] codes) {
+        IODValidator[] validators = new IODValidator[codes.length];
+        for (int i = 0; i < codes.length; i++)
+            validators[i] = new IODValidator(IOD.valueOf(codes[i]));
+        return validators;
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public ValidationResult validate(Attributes attrs) {
+        ValidationResult result = new ValidationResult();
+        validate(attrs, result);
+        return result;
+    }
+
+    public void validate(Attributes attrs, ValidationResult result) {
+        validate(attrs, result, null);
+    }
+
+    /**
+     * Validates {@code attrs}, looking up and storing results of
+     * conditions with an ID in {@code resolvedConditions}, if not
+     * {@code null}, so they are shared with other IODs validated against
+     * the same attributes - e.g. the IODs of a Sequence Item.
+     */
+    void validate(Attributes attrs, ValidationResult result,
+            Map<String, Boolean> resolvedConditions) {
+        byte[] resolved = conditions.length > 0 
+                ? new byte[conditions.length]
+                : null;
+        ValidationResult tagOrderResult = new ValidationResult();
+        int cursor = 0;
+        for (int i = 0; i < elements.length; i++) {
+            IOD.DataElement el = elements[i];
+            if (!match(el, conditionIndex[i], resolved, resolvedConditions,
+                    attrs))
+                continue;
+
+            int index = attrs.indexOf(tags[i], cursor);
+            cursor = index < 0 ? -(index + 1) : index;
+            attrs.validate(el, index, tagOrderResult, codeValidatorsFor(i, el));
+        }
+        if (!tagOrderResult.isValid())
+            result.addAll(tagOrderResult, iodOrder);
+    }
+
+    private boolean match(IOD.DataElement el, int condIndex, byte[] resolved,
+            Map<String, Boolean> resolvedConditions, Attributes attrs) {
+        IOD.Condition cond = el.getCondition();
+        if (cond == null)
+            return true;
+
+        if (condIndex < 0 || conditions[condIndex] != cond 
+                && !isSameId(conditions[condIndex], cond))
+            return cond.match(attrs); // condition changed after compilation
+
+        switch (resolved[condIndex]) {
+        case MATCH:
+            return true;
+        case NO_MATCH:
+            return false;
+        }
+        String id = cond.id();
+        Boolean match = id != null && resolvedConditions != null
+                ? resolvedConditions.get(id)
+                : null;
+        if (match == null) {
+            match = cond.match(attrs);
+            if (id != null && resolvedConditions != null)
+                resolvedConditions.put(id, match);
+        }
+        resolved[condIndex] = match ? MATCH : NO_MATCH;
+        return match;
+    }
+
+    private static boolean isSameId(IOD.Condition c1, IOD.Condition c2) {
+        String id = c1.id();
+        return id != null && id.equals(c2.id());
+    }
+
+    private IODValidator[] codeValidatorsFor(int i, IOD.DataElement el) {
+        Object values = el.getValues();
+        if (!(values instanceof Code[]))
+            return null;
+
+        return values == codes[i]
+                ? codeValidators[i]
+                : compile((Code[]) values); // values changed after compilation
+    }
+}
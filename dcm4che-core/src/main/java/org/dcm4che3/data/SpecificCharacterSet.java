@@ -77,12 +77,12 @@
 package org.dcm4che3.data;
 
 import java.io.UnsupportedEncodingException;
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.*;
 import java.util.Arrays;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -92,8 +92,7 @@ public class SpecificCharacterSet {
     public static final SpecificCharacterSet ASCII = new SpecificCharacterSet(new Codec[]{Codec.ISO_646});
 
     private static SpecificCharacterSet DEFAULT = ASCII;
-    private static ThreadLocal<SoftReference<Encoder>> cachedEncoder1 = new ThreadLocal<SoftReference<Encoder>>();
-    private static ThreadLocal<SoftReference<Encoder>> cachedEncoder2 = new ThreadLocal<SoftReference<Encoder>>();
+    private static final int ENCODER_POOL_SIZE = 8;
 
     protected final Codec[] codecs;
     protected final String[] dicomCodes;
@@ -128,6 +127,8 @@ public class SpecificCharacterSet {
         private final int escSeq0;
         private final int escSeq1;
         private final int bytesPerChar;
+        private final AtomicReferenceArray<Encoder> encoderPool =
+                new AtomicReferenceArray<Encoder>(ENCODER_POOL_SIZE);
 
         Codec(String charsetName, boolean containsASCII, int escSeq0, int escSeq1, int bytesPerChar) {
             this.charsetName = charsetName;
@@ -232,6 +233,9 @@ public class SpecificCharacterSet {
         }
 
         public byte[] encode(String val) {
+            if (asciiCompatible() && isASCII(val))
+                return asciiBytes(val);
+
             try {
                 return val.getBytes(charsetName);
             } catch (UnsupportedEncodingException e) {
@@ -240,6 +244,9 @@ public class SpecificCharacterSet {
         }
 
         public String decode(byte[] b, int off, int len) {
+            if (this == ISO_8859_1 || asciiCompatible() && isASCII(b, off, len))
+                return latin1String(b, off, len);
+
             try {
                 return new String(b, off, len, charsetName);
             } catch (UnsupportedEncodingException e) {
@@ -247,6 +254,28 @@ public class SpecificCharacterSet {
             }
         }
 
+        /**
+         * Returns {@code true} if characters of the ASCII repertoire are
+         * encoded by their code point, so ASCII strings can be encoded and
+         * decoded without invoking the charset.
+         */
+        public boolean asciiCompatible() {
+            return containsASCII && this != JIS_X_201;
+        }
+
+        Encoder acquireEncoder() {
+            Encoder enc = encoderPool.getAndSet(poolIndex(), null);
+            return enc != null ? enc : new Encoder(this);
+        }
+
+        void releaseEncoder(Encoder enc) {
+            encoderPool.compareAndSet(poolIndex(), null, enc);
+        }
+
+        private static int poolIndex() {
+            return (int) Thread.currentThread().getId() & (ENCODER_POOL_SIZE - 1);
+        }
+
         public boolean containsASCII() {
             return containsASCII;
         }
@@ -325,19 +354,25 @@ public class SpecificCharacterSet {
 
         @Override
         public byte[] encode(String val, String delimiters) {
+            if (encodesAsASCII(val))
+                return asciiBytes(val);
+
             int strlen = val.length();
             CharBuffer cb = CharBuffer.wrap(val.toCharArray());
-            Encoder enc1 = encoder(cachedEncoder1, codecs[0]);
-            byte[] buf = new byte[strlen];
-            ByteBuffer bb = ByteBuffer.wrap(buf);
-            // try to encode whole string value with character set specified
-            // by value1 of (0008,0005) Specific Character Set
-            if (!enc1.encode(cb, bb, 0, CodingErrorAction.REPORT)) {
+            Encoder[] encs = new Encoder[codecs.length];
+            try {
+                encs[0] = codecs[0].acquireEncoder();
+                byte[] buf = new byte[strlen];
+                ByteBuffer bb = ByteBuffer.wrap(buf);
+                // try to encode whole string value with character set specified
+                // by value1 of (0008,0005) Specific Character Set
+                if (encs[0].encode(cb, bb, 0, CodingErrorAction.REPORT))
+                    return buf.length == bb.position() ? buf
+                            : Arrays.copyOf(buf, bb.position());
+
                 // split whole string value according VR specific delimiters
                 // and try to encode each component separately
-                Encoder[] encs = new Encoder[codecs.length];
-                encs[0] = enc1;
-                encs[1] = encoder(cachedEncoder2, codecs[1]);
+                encs[1] = codecs[1].acquireEncoder();
                 StringTokenizer comps = new StringTokenizer(val, delimiters, true);
                 buf = new byte[2 * strlen + 4 * (comps.countTokens() + 1)];
                 bb = ByteBuffer.wrap(buf);
@@ -353,8 +388,12 @@ public class SpecificCharacterSet {
                     encodeComponent(encs, cb, bb, cur);
                 }
                 activateInitialCharacterSet(bb, cur);
+                return Arrays.copyOf(buf, bb.position());
+            } finally {
+                for (Encoder enc : encs)
+                    if (enc != null)
+                        enc.codec.releaseEncoder(enc);
             }
-            return Arrays.copyOf(buf, bb.position());
         }
 
         private void encodeComponent(Encoder[] encs, CharBuffer cb, ByteBuffer bb, int[] cur) {
@@ -370,7 +409,7 @@ public class SpecificCharacterSet {
             int next = encs.length;
             while (--next >= 0) {
                 if (encs[next] == null)
-                    encs[next] = new Encoder(codecs[next]);
+                    encs[next] = codecs[next].acquireEncoder();
                 if (codecs[next].getEscSeq1() != 0) {
                     if (encs[next].encode(cb, bb, codecs[next].getEscSeq1(), CodingErrorAction.REPORT)) {
                         cur[1] = next;
@@ -412,6 +451,9 @@ public class SpecificCharacterSet {
 
         @Override
         public String decode(byte[] b) {
+            if (decodesAsASCII(b))
+                return latin1String(b, 0, b.length);
+
             Codec[] codec = { codecs[0], codecs[0] };
             int g = 0;
             int off = 0;
@@ -509,6 +551,11 @@ public class SpecificCharacterSet {
             return sb.toString();
         }
 
+        @Override
+        boolean decodesAsASCII(byte[] b) {
+            return codecs[0].asciiCompatible() && isASCIIWithoutESC(b);
+        }
+
         private void switchCodec(Codec[] codecs, int i, Codec codec) {
             codecs[i] = codec;
             if (codecs[0].getEscSeq0() == codecs[1].getEscSeq0())
@@ -543,14 +590,50 @@ public class SpecificCharacterSet {
         return dicomCodes;
     }
 
-    private static Encoder encoder(ThreadLocal<SoftReference<Encoder>> tl,
-            Codec codec) {
-        SoftReference<Encoder> sr;
-        Encoder enc;
-        if ((sr = tl.get()) == null || (enc = sr.get()) == null
-                || enc.codec != codec)
-            tl.set(new SoftReference<Encoder>(enc = new Encoder(codec)));
-        return enc;
+    /**
+     * Returns {@code true} if all bytes in the specified range are in the
+     * range of 7 bit ASCII. The loop avoids data dependent branches to
+     * allow its vectorization by the JIT compiler.
+     */
+    static boolean isASCII(byte[] b, int off, int len) {
+        int acc = 0;
+        for (int i = off, end = off + len; i < end; i++)
+            acc |= b[i];
+        return acc >= 0;
+    }
+
+    private static boolean isASCIIWithoutESC(byte[] b) {
+        int acc = 0;
+        int esc = 0;
+        for (byte c : b) {
+            acc |= c;
+            esc |= (c ^ 0x1b) - 1;
+        }
+        return (acc | esc) >= 0;
+    }
+
+    static boolean isASCII(String s) {
+        int acc = 0;
+        for (int i = 0, n = s.length(); i < n; i++)
+            acc |= s.charAt(i);
+        return acc < 0x80;
+    }
+
+    /**
+     * Constructs a String from ISO 8859-1 encoded bytes without use of a
+     * {@link CharsetDecoder}.
+     */
+    @SuppressWarnings("deprecation")
+    static String latin1String(byte[] b, int off, int len) {
+        return new String(b, 0, off, len);
+    }
+
+    @SuppressWarnings("deprecation")
+    static byte[] asciiBytes(String s) {
+        int len = s.length();
+        byte[] b = new byte[len];
+        s.getBytes(0, len, b, 0);
+        return b;
     }
 
     protected SpecificCharacterSet(Codec[] codecs, String... codes) {
@@ -566,6 +649,19 @@ public class SpecificCharacterSet {
         return codecs[0].decode(val, 0, val.length);
     }
 
+    /**
+     * Returns {@code true} if the specified bytes only contains ASCII
+     * characters, which are decoded by this Specific Character Set to the
+     * same characters as by ISO 8859-1.
+     */
+    boolean decodesAsASCII(byte[] b) {
+        return codecs[0].asciiCompatible() && isASCII(b, 0, b.length);
+    }
+
+    boolean encodesAsASCII(String s) {
+        return codecs[0].asciiCompatible() && isASCII(s);
+    }
+
     public boolean isUTF8() {
         return codecs[0].equals(Codec.UTF_8);
     }
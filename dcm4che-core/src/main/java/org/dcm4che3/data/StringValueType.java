@@ -77,6 +77,12 @@ enum StringValueType implements ValueType {
             return cs.toText(StringUtils.trimTrailing(s));
         }
 
+        @Override
+        protected Object splitAndTrim(byte[] b, SpecificCharacterSet cs) {
+            return splitAndTrim(
+                    SpecificCharacterSet.latin1String(b, 0, b.length), cs);
+        }
+
         @Override
         protected Object toMultiValue(String s) {
             return s;
@@ -89,6 +95,12 @@ enum StringValueType implements ValueType {
             return StringUtils.trimTrailing(s);
         }
 
+        @Override
+        protected Object splitAndTrim(byte[] b, SpecificCharacterSet cs) {
+            return splitAndTrim(
+                    SpecificCharacterSet.latin1String(b, 0, b.length), cs);
+        }
+
         @Override
         protected Object toMultiValue(String s) {
             return s;
@@ -375,7 +387,11 @@ enum StringValueType implements ValueType {
             SpecificCharacterSet cs) {
 
         if (val instanceof byte[]) {
-            return splitAndTrim(cs(cs).decode((byte[]) val), cs);
+            byte[] b = (byte[]) val;
+            SpecificCharacterSet cs1 = cs(cs);
+            return cs1.decodesAsASCII(b)
+                    ? splitAndTrim(b, cs)
+                    : splitAndTrim(cs1.decode(b), cs);
         }
 
         if (val instanceof String
@@ -389,6 +405,41 @@ enum StringValueType implements ValueType {
         return StringUtils.splitAndTrim(s, '\\');
     }
 
+    /**
+     * Splits ASCII encoded value at backslashes and trims the values
+     * without decoding the whole value to an intermediate String.
+     */
+    protected Object splitAndTrim(byte[] b, SpecificCharacterSet cs) {
+        int count = 1;
+        for (byte c : b)
+            if (c == '\\')
+                count++;
+
+        if (count == 1)
+            return trimmedASCII(b, 0, b.length);
+
+        String[] ss = new String[count];
+        int begin = 0;
+        int i = 0;
+        for (int end = 0; end < b.length; end++)
+            if (b[end] == '\\') {
+                ss[i++] = trimmedASCII(b, begin, end);
+                begin = end + 1;
+            }
+        ss[i] = trimmedASCII(b, begin, b.length);
+        return ss;
+    }
+
+    private static String trimmedASCII(byte[] b, int begin, int end) {
+        while (begin < end && b[begin] <= ' ')
+            begin++;
+        while (begin < end && b[end - 1] <= ' ')
+            end--;
+        return begin < end
+                ? SpecificCharacterSet.latin1String(b, begin, end - begin)
+                : "";
+    }
+
     @Override
     public int toInt(Object val, boolean bigEndian, int valueIndex,
             int defVal) {
@@ -39,6 +39,8 @@
 package org.dcm4che3.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.dcm4che3.data.IOD.DataElement;
@@ -134,6 +136,41 @@ public class ValidationResult {
         notAllowedAttributes.add(el);
     }
 
+    /**
+     * Appends the results of {@code other}, sorted by the specified order of
+     * their Data Elements.
+     */
+    void addAll(ValidationResult other, final Comparator<DataElement> order) {
+        missingAttributes = addAll(missingAttributes,
+                other.missingAttributes, order);
+        missingAttributeValues = addAll(missingAttributeValues,
+                other.missingAttributeValues, order);
+        notAllowedAttributes = addAll(notAllowedAttributes,
+                other.notAllowedAttributes, order);
+        invalidAttributeValues = addAll(invalidAttributeValues,
+                other.invalidAttributeValues,
+                new Comparator<InvalidAttributeValue>() {
+                    @Override
+                    public int compare(InvalidAttributeValue o1,
+                            InvalidAttributeValue o2) {
+                        return order.compare(o1.dataElement, o2.dataElement);
+                    }
+                });
+    }
+
+    private static <T> ArrayList<T> addAll(ArrayList<T> list,
+            ArrayList<T> other, Comparator<? super T> order) {
+        if (other == null)
+            return list;
+
+        Collections.sort(other, order);
+        if (list == null)
+            return other;
+
+        list.addAll(other);
+        return list;
+    }
+
     public int[] tagsOfNotAllowedAttributes() {
         return tagsOf(notAllowedAttributes);
     }
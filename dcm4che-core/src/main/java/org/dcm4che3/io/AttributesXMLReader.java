@@ -0,0 +1,184 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.io.IOException;
+
+import org.dcm4che3.data.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+
+/**
+ * {@link XMLReader} emitting the Native DICOM Model of a data set by
+ * {@link SAXWriter}, so data sets can be passed as
+ * {@link javax.xml.transform.sax.SAXSource} to a {@link javax.xml.transform.Transformer}.
+ */
+class AttributesXMLReader implements XMLReader {
+
+    private static final String NAMESPACES =
+            "http://xml.org/sax/features/namespaces";
+    private static final String NAMESPACE_PREFIXES =
+            "http://xml.org/sax/features/namespace-prefixes";
+
+    private final Attributes attrs;
+    private ContentHandler contentHandler;
+    private DTDHandler dtdHandler;
+    private EntityResolver entityResolver;
+    private ErrorHandler errorHandler;
+    private boolean includeNamespaceDeclaration;
+    private boolean includeKeyword = true;
+    private boolean includeBulkData = true;
+    private int[] includeSequences;
+
+    public AttributesXMLReader(Attributes attrs) {
+        this.attrs = attrs;
+    }
+
+    public AttributesXMLReader includeNamespaceDeclaration(boolean include) {
+        this.includeNamespaceDeclaration = include;
+        return this;
+    }
+
+    public AttributesXMLReader includeKeyword(boolean include) {
+        this.includeKeyword = include;
+        return this;
+    }
+
+    public AttributesXMLReader includeBulkData(boolean include) {
+        this.includeBulkData = include;
+        return this;
+    }
+
+    public AttributesXMLReader includeSequences(int... tags) {
+        this.includeSequences = tags;
+        return this;
+    }
+
+    @Override
+    public boolean getFeature(String name)
+            throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (NAMESPACES.equals(name))
+            return true;
+        if (NAMESPACE_PREFIXES.equals(name))
+            return false;
+        throw new SAXNotRecognizedException(name);
+    }
+
+    @Override
+    public void setFeature(String name, boolean value)
+            throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (getFeature(name) != value)
+            throw new SAXNotSupportedException(name);
+    }
+
+    @Override
+    public Object getProperty(String name)
+            throws SAXNotRecognizedException, SAXNotSupportedException {
+        throw new SAXNotRecognizedException(name);
+    }
+
+    @Override
+    public void setProperty(String name, Object value)
+            throws SAXNotRecognizedException, SAXNotSupportedException {
+        throw new SAXNotRecognizedException(name);
+    }
+
+    @Override
+    public void setEntityResolver(EntityResolver resolver) {
+        this.entityResolver = resolver;
+    }
+
+    @Override
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    @Override
+    public void setDTDHandler(DTDHandler handler) {
+        this.dtdHandler = handler;
+    }
+
+    @Override
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    @Override
+    public void setContentHandler(ContentHandler handler) {
+        this.contentHandler = handler;
+    }
+
+    @Override
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    @Override
+    public void setErrorHandler(ErrorHandler handler) {
+        this.errorHandler = handler;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    @Override
+    public void parse(InputSource input) throws IOException, SAXException {
+        if (contentHandler == null)
+            throw new IllegalStateException("contentHandler not initialized");
+        SAXWriter w = new SAXWriter(contentHandler);
+        w.setIncludeNamespaceDeclaration(includeNamespaceDeclaration);
+        w.setIncludeKeyword(includeKeyword);
+        w.setIncludeBulkData(includeBulkData);
+        w.setIncludeSequences(includeSequences);
+        w.write(attrs);
+    }
+
+    @Override
+    public void parse(String systemId) throws IOException, SAXException {
+        parse(new InputSource(systemId));
+    }
+}
@@ -38,10 +38,16 @@
 
 package org.dcm4che3.io;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
@@ -52,8 +58,11 @@ import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.util.Base64;
 import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.SafeClose;
+import org.dcm4che3.util.StringPool;
 import org.dcm4che3.util.TagUtils;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
@@ -80,6 +89,16 @@ public class ContentHandlerAdapter extends DefaultHandler {
     private Fragments dataFragments;
     private boolean processCharacters;
     private boolean inlineBinary;
+    private StringPool stringPool;
+    private int inlineBinaryThreshold = -1;
+    private String blkFilePrefix = "blk";
+    private String blkFileSuffix;
+    private File blkDirectory;
+    private ArrayList<File> blkFiles;
+    private File blkFile;
+    private OutputStream blkOut;
+    private int blkLength;
+    private byte[] decodeBuf;
 
     public ContentHandlerAdapter(Attributes attrs) {
         if (attrs == null)
@@ -92,6 +111,71 @@ public class ContentHandlerAdapter extends DefaultHandler {
         return fmi;
     }
 
+    public final StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Sets the pool used to share repeated string values between parsed
+     * data sets.
+     *
+     * @param stringPool pool of canonical string values or {@code null}
+     */
+    public final void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    public final int getInlineBinaryThreshold() {
+        return inlineBinaryThreshold;
+    }
+
+    /**
+     * Sets the maximal length of decoded inline binary values held in
+     * memory. Longer values are decoded into temporary files referenced by
+     * {@link BulkData}, which have to be deleted by the caller after use.
+     *
+     * @param inlineBinaryThreshold maximal length in bytes or -1 to keep
+     *                              all values in memory
+     * @see #getBulkDataFiles()
+     */
+    public final void setInlineBinaryThreshold(int inlineBinaryThreshold) {
+        if (inlineBinaryThreshold < -1)
+            throw new IllegalArgumentException("inlineBinaryThreshold: "
+                    + inlineBinaryThreshold);
+        this.inlineBinaryThreshold = inlineBinaryThreshold;
+    }
+
+    public final String getBulkDataFilePrefix() {
+        return blkFilePrefix;
+    }
+
+    public final void setBulkDataFilePrefix(String blkFilePrefix) {
+        this.blkFilePrefix = blkFilePrefix;
+    }
+
+    public final String getBulkDataFileSuffix() {
+        return blkFileSuffix;
+    }
+
+    public final void setBulkDataFileSuffix(String blkFileSuffix) {
+        this.blkFileSuffix = blkFileSuffix;
+    }
+
+    public final File getBulkDataDirectory() {
+        return blkDirectory;
+    }
+
+    public final void setBulkDataDirectory(File blkDirectory) {
+        this.blkDirectory = blkDirectory;
+    }
+
+    public final List<File> getBulkDataFiles() {
+        if (blkFiles != null)
+            return blkFiles;
+        else
+            return Collections.emptyList();
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName,
             org.xml.sax.Attributes atts) throws SAXException {
@@ -175,6 +259,7 @@ public class ContentHandlerAdapter extends DefaultHandler {
     private void startInlineBinary() {
         processCharacters = true;
         inlineBinary = true;
+        carryLen = 0;
         bout.reset();
     }
 
@@ -232,17 +317,20 @@ public class ContentHandlerAdapter extends DefaultHandler {
             if (inlineBinary)
                 try {
                     if (carryLen != 0) {
-                        int copy = 4 - carryLen;
+                        int copy = Math.min(4 - carryLen, len);
                         System.arraycopy(ch, offset, carry, carryLen, copy);
-                        Base64.decode(carry, 0, 4, bout);
                         offset += copy;
                         len -= copy;
+                        if ((carryLen += copy) < 4)
+                            return;
+                        decodeInlineBinary(carry, 0, 4);
+                        carryLen = 0;
                     }
                     if ((carryLen = len & 3) != 0) {
                         len -= carryLen;
                         System.arraycopy(ch, offset + len, carry, 0, carryLen);
                     }
-                    Base64.decode(ch, offset, len, bout);
+                    decodeInlineBinary(ch, offset, len);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -250,6 +338,44 @@ public class ContentHandlerAdapter extends DefaultHandler {
                 sb.append(ch, offset, len);
     }
 
+    private void decodeInlineBinary(char[] ch, int offset, int len)
+            throws IOException {
+        int maxLen = len / 4 * 3 + 3;
+        if (decodeBuf == null || decodeBuf.length < maxLen)
+            decodeBuf = new byte[Math.max(maxLen, 256)];
+        int n = Base64.decode(ch, offset, len, decodeBuf, 0);
+        if (blkOut == null && inlineBinaryThreshold >= 0
+                && bout.size() + n > inlineBinaryThreshold)
+            startBulkDataFile();
+        if (blkOut != null) {
+            blkOut.write(decodeBuf, 0, n);
+            blkLength += n;
+        } else
+            bout.write(decodeBuf, 0, n);
+    }
+
+    private void startBulkDataFile() throws IOException {
+        blkFile = File.createTempFile(blkFilePrefix, blkFileSuffix, blkDirectory);
+        if (blkFiles == null)
+            blkFiles = new ArrayList<File>();
+        blkFiles.add(blkFile);
+        blkOut = new BufferedOutputStream(new FileOutputStream(blkFile), 0x10000);
+        bout.writeTo(blkOut);
+        blkLength = bout.size();
+        bout.reset();
+    }
+
+    private BulkData endBulkDataFile() {
+        try {
+            blkOut.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            blkOut = null;
+        }
+        return new BulkData(blkFile.toURI().toString(), 0, blkLength, false);
+    }
+
     @Override
     public void endElement(String uri, String localName, String qName)
             throws SAXException {
@@ -297,15 +423,41 @@ public class ContentHandlerAdapter extends DefaultHandler {
 
     @Override
     public void endDocument() throws SAXException {
+        discardIncompleteBulkDataFile();
         if (fmi != null)
             fmi.trimToSize();
         items.getFirst().trimToSize();
     }
 
+    @Override
+    public void fatalError(SAXParseException e) throws SAXException {
+        discardIncompleteBulkDataFile();
+        throw e;
+    }
+
+    /**
+     * Closes and deletes the temporary file of an inline binary value,
+     * whose decoding was not completed. Has to be invoked if parsing
+     * failed by other reason than a fatal XML error, because the parser
+     * does not invoke {@link #endDocument()} in that case.
+     */
+    public void discardIncompleteBulkDataFile() {
+        if (blkOut == null)
+            return;
+
+        SafeClose.close(blkOut);
+        blkOut = null;
+        blkFiles.remove(blkFile);
+        blkFile.delete();
+        blkFile = null;
+    }
+
     private void endDataFragment() {
         if (bulkData != null) {
             dataFragments.add(bulkData);
             bulkData = null;
+        } else if (blkOut != null) {
+            dataFragments.add(endBulkDataFile());
         } else {
             dataFragments.add(getBytes());
         }
@@ -330,6 +482,8 @@ public class ContentHandlerAdapter extends DefaultHandler {
         if (bulkData != null) {
             attrs.setValue(privateCreator, tag, vr, bulkData);
             bulkData = null;
+        } else if (blkOut != null) {
+            attrs.setValue(privateCreator, tag, vr, endBulkDataFile());
         } else if (inlineBinary) {
             attrs.setBytes(privateCreator, tag, vr, getBytes());
         } else {
@@ -343,12 +497,12 @@ public class ContentHandlerAdapter extends DefaultHandler {
     }
 
     private void endPersonName() {
-        values.add(pn.toString());
+        values.add(intern(pn.toString()));
         pn = null;
     }
 
     private void endValue() {
-        values.add(getString());
+        values.add(intern(getString()));
     }
 
     private void endPNComponent(PersonName.Component pnComp) {
@@ -359,6 +513,10 @@ public class ContentHandlerAdapter extends DefaultHandler {
         return sb.toString();
     }
 
+    private String intern(String s) {
+        return stringPool != null ? stringPool.intern(s) : s;
+    }
+
     private byte[] getBytes() {
         byte[] b = bout.toByteArray();
         return bigEndian ? vr.toggleEndian(b, false) : b;
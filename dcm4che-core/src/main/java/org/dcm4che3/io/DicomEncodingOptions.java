@@ -38,6 +38,8 @@
 
 package org.dcm4che3.io;
 
+import java.util.zip.Deflater;
+
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
  *
@@ -52,21 +54,50 @@ public class DicomEncodingOptions {
     public final boolean undefEmptySequenceLength;
     public final boolean undefItemLength;
     public final boolean undefEmptyItemLength;
+    public final int deflateLevel;
+    public final int deflateStrategy;
 
     public DicomEncodingOptions(boolean groupLength, boolean undefSeqLength,
             boolean undefEmptySeqLength, boolean undefItemLength,
             boolean undefEmptyItemLength) {
+        this(groupLength, undefSeqLength, undefEmptySeqLength, undefItemLength,
+                undefEmptyItemLength, Deflater.DEFAULT_COMPRESSION,
+                Deflater.DEFAULT_STRATEGY);
+    }
+
+    /**
+     * @param deflateLevel    compression level (0-9) or
+     *                        {@link Deflater#DEFAULT_COMPRESSION} used for
+     *                        deflated Transfer Syntaxes
+     * @param deflateStrategy {@link Deflater#DEFAULT_STRATEGY},
+     *                        {@link Deflater#FILTERED} or
+     *                        {@link Deflater#HUFFMAN_ONLY}
+     */
+    public DicomEncodingOptions(boolean groupLength, boolean undefSeqLength,
+            boolean undefEmptySeqLength, boolean undefItemLength,
+            boolean undefEmptyItemLength, int deflateLevel, int deflateStrategy) {
         if (undefEmptySeqLength && !undefSeqLength)
             throw new IllegalArgumentException(
                     "undefEmptySeqLength && !undefSeqLength");
         if (undefEmptyItemLength && !undefItemLength)
             throw new IllegalArgumentException(
                     "undefEmptyItemLength && !undefItemLength");
+        if (deflateLevel < Deflater.DEFAULT_COMPRESSION
+                || deflateLevel > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException(
+                    "deflateLevel: " + deflateLevel);
+        if (deflateStrategy != Deflater.DEFAULT_STRATEGY
+                && deflateStrategy != Deflater.FILTERED
+                && deflateStrategy != Deflater.HUFFMAN_ONLY)
+            throw new IllegalArgumentException(
+                    "deflateStrategy: " + deflateStrategy);
         this.groupLength = groupLength;
         this.undefSequenceLength = undefSeqLength;
         this.undefEmptySequenceLength = undefEmptySeqLength;
         this.undefItemLength = undefItemLength;
         this.undefEmptyItemLength = undefEmptyItemLength;
+        this.deflateLevel = deflateLevel;
+        this.deflateStrategy = deflateStrategy;
     }
 
 }
@@ -66,6 +66,7 @@ import org.dcm4che3.data.VR;
 import org.dcm4che3.util.ByteUtils;
 import org.dcm4che3.util.SafeClose;
 import org.dcm4che3.util.StreamUtils;
+import org.dcm4che3.util.StringPool;
 import org.dcm4che3.util.TagUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,10 +100,13 @@ public class DicomInputStream extends FilterInputStream
     private static final int ZLIB_HEADER = 0x789c;
     private static final int DEF_ALLOCATE_LIMIT = 0x4000000; // 64MiB
 
+    private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
     // Length of the buffer used for readFully(short[], int, int)
     private static final int BYTE_BUF_LENGTH = 8192;
 
     private byte[] byteBuf;
+    private Inflater inflater;
     private int allocateLimit = DEF_ALLOCATE_LIMIT;
     private String uri;
     private String tsuid;
@@ -120,6 +124,7 @@ public class DicomInputStream extends FilterInputStream
     private VR vr;
     private int length;
     private DicomInputHandler handler = this;
+    private StringPool stringPool;
     private BulkDataCreator bulkDataCreator = this;
     private BulkDataDescriptor bulkDataDescriptor = BulkDataDescriptor.DEFAULT;
     private final byte[] buffer = new byte[12];
@@ -267,6 +272,26 @@ public class DicomInputStream extends FilterInputStream
         this.bulkDataCreator = bulkDataCreator;
     }
 
+    public final StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Sets the pool used to share repeated string values between read
+     * data sets. If set, all string values of the data set returned by
+     * {@link #readDataset} - including values of nested items - are decoded
+     * from their Specific Character Set on completion of the read and
+     * replaced by their canonical representation from the pool. That
+     * trades the lazy decoding of string values on first access for eager
+     * decoding of all of them, which costs time for values never accessed.
+     * Command sets and the File Meta Information are not affected.
+     *
+     * @param stringPool pool of canonical string values or {@code null}
+     */
+    public final void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
     public boolean isDecodeUNWithIVRLE() {
         return decodeUNWithIVRLE;
     }
@@ -350,6 +375,10 @@ public class DicomInputStream extends FilterInputStream
     public void close() throws IOException {
         SafeClose.close(blkOut);
         super.close();
+        if (inflater != null) {
+            ZlibPool.releaseInflater(inflater);
+            inflater = null;
+        }
     }
 
     @Override
@@ -476,10 +505,16 @@ public class DicomInputStream extends FilterInputStream
         Attributes attrs = new Attributes(bigEndian, 64);
         readAttributes(attrs, len, stopTag);
         attrs.trimToSize();
+        internalizeStringValues(attrs);
         handler.endDataset(this);
         return attrs;
     }
 
+    private void internalizeStringValues(Attributes attrs) {
+        if (stringPool != null)
+            attrs.internalizeStringValues(true, stringPool);
+    }
+
     public Attributes readFileMetaInformation() throws IOException {
         if (!hasfmi)
             return null;  // No File Meta Information
@@ -766,9 +801,11 @@ public class DicomInputStream extends FilterInputStream
             if (hasZLIBHeader()) {
                 LOG.warn(DEFLATED_WITH_ZLIB_HEADER);
                 super.in = new InflaterInputStream(super.in);
-            } else
-                super.in = new InflaterInputStream(super.in,
-                        new Inflater(true));
+            } else {
+                inflater = ZlibPool.borrowInflater();
+                super.in = new InflaterInputStream(super.in, inflater,
+                        INFLATE_BUFFER_SIZE);
+            }
         }
     }
 
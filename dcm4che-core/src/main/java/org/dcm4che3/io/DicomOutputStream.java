@@ -45,6 +45,7 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
@@ -65,11 +66,15 @@ public class DicomOutputStream extends FilterOutputStream {
 
     private static final byte[] DICM = { 'D', 'I', 'C', 'M' };
 
+    private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
     private byte[] preamble = new byte[128];
 
     private boolean explicitVR;
     private boolean bigEndian;
     private DicomEncodingOptions encOpts = DicomEncodingOptions.DEFAULT;
+    private Executor deflateExecutor;
+    private int deflateBlockSize = ParallelDeflaterOutputStream.DEF_BLOCK_SIZE;
 
     private final byte[] buf = new byte[12];
 
@@ -109,6 +114,28 @@ public class DicomOutputStream extends FilterOutputStream {
         this.encOpts = encOpts;
     }
 
+    public final Executor getDeflateExecutor() {
+        return deflateExecutor;
+    }
+
+    /**
+     * Sets the executor used to compress blocks of a deflated Data Set
+     * concurrently by a {@link ParallelDeflaterOutputStream}. Effective, if
+     * set before the first byte of the deflated Data Set is written. If no
+     * executor is set, the Data Set is compressed by the writing thread.
+     */
+    public final void setDeflateExecutor(Executor deflateExecutor) {
+        this.deflateExecutor = deflateExecutor;
+    }
+
+    public final int getDeflateBlockSize() {
+        return deflateBlockSize;
+    }
+
+    public final void setDeflateBlockSize(int deflateBlockSize) {
+        this.deflateBlockSize = deflateBlockSize;
+    }
+
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
         out.write(b, off, len);
@@ -151,8 +178,7 @@ public class DicomOutputStream extends FilterOutputStream {
         explicitVR = !tsuid.equals(UID.ImplicitVRLittleEndian);
         if (tsuid.equals(UID.DeflatedExplicitVRLittleEndian)
                         || tsuid.equals(UID.JPIPReferencedDeflate)) {
-                super.out = new DeflaterOutputStream(super.out,
-                        new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+                super.out = new DeflateOutputStream(super.out);
         }
     }
 
@@ -223,8 +249,8 @@ public class DicomOutputStream extends FilterOutputStream {
     }
 
     public void finish() throws IOException {
-        if( out instanceof DeflaterOutputStream ) {
-            ((DeflaterOutputStream) out).finish();
+        if( out instanceof DeflateOutputStream ) {
+            ((DeflateOutputStream) out).finish();
         }
     }
 
@@ -235,4 +261,86 @@ public class DicomOutputStream extends FilterOutputStream {
         }
         super.close();
     }
+
+    /**
+     * Defers the creation of the compressing stream to the first write, so
+     * encoding options and deflate executor set after the switch to the
+     * deflated Transfer Syntax are considered.
+     */
+    private class DeflateOutputStream extends FilterOutputStream {
+
+        private OutputStream deflate;
+        private Deflater deflater;
+        private boolean finished;
+
+        DeflateOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        private OutputStream deflate() throws IOException {
+            if (finished)
+                throw new IOException("write beyond end of stream");
+            if (deflate == null) {
+                if (deflateExecutor != null) {
+                    deflate = new ParallelDeflaterOutputStream(out,
+                            encOpts.deflateLevel, encOpts.deflateStrategy,
+                            deflateBlockSize,
+                            Runtime.getRuntime().availableProcessors() * 2,
+                            deflateExecutor);
+                } else {
+                    deflater = ZlibPool.borrowDeflater(
+                            encOpts.deflateLevel, encOpts.deflateStrategy);
+                    deflate = new DeflaterOutputStream(out, deflater,
+                            DEFLATE_BUFFER_SIZE);
+                }
+            }
+            return deflate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            deflate().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            deflate().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (deflate != null)
+                deflate.flush();
+            else
+                out.flush();
+        }
+
+        void finish() throws IOException {
+            if (finished)
+                return;
+
+            OutputStream deflate = deflate();
+            finished = true;
+            try {
+                if (deflate instanceof ParallelDeflaterOutputStream)
+                    ((ParallelDeflaterOutputStream) deflate).finish();
+                else
+                    ((DeflaterOutputStream) deflate).finish();
+            } finally {
+                if (deflater != null)
+                    ZlibPool.releaseDeflater(deflater);
+                deflater = null;
+                this.deflate = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,264 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream compressing data in the raw deflate format without ZLIB
+ * header, like a {@link java.util.zip.DeflaterOutputStream} with a
+ * {@link Deflater} created with {@code nowrap = true}, but splitting the
+ * data in blocks, which are compressed concurrently by an {@link Executor}.
+ * <p>
+ * Each block is compressed with the last 32 KiB of the previous block as
+ * preset dictionary and terminated by a sync flush, so the concatenation of
+ * the compressed blocks forms one valid deflate stream, which can be
+ * decompressed by any {@link java.util.zip.Inflater}.
+ */
+public class ParallelDeflaterOutputStream extends FilterOutputStream {
+
+    public static final int DEF_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICT_SIZE = 32 * 1024;
+
+    private final int level;
+    private final int strategy;
+    private final int blockSize;
+    private final int maxPending;
+    private final Executor executor;
+    private final ArrayDeque<FutureTask<byte[]>> pending =
+            new ArrayDeque<FutureTask<byte[]>>();
+    private byte[] prevBlock;
+    private int prevCount;
+    private byte[] block;
+    private int count;
+    private boolean finished;
+
+    public ParallelDeflaterOutputStream(OutputStream out, Executor executor) {
+        this(out, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY,
+                DEF_BLOCK_SIZE, Runtime.getRuntime().availableProcessors() * 2,
+                executor);
+    }
+
+    /**
+     * @param level      compression level (0-9)
+     * @param strategy   compression strategy
+     * @param blockSize  size of uncompressed blocks, compressed by one task
+     * @param maxPending maximal number of blocks, which are compressed or
+     *                   wait to be written to the underlying stream
+     * @param executor   executor used to compress the blocks
+     */
+    public ParallelDeflaterOutputStream(OutputStream out, int level,
+            int strategy, int blockSize, int maxPending, Executor executor) {
+        super(out);
+        if (blockSize < DICT_SIZE)
+            throw new IllegalArgumentException("blockSize: " + blockSize);
+        if (maxPending < 1)
+            throw new IllegalArgumentException("maxPending: " + maxPending);
+        if (executor == null)
+            throw new NullPointerException("executor");
+        this.level = level;
+        this.strategy = strategy;
+        this.blockSize = blockSize;
+        this.maxPending = maxPending;
+        this.executor = executor;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == blockSize)
+            submit(false);
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len | (off + len) | (b.length - (off + len))) < 0)
+            throw new IndexOutOfBoundsException();
+        while (len > 0) {
+            if (count == blockSize)
+                submit(false);
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes all compressed blocks completed so far to the underlying
+     * stream and flushes it. Does not flush the block currently filled.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty() && pending.peek().isDone())
+            writeHead();
+        out.flush();
+    }
+
+    /**
+     * Compresses remaining data, waits for the compression of all blocks
+     * and writes them to the underlying stream without closing it.
+     */
+    public void finish() throws IOException {
+        if (finished)
+            return;
+
+        finished = true;
+        submit(true);
+        while (!pending.isEmpty())
+            writeHead();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished)
+            throw new IOException("write beyond end of stream");
+    }
+
+    private void submit(boolean last) throws IOException {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(
+                new CompressBlock(block, count, prevBlock, prevCount, last));
+        pending.add(task);
+        executor.execute(task);
+        prevBlock = block;
+        prevCount = count;
+        block = last ? null : new byte[blockSize];
+        count = 0;
+        while (pending.size() > maxPending)
+            writeHead();
+    }
+
+    private void writeHead() throws IOException {
+        FutureTask<byte[]> task = pending.remove();
+        byte[] compressed;
+        try {
+            compressed = task.get();
+        } catch (InterruptedException e) {
+            cancelPending();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            cancelPending();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+        out.write(compressed);
+    }
+
+    private void cancelPending() {
+        for (FutureTask<byte[]> task : pending)
+            task.cancel(false);
+        pending.clear();
+        finished = true;
+    }
+
+    private class CompressBlock implements Callable<byte[]> {
+        private final byte[] input;
+        private final int len;
+        private final byte[] dict;
+        private final int dictEnd;
+        private final boolean last;
+
+        CompressBlock(byte[] input, int len, byte[] dict, int dictEnd,
+                boolean last) {
+            this.input = input;
+            this.len = len;
+            this.dict = dict;
+            this.dictEnd = dictEnd;
+            this.last = last;
+        }
+
+        @Override
+        public byte[] call() {
+            Deflater deflater = ZlibPool.borrowDeflater(level, strategy);
+            try {
+                if (dict != null) {
+                    int dictLen = Math.min(dictEnd, DICT_SIZE);
+                    deflater.setDictionary(dict, dictEnd - dictLen, dictLen);
+                }
+                deflater.setInput(input, 0, len);
+                byte[] buf = new byte[len / 2 + 64];
+                int off = 0;
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        if (off == buf.length)
+                            buf = Arrays.copyOf(buf, buf.length << 1);
+                        off += deflater.deflate(buf, off, buf.length - off);
+                    }
+                } else {
+                    int n;
+                    do {
+                        if (off == buf.length)
+                            buf = Arrays.copyOf(buf, buf.length << 1);
+                        n = deflater.deflate(buf, off, buf.length - off,
+                                Deflater.SYNC_FLUSH);
+                        off += n;
+                    } while (off == buf.length);
+                }
+                return Arrays.copyOf(buf, off);
+            } finally {
+                ZlibPool.releaseDeflater(deflater);
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@
 package org.dcm4che3.io;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.Attributes;
@@ -62,16 +63,26 @@ import org.xml.sax.helpers.AttributesImpl;
  */
 public class SAXWriter implements DicomInputHandler {
 
+    /**
+     * Inline binary values exceeding this length are considered as bulk data
+     * by {@link #setIncludeBulkData}.
+     */
+    public static final int BULK_DATA_LENGTH_THRESHOLD = 1024;
+
     private static final String NAMESPACE = "http://dicom.nema.org/PS3.19/models/NativeDICOM";
-    private static final int BASE64_CHUNK_LENGTH = 256 * 3;
-    private static final int BUFFER_LENGTH = 256 * 4;
+    private static final int BASE64_CHUNK_LENGTH = 4096 * 3;
+    private static final int BUFFER_LENGTH = 4096 * 4;
     
     private boolean includeKeyword = true;
+    private boolean includeBulkData = true;
+    private int[] includeSequences;
     private String namespace = "";
+    private int itemLevel;
 
     private final ContentHandler ch;
     private final AttributesImpl atts = new AttributesImpl();
     private final char[] buffer = new char[BUFFER_LENGTH];
+    private byte[] chunk;
 
     public SAXWriter(ContentHandler ch) {
         this.ch = ch;
@@ -93,6 +104,41 @@ public class SAXWriter implements DicomInputHandler {
         this.namespace = includeNameSpaceDeclaration ? NAMESPACE : "";
     }
 
+    public final boolean isIncludeBulkData() {
+        return includeBulkData;
+    }
+
+    /**
+     * Specifies if Bulk Data references, encapsulated Pixel Data and values
+     * of binary VRs (OB, OD, OF, OL, OW, UN) exceeding
+     * {@value #BULK_DATA_LENGTH_THRESHOLD} bytes of written
+     * {@link Attributes} shall be included. Default is {@code true}.
+     *
+     * @param includeBulkData {@code false} to omit bulk data
+     */
+    public final void setIncludeBulkData(boolean includeBulkData) {
+        this.includeBulkData = includeBulkData;
+    }
+
+    public final int[] getIncludeSequences() {
+        return includeSequences;
+    }
+
+    /**
+     * Restricts Sequence Attributes of the written top level data set to
+     * the specified tags. Nested Sequences of included Sequences are always
+     * written. Default is {@code null}, which includes all Sequences.
+     *
+     * @param includeSequences tags of Sequences to include or {@code null}
+     */
+    public final void setIncludeSequences(int... includeSequences) {
+        if (includeSequences != null) {
+            includeSequences = includeSequences.clone();
+            Arrays.sort(includeSequences);
+        }
+        this.includeSequences = includeSequences;
+    }
+
     public void write(Attributes attrs) throws SAXException {
         startDocument();
         writeItem(attrs);
@@ -101,6 +147,7 @@ public class SAXWriter implements DicomInputHandler {
 
     private void writeItem(final Attributes item) throws SAXException {
         final SpecificCharacterSet cs = item.getSpecificCharacterSet();
+        itemLevel++;
         try {
             item.accept(new Attributes.Visitor(){
 
@@ -115,6 +162,8 @@ public class SAXWriter implements DicomInputHandler {
             throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            itemLevel--;
         }
     }
 
@@ -173,7 +222,11 @@ public class SAXWriter implements DicomInputHandler {
 
     private void writeAttribute(int tag, VR vr, Object value,
             SpecificCharacterSet cs, Attributes attrs) throws SAXException {
-        if (TagUtils.isGroupLength(tag) || TagUtils.isPrivateCreator(tag))
+        if (TagUtils.isGroupLength(tag) || TagUtils.isPrivateCreator(tag)
+                || !includeBulkData && isBulkData(vr, value)
+                || includeSequences != null && itemLevel == 1
+                    && value instanceof Sequence
+                    && Arrays.binarySearch(includeSequences, tag) < 0)
             return;
 
         String privateCreator = attrs.getPrivateCreator(tag);
@@ -194,6 +247,13 @@ public class SAXWriter implements DicomInputHandler {
         endElement("DicomAttribute");
     }
 
+    private static boolean isBulkData(VR vr, Object value) {
+        return value instanceof BulkData 
+                || value instanceof Fragments
+                || vr.isInlineBinary() && value instanceof byte[]
+                    && ((byte[]) value).length > BULK_DATA_LENGTH_THRESHOLD;
+    }
+
     private void writeAttribute(Value value, boolean bigEndian)
             throws SAXException {
         if (value.isEmpty())
@@ -252,6 +312,8 @@ public class SAXWriter implements DicomInputHandler {
             } else if (len > 0) {
                 if (dis.isIncludeBulkDataURI()) {
                     writeBulkData(dis.createBulkData(dis));
+                } else if (vr.isInlineBinary() && len > BASE64_CHUNK_LENGTH) {
+                    writeInlineBinary(dis, vr, len);
                 } else {
                     byte[] b = dis.readValue();
                     if (tag == Tag.TransferSyntaxUID
@@ -310,6 +372,8 @@ public class SAXWriter implements DicomInputHandler {
                 startElement("DataFragment", "number", frags.size());
                 if (dis.isIncludeBulkDataURI()) {
                     writeBulkData(dis.createBulkData(dis));
+                } else if (len > BASE64_CHUNK_LENGTH) {
+                    writeInlineBinary(dis, frags.vr(), len);
                 } else {
                     byte[] b = dis.readValue();
                     if (dis.bigEndian())
@@ -356,6 +420,44 @@ public class SAXWriter implements DicomInputHandler {
         endElement("InlineBinary");
     }
 
+    /**
+     * Encodes a value read from {@code dis} chunk by chunk, without
+     * loading the whole value into memory.
+     */
+    private void writeInlineBinary(DicomInputStream dis, VR vr, int len)
+            throws IOException, SAXException {
+        startElement("InlineBinary");
+        byte[] b = chunk;
+        if (b == null)
+            chunk = b = new byte[BASE64_CHUNK_LENGTH];
+        char[] buf = buffer;
+        boolean toggleEndian = dis.bigEndian();
+        for (int off = 0; off < len;) {
+            int n = Math.min(len - off, BASE64_CHUNK_LENGTH);
+            dis.readFully(b, 0, n);
+            if (toggleEndian)
+                toggleEndian(b, n, vr.numEndianBytes());
+            Base64.encode(b, 0, n, buf, 0);
+            ch.characters(buf, 0, (n * 4 / 3 + 3) & ~3);
+            off += n;
+        }
+        endElement("InlineBinary");
+    }
+
+    private static void toggleEndian(byte[] b, int len, int numEndianBytes) {
+        switch (numEndianBytes) {
+        case 2:
+            ByteUtils.swapShorts(b, 0, len);
+            break;
+        case 4:
+            ByteUtils.swapInts(b, 0, len);
+            break;
+        case 8:
+            ByteUtils.swapLongs(b, 0, len);
+            break;
+        }
+    }
+
     private void writeBulkData(BulkData bulkData)
             throws SAXException {
         if (bulkData.getUUID() != null)
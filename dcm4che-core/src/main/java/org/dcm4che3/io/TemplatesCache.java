@@ -38,7 +38,12 @@
 
 package org.dcm4che3.io;
 
-import java.util.HashMap;
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
@@ -46,36 +51,151 @@ import javax.xml.transform.stream.StreamSource;
 
 
 /**
+ * Cache of compiled XSL style sheets. Lookups are lock-free. The number of
+ * cached style sheets is bounded by {@link #setMaxSize}, evicting the least
+ * recently used entries - in batches of 1/8 of the maximal size, so the
+ * eviction scan does not run on each insert. Style sheets loaded from files
+ * are re-compiled if the modification time of the file changed, checked at
+ * most once per {@link #setStaleTimeout stale timeout}.
+ *
  * @author Gunter Zeilinger <gunterze@gmail.com>
  */
 public class TemplatesCache {
 
-    private static TemplatesCache defaultCache;
+    public static final int DEFAULT_MAX_SIZE = 100;
+    public static final long DEFAULT_STALE_TIMEOUT = 10000L;
+
+    private static volatile TemplatesCache defaultCache = new TemplatesCache();
 
-    private final HashMap<String, Templates> map = new HashMap<String, Templates>();
+    private final ConcurrentHashMap<String, Entry> map =
+            new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+    private volatile long staleTimeout = DEFAULT_STALE_TIMEOUT;
 
-    public static synchronized TemplatesCache getDefault() {
-        if (defaultCache == null) {
-            defaultCache = new TemplatesCache();
+    private static final class Entry {
+        final TransformerPool pool;
+        final File file;
+        final long lastModified;
+        volatile long lastChecked;
+        volatile long lastAccessed;
+
+        Entry(String uri, long now, long access)
+                throws TransformerConfigurationException {
+            this.file = fileOf(uri);
+            this.lastModified = file != null ? file.lastModified() : 0L;
+            this.pool = new TransformerPool(
+                    SAXTransformer.newTemplates(new StreamSource(uri)));
+            this.lastChecked = now;
+            this.lastAccessed = access;
         }
+
+        boolean isModified(long now, long staleTimeout) {
+            if (file == null || now - lastChecked < staleTimeout)
+                return false;
+            lastChecked = now;
+            return file.lastModified() != lastModified;
+        }
+    }
+
+    public static TemplatesCache getDefault() {
         return defaultCache;
     }
 
-    public static synchronized void setDefault(TemplatesCache cache) {
+    public static void setDefault(TemplatesCache cache) {
         if (cache == null) {
             throw new NullPointerException();
         }
         defaultCache = cache;
     }
 
+    public final int getMaxSize() {
+        return maxSize;
+    }
+
+    public final void setMaxSize(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public final long getStaleTimeout() {
+        return staleTimeout;
+    }
+
+    /**
+     * Sets the minimal interval in ms between checks of the modification
+     * time of style sheet files. A negative value disables the check.
+     *
+     * @param staleTimeout interval in ms
+     */
+    public final void setStaleTimeout(long staleTimeout) {
+        this.staleTimeout = staleTimeout;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
     public void clear() {
         map.clear();
     }
 
     public Templates get(String uri) throws TransformerConfigurationException {
-        Templates tpl = map.get(uri);
-        if (tpl == null)
-            map.put(uri, tpl = SAXTransformer.newTemplates(new StreamSource(uri)));
-        return tpl;
+        return getTransformerPool(uri).getTemplates();
+    }
+
+    public TransformerPool getTransformerPool(String uri)
+            throws TransformerConfigurationException {
+        long now = System.currentTimeMillis();
+        Entry entry = map.get(uri);
+        if (entry != null) {
+            long staleTimeout = this.staleTimeout;
+            if (staleTimeout < 0 || !entry.isModified(now, staleTimeout)) {
+                entry.lastAccessed = accessCounter.incrementAndGet();
+                return entry.pool;
+            }
+        }
+        Entry newEntry = new Entry(uri, now, accessCounter.incrementAndGet());
+        map.put(uri, newEntry);
+        if (entry == null)
+            evict();
+        return newEntry.pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evict() {
+        int maxSize = this.maxSize;
+        if (map.size() <= maxSize)
+            return;
+
+        Map.Entry<String, Entry>[] entries =
+                map.entrySet().toArray(new Map.Entry[0]);
+        int n = entries.length - maxSize + (maxSize >> 3);
+        if (n <= 0)
+            return;
+
+        long[] ticks = new long[entries.length];
+        for (int i = 0; i < ticks.length; i++)
+            ticks[i] = entries[i].getValue().lastAccessed;
+        long[] sorted = ticks.clone();
+        Arrays.sort(sorted);
+        long threshold = sorted[n - 1];
+        for (int i = 0; i < ticks.length && n > 0; i++)
+            if (ticks[i] <= threshold) {
+                map.remove(entries[i].getKey(), entries[i].getValue());
+                n--;
+            }
+    }
+
+    private static File fileOf(String uri) {
+        try {
+            if (uri.startsWith("file:"))
+                return new File(new URI(uri));
+            if (uri.indexOf(':') < 2)
+                return new File(uri);
+        } catch (Exception ignore) {}
+        return null;
     }
 }
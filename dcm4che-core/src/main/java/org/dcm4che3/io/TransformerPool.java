@@ -0,0 +1,162 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+
+/**
+ * Pool of {@link Transformer}s created from one {@link Templates}, which
+ * avoids to instantiate a new {@code Transformer} for each transformation.
+ * Also records the number and duration of performed transformations.
+ */
+public class TransformerPool {
+
+    public static final int DEFAULT_MAX_IDLE =
+            Runtime.getRuntime().availableProcessors();
+
+    private final Templates templates;
+    private final ConcurrentLinkedQueue<Transformer> idle =
+            new ConcurrentLinkedQueue<Transformer>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong transforms = new AtomicLong();
+    private final AtomicLong totalTransformTime = new AtomicLong();
+    private final AtomicLong maxTransformTime = new AtomicLong();
+    private volatile int maxIdle = DEFAULT_MAX_IDLE;
+
+    public TransformerPool(Templates templates) {
+        if (templates == null)
+            throw new NullPointerException("templates");
+        this.templates = templates;
+    }
+
+    public final Templates getTemplates() {
+        return templates;
+    }
+
+    public final int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public final void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        this.maxIdle = maxIdle;
+    }
+
+    public Transformer borrow() throws TransformerConfigurationException {
+        Transformer transformer = idle.poll();
+        if (transformer != null) {
+            idleCount.decrementAndGet();
+            return transformer;
+        }
+        created.incrementAndGet();
+        return templates.newTransformer();
+    }
+
+    public void release(Transformer transformer) {
+        transformer.reset();
+        transformer.clearParameters();
+        if (idleCount.incrementAndGet() <= maxIdle)
+            idle.offer(transformer);
+        else
+            idleCount.decrementAndGet();
+    }
+
+    public void clear() {
+        while (idle.poll() != null)
+            idleCount.decrementAndGet();
+    }
+
+    void recordTransform(long nanos) {
+        transforms.incrementAndGet();
+        totalTransformTime.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxTransformTime.get()))
+            if (maxTransformTime.compareAndSet(max, nanos))
+                break;
+    }
+
+    public long getNumberOfCreatedTransformers() {
+        return created.get();
+    }
+
+    public int getNumberOfIdleTransformers() {
+        return idleCount.get();
+    }
+
+    public long getNumberOfTransforms() {
+        return transforms.get();
+    }
+
+    public long getTotalTransformTime(TimeUnit unit) {
+        return unit.convert(totalTransformTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxTransformTime(TimeUnit unit) {
+        return unit.convert(maxTransformTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageTransformTime(TimeUnit unit) {
+        long n = transforms.get();
+        return n > 0 ? getTotalTransformTime(unit) / n : 0;
+    }
+
+    public void resetStatistics() {
+        transforms.set(0);
+        totalTransformTime.set(0);
+        maxTransformTime.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "TransformerPool[transforms=" + transforms.get()
+                + ", avg=" + getAverageTransformTime(TimeUnit.MICROSECONDS)
+                + "us, max=" + getMaxTransformTime(TimeUnit.MICROSECONDS)
+                + "us, created=" + created.get()
+                + ", idle=" + idleCount.get()
+                + ']';
+    }
+}
@@ -42,8 +42,12 @@ package org.dcm4che3.io;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.AttributesCoercion;
+import org.xml.sax.InputSource;
 
 import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -51,17 +55,35 @@ import javax.xml.transform.Templates;
  */
 public class XSLTAttributesCoercion implements AttributesCoercion {
 
-    private final Templates templates;
+    private final TransformerPool pool;
     private boolean includeNameSpaceDeclaration;
     private boolean includeKeyword;
+    private boolean includeBulkData = true;
+    private int[] includeSequences;
     private SAXTransformer.SetupTransformer setupTransformer;
     private AttributesCoercion next;
 
     public XSLTAttributesCoercion(Templates templates, AttributesCoercion next) {
-        this.templates = templates;
+        this(new TransformerPool(templates), next);
+    }
+
+    /**
+     * Creates coercion using pooled {@code Transformer}s - typically
+     * obtained by {@link TemplatesCache#getTransformerPool} - which also
+     * records the duration of the transformations.
+     *
+     * @param pool Transformer pool
+     * @param next next coercion or {@code null}
+     */
+    public XSLTAttributesCoercion(TransformerPool pool, AttributesCoercion next) {
+        this.pool = pool;
         this.next = next;
     }
 
+    public TransformerPool getTransformerPool() {
+        return pool;
+    }
+
     public boolean isIncludeNameSpaceDeclaration() {
         return includeNameSpaceDeclaration;
     }
@@ -88,6 +110,48 @@ public class XSLTAttributesCoercion implements AttributesCoercion {
         return this;
     }
 
+    public boolean isIncludeBulkData() {
+        return includeBulkData;
+    }
+
+    /**
+     * Specifies if bulk data shall be passed to the XSL transformation.
+     * Default is {@code true}. Style sheets, which do not access bulk data,
+     * may be applied with {@code false} to avoid to serialize large binary
+     * values, which are kept untouched.
+     *
+     * @param includeBulkData {@code false} to not pass bulk data
+     */
+    public void setIncludeBulkData(boolean includeBulkData) {
+        this.includeBulkData = includeBulkData;
+    }
+
+    public XSLTAttributesCoercion includeBulkData(boolean includeBulkData) {
+        setIncludeBulkData(includeBulkData);
+        return this;
+    }
+
+    public int[] getIncludeSequences() {
+        return includeSequences;
+    }
+
+    /**
+     * Restricts Sequences passed to the XSL transformation to the specified
+     * tags. Sequences not passed remain untouched. Default is {@code null},
+     * which passes all Sequences.
+     *
+     * @param includeSequences tags of Sequences accessed by the style sheet
+     *                         or {@code null}
+     */
+    public void setIncludeSequences(int... includeSequences) {
+        this.includeSequences = includeSequences;
+    }
+
+    public XSLTAttributesCoercion includeSequences(int... includeSequences) {
+        setIncludeSequences(includeSequences);
+        return this;
+    }
+
     public SAXTransformer.SetupTransformer getSetupTransformer() {
         return setupTransformer;
     }
@@ -105,8 +169,7 @@ public class XSLTAttributesCoercion implements AttributesCoercion {
     public void coerce(Attributes attrs, Attributes modified) {
         Attributes newAttrs;
         try {
-            newAttrs = SAXTransformer.transform(
-                    attrs, templates, includeNameSpaceDeclaration, includeKeyword, setupTransformer);
+            newAttrs = transform(attrs);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -119,4 +182,24 @@ public class XSLTAttributesCoercion implements AttributesCoercion {
             next.coerce(attrs, modified);
     }
 
+    private Attributes transform(Attributes attrs) throws Exception {
+        Attributes newAttrs = new Attributes();
+        AttributesXMLReader reader = new AttributesXMLReader(attrs)
+                .includeNamespaceDeclaration(includeNameSpaceDeclaration)
+                .includeKeyword(includeKeyword)
+                .includeBulkData(includeBulkData)
+                .includeSequences(includeSequences);
+        long start = System.nanoTime();
+        Transformer transformer = pool.borrow();
+        if (setupTransformer != null)
+            setupTransformer.setup(transformer);
+        // a Transformer which failed may be left in an inconsistent state,
+        // so it is only returned to the pool after a successful transform
+        transformer.transform(new SAXSource(reader, new InputSource()),
+                new SAXResult(new ContentHandlerAdapter(newAttrs)));
+        pool.release(transformer);
+        pool.recordTransform(System.nanoTime() - start);
+        return newAttrs;
+    }
+
 }
@@ -0,0 +1,109 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pools of {@link Deflater} and {@link Inflater} instances without ZLIB
+ * header, which avoids the allocation of native ZLIB state for each
+ * deflated Data Set.
+ */
+class ZlibPool {
+
+    static final int MAX_IDLE = 32;
+
+    private static final ConcurrentLinkedQueue<Deflater> deflaters =
+            new ConcurrentLinkedQueue<Deflater>();
+    private static final AtomicInteger idleDeflaters = new AtomicInteger();
+    private static final ConcurrentLinkedQueue<Inflater> inflaters =
+            new ConcurrentLinkedQueue<Inflater>();
+    private static final AtomicInteger idleInflaters = new AtomicInteger();
+
+    private ZlibPool() {}
+
+    private static final byte[] NO_INPUT = {};
+
+    static Deflater borrowDeflater(int level, int strategy) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null)
+            deflater = new Deflater(level, true);
+        else
+            idleDeflaters.decrementAndGet();
+        deflater.setLevel(level);
+        deflater.setStrategy(strategy);
+        // Deflater applies changed parameters on the next invocation of
+        // deflate(), which corrupts the output if a preset dictionary was
+        // set in between
+        deflater.setInput(NO_INPUT);
+        deflater.deflate(new byte[8]);
+        return deflater;
+    }
+
+    static void releaseDeflater(Deflater deflater) {
+        if (idleDeflaters.incrementAndGet() > MAX_IDLE) {
+            idleDeflaters.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        deflaters.offer(deflater);
+    }
+
+    static Inflater borrowInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null)
+            return new Inflater(true);
+
+        idleInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    static void releaseInflater(Inflater inflater) {
+        if (idleInflaters.incrementAndGet() > MAX_IDLE) {
+            idleInflaters.decrementAndGet();
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        inflaters.offer(inflater);
+    }
+}
@@ -41,14 +41,16 @@ package org.dcm4che3.media;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.RAFInputStreamAdapter;
-import org.dcm4che3.util.IntHashMap;
 import org.dcm4che3.util.SafeClose;
 import org.dcm4che3.util.StringUtils;
 
@@ -62,21 +64,46 @@ public class DicomDirReader implements Closeable {
     protected final DicomInputStream in;
     protected final Attributes fmi;
     protected final Attributes fsInfo;
-    protected final IntHashMap<Attributes> cache = new IntHashMap<Attributes>();
+    protected final RecordCache cache;
+    private final FileChannel channel;
+    private final String tsuid;
 
     public DicomDirReader(File file) throws IOException {
-        this(file, "r");
+        this(file, RecordCache.DEF_MAX_SIZE);
     }
 
+    /**
+     * Opens DICOMDIR for read access, caching at most {@code maxCacheSize}
+     * directory records.
+     *
+     * @param file DICOMDIR file
+     * @param maxCacheSize maximal number of cached records or 0 for no limit
+     */
+    public DicomDirReader(File file, int maxCacheSize) throws IOException {
+        this(file, "r", maxCacheSize);
+    }
+
+    /**
+     * Opens DICOMDIR with the specified access mode and an unbounded record
+     * cache, so records modified, but not yet written, are never evicted.
+     */
     protected DicomDirReader(File file, String mode) throws IOException {
+        this(file, mode, 0);
+    }
+
+    protected DicomDirReader(File file, String mode, int maxCacheSize)
+            throws IOException {
         this.file = file;
+        this.cache = new RecordCache(maxCacheSize);
         this.raf = new RandomAccessFile(file, mode);
+        this.channel = raf.getChannel();
         try {
             this.in = new DicomInputStream(new RAFInputStreamAdapter(raf));
             this.fmi = in.readFileMetaInformation();
             this.fsInfo = in.readDataset(-1, Tag.DirectoryRecordSequence);
             if (in.tag() != Tag.DirectoryRecordSequence)
                 throw new IOException("Missing Directory Record Sequence");
+            this.tsuid = in.getTransferSyntax();
         } catch (IOException e) {
             SafeClose.close(raf);
             throw e;
@@ -170,6 +197,14 @@ public class DicomDirReader implements Closeable {
         cache.clear();
     }
 
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
     public Attributes readFirstRootDirectoryRecord() throws IOException {
         return readRecord(getOffsetOfFirstRootDirectoryRecord());
     }
@@ -392,21 +427,102 @@ public class DicomDirReader implements Closeable {
         return null;
     }
 
-    private synchronized Attributes readRecord(int offset) throws IOException {
+    /**
+     * Returns the record at the specified offset from the record cache or
+     * reads it from the file on a cache miss. Does not hold any lock, because
+     * records of a DICOMDIR opened for read access are never modified.
+     *
+     * @param offset offset of the record in the file
+     * @return the record or {@code null} if {@code offset} is 0
+     * @throws IOException if an I/O error occurs
+     */
+    protected Attributes readRecord(int offset) throws IOException {
         if (offset == 0)
             return null;
 
         Attributes item = cache.get(offset);
-        if (item == null) {
-            long off = offset & 0xffffffffL;
-            raf.seek(off);
-            in.setPosition(off);
-            item = in.readItem();
-            cache.put(offset, item);
-        }
+        return item != null ? item : loadRecord(offset);
+    }
+
+    private Attributes loadRecord(int offset) throws IOException {
+        long off = offset & 0xffffffffL;
+        DicomInputStream din = new DicomInputStream(
+                new ChannelInputStream(channel, off), tsuid);
+        din.setPosition(off);
+        Attributes item = din.readItem();
+        cache.put(offset, item);
         return item;
     }
 
+    /**
+     * Reads from the file channel by positional reads, which do not modify
+     * the file position of the channel, so several threads may read records
+     * concurrently.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(1024);
+        private long pos;
+
+        ChannelInputStream(FileChannel channel, long pos) {
+            this.channel = channel;
+            this.pos = pos;
+            buf.flip();
+        }
+
+        private boolean fill() throws IOException {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            buf.flip();
+            if (n <= 0)
+                return false;
+            pos += n;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buf.hasRemaining() && !fill())
+                return -1;
+            return buf.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!buf.hasRemaining()) {
+                if (len >= buf.capacity()) {
+                    int n = channel.read(ByteBuffer.wrap(b, off, len), pos);
+                    if (n <= 0)
+                        return -1;
+                    pos += n;
+                    return n;
+                }
+                if (!fill())
+                    return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0)
+                return 0;
+            int remaining = buf.remaining();
+            if (n <= remaining) {
+                buf.position(buf.position() + (int) n);
+                return n;
+            }
+            buf.position(buf.limit());
+            pos += n - remaining;
+            return n;
+        }
+    }
+
     public static boolean inUse(Attributes rec) {
         return rec.getInt(Tag.RecordInUseFlag, 0) != 0;
     }
@@ -38,6 +38,7 @@
 
 package org.dcm4che3.media;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -45,6 +46,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
@@ -70,6 +73,7 @@ public class DicomDirWriter extends DicomDirReader {
     private final static int NO_KNOWN_INCONSISTENCIES = 0;
     private final static int IN_USE = 0xFFFF;
     private final static int INACTIVE = 0;
+    private final static int WRITE_BUFFER_SIZE = 0x10000;
 
     private final byte[] dirInfoHeader = { 
             0x04, 0x00, 0x00, 0x12, 'U', 'L', 4, 0, 0, 0, 0, 0, 
@@ -90,9 +94,13 @@ public class DicomDirWriter extends DicomDirReader {
             new IdentityHashMap<Attributes,Attributes>();
     private final ArrayList<Attributes> dirtyRecords =
             new ArrayList<Attributes>();
+    private final int maxCacheSize;
 
-    private DicomDirWriter(File file) throws IOException {
+    private DicomDirWriter(File file, int maxCacheSize) throws IOException {
         super(file, "rw");
+        if (maxCacheSize < 0)
+            throw new IllegalArgumentException("maxCacheSize: " + maxCacheSize);
+        this.maxCacheSize = maxCacheSize;
         out = new DicomOutputStream(new RAFOutputStreamAdapter(raf),
                 super.getTransferSyntaxUID());
         int seqLen = in.length();
@@ -122,10 +130,28 @@ public class DicomDirWriter extends DicomDirReader {
     }
 
     public static DicomDirWriter open(File file) throws IOException {
+        return open(file, 0);
+    }
+
+    /**
+     * Opens DICOMDIR for update. Records are never evicted from the record
+     * cache between commits, but after a {@link #commit} the cache is
+     * trimmed to the parents of the last appended records and these last
+     * appended records, if it contains more than {@code maxCacheSize}
+     * records. Records obtained before a commit
+     * may therefore no longer be the instances maintained by the writer
+     * and have to be read again, before they are passed to it.
+     *
+     * @param file DICOMDIR file
+     * @param maxCacheSize maximal number of cached records kept after a
+     *                     commit or 0 for no limit
+     */
+    public static DicomDirWriter open(File file, int maxCacheSize)
+            throws IOException {
         if (!file.isFile())
             throw new FileNotFoundException();
 
-        return new DicomDirWriter(file);
+        return new DicomDirWriter(file, maxCacheSize);
     }
 
     public static void createEmptyDirectory(File file, String iuid,
@@ -216,6 +242,363 @@ public class DicomDirWriter extends DicomDirReader {
         return seriesRec != null ? seriesRec : addLowerDirectoryRecord(studyRec, rec);
     }
 
+    /**
+     * Returns a new {@link Batch} for adding a larger number of directory
+     * records to this DICOMDIR with one sequential write on
+     * {@link Batch#commit()}, instead of seeking back to update the
+     * predecessor record of each added record.
+     *
+     * @return new batch associated with this writer
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Directory records added to a {@code Batch} are kept in memory, indexed
+     * by Patient ID, Study/Series Instance UID or Referenced SOP Instance UID
+     * in File, until {@link #commit()} assigns their offsets and appends them
+     * to the DICOMDIR in pre-order by one sequential write. Existing records
+     * of the DICOMDIR are only read once per parent record and commit, on
+     * first access of its child records. {@link #commit()} discards the
+     * in-memory index, so a long-lived batch does not accumulate nodes.
+     *
+     * A {@code Batch} is not thread-safe; {@link #commit()} synchronizes on
+     * the associated writer. Records must not be added to the DICOMDIR by the
+     * methods of the writer itself while the batch holds uncommitted records,
+     * because the batch links its records to the last child record it has
+     * read, which would be stale.
+     */
+    public final class Batch {
+
+        private Node root = new Node(null, true);
+        private final IdentityHashMap<Attributes,Node> nodes =
+                new IdentityHashMap<Attributes,Node>();
+        private final ArrayList<Node> pending = new ArrayList<Node>();
+        private int size;
+
+        private Batch() {}
+
+        /**
+         * @return number of added records, not yet written by
+         *         {@link #commit()}
+         */
+        public int size() {
+            return size;
+        }
+
+        public Attributes findOrAddPatientRecord(Attributes rec)
+                throws IOException {
+            return findOrAdd(root, rec);
+        }
+
+        public Attributes findOrAddStudyRecord(Attributes patRec, Attributes rec)
+                throws IOException {
+            return findOrAdd(nodeOf(patRec), rec);
+        }
+
+        public Attributes findOrAddSeriesRecord(Attributes studyRec, Attributes rec)
+                throws IOException {
+            return findOrAdd(nodeOf(studyRec), rec);
+        }
+
+        public Attributes findPatientRecord(String pid) throws IOException {
+            return find(root, RecordType.PATIENT, pid);
+        }
+
+        public Attributes findStudyRecord(Attributes patRec, String iuid)
+                throws IOException {
+            return find(nodeOf(patRec), RecordType.STUDY, iuid);
+        }
+
+        public Attributes findSeriesRecord(Attributes studyRec, String iuid)
+                throws IOException {
+            return find(nodeOf(studyRec), RecordType.SERIES, iuid);
+        }
+
+        public Attributes findRootInstanceRecord(String iuid)
+                throws IOException {
+            return find(root, RecordType.IMAGE, iuid);
+        }
+
+        public Attributes findLowerInstanceRecord(Attributes seriesRec,
+                String iuid) throws IOException {
+            return find(nodeOf(seriesRec), RecordType.IMAGE, iuid);
+        }
+
+        public Attributes addRootDirectoryRecord(Attributes rec)
+                throws IOException {
+            return add(root, rec);
+        }
+
+        public Attributes addLowerDirectoryRecord(Attributes parentRec,
+                Attributes rec) throws IOException {
+            return add(nodeOf(parentRec), rec);
+        }
+
+        /**
+         * Writes all added records to the DICOMDIR and commits the DICOMDIR.
+         * Records added to the batch afterwards are linked to the records
+         * written by this invocation.
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            synchronized (DicomDirWriter.this) {
+                if (size > 0)
+                    write();
+                DicomDirWriter.this.commit();
+            }
+        }
+
+        private Node nodeOf(Attributes rec) {
+            Node node = nodes.get(rec);
+            if (node == null) {
+                if (rec.getItemPosition() < 0)
+                    throw new IllegalArgumentException(
+                            "Parent record neither added to batch nor read from "
+                            + file);
+                nodes.put(rec, node = new Node(rec, true));
+            }
+            return node;
+        }
+
+        private Attributes find(Node parent, RecordType type, String id)
+                throws IOException {
+            Node node = parent.children().get(keyOf(type, id));
+            return node != null ? node.rec : null;
+        }
+
+        private Attributes findOrAdd(Node parent, Attributes rec)
+                throws IOException {
+            String key = keyOf(rec);
+            Node node = key != null ? parent.children().get(key) : null;
+            return node != null ? node.rec : add(parent, rec);
+        }
+
+        private Attributes add(Node parent, Attributes rec) throws IOException {
+            Node node = new Node(rec, false);
+            LinkedHashMap<String,Node> children = parent.children();
+            String key = keyOf(rec);
+            if (key != null && !children.containsKey(key))
+                children.put(key, node);
+            if (parent.stored && parent.added.isEmpty())
+                pending.add(parent);
+            parent.added.add(node);
+            nodes.put(rec, node);
+            size++;
+            return rec;
+        }
+
+        private void write() throws IOException {
+            ArrayList<Attributes> recs = new ArrayList<Attributes>(size);
+            WriteBuffer buf = new WriteBuffer();
+            DicomOutputStream dos = new DicomOutputStream(buf,
+                    getTransferSyntaxUID());
+            dos.setEncodingOptions(getEncodingOptions());
+            int endPos = nextRecordPos;
+            for (Node parent : pending)
+                endPos = layout(parent, endPos, recs, dos);
+            if (LOG.isInfoEnabled())
+                LOG.info("M-UPDATE {}: add {} Records", file, recs.size());
+
+            if (rollbackLen == -1) {
+                rollbackLen = nextRecordPos;
+                writeFileSetConsistencyFlag(KNOWN_INCONSISTENCIES);
+            }
+            raf.seek(nextRecordPos);
+            for (Attributes rec : recs) {
+                LOG.debug("Directory Record:\n{}", rec);
+                rec.writeItemTo(dos);
+                if (buf.size() >= WRITE_BUFFER_SIZE)
+                    buf.flushTo();
+                cache.put((int) rec.getItemPosition(), rec);
+            }
+            buf.flushTo();
+            nextRecordPos = (int) raf.getFilePointer();
+            if (nextRecordPos != endPos)
+                throw new IllegalStateException("Written " 
+                        + (nextRecordPos - rollbackLen)
+                        + " bytes, expected " + (endPos - rollbackLen));
+
+            for (Node parent : pending)
+                link(parent);
+            pending.clear();
+            root = new Node(null, true);
+            nodes.clear();
+            size = 0;
+        }
+
+        /**
+         * Assigns offsets to records added to the children of {@code parent}
+         * and their descendants in pre-order, starting at {@code pos}, and
+         * links them with each other. The encoded length of the records is
+         * calculated without encoding them.
+         *
+         * @return offset following the last record of the sub-tree
+         */
+        private int layout(Node parent, int pos, ArrayList<Attributes> recs,
+                DicomOutputStream dos) {
+            Node prev = null;
+            for (Node node : parent.added) {
+                Attributes rec = node.rec;
+                rec.setInt(Tag.OffsetOfTheNextDirectoryRecord, VR.UL, 0);
+                rec.setInt(Tag.RecordInUseFlag, VR.US, IN_USE);
+                rec.setInt(Tag.OffsetOfReferencedLowerLevelDirectoryEntity,
+                        VR.UL, 0);
+                rec.setItemPosition(pos);
+                recs.add(rec);
+                if (prev != null)
+                    prev.rec.setInt(Tag.OffsetOfTheNextDirectoryRecord, VR.UL,
+                            pos);
+                pos += encodedItemLength(rec, dos);
+                if (!node.added.isEmpty())
+                    rec.setInt(Tag.OffsetOfReferencedLowerLevelDirectoryEntity,
+                            VR.UL, pos);
+                pos = layout(node, pos, recs, dos);
+                prev = node;
+            }
+            return pos;
+        }
+
+        /**
+         * Returns the number of bytes written by
+         * {@link Attributes#writeItemTo} for {@code rec}, including the item
+         * header and an optional Item Delimitation Item.
+         */
+        private int encodedItemLength(Attributes rec, DicomOutputStream dos) {
+            DicomEncodingOptions encOpts = dos.getEncodingOptions();
+            boolean undefLength = rec.isEmpty()
+                    ? encOpts.undefEmptyItemLength
+                    : encOpts.undefItemLength;
+            return rec.calcLength(encOpts, dos.isExplicitVR())
+                    + (undefLength ? 16 : 8);
+        }
+
+        /**
+         * Links the first record added to the children of the already stored
+         * {@code parent} with its last existing child record or with the
+         * parent record itself and marks the added records as stored.
+         */
+        private void link(Node parent) throws IOException {
+            int first = (int) parent.added.get(0).rec.getItemPosition();
+            if (parent == root) {
+                Attributes lastRootRecord = readLastRootDirectoryRecord();
+                if (lastRootRecord == null)
+                    setOffsetOfFirstRootDirectoryRecord(first);
+                else
+                    linkNext(lastRootRecord, first);
+            } else if (parent.lastChild != null) {
+                linkNext(parent.lastChild, first);
+            } else {
+                parent.rec.setInt(
+                        Tag.OffsetOfReferencedLowerLevelDirectoryEntity,
+                        VR.UL, first);
+                markAsDirty(parent.rec);
+            }
+            markAsStored(parent);
+            if (parent == root)
+                setOffsetOfLastRootDirectoryRecord(
+                        (int) root.lastChild.getItemPosition());
+        }
+
+        private void markAsStored(Node parent) {
+            ArrayList<Node> added = parent.added;
+            if (added.isEmpty())
+                return;
+
+            parent.lastChild = added.get(added.size() - 1).rec;
+            if (parent.rec != null)
+                lastChildRecords.put(parent.rec, parent.lastChild);
+            for (Node node : added) {
+                node.stored = true;
+                markAsStored(node);
+            }
+            added.clear();
+        }
+
+        private void linkNext(Attributes prevRec, int offset) {
+            prevRec.setInt(Tag.OffsetOfTheNextDirectoryRecord, VR.UL, offset);
+            markAsDirty(prevRec);
+        }
+
+        private final class Node {
+            final Attributes rec;
+            final ArrayList<Node> added = new ArrayList<Node>(1);
+            LinkedHashMap<String,Node> children;
+            Attributes lastChild;
+            boolean stored;
+            boolean scanned;
+
+            Node(Attributes rec, boolean stored) {
+                this.rec = rec;
+                this.stored = stored;
+                this.scanned = !stored;
+            }
+
+            LinkedHashMap<String,Node> children() throws IOException {
+                if (children == null)
+                    children = new LinkedHashMap<String,Node>();
+                if (!scanned) {
+                    scanned = true;
+                    for (Attributes child = rec == null
+                                ? readFirstRootDirectoryRecord()
+                                : readLowerDirectoryRecord(rec);
+                            child != null;
+                            child = readNextDirectoryRecord(child)) {
+                        lastChild = child;
+                        if (!inUse(child))
+                            continue;
+                        String key = keyOf(child);
+                        if (key != null && !children.containsKey(key)) {
+                            Node node = nodes.get(child);
+                            if (node == null)
+                                nodes.put(child, node = new Node(child, true));
+                            children.put(key, node);
+                        }
+                    }
+                }
+                return children;
+            }
+        }
+    }
+
+    private static String keyOf(Attributes rec) {
+        String type = rec.getString(Tag.DirectoryRecordType);
+        if (type == null)
+            return null;
+
+        switch (type) {
+            case "PATIENT":
+                return keyOf(RecordType.PATIENT,
+                        rec.getString(Tag.PatientID));
+            case "STUDY":
+                return keyOf(RecordType.STUDY,
+                        rec.getString(Tag.StudyInstanceUID));
+            case "SERIES":
+                return keyOf(RecordType.SERIES,
+                        rec.getString(Tag.SeriesInstanceUID));
+        }
+        return keyOf(RecordType.IMAGE,
+                rec.getString(Tag.ReferencedSOPInstanceUIDInFile));
+    }
+
+    private static String keyOf(RecordType type, String id) {
+        return id != null ? type.name() + '\\' + id : null;
+    }
+
+    private final class WriteBuffer extends ByteArrayOutputStream {
+
+        WriteBuffer() {
+            super(WRITE_BUFFER_SIZE + 0x1000);
+        }
+
+        void flushTo() throws IOException {
+            raf.write(buf, 0, count);
+            reset();
+        }
+    }
+
    public synchronized boolean deleteRecord(Attributes rec)
             throws IOException {
         if (rec.getInt(Tag.RecordInUseFlag, 0) == INACTIVE)
@@ -232,7 +615,7 @@ public class DicomDirWriter extends DicomDirReader {
     }
 
     public synchronized void rollback() throws IOException {
-        if (dirtyRecords.isEmpty())
+        if (dirtyRecords.isEmpty() && rollbackLen == -1)
             return;
 
         clearCache();
@@ -257,7 +640,7 @@ public class DicomDirWriter extends DicomDirReader {
     }
 
     public synchronized void commit() throws IOException {
-        if (dirtyRecords.isEmpty())
+        if (dirtyRecords.isEmpty() && rollbackLen == -1)
             return;
 
         if (rollbackLen == -1)
@@ -274,6 +657,35 @@ public class DicomDirWriter extends DicomDirReader {
         writeDirInfoHeader();
 
         rollbackLen = -1;
+        trimCache();
+    }
+
+    private void trimCache() {
+        if (maxCacheSize == 0 || cache.size() <= maxCacheSize)
+            return;
+
+        cache.clear();
+        if (lastChildRecords.size() * 2 > maxCacheSize) {
+            lastChildRecords.clear();
+            return;
+        }
+        for (Map.Entry<Attributes,Attributes> entry : lastChildRecords.entrySet()) {
+            Attributes parentRec = entry.getKey();
+            Attributes lastChildRec = entry.getValue();
+            cache.put((int) parentRec.getItemPosition(), parentRec);
+            cache.put((int) lastChildRec.getItemPosition(), lastChildRec);
+        }
+    }
+
+    /**
+     * Serializes reads of records with the adding, deleting and committing of
+     * records, which modify cached records in place and rewrite record
+     * headers in the file, and ensures that only one instance of each record
+     * is cached.
+     */
+    @Override
+    protected synchronized Attributes readRecord(int offset) throws IOException {
+        return super.readRecord(offset);
     }
 
     @Override
@@ -0,0 +1,162 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.media;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.util.ConcurrentIntHashMap;
+
+/**
+ * Cache of directory records by their offset in the DICOMDIR file.
+ * <p>
+ * If bounded, records are evicted by the CLOCK algorithm: each lookup marks
+ * the record as referenced, and on insertion of a new record into a full
+ * cache, the clock hand sweeps over the cached records, clearing their
+ * referenced marks, until it finds one which was not referenced since the
+ * last sweep, which is then replaced. So frequently traversed records - like
+ * the Patient and Study records visited by each query - stay cached, while
+ * lookups only acquire the lock of one segment of the underlying
+ * {@link ConcurrentIntHashMap}.
+ */
+public class RecordCache {
+
+    public static final int DEF_MAX_SIZE = 8192;
+
+    private static final class Node {
+        final Attributes rec;
+        volatile boolean referenced;
+
+        Node(Attributes rec) {
+            this.rec = rec;
+        }
+    }
+
+    private final ConcurrentIntHashMap<Node> map;
+    private final int maxSize;
+    private final int[] clock;
+    private int count;
+    private int hand;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most {@code maxSize} records.
+     *
+     * @param maxSize maximal number of cached records or 0 for no limit
+     */
+    public RecordCache(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        this.maxSize = maxSize;
+        this.map = new ConcurrentIntHashMap<Node>(
+                ConcurrentIntHashMap.DEFAULT_CONCURRENCY_LEVEL, maxSize);
+        this.clock = maxSize > 0 ? new int[maxSize] : null;
+    }
+
+    public final int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public Attributes get(int offset) {
+        Node node = map.get(offset);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        node.referenced = true;
+        hits.incrementAndGet();
+        return node.rec;
+    }
+
+    public void put(int offset, Attributes rec) {
+        Node node = new Node(rec);
+        if (clock == null) {
+            map.put(offset, node);
+            return;
+        }
+        synchronized (clock) {
+            if (map.put(offset, node) != null)
+                return;
+
+            if (count < maxSize) {
+                clock[count++] = offset;
+                return;
+            }
+            while (true) {
+                Node victim = map.get(clock[hand]);
+                if (victim == null || !victim.referenced)
+                    break;
+                victim.referenced = false;
+                hand = (hand + 1) % maxSize;
+            }
+            map.remove(clock[hand]);
+            clock[hand] = offset;
+            hand = (hand + 1) % maxSize;
+        }
+    }
+
+    public void clear() {
+        if (clock == null) {
+            map.clear();
+            return;
+        }
+        synchronized (clock) {
+            map.clear();
+            count = 0;
+            hand = 0;
+        }
+    }
+}
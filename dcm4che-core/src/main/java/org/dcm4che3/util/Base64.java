@@ -46,6 +46,8 @@ import java.io.OutputStream;
  */
 public class Base64 {
 
+    private static final int DECODE_CHUNK_LENGTH = 8192;
+
     private static final char[] BASE64 = {
         'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
         'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
@@ -98,18 +100,50 @@ public class Base64 {
 
     public static void decode(char[] ch, int off, int len, OutputStream out)
             throws IOException {
+        byte[] buf = new byte[Math.min(len, DECODE_CHUNK_LENGTH) / 4 * 3 + 3];
+        while (len > DECODE_CHUNK_LENGTH) {
+            out.write(buf, 0, decode(ch, off, DECODE_CHUNK_LENGTH, buf, 0));
+            off += DECODE_CHUNK_LENGTH;
+            len -= DECODE_CHUNK_LENGTH;
+        }
+        out.write(buf, 0, decode(ch, off, len, buf, 0));
+    }
+
+    /**
+     * Decodes Base64 characters into the specified byte array, which must
+     * provide space for at least {@code (len / 4) * 3 + 2} bytes.
+     *
+     * @return number of decoded bytes
+     */
+    public static int decode(char[] ch, int off, int len, byte[] dest,
+            int destPos) {
+        int start = destPos;
+        int v;
+        while (len >= 4 && ch[off + 3] != '=') {
+            v = INV_BASE64[ch[off]] << 18
+              | INV_BASE64[ch[off + 1]] << 12
+              | INV_BASE64[ch[off + 2]] << 6
+              | INV_BASE64[ch[off + 3]];
+            dest[destPos] = (byte) (v >> 16);
+            dest[destPos + 1] = (byte) (v >> 8);
+            dest[destPos + 2] = (byte) v;
+            destPos += 3;
+            off += 4;
+            len -= 4;
+        }
         byte b2, b3;
         while ((len -= 2) >= 0) {
-            out.write((byte)((INV_BASE64[ch[off++]] << 2)
-                     | ((b2 = INV_BASE64[ch[off++]]) >>> 4)));
+            dest[destPos++] = (byte)((INV_BASE64[ch[off++]] << 2)
+                     | ((b2 = INV_BASE64[ch[off++]]) >>> 4));
             if ((len-- == 0) || ch[off] == '=')
                 break;
-            out.write((byte)((b2 << 4)
-                     | ((b3 = INV_BASE64[ch[off++]]) >>> 2)));
+            dest[destPos++] = (byte)((b2 << 4)
+                     | ((b3 = INV_BASE64[ch[off++]]) >>> 2));
             if ((len-- == 0) || ch[off] == '=')
                 break;
-            out.write((byte)((b3 << 6) | INV_BASE64[ch[off++]]));
+            dest[destPos++] = (byte)((b3 << 6) | INV_BASE64[ch[off++]]);
         }
+        return destPos - start;
     }
 
 }
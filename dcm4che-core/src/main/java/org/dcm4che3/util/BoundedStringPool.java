@@ -0,0 +1,160 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free {@link StringPool}, implemented as 2-way set
+ * associative cache. A newly pooled string replaces the least recently
+ * inserted entry of its set, so the pool never holds more than
+ * {@link #getCapacity()} strings and does not keep rarely used values
+ * reachable for the lifetime of the JVM, as {@link String#intern()} does.
+ * Strings longer than {@link #getMaxLength()} are returned without lookup.
+ */
+public class BoundedStringPool implements StringPool {
+
+    public static final int DEF_CAPACITY = 4096;
+    public static final int DEF_MAX_LENGTH = 64;
+
+    private static final BoundedStringPool DEFAULT = new BoundedStringPool();
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int maxLength;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BoundedStringPool() {
+        this(DEF_CAPACITY, DEF_MAX_LENGTH);
+    }
+
+    public BoundedStringPool(int capacity, int maxLength) {
+        if (capacity < 2 || capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (maxLength < 0)
+            throw new IllegalArgumentException("maxLength: " + maxLength);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.table = new AtomicReferenceArray<String>(size);
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns a pool shared by all callers, e.g. to pass to
+     * {@link org.dcm4che3.data.Attributes#internalizeStringValues(boolean, StringPool)}.
+     */
+    public static BoundedStringPool getDefault() {
+        return DEFAULT;
+    }
+
+    public final int getCapacity() {
+        return table.length();
+    }
+
+    public final int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public String intern(String s) {
+        if (s == null || s.isEmpty() || s.length() > maxLength)
+            return s;
+
+        int h = s.hashCode();
+        int i = (h ^ (h >>> 16)) & mask & ~1;
+        String first = table.get(i);
+        if (s.equals(first)) {
+            hits.incrementAndGet();
+            return first;
+        }
+        String second = table.get(i + 1);
+        if (s.equals(second)) {
+            hits.incrementAndGet();
+            return second;
+        }
+        misses.incrementAndGet();
+        table.lazySet(i + 1, first);
+        table.lazySet(i, s);
+        return s;
+    }
+
+    public int size() {
+        int n = 0;
+        for (int i = 0, len = table.length(); i < len; i++)
+            if (table.get(i) != null)
+                n++;
+        return n;
+    }
+
+    public void clear() {
+        for (int i = 0, len = table.length(); i < len; i++)
+            table.lazySet(i, null);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0. : (double) h / total;
+    }
+
+    public void resetStatistics() {
+        hits.set(0L);
+        misses.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedStringPool[capacity=" + table.length()
+                + ", size=" + size()
+                + ", hits=" + hits.get()
+                + ", misses=" + misses.get()
+                + "]";
+    }
+}
@@ -86,23 +86,11 @@ public class ByteUtils {
     }
 
     public static void bytesToShortsLE(byte[] b, short[] s, int off, int len) {
-        int boff = 0;
-        for (int j = 0; j < len; j++) {
-            int b0 = b[boff + 1];
-            int b1 = b[boff] & 0xff;
-            s[off + j] = (short)((b0 << 8) | b1);
-            boff += 2;
-        }
+        PixelDataUtils.bytesToShorts(b, 0, s, off, len, false);
     }
 
     public static void bytesToShortsBE(byte[] b, short[] s, int off, int len) {
-        int boff = 0;
-        for (int j = 0; j < len; j++) {
-            int b0 = b[boff];
-            int b1 = b[boff + 1] & 0xff;
-            s[off + j] = (short)((b0 << 8) | b1);
-            boff += 2;
-        }
+        PixelDataUtils.bytesToShorts(b, 0, s, off, len, true);
     }
 
     public static int bytesToInt(byte[] bytes, int off, boolean bigEndian) {
@@ -315,41 +303,15 @@ public class ByteUtils {
     }
 
     public static byte[] swapShorts(byte b[], int off, int len) {
-        checkLength(len, 2);
-        for (int i = off, n = off + len; i < n; i += 2)
-            swap(b, i, i+1);
-        return b;
+        return PixelDataUtils.swapShorts(b, off, len);
     }
 
     public static byte[] swapInts(byte b[], int off, int len) {
-        checkLength(len, 4);
-        for (int i = off, n = off + len; i < n; i += 4) {
-            swap(b, i, i+3);
-            swap(b, i+1, i+2);
-        }
-        return b;
+        return PixelDataUtils.swapInts(b, off, len);
     }
 
     public static byte[] swapLongs(byte b[], int off, int len) {
-        checkLength(len, 8);
-        for (int i = off, n = off + len; i < n; i += 8) {
-            swap(b, i, i+7);
-            swap(b, i+1, i+6);
-            swap(b, i+2, i+5);
-            swap(b, i+3, i+4);
-        }
-        return b;
-    }
-
-    private static void checkLength(int len, int numBytes) {
-        if (len < 0 || (len % numBytes) != 0)
-            throw new IllegalArgumentException("length: " + len);
-    }
-
-    private static void swap(byte[] bytes, int a, int b) {
-        byte t = bytes[a];
-        bytes[a] = bytes[b];
-        bytes[b] = t;
+        return PixelDataUtils.swapLongs(b, off, len);
     }
 
     private static void swapLastFirst(byte[] b1, byte[] b2) {
@@ -0,0 +1,176 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe variant of {@link IntHashMap}, which partitions the entries
+ * by their key on a fixed number of segments, each guarded by its own lock,
+ * so concurrent access to entries in different segments does not contend.
+ */
+public class ConcurrentIntHashMap<V> {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+
+    private final IntHashMap<V>[] segments;
+    private final int segmentShift;
+    // updated while holding the lock of the modified segment, so size()
+    // reflects a removal as soon as the removing thread releases the lock
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ConcurrentIntHashMap() {
+        this(DEFAULT_CONCURRENCY_LEVEL, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentIntHashMap(int concurrencyLevel, int expectedMaxSize) {
+        if (concurrencyLevel <= 0)
+            throw new IllegalArgumentException(
+                    "concurrencyLevel: " + concurrencyLevel);
+        if (expectedMaxSize < 0)
+            throw new IllegalArgumentException(
+                    "expectedMaxSize is negative: " + expectedMaxSize);
+
+        int bits = 0;
+        while ((1 << bits) < Math.min(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL))
+            bits++;
+        int n = 1 << bits;
+        this.segmentShift = 32 - bits;
+        this.segments = new IntHashMap[n];
+        for (int i = 0; i < n; i++)
+            segments[i] = expectedMaxSize > 0
+                    ? new IntHashMap<V>((expectedMaxSize + n - 1) / n)
+                    : new IntHashMap<V>();
+    }
+
+    private IntHashMap<V> segmentFor(int key) {
+        // Fibonacci hashing: use upper bits of the product, so keys of the
+        // same segment still differ in their lower bits used by IntHashMap
+        return segmentShift == 32 ? segments[0]
+                : segments[(key * 0x9E3779B9) >>> segmentShift];
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public V get(int key) {
+        IntHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public boolean containsKey(int key) {
+        IntHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.containsKey(key);
+        }
+    }
+
+    public V put(int key, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        IntHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V oldValue = segment.put(key, value);
+            if (oldValue == null)
+                size.incrementAndGet();
+            return oldValue;
+        }
+    }
+
+    public V putIfAbsent(int key, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        IntHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V oldValue = segment.get(key);
+            if (oldValue != null)
+                return oldValue;
+
+            segment.put(key, value);
+            size.incrementAndGet();
+            return null;
+        }
+    }
+
+    public V remove(int key) {
+        IntHashMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            V oldValue = segment.remove(key);
+            if (oldValue != null)
+                size.decrementAndGet();
+            return oldValue;
+        }
+    }
+
+    public void clear() {
+        for (IntHashMap<V> segment : segments)
+            synchronized (segment) {
+                size.addAndGet(-segment.size());
+                segment.clear();
+            }
+    }
+
+    /**
+     * Visits the entries segment by segment, holding the lock of the
+     * visited segment. Entries added or removed concurrently to segments
+     * not yet visited or already visited may or may not be visited.
+     *
+     * @param visitor visitor of entries
+     * @return {@code false} if the visitor aborted the visit, otherwise
+     *         {@code true}
+     */
+    public boolean accept(IntHashMap.Visitor<V> visitor) {
+        for (IntHashMap<V> segment : segments)
+            synchronized (segment) {
+                if (!segment.accept(visitor))
+                    return false;
+            }
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative {@code long} values, with buckets of
+ * exponentially increasing width, each sub-divided into 16 linear
+ * sub-buckets. Values less than 16 are recorded exactly; larger values with
+ * a relative error below 1/16.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS =
+            SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long prev;
+        while (value < (prev = min.get()) && !min.compareAndSet(prev, value));
+        while (value > (prev = max.get()) && !max.compareAndSet(prev, value));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0L);
+        count.set(0L);
+        sum.set(0L);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMin() {
+        long val = min.get();
+        return val != Long.MAX_VALUE ? val : 0L;
+    }
+
+    public long getMax() {
+        long val = max.get();
+        return val != Long.MIN_VALUE ? val : 0L;
+    }
+
+    public long getMean() {
+        long n = count.get();
+        return n > 0 ? sum.get() / n : 0L;
+    }
+
+    public long getMedian() {
+        return getValueAtPercentile(50.);
+    }
+
+    public long get90thPercentile() {
+        return getValueAtPercentile(90.);
+    }
+
+    public long get99thPercentile() {
+        return getValueAtPercentile(99.);
+    }
+
+    /**
+     * Returns the approximated value, below which the specified percentage
+     * of recorded values fall.
+     *
+     * @param percentile percentage between 0 and 100
+     * @return value at the specified percentile or 0, if no value was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++)
+            total += snapshot[i] = counts.get(i);
+        if (total == 0L)
+            return 0L;
+
+        long rank = Math.max(1L,
+                (long) Math.ceil(Math.min(percentile, 100.) / 100. * total));
+        if (rank >= total)
+            return getMax();
+
+        long acc = 0L;
+        int i = 0;
+        while ((acc += snapshot[i]) < rank)
+            i++;
+        return Math.max(getMin(), Math.min(getMax(), valueOf(i)));
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS)
+                + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the mid value of the bucket with the specified index.
+     */
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + getCount()
+                + ", min=" + getMin()
+                + ", mean=" + getMean()
+                + ", median=" + getMedian()
+                + ", 90%=" + get90thPercentile()
+                + ", 99%=" + get99thPercentile()
+                + ", max=" + getMax()
+                + ']';
+    }
+}
@@ -0,0 +1,259 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Kernels for byte swapping and masking of unused bits of pixel data.
+ * <p>
+ * Byte arrays are processed in units of 8 bytes through a {@link ByteBuffer}
+ * view of the array, which compiles to wide loads and stores. The variants
+ * taking a {@link ForkJoinPool} split arrays of at least
+ * {@link #PARALLEL_THRESHOLD} bytes in chunks processed in parallel.
+ */
+public class PixelDataUtils {
+
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    private static final int MIN_CHUNK_SIZE = 1 << 18;
+
+    private static final long LOW_BYTES = 0x00FF00FF00FF00FFL;
+
+    private static final int SWAP_SHORTS = 0;
+    private static final int SWAP_INTS = 1;
+    private static final int SWAP_LONGS = 2;
+    private static final int MASK_SHORTS = 3;
+
+    public static byte[] swapShorts(byte[] b, int off, int len) {
+        checkLength(len, 2);
+        ByteBuffer bb = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder());
+        int i = off;
+        for (int end = off + (len & ~7); i < end; i += 8) {
+            long v = bb.getLong(i);
+            bb.putLong(i, ((v >>> 8) & LOW_BYTES) | ((v & LOW_BYTES) << 8));
+        }
+        for (int end = off + len; i < end; i += 2) {
+            byte t = b[i];
+            b[i] = b[i + 1];
+            b[i + 1] = t;
+        }
+        return b;
+    }
+
+    public static byte[] swapInts(byte[] b, int off, int len) {
+        checkLength(len, 4);
+        ByteBuffer bb = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder());
+        int i = off;
+        for (int end = off + (len & ~7); i < end; i += 8)
+            bb.putLong(i, Long.rotateLeft(Long.reverseBytes(bb.getLong(i)), 32));
+        if (i < off + len)
+            bb.putInt(i, Integer.reverseBytes(bb.getInt(i)));
+        return b;
+    }
+
+    public static byte[] swapLongs(byte[] b, int off, int len) {
+        checkLength(len, 8);
+        ByteBuffer bb = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder());
+        for (int i = off, end = off + len; i < end; i += 8)
+            bb.putLong(i, Long.reverseBytes(bb.getLong(i)));
+        return b;
+    }
+
+    public static byte[] swapShorts(byte[] b, int off, int len, ForkJoinPool pool) {
+        return invoke(pool, SWAP_SHORTS, b, off, len, 2, 0, false);
+    }
+
+    public static byte[] swapInts(byte[] b, int off, int len, ForkJoinPool pool) {
+        return invoke(pool, SWAP_INTS, b, off, len, 4, 0, false);
+    }
+
+    public static byte[] swapLongs(byte[] b, int off, int len, ForkJoinPool pool) {
+        return invoke(pool, SWAP_LONGS, b, off, len, 8, 0, false);
+    }
+
+    /**
+     * Sets the bits above {@code bitsStored} of 16 bit samples encoded in
+     * {@code b} with specified byte order to 0.
+     */
+    public static byte[] maskShorts(byte[] b, int off, int len, int bitsStored,
+            boolean bigEndian) {
+        checkLength(len, 2);
+        if (bitsStored >= 16)
+            return b;
+
+        int mask = (1 << bitsStored) - 1;
+        int lo = bigEndian ? 1 : 0;
+        int hi = 1 - lo;
+        byte[] pattern = new byte[8];
+        for (int j = 0; j < 8; j += 2) {
+            pattern[j + lo] = (byte) mask;
+            pattern[j + hi] = (byte) (mask >> 8);
+        }
+        long mask8 = ByteBuffer.wrap(pattern).order(ByteOrder.nativeOrder()).getLong(0);
+        ByteBuffer bb = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder());
+        int i = off;
+        for (int end = off + (len & ~7); i < end; i += 8)
+            bb.putLong(i, bb.getLong(i) & mask8);
+        for (int end = off + len; i < end; i += 2) {
+            b[i + lo] &= (byte) mask;
+            b[i + hi] &= (byte) (mask >> 8);
+        }
+        return b;
+    }
+
+    public static byte[] maskShorts(byte[] b, int off, int len, int bitsStored,
+            boolean bigEndian, ForkJoinPool pool) {
+        return invoke(pool, MASK_SHORTS, b, off, len, 2, bitsStored, bigEndian);
+    }
+
+    /**
+     * Sets the bits above {@code bitsStored} of 16 bit samples to 0.
+     */
+    public static short[] maskShorts(short[] s, int off, int len, int bitsStored) {
+        if (bitsStored >= 16)
+            return s;
+
+        short mask = (short) ((1 << bitsStored) - 1);
+        for (int i = off, end = off + len; i < end; i++)
+            s[i] &= mask;
+        return s;
+    }
+
+    /**
+     * Converts {@code len} 16 bit samples encoded in {@code b} starting at
+     * {@code boff} with specified byte order into {@code s} starting at
+     * {@code off}.
+     */
+    public static short[] bytesToShorts(byte[] b, int boff, short[] s, int off,
+            int len, boolean bigEndian) {
+        ByteBuffer.wrap(b, boff, len << 1).slice()
+                .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN)
+                .asShortBuffer().get(s, off, len);
+        return s;
+    }
+
+    /**
+     * Encodes {@code len} 16 bit samples from {@code s} starting at
+     * {@code off} with specified byte order into {@code b} starting at
+     * {@code boff}.
+     */
+    public static byte[] shortsToBytes(short[] s, int off, byte[] b, int boff,
+            int len, boolean bigEndian) {
+        ByteBuffer.wrap(b, boff, len << 1).slice()
+                .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN)
+                .asShortBuffer().put(s, off, len);
+        return b;
+    }
+
+    private static byte[] invoke(ForkJoinPool pool, int op, byte[] b, int off,
+            int len, int unit, int bitsStored, boolean bigEndian) {
+        if (pool == null || len < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            apply(op, b, off, len, bitsStored, bigEndian);
+        } else {
+            checkLength(len, unit);
+            int chunkSize = Math.max(MIN_CHUNK_SIZE,
+                    (len / (pool.getParallelism() << 2)) & ~7);
+            pool.invoke(new Task(op, b, off, len, bitsStored, bigEndian, chunkSize));
+        }
+        return b;
+    }
+
+    private static void apply(int op, byte[] b, int off, int len,
+            int bitsStored, boolean bigEndian) {
+        switch (op) {
+        case SWAP_SHORTS:
+            swapShorts(b, off, len);
+            break;
+        case SWAP_INTS:
+            swapInts(b, off, len);
+            break;
+        case SWAP_LONGS:
+            swapLongs(b, off, len);
+            break;
+        case MASK_SHORTS:
+            maskShorts(b, off, len, bitsStored, bigEndian);
+            break;
+        }
+    }
+
+    private static void checkLength(int len, int numBytes) {
+        if (len < 0 || (len % numBytes) != 0)
+            throw new IllegalArgumentException("length: " + len);
+    }
+
+    private static class Task extends RecursiveAction {
+
+        private static final long serialVersionUID = -2496452016396651436L;
+
+        private final int op;
+        private final byte[] b;
+        private final int off;
+        private final int len;
+        private final int bitsStored;
+        private final boolean bigEndian;
+        private final int chunkSize;
+
+        Task(int op, byte[] b, int off, int len, int bitsStored,
+                boolean bigEndian, int chunkSize) {
+            this.op = op;
+            this.b = b;
+            this.off = off;
+            this.len = len;
+            this.bitsStored = bitsStored;
+            this.bigEndian = bigEndian;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (len <= chunkSize) {
+                apply(op, b, off, len, bitsStored, bigEndian);
+                return;
+            }
+            // split at a multiple of 8 bytes to keep units of all kernels
+            int half = (len >>> 1) & ~7;
+            invokeAll(new Task(op, b, off, half, bitsStored, bigEndian, chunkSize),
+                    new Task(op, b, off + half, len - half, bitsStored, bigEndian,
+                            chunkSize));
+        }
+    }
+}
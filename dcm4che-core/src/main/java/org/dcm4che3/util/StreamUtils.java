@@ -120,7 +120,7 @@ public class StreamUtils {
             copy(in, out, len, buf);
             return;
         }
-        if (!(swapBytes == 2 || swapBytes == 4))
+        if (!(swapBytes == 2 || swapBytes == 4 || swapBytes == 8))
             throw new IllegalArgumentException("swapBytes: " + swapBytes);
         if (len < 0 || (len % swapBytes) != 0)
             throw new IllegalArgumentException("length: " + len);
@@ -47,6 +47,7 @@ import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.DatePrecision;
 import org.dcm4che3.data.DateRange;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.util.BoundedStringPool;
 import org.dcm4che3.util.ByteUtils;
 import org.dcm4che3.util.DateUtils;
 import org.dcm4che3.util.StringUtils;
@@ -353,4 +354,27 @@ public class AttributesTest {
         assertEquals(0, a.diff(b, selection, null));
         assertEquals(0, b.diff(a, selection, null));
     }
+
+    @Test
+    public void testInternalizeStringValues() {
+        Attributes a = new Attributes(2);
+        a.setString(Tag.Modality, VR.CS, new String("CT"));
+        a.setBytes(Tag.Manufacturer, VR.LO, "ACME".getBytes());
+        a.internalizeStringValues(true);
+        assertSame("CT", a.getString(Tag.Modality));
+        assertSame("ACME", a.getString(Tag.Manufacturer));
+    }
+
+    @Test
+    public void testInternalizeStringValuesWithPool() {
+        BoundedStringPool pool = new BoundedStringPool(16, 64);
+        Attributes a = new Attributes(1);
+        a.setString(Tag.Modality, VR.CS, new String("CT"));
+        Attributes b = new Attributes(1);
+        b.setString(Tag.Modality, VR.CS, new String("CT"));
+        a.internalizeStringValues(false, pool);
+        b.internalizeStringValues(false, pool);
+        assertSame(a.getString(Tag.Modality), b.getString(Tag.Modality));
+        assertNotSame("CT", a.getString(Tag.Modality));
+    }
 }
@@ -0,0 +1,167 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.dcm4che3.data.IOD.DataElement;
+import org.dcm4che3.data.IOD.DataElementType;
+import org.junit.Test;
+
+public class IODValidatorTest {
+
+    private static class CountingCondition extends IOD.Condition {
+        int count;
+
+        @Override
+        public boolean match(Attributes attrs) {
+            count++;
+            return !not;
+        }
+    }
+
+    @Test
+    public void testValidateUnsortedIOD() {
+        IOD iod = new IOD();
+        iod.add(new DataElement(Tag.SOPInstanceUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        iod.add(new DataElement(Tag.PatientID, VR.LO, DataElementType.TYPE_2, 1, 1, 0));
+        iod.add(new DataElement(Tag.SOPClassUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        iod.add(new DataElement(Tag.Modality, VR.CS, DataElementType.TYPE_1, 1, 1, 0)
+                .setValues("CT", "MR"));
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, "1.2.3");
+        attrs.setString(Tag.Modality, VR.CS, "US");
+        ValidationResult result = iod.validator().validate(attrs);
+        assertFalse(result.isValid());
+        assertArrayEquals(new int[] { Tag.SOPInstanceUID, Tag.PatientID },
+                result.tagsOfMissingAttributes());
+        assertArrayEquals(new int[] { Tag.Modality },
+                result.tagsOfInvalidAttributeValues());
+    }
+
+    @Test
+    public void testConditionEvaluatedOnce() {
+        CountingCondition cond = new CountingCondition();
+        cond.id("cond");
+        IOD iod = new IOD();
+        iod.add(new DataElement(Tag.StudyDate, VR.DA, DataElementType.TYPE_1, 1, 1, 0)
+                .setCondition(cond));
+        iod.add(new DataElement(Tag.StudyTime, VR.TM, DataElementType.TYPE_1, 1, 1, 0)
+                .setCondition(cond));
+        iod.add(new DataElement(Tag.PatientBirthDate, VR.DA, DataElementType.TYPE_1, 1, 1, 0)
+                .setCondition(cond));
+        ValidationResult result = new Attributes().validate(iod);
+        assertEquals(1, cond.count);
+        assertEquals(3, result.tagsOfMissingAttributes().length);
+    }
+
+    @Test
+    public void testResultsInIODOrder() {
+        IOD iod = new IOD();
+        iod.add(new DataElement(Tag.StudyInstanceUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        iod.add(new DataElement(Tag.PatientID, VR.LO, DataElementType.TYPE_1, 1, 1, 0));
+        iod.add(new DataElement(Tag.SOPClassUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        ValidationResult result = new Attributes().validate(iod);
+        assertArrayEquals(
+                new int[] { Tag.StudyInstanceUID, Tag.PatientID, Tag.SOPClassUID },
+                result.tagsOfMissingAttributes());
+    }
+
+    @Test
+    public void testResultsAppendedInIODOrder() {
+        IOD iod1 = new IOD();
+        iod1.add(new DataElement(Tag.SOPInstanceUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        IOD iod2 = new IOD();
+        iod2.add(new DataElement(Tag.Modality, VR.CS, DataElementType.TYPE_1, 1, 1, 0)
+                .setValues("CT"));
+        iod2.add(new DataElement(Tag.PatientID, VR.LO, DataElementType.TYPE_1, 1, 1, 0));
+        iod2.add(new DataElement(Tag.StudyDate, VR.DA, DataElementType.TYPE_1, 1, 1, 0));
+        iod2.add(new DataElement(Tag.AccessionNumber, VR.SH, DataElementType.TYPE_1, 1, 1, 0));
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.Modality, VR.CS, "MR");
+        attrs.setString(Tag.StudyDate, VR.DA, "20171001");
+        ValidationResult result = new ValidationResult();
+        iod1.validator().validate(attrs, result);
+        iod2.validator().validate(attrs, result);
+        assertArrayEquals(
+                new int[] { Tag.SOPInstanceUID, Tag.PatientID, Tag.AccessionNumber },
+                result.tagsOfMissingAttributes());
+        assertArrayEquals(new int[] { Tag.Modality },
+                result.tagsOfInvalidAttributeValues());
+    }
+
+    @Test
+    public void testItemConditionEvaluatedOncePerItem() {
+        CountingCondition cond = new CountingCondition();
+        cond.id("cond");
+        IOD itemIOD1 = new IOD();
+        itemIOD1.setCondition(cond);
+        itemIOD1.add(new DataElement(Tag.CodeValue, VR.SH, DataElementType.TYPE_3, 1, 1, 0));
+        IOD itemIOD2 = new IOD();
+        itemIOD2.add(new DataElement(Tag.CodeMeaning, VR.LO, DataElementType.TYPE_3, 1, 1, 0)
+                .setCondition(cond));
+        IOD iod = new IOD();
+        iod.add(new DataElement(Tag.ConceptNameCodeSequence, VR.SQ, DataElementType.TYPE_1, -1, -1, 0)
+                .addItemIOD(itemIOD1)
+                .addItemIOD(itemIOD2));
+        Attributes attrs = new Attributes();
+        Sequence seq = attrs.newSequence(Tag.ConceptNameCodeSequence, 2);
+        seq.add(new Attributes());
+        seq.add(new Attributes());
+        attrs.validate(iod);
+        assertEquals(2, cond.count);
+    }
+
+    @Test
+    public void testRecompileOnModification() {
+        IOD iod = new IOD();
+        iod.add(new DataElement(Tag.SOPClassUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        IODValidator validator = iod.validator();
+        assertSame(validator, iod.validator());
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, "1.2.3");
+        assertTrue(attrs.validate(iod).isValid());
+        iod.add(new DataElement(Tag.SOPInstanceUID, VR.UI, DataElementType.TYPE_1, 1, 1, 0));
+        assertEquals(2, iod.validator().size());
+        assertFalse(attrs.validate(iod).isValid());
+    }
+}
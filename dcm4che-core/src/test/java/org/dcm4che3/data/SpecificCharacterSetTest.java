@@ -433,4 +433,25 @@ public class SpecificCharacterSetTest {
                 gbk().decode(CHINESE_PERSON_NAME_GB18030_BYTES));
     }
 
+    @Test
+    public void testEncodeASCIIWithISO2022() {
+        assertArrayEquals("Wang^XiaoDong=".getBytes(),
+                ksx1001().encode("Wang^XiaoDong=", PN_DELIMS));
+    }
+
+    @Test
+    public void testDecodeASCIIWithISO2022() {
+        assertEquals("Wang^XiaoDong=",
+                ksx1001().decode("Wang^XiaoDong=".getBytes()));
+    }
+
+    @Test
+    public void testDecodeLatin1() {
+        byte[] b = new byte[256];
+        for (int i = 0; i < b.length; i++)
+            b[i] = (byte) i;
+        assertEquals(new String(b, Charset.forName("ISO-8859-1")),
+                iso8859_1().decode(b));
+    }
+
 }
@@ -0,0 +1,133 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.VR;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class AttributesXMLReaderTest {
+
+    private static final int PATIENT_NAME = 0x00100010;
+    private static final int ICON_DATA = 0x00091010;
+    private static final int ENCAPSULATED_DOCUMENT = 0x00420011;
+    private static final int REFERENCED_SERIES_SEQUENCE = 0x00081115;
+    private static final int REFERENCED_IMAGE_SEQUENCE = 0x00081140;
+
+    private Attributes attrs;
+
+    @Before
+    public void setUp() {
+        attrs = new Attributes();
+        attrs.setString(PATIENT_NAME, VR.PN, "Doe^John");
+        attrs.setBytes(ICON_DATA, VR.OB, new byte[16]);
+        attrs.setBytes(ENCAPSULATED_DOCUMENT, VR.OB,
+                new byte[SAXWriter.BULK_DATA_LENGTH_THRESHOLD + 1]);
+        Sequence series = attrs.newSequence(REFERENCED_SERIES_SEQUENCE, 1);
+        Attributes item = new Attributes();
+        item.setString(PATIENT_NAME, VR.PN, "Nested");
+        series.add(item);
+        Sequence images = attrs.newSequence(REFERENCED_IMAGE_SEQUENCE, 1);
+        images.add(new Attributes());
+    }
+
+    private static Set<String> topLevelTags(AttributesXMLReader reader)
+            throws Exception {
+        final Set<String> tags = new HashSet<String>();
+        reader.setContentHandler(new DefaultHandler() {
+            int level;
+
+            @Override
+            public void startElement(String uri, String localName,
+                    String qName, org.xml.sax.Attributes atts) {
+                if (++level == 2)
+                    tags.add(atts.getValue("tag"));
+            }
+
+            @Override
+            public void endElement(String uri, String localName,
+                    String qName) {
+                level--;
+            }
+        });
+        reader.parse(new InputSource());
+        return tags;
+    }
+
+    private static String tag(int tag) {
+        return String.format("%08X", tag);
+    }
+
+    @Test
+    public void testIncludeAll() throws Exception {
+        Set<String> tags = topLevelTags(new AttributesXMLReader(attrs));
+        assertTrue(tags.contains(tag(PATIENT_NAME)));
+        assertTrue(tags.contains(tag(ICON_DATA)));
+        assertTrue(tags.contains(tag(ENCAPSULATED_DOCUMENT)));
+        assertTrue(tags.contains(tag(REFERENCED_SERIES_SEQUENCE)));
+        assertTrue(tags.contains(tag(REFERENCED_IMAGE_SEQUENCE)));
+    }
+
+    @Test
+    public void testExcludeBulkData() throws Exception {
+        Set<String> tags = topLevelTags(
+                new AttributesXMLReader(attrs).includeBulkData(false));
+        assertTrue(tags.contains(tag(PATIENT_NAME)));
+        assertTrue("small OB value kept", tags.contains(tag(ICON_DATA)));
+        assertFalse("large OB value dropped",
+                tags.contains(tag(ENCAPSULATED_DOCUMENT)));
+    }
+
+    @Test
+    public void testIncludeSequences() throws Exception {
+        Set<String> tags = topLevelTags(new AttributesXMLReader(attrs)
+                .includeSequences(REFERENCED_IMAGE_SEQUENCE));
+        assertTrue(tags.contains(tag(PATIENT_NAME)));
+        assertTrue(tags.contains(tag(REFERENCED_IMAGE_SEQUENCE)));
+        assertFalse(tags.contains(tag(REFERENCED_SERIES_SEQUENCE)));
+    }
+}
@@ -0,0 +1,154 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.util.Base64;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class ContentHandlerAdapterTest {
+
+    private static final int ENCAPSULATED_DOCUMENT = 0x00420011;
+    private static final byte[] DATA = new byte[1000];
+
+    static {
+        for (int i = 0; i < DATA.length; i++)
+            DATA[i] = (byte) i;
+    }
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Attributes attrs;
+    private ContentHandlerAdapter ch;
+
+    @Before
+    public void setUp() {
+        attrs = new Attributes();
+        ch = new ContentHandlerAdapter(attrs);
+        ch.setBulkDataDirectory(tmp.getRoot());
+    }
+
+    private static char[] base64(byte[] b) {
+        char[] ch = new char[(b.length * 4 / 3 + 3) & ~3];
+        Base64.encode(b, 0, b.length, ch, 0);
+        return ch;
+    }
+
+    private static String xml(String inlineBinary) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<NativeDicomModel>"
+                + "<DicomAttribute tag=\"00420011\" vr=\"OB\">"
+                + "<InlineBinary>" + inlineBinary + "</InlineBinary>"
+                + "</DicomAttribute>"
+                + "</NativeDicomModel>";
+    }
+
+    private void parse(String xml) throws Exception {
+        SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        parser.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")), ch);
+    }
+
+    @Test
+    public void testInlineBinaryWithinThreshold() throws Exception {
+        ch.setInlineBinaryThreshold(DATA.length);
+        parse(xml(new String(base64(DATA))));
+        assertArrayEquals(DATA, (byte[]) attrs.getValue(ENCAPSULATED_DOCUMENT));
+        assertTrue(ch.getBulkDataFiles().isEmpty());
+        assertEquals(0, tmp.getRoot().list().length);
+    }
+
+    @Test
+    public void testInlineBinaryExceedsThreshold() throws Exception {
+        ch.setInlineBinaryThreshold(DATA.length - 1);
+        parse(xml(new String(base64(DATA))));
+        BulkData bulkData = (BulkData) attrs.getValue(ENCAPSULATED_DOCUMENT);
+        assertEquals(DATA.length, bulkData.length());
+        assertEquals(1, ch.getBulkDataFiles().size());
+        File file = ch.getBulkDataFiles().get(0);
+        assertEquals(file, bulkData.getFile());
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testDiscardIncompleteBulkDataFile() throws Exception {
+        ch.setInlineBinaryThreshold(0);
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "", "tag", "CDATA", "00420011");
+        atts.addAttribute("", "", "vr", "CDATA", "OB");
+        ch.startDocument();
+        ch.startElement("", "", "NativeDicomModel", new AttributesImpl());
+        ch.startElement("", "", "DicomAttribute", atts);
+        ch.startElement("", "", "InlineBinary", new AttributesImpl());
+        char[] ch64 = base64(DATA);
+        ch.characters(ch64, 0, ch64.length);
+        assertEquals(1, tmp.getRoot().list().length);
+        ch.discardIncompleteBulkDataFile();
+        assertTrue(ch.getBulkDataFiles().isEmpty());
+        assertEquals(0, tmp.getRoot().list().length);
+        ch.discardIncompleteBulkDataFile();
+    }
+
+    @Test
+    public void testDiscardOnFatalError() throws Exception {
+        ch.setInlineBinaryThreshold(0);
+        String xml = xml(new String(base64(DATA)));
+        try {
+            parse(xml.substring(0, xml.indexOf("</InlineBinary>")));
+            fail("SAXException expected");
+        } catch (SAXException expected) {
+        }
+        assertTrue(ch.getBulkDataFiles().isEmpty());
+        assertEquals(0, tmp.getRoot().list().length);
+    }
+}
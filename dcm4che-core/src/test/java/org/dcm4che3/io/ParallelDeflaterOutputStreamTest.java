@@ -0,0 +1,139 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.util.StreamUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelDeflaterOutputStreamTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private static byte[] testData(int len) {
+        Random rnd = new Random(len);
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++)
+            b[i] = (byte) ('A' + rnd.nextInt(8) + (i >> 12) % 4);
+        return b;
+    }
+
+    private static byte[] inflate(byte[] deflated, int len) throws IOException {
+        byte[] b = new byte[len];
+        InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(deflated), new Inflater(true));
+        StreamUtils.readFully(in, b, 0, len);
+        assertEquals(-1, in.read());
+        return b;
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        byte[] data = testData(1000000);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ParallelDeflaterOutputStream out = new ParallelDeflaterOutputStream(
+                bout, Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY,
+                ParallelDeflaterOutputStream.DEF_BLOCK_SIZE, 3, executor);
+        out.write(data, 0, 1000);
+        out.write(data[1000]);
+        out.write(data, 1001, data.length - 1001);
+        out.close();
+        assertTrue(bout.size() < data.length / 2);
+        assertArrayEquals(data, inflate(bout.toByteArray(), data.length));
+    }
+
+    @Test
+    public void testDeflateEmpty() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        new ParallelDeflaterOutputStream(bout, executor).close();
+        assertArrayEquals(new byte[0], inflate(bout.toByteArray(), 0));
+    }
+
+    @Test
+    public void testDicomOutputStream() throws IOException {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4");
+        attrs.setBytes(Tag.EncapsulatedDocument, VR.OB, testData(500000));
+        for (int level : new int[] { 1, 9 }) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DicomOutputStream out = new DicomOutputStream(bout,
+                    UID.DeflatedExplicitVRLittleEndian);
+            out.setEncodingOptions(new DicomEncodingOptions(
+                    false, true, false, true, false, level, Deflater.FILTERED));
+            if (level == 9)
+                out.setDeflateExecutor(executor);
+            out.writeDataset(null, attrs);
+            out.close();
+            DicomInputStream in = new DicomInputStream(
+                    new ByteArrayInputStream(bout.toByteArray()),
+                    UID.DeflatedExplicitVRLittleEndian);
+            try {
+                assertEquals(attrs, in.readDataset(-1, -1));
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplatesCacheTest {
+
+    private static final String XSL =
+            "<xsl:stylesheet version=\"1.0\""
+            + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/\"><NativeDicomModel/></xsl:template>"
+            + "</xsl:stylesheet>";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("xsl", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    private String xslFile(String name) throws IOException {
+        File f = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(XSL.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return f.toURI().toString();
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        TemplatesCache cache = new TemplatesCache();
+        String uri = xslFile("a.xsl");
+        TransformerPool pool = cache.getTransformerPool(uri);
+        assertSame(pool, cache.getTransformerPool(uri));
+        assertSame(pool.getTemplates(), cache.get(uri));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        TemplatesCache cache = new TemplatesCache();
+        cache.setMaxSize(4);
+        String[] uris = new String[5];
+        for (int i = 0; i < uris.length; i++)
+            uris[i] = xslFile(i + ".xsl");
+        TransformerPool[] pools = new TransformerPool[4];
+        for (int i = 0; i < 4; i++)
+            pools[i] = cache.getTransformerPool(uris[i]);
+        // touch first entry, so the second becomes the least recently used
+        cache.getTransformerPool(uris[0]);
+        cache.getTransformerPool(uris[4]);
+        assertEquals(4, cache.size());
+        assertSame(pools[0], cache.getTransformerPool(uris[0]));
+        assertSame(pools[2], cache.getTransformerPool(uris[2]));
+        assertSame(pools[3], cache.getTransformerPool(uris[3]));
+        assertNotSame(pools[1], cache.getTransformerPool(uris[1]));
+    }
+
+    @Test
+    public void testEvictInBatches() throws Exception {
+        TemplatesCache cache = new TemplatesCache();
+        cache.setMaxSize(16);
+        for (int i = 0; i < 17; i++)
+            cache.getTransformerPool(xslFile(i + ".xsl"));
+        assertEquals(14, cache.size());
+    }
+
+    @Test
+    public void testRecompileModifiedFile() throws Exception {
+        TemplatesCache cache = new TemplatesCache();
+        cache.setStaleTimeout(0);
+        String uri = xslFile("a.xsl");
+        TransformerPool pool = cache.getTransformerPool(uri);
+        File f = new File(dir, "a.xsl");
+        assertTrue(f.setLastModified(f.lastModified() - 10000L));
+        TransformerPool recompiled = cache.getTransformerPool(uri);
+        assertNotSame(pool, recompiled);
+        assertSame(recompiled, cache.getTransformerPool(uri));
+    }
+
+    @Test
+    public void testStaleTimeout() throws Exception {
+        TemplatesCache cache = new TemplatesCache();
+        cache.setStaleTimeout(60000L);
+        String uri = xslFile("a.xsl");
+        TransformerPool pool = cache.getTransformerPool(uri);
+        File f = new File(dir, "a.xsl");
+        assertTrue(f.setLastModified(f.lastModified() - 10000L));
+        assertSame(pool, cache.getTransformerPool(uri));
+    }
+}
@@ -0,0 +1,149 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.stream.StreamSource;
+
+import org.dcm4che3.data.Attributes;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformerPoolTest {
+
+    private static final String XSL =
+            "<xsl:stylesheet version=\"1.0\""
+            + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:param name=\"p\"/>"
+            + "<xsl:template match=\"/\"><NativeDicomModel/></xsl:template>"
+            + "</xsl:stylesheet>";
+
+    private static final String FAILING_XSL =
+            "<xsl:stylesheet version=\"1.0\""
+            + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/\">"
+            + "<xsl:message terminate=\"yes\">failed</xsl:message>"
+            + "</xsl:template>"
+            + "</xsl:stylesheet>";
+
+    private TransformerPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        Templates templates = SAXTransformer.newTemplates(
+                new StreamSource(new StringReader(XSL)));
+        pool = new TransformerPool(templates);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        Transformer t = pool.borrow();
+        t.setParameter("p", "value");
+        pool.release(t);
+        assertEquals(1, pool.getNumberOfIdleTransformers());
+        Transformer t2 = pool.borrow();
+        assertSame(t, t2);
+        assertNull("parameters are reset on release", t2.getParameter("p"));
+        assertEquals(1, pool.getNumberOfCreatedTransformers());
+        assertEquals(0, pool.getNumberOfIdleTransformers());
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        pool.setMaxIdle(1);
+        Transformer t1 = pool.borrow();
+        Transformer t2 = pool.borrow();
+        assertNotSame(t1, t2);
+        pool.release(t1);
+        pool.release(t2);
+        assertEquals(1, pool.getNumberOfIdleTransformers());
+        pool.clear();
+        assertEquals(0, pool.getNumberOfIdleTransformers());
+        pool.setMaxIdle(0);
+        pool.release(pool.borrow());
+        assertEquals(0, pool.getNumberOfIdleTransformers());
+        assertEquals(3, pool.getNumberOfCreatedTransformers());
+    }
+
+    @Test
+    public void testCoercionReleasesTransformer() throws Exception {
+        XSLTAttributesCoercion coercion =
+                new XSLTAttributesCoercion(pool, null);
+        coercion.coerce(new Attributes(), null);
+        coercion.coerce(new Attributes(), null);
+        assertEquals(1, pool.getNumberOfCreatedTransformers());
+        assertEquals(1, pool.getNumberOfIdleTransformers());
+        assertEquals(2, pool.getNumberOfTransforms());
+    }
+
+    @Test
+    public void testCoercionDiscardsFailedTransformer() throws Exception {
+        TransformerPool failingPool = new TransformerPool(
+                SAXTransformer.newTemplates(
+                        new StreamSource(new StringReader(FAILING_XSL))));
+        XSLTAttributesCoercion coercion =
+                new XSLTAttributesCoercion(failingPool, null);
+        try {
+            coercion.coerce(new Attributes(), null);
+            fail("RuntimeException expected");
+        } catch (RuntimeException expected) {
+        }
+        assertEquals(1, failingPool.getNumberOfCreatedTransformers());
+        assertEquals(0, failingPool.getNumberOfIdleTransformers());
+        assertEquals(0, failingPool.getNumberOfTransforms());
+    }
+
+    @Test
+    public void testStatistics() {
+        pool.recordTransform(TimeUnit.MILLISECONDS.toNanos(10));
+        pool.recordTransform(TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(2, pool.getNumberOfTransforms());
+        assertEquals(40, pool.getTotalTransformTime(TimeUnit.MILLISECONDS));
+        assertEquals(30, pool.getMaxTransformTime(TimeUnit.MILLISECONDS));
+        assertEquals(20, pool.getAverageTransformTime(TimeUnit.MILLISECONDS));
+        pool.resetStatistics();
+        assertEquals(0, pool.getNumberOfTransforms());
+        assertEquals(0, pool.getAverageTransformTime(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,215 @@
+package org.dcm4che3.media;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DicomDirWriterTest {
+
+    private static final String FS_UID = "1.2.40.0.13.1.1.99";
+
+    private File file1;
+    private File file2;
+
+    @Before
+    public void setUp() throws Exception {
+        file1 = File.createTempFile("DICOMDIR", null);
+        file2 = File.createTempFile("DICOMDIR", null);
+        DicomDirWriter.createEmptyDirectory(file1, FS_UID, null, null, null);
+        DicomDirWriter.createEmptyDirectory(file2, FS_UID, null, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        file1.delete();
+        file2.delete();
+    }
+
+    @Test
+    public void testBatchEqualsSequentialAdd() throws Exception {
+        assertBatchEqualsSequentialAdd(null);
+    }
+
+    @Test
+    public void testBatchEqualsSequentialAddWithUndefinedLength()
+            throws Exception {
+        assertBatchEqualsSequentialAdd(
+                new DicomEncodingOptions(false, true, false, true, true));
+    }
+
+    private void assertBatchEqualsSequentialAdd(DicomEncodingOptions encOpts)
+            throws Exception {
+        DicomDirWriter w = DicomDirWriter.open(file1);
+        if (encOpts != null)
+            w.setEncodingOptions(encOpts);
+        try {
+            Attributes patRec = w.addRootDirectoryRecord(patRec("P1"));
+            Attributes studyRec = w.addLowerDirectoryRecord(patRec, studyRec("1.1"));
+            Attributes seriesRec = w.addLowerDirectoryRecord(studyRec, seriesRec("1.1.1"));
+            w.addLowerDirectoryRecord(seriesRec, instRec("1.1.1.1"));
+            w.addLowerDirectoryRecord(seriesRec, instRec("1.1.1.2"));
+            w.addRootDirectoryRecord(patRec("P2"));
+        } finally {
+            w.close();
+        }
+        w = DicomDirWriter.open(file2);
+        if (encOpts != null)
+            w.setEncodingOptions(encOpts);
+        try {
+            DicomDirWriter.Batch batch = w.newBatch();
+            Attributes patRec = batch.findOrAddPatientRecord(patRec("P1"));
+            Attributes studyRec = batch.findOrAddStudyRecord(patRec, studyRec("1.1"));
+            Attributes seriesRec = batch.findOrAddSeriesRecord(studyRec, seriesRec("1.1.1"));
+            batch.addLowerDirectoryRecord(seriesRec, instRec("1.1.1.1"));
+            batch.addLowerDirectoryRecord(seriesRec, instRec("1.1.1.2"));
+            batch.findOrAddPatientRecord(patRec("P2"));
+            assertSame(patRec, batch.findOrAddPatientRecord(patRec("P1")));
+            assertEquals(6, batch.size());
+            batch.commit();
+            assertEquals(0, batch.size());
+        } finally {
+            w.close();
+        }
+        assertArrayEquals(Files.readAllBytes(file1.toPath()),
+                Files.readAllBytes(file2.toPath()));
+    }
+
+    @Test
+    public void testBatchAppendsToExisting() throws Exception {
+        DicomDirWriter w = DicomDirWriter.open(file1);
+        try {
+            DicomDirWriter.Batch batch = w.newBatch();
+            Attributes seriesRec = batch.findOrAddSeriesRecord(
+                    batch.findOrAddStudyRecord(
+                            batch.findOrAddPatientRecord(patRec("P1")),
+                            studyRec("1.1")),
+                    seriesRec("1.1.1"));
+            batch.addLowerDirectoryRecord(seriesRec, instRec("1.1.1.1"));
+            batch.commit();
+        } finally {
+            w.close();
+        }
+        w = DicomDirWriter.open(file1);
+        try {
+            DicomDirWriter.Batch batch = w.newBatch();
+            Attributes patRec = batch.findOrAddPatientRecord(patRec("P1"));
+            assertTrue(patRec.getItemPosition() > 0);
+            Attributes studyRec = batch.findOrAddStudyRecord(patRec, studyRec("1.1"));
+            Attributes seriesRec = batch.findOrAddSeriesRecord(studyRec, seriesRec("1.1.1"));
+            assertNotNull(batch.findLowerInstanceRecord(seriesRec, "1.1.1.1"));
+            assertNull(batch.findLowerInstanceRecord(seriesRec, "1.1.1.2"));
+            batch.addLowerDirectoryRecord(seriesRec, instRec("1.1.1.2"));
+            Attributes studyRec2 = batch.findOrAddStudyRecord(patRec, studyRec("1.2"));
+            Attributes seriesRec2 = batch.findOrAddSeriesRecord(studyRec2, seriesRec("1.2.1"));
+            batch.addLowerDirectoryRecord(seriesRec2, instRec("1.2.1.1"));
+            batch.findOrAddPatientRecord(patRec("P2"));
+            assertEquals(5, batch.size());
+            batch.commit();
+            batch.addLowerDirectoryRecord(seriesRec2, instRec("1.2.1.2"));
+            batch.commit();
+            assertEquals(patRec.getItemPosition(),
+                    batch.findOrAddPatientRecord(patRec("P1")).getItemPosition());
+            assertNotNull(batch.findLowerInstanceRecord(seriesRec2, "1.2.1.2"));
+            assertEquals(0, batch.size());
+        } finally {
+            w.close();
+        }
+        DicomDirReader r = new DicomDirReader(file1);
+        try {
+            assertEquals(0, r.getFileSetConsistencyFlag());
+            Attributes patRec = r.findPatientRecord("P1");
+            Attributes seriesRec = r.findSeriesRecord(
+                    r.findStudyRecord(patRec, "1.1"), "1.1.1");
+            assertNotNull(r.findLowerInstanceRecord(seriesRec, false, "1.1.1.2"));
+            Attributes seriesRec2 = r.findSeriesRecord(
+                    r.findStudyRecord(patRec, "1.2"), "1.2.1");
+            assertNotNull(r.findLowerInstanceRecord(seriesRec2, false, "1.2.1.2"));
+            assertNotNull(r.findPatientRecord("P2"));
+            assertEquals(10, count(r, r.readFirstRootDirectoryRecord()));
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testTrimCacheOnCommit() throws Exception {
+        addInstancesCommitEach(DicomDirWriter.open(file1), 20);
+        addInstancesCommitEach(DicomDirWriter.open(file2, 4), 20);
+        assertArrayEquals(Files.readAllBytes(file1.toPath()),
+                Files.readAllBytes(file2.toPath()));
+        DicomDirReader r = new DicomDirReader(file2);
+        try {
+            assertEquals(0, r.getFileSetConsistencyFlag());
+            assertEquals(23, count(r, r.readFirstRootDirectoryRecord()));
+        } finally {
+            r.close();
+        }
+    }
+
+    private static void addInstancesCommitEach(DicomDirWriter w, int n)
+            throws IOException {
+        try {
+            for (int i = 1; i <= n; i++) {
+                Attributes patRec = w.findPatientRecord("P1");
+                if (patRec == null)
+                    patRec = w.addRootDirectoryRecord(patRec("P1"));
+                Attributes studyRec = w.findStudyRecord(patRec, "1.1");
+                if (studyRec == null)
+                    studyRec = w.addLowerDirectoryRecord(patRec, studyRec("1.1"));
+                Attributes seriesRec = w.findSeriesRecord(studyRec, "1.1.1");
+                if (seriesRec == null)
+                    seriesRec = w.addLowerDirectoryRecord(studyRec, seriesRec("1.1.1"));
+                assertNull(w.findLowerInstanceRecord(seriesRec, false, "1.1.1." + i));
+                w.addLowerDirectoryRecord(seriesRec, instRec("1.1.1." + i));
+                w.commit();
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    private static int count(DicomDirReader r, Attributes rec) throws IOException {
+        int count = 0;
+        while (rec != null) {
+            count += 1 + count(r, r.readLowerDirectoryRecord(rec));
+            rec = r.readNextDirectoryRecord(rec);
+        }
+        return count;
+    }
+
+    private static Attributes rec(RecordType type, int tag, String value) {
+        Attributes rec = new Attributes(5);
+        rec.setString(Tag.DirectoryRecordType, VR.CS, type.code());
+        rec.setString(tag, VR.UI, value);
+        return rec;
+    }
+
+    private static Attributes patRec(String pid) {
+        Attributes rec = new Attributes(5);
+        rec.setString(Tag.DirectoryRecordType, VR.CS, RecordType.PATIENT.code());
+        rec.setString(Tag.PatientID, VR.LO, pid);
+        return rec;
+    }
+
+    private static Attributes studyRec(String iuid) {
+        return rec(RecordType.STUDY, Tag.StudyInstanceUID, iuid);
+    }
+
+    private static Attributes seriesRec(String iuid) {
+        return rec(RecordType.SERIES, Tag.SeriesInstanceUID, iuid);
+    }
+
+    private static Attributes instRec(String iuid) {
+        return rec(RecordType.IMAGE, Tag.ReferencedSOPInstanceUIDInFile, iuid);
+    }
+}
@@ -0,0 +1,76 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Base64Test {
+
+    @Test
+    public void testEncode() {
+        char[] ch = new char[8];
+        Base64.encode("dcm4".getBytes(), 0, 4, ch, 0);
+        assertEquals("ZGNtNA==", new String(ch));
+    }
+
+    @Test
+    public void testDecode() {
+        byte[] b = new byte[6];
+        assertEquals(4, Base64.decode("ZGNtNA==".toCharArray(), 0, 8, b, 0));
+        assertEquals("dcm4", new String(b, 0, 4));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random rnd = new Random(0);
+        for (int len : new int[] { 0, 1, 2, 3, 4, 5, 6143, 6144, 6145, 20000 }) {
+            byte[] b = new byte[len];
+            rnd.nextBytes(b);
+            char[] ch = new char[(len * 4 / 3 + 3) & ~3];
+            Base64.encode(b, 0, len, ch, 0);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Base64.decode(ch, 0, ch.length, out);
+            assertArrayEquals("length: " + len, b, out.toByteArray());
+        }
+    }
+}
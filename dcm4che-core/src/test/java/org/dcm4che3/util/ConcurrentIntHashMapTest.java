@@ -0,0 +1,111 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentIntHashMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentIntHashMap<Integer> map = new ConcurrentIntHashMap<Integer>();
+        for (int i = 0; i < 1000; i++)
+            assertNull(map.put(i, i));
+        assertEquals(1000, map.size());
+        assertEquals(Integer.valueOf(7), map.put(7, 7));
+        assertEquals(Integer.valueOf(7), map.putIfAbsent(7, 8));
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(Integer.valueOf(i), map.get(i));
+        for (int i = 0; i < 1000; i += 2)
+            assertEquals(Integer.valueOf(i), map.remove(i));
+        assertNull(map.remove(0));
+        assertEquals(500, map.size());
+        assertFalse(map.containsKey(0));
+        assertTrue(map.containsKey(1));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void testAccept() {
+        ConcurrentIntHashMap<Integer> map = new ConcurrentIntHashMap<Integer>();
+        for (int i = 0; i < 100; i++)
+            map.put(i, i);
+        final AtomicInteger sum = new AtomicInteger();
+        assertTrue(map.accept(new IntHashMap.Visitor<Integer>() {
+            @Override
+            public boolean visit(int key, Integer value) {
+                assertEquals(key, value.intValue());
+                sum.addAndGet(key);
+                return true;
+            }
+        }));
+        assertEquals(4950, sum.get());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentIntHashMap<Integer> map = new ConcurrentIntHashMap<Integer>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t << 16;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++)
+                        map.put(offset + i, i);
+                    for (int i = 0; i < 10000; i += 2)
+                        map.remove(offset + i);
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(threads.length * 5000, map.size());
+        for (int t = 0; t < threads.length; t++)
+            for (int i = 1; i < 10000; i += 2)
+                assertEquals(Integer.valueOf(i), map.get((t << 16) + i));
+    }
+}
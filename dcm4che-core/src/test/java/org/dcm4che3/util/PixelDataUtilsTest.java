@@ -0,0 +1,136 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class PixelDataUtilsTest {
+
+    private static byte[] random(int len) {
+        byte[] b = new byte[len];
+        new Random(len).nextBytes(b);
+        return b;
+    }
+
+    private static byte[] reverseUnits(byte[] b, int unit) {
+        byte[] r = new byte[b.length];
+        for (int i = 0; i < b.length; i += unit)
+            for (int j = 0; j < unit; j++)
+                r[i + j] = b[i + unit - 1 - j];
+        return r;
+    }
+
+    @Test
+    public void testSwapShorts() {
+        byte[] b = random(1030);
+        assertArrayEquals(reverseUnits(b, 2),
+                PixelDataUtils.swapShorts(b.clone(), 0, b.length));
+    }
+
+    @Test
+    public void testSwapInts() {
+        byte[] b = random(1028);
+        assertArrayEquals(reverseUnits(b, 4),
+                PixelDataUtils.swapInts(b.clone(), 0, b.length));
+    }
+
+    @Test
+    public void testSwapLongs() {
+        byte[] b = random(1032);
+        assertArrayEquals(reverseUnits(b, 8),
+                PixelDataUtils.swapLongs(b.clone(), 0, b.length));
+    }
+
+    @Test
+    public void testSwapShortsWithOffset() {
+        byte[] b = random(20);
+        byte[] expected = b.clone();
+        System.arraycopy(reverseUnits(Arrays.copyOfRange(b, 3, 17), 2),
+                0, expected, 3, 14);
+        assertArrayEquals(expected, PixelDataUtils.swapShorts(b.clone(), 3, 14));
+    }
+
+    @Test
+    public void testSwapShortsParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            byte[] b = random(PixelDataUtils.PARALLEL_THRESHOLD * 3 + 6);
+            assertArrayEquals(reverseUnits(b, 2),
+                    PixelDataUtils.swapShorts(b.clone(), 0, b.length, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMaskShorts() {
+        byte[] b = random(1030);
+        byte[] le = PixelDataUtils.maskShorts(b.clone(), 0, b.length, 12, false);
+        byte[] be = PixelDataUtils.maskShorts(b.clone(), 0, b.length, 12, true);
+        for (int i = 0; i < b.length; i += 2) {
+            assertEquals(ByteUtils.bytesToUShortLE(b, i) & 0xfff,
+                    ByteUtils.bytesToUShortLE(le, i));
+            assertEquals(ByteUtils.bytesToUShortBE(b, i) & 0xfff,
+                    ByteUtils.bytesToUShortBE(be, i));
+        }
+    }
+
+    @Test
+    public void testBytesToShorts() {
+        byte[] b = random(1030);
+        short[] le = PixelDataUtils.bytesToShorts(b, 2, new short[514], 0, 514, false);
+        short[] be = PixelDataUtils.bytesToShorts(b, 2, new short[514], 0, 514, true);
+        for (int i = 0; i < 514; i++) {
+            assertEquals(ByteUtils.bytesToShortLE(b, 2 + i * 2), le[i]);
+            assertEquals(ByteUtils.bytesToShortBE(b, 2 + i * 2), be[i]);
+        }
+    }
+
+    @Test
+    public void testShortsToBytes() {
+        byte[] b = random(1030);
+        short[] s = PixelDataUtils.bytesToShorts(b, 0, new short[515], 0, 515, true);
+        assertArrayEquals(b, PixelDataUtils.shortsToBytes(s, 0, new byte[1030], 0, 515, true));
+    }
+}
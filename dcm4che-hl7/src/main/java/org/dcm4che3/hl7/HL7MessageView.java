@@ -0,0 +1,300 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Read-only view of an encoded HL7 v2 message, which indexes segment and
+ * field boundaries on demand, without copying or decoding the message.
+ * Field values are only decoded to {@code String}s on access, so a router
+ * only interested in MSH or PID fields does not pay for decoding large
+ * embedded data, which can be streamed unmodified by
+ * {@link #writeFieldTo} instead.
+ * <p>
+ * Fields are numbered as by {@link HL7Segment}: field 0 contains the
+ * segment ID and field 1 of MSH contains the encoding characters.
+ */
+public class HL7MessageView {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final byte[] b;
+    private final int size;
+    private final String defCharset;
+    private final byte fieldSeparator;
+    private final String encodingCharacters;
+    private Charset charset;
+
+    // for segment i, bounds[segIndex[i]] is the start of the segment,
+    // bounds[segIndex[i]+1..segIndex[i+1]-2] the positions of the field
+    // separators and bounds[segIndex[i+1]-1] the end of the segment
+    private int[] segIndex = new int[8];
+    private int[] bounds = new int[64];
+    private int numSegments;
+    private int numBounds;
+    private int scanPos;
+
+    public HL7MessageView(byte[] b, String defCharset) {
+        this(b, b.length, defCharset);
+    }
+
+    public HL7MessageView(byte[] b, int size, String defCharset) {
+        if (size > b.length)
+            throw new IllegalArgumentException("size: " + size);
+        this.b = b;
+        this.size = size;
+        this.defCharset = defCharset;
+        int end = 0;
+        while (end < size && b[end] != '\r' && b[end] != '\n')
+            end++;
+        if (end < 8)
+            throw new IllegalArgumentException(
+                    "Invalid MSH Segment: " + new String(b, 0, end));
+        this.fieldSeparator = b[3];
+        this.encodingCharacters = new String(b, 4, 4);
+        segIndex[0] = 0;
+        scanSegment();
+    }
+
+    public final char getFieldSeparator() {
+        return (char) (fieldSeparator & 0xff);
+    }
+
+    public final String getEncodingCharacters() {
+        return encodingCharacters;
+    }
+
+    public final byte[] data() {
+        return b;
+    }
+
+    public final int length() {
+        return size;
+    }
+
+    /**
+     * Returns the MSH segment of the message, decoded by the platform's
+     * default charset as by {@link HL7Segment#parseMSH}.
+     */
+    public HL7Segment msh() {
+        return new HL7Segment(
+                new String(b, segmentOffset(0), segmentLength(0)),
+                getFieldSeparator(), encodingCharacters);
+    }
+
+    /**
+     * Returns the name of the charset specified by MSH-18, or by
+     * {@code defCharset} if MSH-18 is empty.
+     */
+    public String getCharsetName() {
+        int len = fieldLength(0, 17);
+        return HL7Charset.toCharsetName(len > 0
+                ? new String(b, fieldOffset(0, 17), len, ASCII)
+                : defCharset);
+    }
+
+    /**
+     * Returns the number of segments of the message; indexes the whole
+     * message on first invocation.
+     */
+    public int segmentCount() {
+        while (scanSegment())
+            ;
+        return numSegments;
+    }
+
+    /**
+     * Returns the index of the first segment with the specified segment ID
+     * at or after segment {@code fromIndex}, or {@code -1} if there is no
+     * such segment. Only indexes the message up to the found segment.
+     */
+    public int indexOf(String segmentID, int fromIndex) {
+        for (int i = Math.max(fromIndex, 0); ensureIndexed(i); i++)
+            if (fieldEquals(i, 0, segmentID))
+                return i;
+        return -1;
+    }
+
+    public int indexOf(String segmentID) {
+        return indexOf(segmentID, 0);
+    }
+
+    public int fieldCount(int seg) {
+        checkSegment(seg);
+        return segIndex[seg + 1] - segIndex[seg] - 1;
+    }
+
+    public int segmentOffset(int seg) {
+        checkSegment(seg);
+        return bounds[segIndex[seg]];
+    }
+
+    public int segmentLength(int seg) {
+        checkSegment(seg);
+        return bounds[segIndex[seg + 1] - 1] - bounds[segIndex[seg]];
+    }
+
+    /**
+     * Returns the offset of the specified field in {@link #data()}, or
+     * {@code -1} if the segment has less fields.
+     */
+    public int fieldOffset(int seg, int field) {
+        if (field < 0 || field >= fieldCount(seg))
+            return -1;
+        int i = segIndex[seg] + field;
+        return field == 0 ? bounds[i] : bounds[i] + 1;
+    }
+
+    /**
+     * Returns the length of the specified field in bytes, or {@code 0} if
+     * the segment has less fields.
+     */
+    public int fieldLength(int seg, int field) {
+        int off = fieldOffset(seg, field);
+        return off < 0 ? 0 : bounds[segIndex[seg] + field + 1] - off;
+    }
+
+    /**
+     * Compares the encoded value of the specified field with the specified
+     * ASCII string, without decoding the field.
+     */
+    public boolean fieldEquals(int seg, int field, String ascii) {
+        int off = fieldOffset(seg, field);
+        int len = fieldLength(seg, field);
+        if (len != ascii.length())
+            return false;
+        for (int i = 0; i < len; i++)
+            if (b[off + i] != ascii.charAt(i))
+                return false;
+        return true;
+    }
+
+    public String getField(int seg, int field, String defVal) {
+        int len = fieldLength(seg, field);
+        return len > 0
+                ? new String(b, fieldOffset(seg, field), len, charset())
+                : defVal;
+    }
+
+    /**
+     * Decodes the specified segment to a {@link HL7Segment}.
+     */
+    public HL7Segment getSegment(int seg) {
+        int n = fieldCount(seg);
+        HL7Segment segment = new HL7Segment(n, getFieldSeparator(),
+                encodingCharacters);
+        for (int i = 0; i < n; i++)
+            segment.setField(i, getField(seg, i, null));
+        return segment;
+    }
+
+    public void writeFieldTo(int seg, int field, OutputStream out)
+            throws IOException {
+        int len = fieldLength(seg, field);
+        if (len > 0)
+            out.write(b, fieldOffset(seg, field), len);
+    }
+
+    public void writeSegmentTo(int seg, OutputStream out) throws IOException {
+        out.write(b, segmentOffset(seg), segmentLength(seg));
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(b, 0, size);
+    }
+
+    private Charset charset() {
+        if (charset == null) {
+            String charsetName = getCharsetName();
+            try {
+                charset = Charset.forName(charsetName);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("charsetName: " + charsetName);
+            }
+        }
+        return charset;
+    }
+
+    private void checkSegment(int seg) {
+        if (!ensureIndexed(seg))
+            throw new IndexOutOfBoundsException(
+                    "seg: " + seg + ", segmentCount: " + numSegments);
+    }
+
+    private boolean ensureIndexed(int seg) {
+        while (seg >= numSegments)
+            if (!scanSegment())
+                return false;
+        return seg >= 0;
+    }
+
+    private boolean scanSegment() {
+        byte[] b = this.b;
+        int size = this.size;
+        int pos = scanPos;
+        byte c;
+        while (pos < size && ((c = b[pos]) == '\r' || c == '\n'))
+            pos++;
+        if (pos == size)
+            return false;
+
+        addBound(pos);
+        byte fs = fieldSeparator;
+        while (pos < size && (c = b[pos]) != '\r' && c != '\n') {
+            if (c == fs)
+                addBound(pos);
+            pos++;
+        }
+        addBound(pos);
+        scanPos = pos;
+        if (++numSegments == segIndex.length)
+            segIndex = Arrays.copyOf(segIndex, numSegments << 1);
+        segIndex[numSegments] = numBounds;
+        return true;
+    }
+
+    private void addBound(int pos) {
+        if (numBounds == bounds.length)
+            bounds = Arrays.copyOf(bounds, numBounds << 1);
+        bounds[numBounds++] = pos;
+    }
+}
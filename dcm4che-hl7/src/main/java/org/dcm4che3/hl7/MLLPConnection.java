@@ -38,7 +38,6 @@
 
 package org.dcm4che3.hl7;
 
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.Socket;
@@ -54,19 +53,19 @@ public class MLLPConnection implements Closeable {
     private static Logger LOG = LoggerFactory.getLogger(MLLPConnection.class);
 
     private final Socket sock;
-    private final MLLPInputStream mllpIn;
+    private final MLLPFrameDecoder mllpIn;
     private final MLLPOutputStream mllpOut;
 
     public MLLPConnection(Socket sock) throws IOException {
         this.sock = sock;
-        mllpIn = new MLLPInputStream(sock.getInputStream());
+        mllpIn = new MLLPFrameDecoder(sock.getInputStream());
         mllpOut = new MLLPOutputStream(sock.getOutputStream());
     }
 
     public MLLPConnection(Socket sock, int bufferSize) throws IOException {
         this.sock = sock;
-        mllpIn = new MLLPInputStream(sock.getInputStream());
-        mllpOut = new MLLPOutputStream(new BufferedOutputStream(sock.getOutputStream(), bufferSize));
+        mllpIn = new MLLPFrameDecoder(sock.getInputStream(), bufferSize);
+        mllpOut = new MLLPOutputStream(sock.getOutputStream(), bufferSize);
     }
 
     public final Socket getSocket() {
@@ -78,8 +77,29 @@ public class MLLPConnection implements Closeable {
     }
 
     public void writeMessage(byte[] b, int off, int len) throws IOException {
+        writeMessage(b, off, len, true);
+    }
+
+    /**
+     * Writes a message, which - if {@code flush} is {@code false} - may be
+     * coalesced with following messages until {@link #flush()} is invoked.
+     */
+    public void writeMessage(byte[] b, int off, int len, boolean flush)
+            throws IOException {
         log("{} << {}", b, off, len);
-        mllpOut.writeMessage(b, off, len);
+        mllpOut.writeMessage(b, off, len, flush);
+    }
+
+    public void flush() throws IOException {
+        mllpOut.flush();
+    }
+
+    /**
+     * Returns if the next message was already received completely, so
+     * {@link #readMessage()} will not block.
+     */
+    public boolean hasBufferedMessage() {
+        return mllpIn.hasBufferedFrame();
     }
 
     public byte[] readMessage() throws IOException {
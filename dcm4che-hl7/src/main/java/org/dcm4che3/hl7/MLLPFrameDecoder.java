@@ -0,0 +1,188 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes MLLP frames from an input stream. The End Block characters are
+ * searched over the whole buffered input, continuing after the already
+ * scanned bytes if more input has to be read. Decoded messages are provided
+ * as slices of the internal buffer, valid until the next invocation of
+ * {@link #nextFrame()}, so messages are not copied if the caller does not
+ * need to keep them.
+ */
+public class MLLPFrameDecoder {
+
+    private static final int SOM = 0x0b; // Start of Message
+    private static final int EOM1 = 0x1c; // End of Message Byte 1
+    private static final int EOM2 = 0x0d; // End of Message Byte 2
+    private static final int DEF_BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private int frameOffset;
+    private int frameLength;
+
+    public MLLPFrameDecoder(InputStream in) {
+        this(in, DEF_BUFFER_SIZE);
+    }
+
+    public MLLPFrameDecoder(InputStream in, int bufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Decodes the next frame, reading from the input stream if it is not
+     * already buffered completely.
+     *
+     * @return {@code false}, if the input stream ended before the Start
+     *         Block character of the next frame
+     * @throws IOException if the input stream ended within a frame or the
+     *         frame is not properly delimited
+     */
+    public boolean nextFrame() throws IOException {
+        frameLength = 0;
+        if (pos == limit && !fill(pos))
+            return false;
+
+        if (buf[pos] != SOM)
+            throw new IOException("Missing Start Block character");
+
+        int start = pos + 1;
+        int scanned = start;
+        int end;
+        while ((end = indexOfEOM1(scanned, limit)) < 0) {
+            int len = limit - start;
+            if (!fill(start - 1))
+                throw new EOFException();
+            // fill() may have moved the buffered frame to the buffer start
+            start = pos + 1;
+            scanned = start + len;
+        }
+        if (end + 1 == limit) {
+            int len = end - start;
+            if (!fill(start - 1))
+                throw new EOFException();
+            start = pos + 1;
+            end = start + len;
+        }
+        if (buf[end + 1] != EOM2)
+            throw new IOException("1CH followed by "
+                    + Integer.toHexString(buf[end + 1] & 0xff)
+                    + "H instead by 0DH");
+
+        frameOffset = start;
+        frameLength = end - start;
+        pos = end + 2;
+        return true;
+    }
+
+    /**
+     * Returns if the next frame is already buffered completely, so
+     * {@link #nextFrame()} will not block.
+     */
+    public boolean hasBufferedFrame() {
+        int end = indexOfEOM1(pos, limit);
+        return end >= 0 && end + 1 < limit;
+    }
+
+    public final byte[] buffer() {
+        return buf;
+    }
+
+    public final int frameOffset() {
+        return frameOffset;
+    }
+
+    public final int frameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Decodes the next frame and returns a copy of the message.
+     *
+     * @return the message or {@code null}, if the input stream ended
+     *         before the Start Block character of the next frame
+     */
+    public byte[] readMessage() throws IOException {
+        return nextFrame()
+                ? Arrays.copyOfRange(buf, frameOffset, frameOffset + frameLength)
+                : null;
+    }
+
+    private int indexOfEOM1(int from, int to) {
+        byte[] b = buf;
+        for (int i = from; i < to; i++)
+            if (b[i] == EOM1)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Reads more bytes into the buffer, preserving buffered bytes from
+     * {@code keep}. Moves the kept bytes to the buffer start, or grows the
+     * buffer, if there is no space left. Adjusts {@link #pos} to the new
+     * position of {@code keep}.
+     */
+    private boolean fill(int keep) throws IOException {
+        int kept = limit - keep;
+        if (limit == buf.length) {
+            if (keep > 0)
+                System.arraycopy(buf, keep, buf, 0, kept);
+            else
+                buf = Arrays.copyOf(buf, buf.length << 1);
+            keep = 0;
+            limit = kept;
+        }
+        pos = keep;
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n <= 0)
+            return false;
+        limit += n;
+        return true;
+    }
+}
@@ -50,11 +50,26 @@ public class MLLPOutputStream extends FilterOutputStream {
 
     private static final int SOM = 0x0b; // Start of Message 
     private static final byte[] EOM = { 0x1c, 0x0d }; // End of Message
+    private static final int DEF_BUFFER_SIZE = 8192;
 
     private boolean somWritten;
+    private final byte[] buf;
+    private int count;
 
     public MLLPOutputStream(OutputStream out) {
+        this(out, DEF_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize size of the buffer, in which frames are assembled
+     *                   to be written to the underlying stream by one
+     *                   write operation
+     */
+    public MLLPOutputStream(OutputStream out, int bufferSize) {
         super(out);
+        if (bufferSize < 4)
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        this.buf = new byte[bufferSize];
     }
 
     @Override
@@ -74,21 +89,67 @@ public class MLLPOutputStream extends FilterOutputStream {
         writeMessage(b, 0, b.length);
     }
 
-    public synchronized void writeMessage(byte b[], int off, int len)
-            throws IOException {
+    public void writeMessage(byte b[], int off, int len) throws IOException {
+        writeMessage(b, off, len, true);
+    }
+
+    /**
+     * Writes a message framed by Start Block and End Block characters.
+     * Frames of messages, which fit into the buffer, are assembled in the
+     * buffer, and - if {@code flush} is {@code false} - coalesced with
+     * the frames of following messages, until the buffer is full or
+     * {@link #flush()} is invoked. Larger messages are written with their
+     * leading and trailing bytes assembled with the Start and End Block
+     * characters, so each frame is written by at most three write
+     * operations.
+     *
+     * @param flush {@code true} to flush the frame to the underlying stream
+     */
+    public synchronized void writeMessage(byte b[], int off, int len,
+            boolean flush) throws IOException {
         if (somWritten)
             throw new IllegalStateException();
 
-        byte[] msg = new byte[len+3];
-        msg[0] = SOM;
-        System.arraycopy(b, off, msg, 1, len);
-        System.arraycopy(EOM, 0, msg, len + 1, 2);
-        out.write(msg);
+        if (len + 3 > buf.length - count)
+            flushBuffer();
+        if (len + 3 > buf.length) {
+            int head = Math.min(len, buf.length - 1);
+            buf[0] = SOM;
+            System.arraycopy(b, off, buf, 1, head);
+            out.write(buf, 0, head + 1);
+            off += head;
+            len -= head;
+            int tail = Math.min(len, buf.length - 2);
+            if (len > tail)
+                out.write(b, off, len - tail);
+            off += len - tail;
+            len = tail;
+        } else
+            buf[count++] = SOM;
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+        buf[count++] = EOM[0];
+        buf[count++] = EOM[1];
+        if (flush)
+            flush();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        flushBuffer();
         out.flush();
     }
 
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
     private void writeStartBlock() throws IOException {
         if (!somWritten) {
+            flushBuffer();
             out.write(SOM);
             somWritten = true;
         }
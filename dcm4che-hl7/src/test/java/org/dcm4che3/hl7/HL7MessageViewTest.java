@@ -0,0 +1,199 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+public class HL7MessageViewTest {
+
+    private static final String MSH =
+            "MSH|^~\\&|SND|SF|RCV|RF|20171019||ADT^A01|MSG1|P|2.5";
+    private static final String PID = "PID|||123^^^ISS||Doe^John";
+    private static final String PV1 = "PV1|1|I";
+    private static final String MESSAGE = MSH + '\r' + PID + '\r' + PV1 + '\r';
+
+    @Test
+    public void testSegments() {
+        HL7MessageView view = view(MESSAGE, null);
+        assertEquals(3, view.segmentCount());
+        assertEquals(0, view.indexOf("MSH"));
+        assertEquals(1, view.indexOf("PID"));
+        assertEquals(2, view.indexOf("PV1", 1));
+        assertEquals(-1, view.indexOf("PID", 2));
+        assertEquals(-1, view.indexOf("OBX"));
+        assertEquals(0, view.segmentOffset(0));
+        assertEquals(MSH.length(), view.segmentLength(0));
+        assertEquals(MESSAGE.indexOf(PID), view.segmentOffset(1));
+        assertEquals(PID.length(), view.segmentLength(1));
+        assertEquals(MESSAGE.indexOf(PV1), view.segmentOffset(2));
+        assertEquals(PV1.length(), view.segmentLength(2));
+    }
+
+    @Test
+    public void testFields() {
+        HL7MessageView view = view(MESSAGE, null);
+        assertEquals('|', view.getFieldSeparator());
+        assertEquals("^~\\&", view.getEncodingCharacters());
+        assertEquals(12, view.fieldCount(0));
+        assertEquals("MSH", view.getField(0, 0, null));
+        assertEquals("^~\\&", view.getField(0, 1, null));
+        assertEquals("ADT^A01", view.getField(0, 8, null));
+        assertEquals(6, view.fieldCount(1));
+        assertEquals("123^^^ISS", view.getField(1, 3, null));
+        assertEquals("Doe^John", view.getField(1, 5, null));
+        int off = MESSAGE.indexOf("123^^^ISS");
+        assertEquals(off, view.fieldOffset(1, 3));
+        assertEquals(9, view.fieldLength(1, 3));
+        assertEquals(MESSAGE.indexOf("Doe^John"), view.fieldOffset(1, 5));
+    }
+
+    @Test
+    public void testEmptyAndMissingFields() {
+        HL7MessageView view = view(MESSAGE, null);
+        assertEquals(0, view.fieldLength(1, 1));
+        assertEquals(MESSAGE.indexOf(PID) + 4, view.fieldOffset(1, 1));
+        assertEquals("dflt", view.getField(1, 1, "dflt"));
+        assertEquals(0, view.fieldLength(0, 7));
+        assertNull(view.getField(0, 7, null));
+        assertEquals(-1, view.fieldOffset(1, 6));
+        assertEquals(0, view.fieldLength(1, 6));
+        assertEquals("dflt", view.getField(1, 6, "dflt"));
+        assertEquals(-1, view.fieldOffset(2, -1));
+        assertTrue(view.fieldEquals(1, 6, ""));
+    }
+
+    @Test
+    public void testFieldEquals() {
+        HL7MessageView view = view(MESSAGE, null);
+        assertTrue(view.fieldEquals(0, 8, "ADT^A01"));
+        assertFalse(view.fieldEquals(0, 8, "ADT^A0"));
+        assertFalse(view.fieldEquals(0, 8, "ADT^A011"));
+        assertFalse(view.fieldEquals(0, 8, "ADT^A02"));
+        assertTrue(view.fieldEquals(1, 0, "PID"));
+        assertTrue(view.fieldEquals(1, 1, ""));
+        assertFalse(view.fieldEquals(1, 6, "X"));
+    }
+
+    @Test
+    public void testLineEndings() {
+        for (String eol : new String[] { "\n", "\r\n", "\r\r" }) {
+            String msg = MSH + eol + PID + eol + PV1 + eol;
+            HL7MessageView view = view(msg, null);
+            assertEquals(eol, 3, view.segmentCount());
+            assertEquals(eol, msg.indexOf(PID), view.segmentOffset(1));
+            assertEquals(eol, PID.length(), view.segmentLength(1));
+            assertEquals(eol, "I", view.getField(2, 2, null));
+            assertEquals(eol, 3, view.fieldCount(2));
+        }
+        HL7MessageView view = view(MSH + '\r' + PID, null);
+        assertEquals(2, view.segmentCount());
+        assertEquals("Doe^John", view.getField(1, 5, null));
+    }
+
+    @Test
+    public void testSize() {
+        byte[] b = MESSAGE.getBytes();
+        HL7MessageView view = new HL7MessageView(b, MESSAGE.indexOf(PV1), null);
+        assertEquals(2, view.segmentCount());
+        assertEquals(-1, view.indexOf("PV1"));
+        assertSame(b, view.data());
+        assertEquals(MESSAGE.indexOf(PV1), view.length());
+    }
+
+    @Test
+    public void testCharset() throws Exception {
+        String msh = MSH + "||||||8859/1";
+        byte[] b = (msh + "\rPID|||1||M\u00fcller\r").getBytes("ISO-8859-1");
+        HL7MessageView view = new HL7MessageView(b, null);
+        assertEquals("ISO-8859-1", view.getCharsetName());
+        assertEquals("M\u00fcller", view.getField(1, 5, null));
+        assertEquals(msh.length() - 6, view.fieldOffset(0, 17));
+
+        b = ("MSH|^~\\&|||||||ADT^A01\rPID|||1||M\u00fcller\r").getBytes("UTF-8");
+        view = new HL7MessageView(b, "UNICODE UTF-8");
+        assertEquals("UTF-8", view.getCharsetName());
+        assertEquals("M\u00fcller", view.getField(1, 5, null));
+        assertEquals("US-ASCII", view(MESSAGE, null).getCharsetName());
+    }
+
+    @Test
+    public void testGetSegment() {
+        HL7MessageView view = view(MESSAGE, null);
+        HL7Segment pid = view.getSegment(1);
+        assertEquals(6, pid.size());
+        assertEquals(PID, pid.toString());
+        HL7Segment msh = view.msh();
+        assertEquals("ADT^A01", msh.getMessageType());
+        assertEquals("MSG1", msh.getMessageControlID());
+        assertEquals(MSH, msh.toString());
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        HL7MessageView view = view(MESSAGE, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        view.writeFieldTo(1, 3, out);
+        view.writeFieldTo(1, 1, out);
+        view.writeFieldTo(1, 6, out);
+        assertEquals("123^^^ISS", out.toString("US-ASCII"));
+        out.reset();
+        view.writeSegmentTo(2, out);
+        assertEquals(PV1, out.toString("US-ASCII"));
+        out.reset();
+        view.writeTo(out);
+        assertEquals(MESSAGE, out.toString("US-ASCII"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMSH() {
+        view("MSH|^~\r", null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSegmentOutOfBounds() {
+        view(MESSAGE, null).segmentOffset(3);
+    }
+
+    private static HL7MessageView view(String s, String defCharset) {
+        return new HL7MessageView(s.getBytes(), defCharset);
+    }
+}
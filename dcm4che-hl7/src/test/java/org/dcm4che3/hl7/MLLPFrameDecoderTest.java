@@ -0,0 +1,252 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MLLPFrameDecoderTest {
+
+    private static final byte SOM = 0x0b;
+    private static final byte EOM1 = 0x1c;
+    private static final byte EOM2 = 0x0d;
+
+    /**
+     * Returns the bytes of the specified array by reads of the specified
+     * lengths.
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final byte[] b;
+        private final int[] chunks;
+        private int pos;
+        private int chunk;
+
+        ChunkedInputStream(byte[] b, int... chunks) {
+            this.b = b;
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] dest, int off, int len) throws IOException {
+            if (pos == b.length)
+                return -1;
+            int n = Math.min(len, b.length - pos);
+            if (chunk < chunks.length)
+                n = Math.min(n, chunks[chunk++]);
+            System.arraycopy(b, pos, dest, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    @Test
+    public void testCompactBuffer() throws Exception {
+        byte[] msg1 = message('A', 8);
+        byte[] msg2 = message('B', 10);
+        MLLPFrameDecoder decoder = new MLLPFrameDecoder(
+                new ByteArrayInputStream(frames(msg1, msg2)), 16);
+        byte[] buf = decoder.buffer();
+        assertArrayEquals(msg1, decoder.readMessage());
+        assertFalse(decoder.hasBufferedFrame());
+        assertArrayEquals(msg2, decoder.readMessage());
+        assertSame(buf, decoder.buffer());
+        assertNull(decoder.readMessage());
+    }
+
+    @Test
+    public void testGrowBuffer() throws Exception {
+        byte[] msg1 = message('A', 4);
+        byte[] msg2 = message('B', 40);
+        MLLPFrameDecoder decoder = new MLLPFrameDecoder(
+                new ByteArrayInputStream(frames(msg1, msg2, msg1)), 16);
+        assertArrayEquals(msg1, decoder.readMessage());
+        assertArrayEquals(msg2, decoder.readMessage());
+        assertTrue(decoder.buffer().length >= 43);
+        assertArrayEquals(msg1, decoder.readMessage());
+        assertNull(decoder.readMessage());
+    }
+
+    @Test
+    public void testFrameSlice() throws Exception {
+        byte[] msg = message('A', 5);
+        MLLPFrameDecoder decoder = new MLLPFrameDecoder(
+                new ByteArrayInputStream(frames(msg, msg)));
+        assertTrue(decoder.nextFrame());
+        assertEquals(1, decoder.frameOffset());
+        assertEquals(5, decoder.frameLength());
+        assertTrue(decoder.hasBufferedFrame());
+        assertTrue(decoder.nextFrame());
+        assertEquals(9, decoder.frameOffset());
+        assertArrayEquals(msg, Arrays.copyOfRange(decoder.buffer(),
+                decoder.frameOffset(), decoder.frameOffset() + 5));
+        assertFalse(decoder.hasBufferedFrame());
+        assertFalse(decoder.nextFrame());
+        assertEquals(0, decoder.frameLength());
+    }
+
+    @Test
+    public void testEndBlockSplitByRead() throws Exception {
+        byte[] msg = message('A', 3);
+        // SOM A A A 1C | 0D
+        MLLPFrameDecoder decoder = new MLLPFrameDecoder(
+                new ChunkedInputStream(frames(msg, msg), 5, 1, 5, 1));
+        assertArrayEquals(msg, decoder.readMessage());
+        assertArrayEquals(msg, decoder.readMessage());
+        assertNull(decoder.readMessage());
+    }
+
+    @Test
+    public void testEndBlockSplitAtEndOfBuffer() throws Exception {
+        byte[] msg1 = message('A', 1);
+        byte[] msg2 = message('B', 3);
+        // SOM A 1C 0D SOM B B B | 1C 0D : 1C at end of full buffer
+        MLLPFrameDecoder decoder = new MLLPFrameDecoder(
+                new ChunkedInputStream(frames(msg1, msg2, msg1), 8, 1), 9);
+        byte[] buf = decoder.buffer();
+        assertArrayEquals(msg1, decoder.readMessage());
+        assertArrayEquals(msg2, decoder.readMessage());
+        assertSame(buf, decoder.buffer());
+        assertArrayEquals(msg1, decoder.readMessage());
+        assertNull(decoder.readMessage());
+
+        // SOM B B B 1C | 0D : 1C at end of full buffer starting with frame
+        decoder = new MLLPFrameDecoder(
+                new ChunkedInputStream(frames(msg2), 5), 5);
+        assertArrayEquals(msg2, decoder.readMessage());
+        assertNull(decoder.readMessage());
+    }
+
+    @Test
+    public void testChunkedRoundTrip() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            List<byte[]> msgs = new ArrayList<byte[]>();
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            MLLPOutputStream out = new MLLPOutputStream(bout,
+                    4 + random.nextInt(100));
+            for (int j = random.nextInt(20); j > 0; j--) {
+                byte[] msg = message((char) ('A' + random.nextInt(26)),
+                        random.nextInt(300));
+                msgs.add(msg);
+                out.writeMessage(msg, 0, msg.length, random.nextBoolean());
+            }
+            out.flush();
+            byte[] data = bout.toByteArray();
+            int[] chunks = new int[data.length];
+            for (int j = 0; j < chunks.length; j++)
+                chunks[j] = 1 + random.nextInt(50);
+            MLLPFrameDecoder decoder = new MLLPFrameDecoder(
+                    new ChunkedInputStream(data, chunks),
+                    1 + random.nextInt(64));
+            MLLPInputStream ref = new MLLPInputStream(
+                    new ByteArrayInputStream(data));
+            for (byte[] msg : msgs) {
+                assertArrayEquals(msg, decoder.readMessage());
+                assertArrayEquals(msg, ref.readMessage());
+            }
+            assertNull(decoder.readMessage());
+        }
+    }
+
+    @Test
+    public void testMissingStartBlock() throws Exception {
+        try {
+            new MLLPFrameDecoder(new ByteArrayInputStream(new byte[]{ 'A' }))
+                    .nextFrame();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("Missing Start Block character", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalidEndBlock() throws Exception {
+        try {
+            new MLLPFrameDecoder(new ByteArrayInputStream(
+                    new byte[]{ SOM, 'A', EOM1, 'x' })).nextFrame();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("1CH followed by 78H instead by 0DH", e.getMessage());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testEOFWithinFrame() throws Exception {
+        new MLLPFrameDecoder(new ByteArrayInputStream(
+                new byte[]{ SOM, 'A' })).nextFrame();
+    }
+
+    @Test(expected = EOFException.class)
+    public void testEOFWithinEndBlock() throws Exception {
+        new MLLPFrameDecoder(new ByteArrayInputStream(
+                new byte[]{ SOM, 'A', EOM1 })).nextFrame();
+    }
+
+    static byte[] message(char c, int len) {
+        byte[] b = new byte[len];
+        Arrays.fill(b, (byte) c);
+        return b;
+    }
+
+    static byte[] frames(byte[]... msgs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] msg : msgs) {
+            out.write(SOM);
+            out.write(msg, 0, msg.length);
+            out.write(EOM1);
+            out.write(EOM2);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,146 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import static org.dcm4che3.hl7.MLLPFrameDecoderTest.frames;
+import static org.dcm4che3.hl7.MLLPFrameDecoderTest.message;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MLLPOutputStreamTest {
+
+    /**
+     * Records the lengths of the write operations.
+     */
+    private static class RecordingOutputStream extends OutputStream {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final List<Integer> writes = new ArrayList<Integer>();
+        int flushes;
+
+        @Override
+        public void write(int b) throws IOException {
+            data.write(b);
+            writes.add(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            data.write(b, off, len);
+            writes.add(len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private final RecordingOutputStream rec = new RecordingOutputStream();
+
+    @Test
+    public void testCoalesceFrames() throws Exception {
+        MLLPOutputStream out = new MLLPOutputStream(rec, 32);
+        byte[] msg = message('A', 5);
+        out.writeMessage(msg, 0, 5, false);
+        out.writeMessage(msg, 0, 5, false);
+        assertTrue(rec.writes.isEmpty());
+        out.writeMessage(msg, 0, 5, true);
+        assertEquals(list(24), rec.writes);
+        assertEquals(1, rec.flushes);
+        assertArrayEquals(frames(msg, msg, msg), rec.data.toByteArray());
+    }
+
+    @Test
+    public void testFlushFullBuffer() throws Exception {
+        MLLPOutputStream out = new MLLPOutputStream(rec, 16);
+        byte[] msg = message('A', 5);
+        out.writeMessage(msg, 0, 5, false);
+        out.writeMessage(msg, 0, 5, false);
+        assertTrue(rec.writes.isEmpty());
+        out.writeMessage(msg, 0, 5, false);
+        assertEquals(list(16), rec.writes);
+        assertEquals(0, rec.flushes);
+        out.flush();
+        assertEquals(list(16, 8), rec.writes);
+        assertArrayEquals(frames(msg, msg, msg), rec.data.toByteArray());
+    }
+
+    @Test
+    public void testLargeFrameByThreeWrites() throws Exception {
+        MLLPOutputStream out = new MLLPOutputStream(rec, 16);
+        byte[] msg = message('A', 100);
+        out.writeMessage(msg);
+        // SOM + 15 bytes, 71 bytes, 14 bytes + EOM
+        assertEquals(list(16, 71, 16), rec.writes);
+        assertArrayEquals(frames(msg), rec.data.toByteArray());
+    }
+
+    @Test
+    public void testLargeFrameByTwoWrites() throws Exception {
+        MLLPOutputStream out = new MLLPOutputStream(rec, 16);
+        byte[] msg = message('A', 20);
+        out.writeMessage(msg);
+        // SOM + 15 bytes, 5 bytes + EOM
+        assertEquals(list(16, 7), rec.writes);
+        assertArrayEquals(frames(msg), rec.data.toByteArray());
+    }
+
+    @Test
+    public void testLargeFrameAfterBufferedFrame() throws Exception {
+        MLLPOutputStream out = new MLLPOutputStream(rec, 16);
+        byte[] msg1 = message('A', 3);
+        byte[] msg2 = message('B', 100);
+        out.writeMessage(msg1, 0, msg1.length, false);
+        out.writeMessage(msg2, 0, msg2.length, false);
+        out.writeMessage(msg1, 0, msg1.length, true);
+        assertEquals(list(6, 16, 71, 16, 6), rec.writes);
+        assertArrayEquals(frames(msg1, msg2, msg1), rec.data.toByteArray());
+    }
+
+    private static List<Integer> list(Integer... lens) {
+        return Arrays.asList(lens);
+    }
+}
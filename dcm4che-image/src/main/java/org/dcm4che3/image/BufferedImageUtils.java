@@ -43,6 +43,7 @@ package org.dcm4che3.image;
 import java.awt.*;
 import java.awt.color.ColorSpace;
 import java.awt.image.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -53,6 +54,16 @@ public class BufferedImageUtils {
     private BufferedImageUtils() {}
 
     public static BufferedImage convertToIntRGB(BufferedImage bi) {
+        return convertToIntRGB(bi, null);
+    }
+
+    /**
+     * Converts image to {@link BufferedImage#TYPE_INT_RGB}. 8 bit YBR images
+     * are converted by {@link YBRConverter}, optionally by bands of rows in
+     * parallel, if {@code pool} is not {@code null}.
+     */
+    public static BufferedImage convertToIntRGB(BufferedImage bi,
+            ForkJoinPool pool) {
         ColorModel cm = bi.getColorModel();
         if (cm instanceof DirectColorModel)
             return bi;
@@ -64,7 +75,11 @@ public class BufferedImageUtils {
         if (cm instanceof PaletteColorModel)
             return ((PaletteColorModel) cm).convertToIntDiscrete(raster);
 
-        BufferedImage intRGB = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_RGB);
+        BufferedImage intRGB = YBRConverter.convertToIntRGB(bi, pool);
+        if (intRGB != null)
+            return intRGB;
+
+        intRGB = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_RGB);
         Graphics graphics = intRGB.getGraphics();
         try {
             graphics.drawImage(bi, 0, 0, null);
@@ -63,6 +63,10 @@ public class SampledComponentColorModel extends ColorModel {
         this.subsampling = subsampling;
     }
 
+    public ColorSubsampling getColorSubsampling() {
+        return subsampling;
+    }
+
     @Override
     public boolean isCompatibleRaster(Raster raster) {
         return isCompatibleSampleModel(raster.getSampleModel());
@@ -94,6 +94,38 @@ public class SampledComponentSampleModel extends SampleModel {
         return ret;
     }
 
+    /**
+     * Returns the upsampled Y, Cb, Cr samples of the specified rectangle,
+     * pixel-interleaved, walking the subsampled data row by row.
+     */
+    @Override
+    public Object getDataElements(int x, int y, int w, int h, Object obj,
+            DataBuffer data) {
+        if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height)
+            throw new ArrayIndexOutOfBoundsException(
+                    "Coordinate out of bounds!");
+
+        byte[] ret;
+        if ((obj instanceof byte[]) && ((byte[]) obj).length >= w * h * 3)
+            ret = (byte[]) obj;
+        else
+            ret = new byte[w * h * 3];
+        byte[] ba = ((DataBufferByte) data).getData();
+        int i = 0;
+        for (int y1 = y, y2 = y + h; y1 < y2; y1++) {
+            int iy0 = subsampling.indexOfY(0, y1, width);
+            int ibr0 = subsampling.indexOfBR(0, y1, width);
+            boolean yOnly = subsampling.indexOfY(2, y1, width) == iy0 + 2;
+            for (int x1 = x, x2 = x + w; x1 < x2; x1++) {
+                int ibr = ibr0 + ((x1 >> 1) << 2);
+                ret[i++] = ba[yOnly ? iy0 + x1 : iy0 + (x1 << 1) - (x1 & 1)];
+                ret[i++] = ba[ibr];
+                ret[i++] = ba[ibr + 1];
+            }
+        }
+        return ret;
+    }
+
     @Override
     public int getNumDataElements() {
         return 3;
@@ -53,6 +53,11 @@ public enum YBR {
         public float[] fromRGB(float[] rgb) {
             return convert(rgb, TO_YBR_FULL);
         }
+
+        @Override
+        double[] toRGBMatrix() {
+            return FROM_YBR_FULL;
+        }
     },
     PARTIAL {
         @Override
@@ -64,6 +69,11 @@ public enum YBR {
         public float[] fromRGB(float[] rgb) {
             return convert(rgb, TO_YBR_PARTIAL);
         }
+
+        @Override
+        double[] toRGBMatrix() {
+            return FROM_YBR_PARTIAL;
+        }
     };
 
     private static double[] TO_YBR_FULL = {
@@ -94,6 +104,8 @@ public enum YBR {
 
     public abstract float[] fromRGB(float[] rgb);
 
+    abstract double[] toRGBMatrix();
+
     private static float[] convert(float[] in, double[] a) {
         return new float[] {
                 (float) Math.max(0.0, Math.min(1.0,
@@ -56,6 +56,10 @@ public final class YBRColorSpace extends ColorSpace {
         this.ybr = ybr;
     }
 
+    public YBR getYBR() {
+        return ybr;
+    }
+
     @Override
     public float[] toRGB(float[] ybr) {
         return this.ybr.toRGB(ybr);
@@ -0,0 +1,277 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts 8 bit YBR pixel data to packed RGB values by integer lookup
+ * tables, operating on whole rows of the - optionally horizontally or
+ * horizontally and vertically subsampled - pixel data instead of converting
+ * each pixel through {@link YBRColorSpace#toRGB(float[])}.
+ */
+public final class YBRConverter {
+
+    public static final YBRConverter FULL =
+            new YBRConverter(YBR.FULL.toRGBMatrix());
+    public static final YBRConverter PARTIAL =
+            new YBRConverter(YBR.PARTIAL.toRGBMatrix());
+    /** Irreversible Color Transformation of JPEG 2000 */
+    public static final YBRConverter ICT = FULL;
+    /** Reversible Color Transformation of JPEG 2000 */
+    public static final YBRConverter RCT = new YBRConverter(null);
+
+    private static final int MIN_ROWS_PER_TASK = 64;
+
+    /**
+     * Contributions of Y, Cb and Cr to R, G and B in 16.16 fixed point, as
+     * 9 consecutive tables of 256 entries: R(Y), R(Cb), R(Cr), G(Y), ...
+     * or {@code null} for RCT.
+     */
+    private final int[] lut;
+
+    private YBRConverter(double[] a) {
+        if (a == null) {
+            lut = null;
+            return;
+        }
+        lut = new int[9 * 256];
+        for (int c = 0; c < 3; c++) {
+            // add rounding and offset to the table of Y
+            fill(lut, (c * 3) << 8, a[c * 4], a[c * 4 + 3] * 255 + 0.5);
+            fill(lut, (c * 3 + 1) << 8, a[c * 4 + 1], 0);
+            fill(lut, (c * 3 + 2) << 8, a[c * 4 + 2], 0);
+        }
+    }
+
+    private static void fill(int[] lut, int off, double factor, double offset) {
+        for (int i = 0; i < 256; i++)
+            lut[off + i] = (int) Math.round((factor * i + offset) * 65536);
+    }
+
+    public static YBRConverter valueOf(YBR ybr) {
+        return ybr == YBR.PARTIAL ? PARTIAL : FULL;
+    }
+
+    /**
+     * Returns the packed RGB value of the specified 8 bit YBR samples.
+     */
+    public int toRGB(int y, int cb, int cr) {
+        return lut != null ? toRGB(lut, y, cb, cr) : rctToRGB(y, cb, cr);
+    }
+
+    private static int toRGB(int[] lut, int y, int cb, int cr) {
+        return (clamp((lut[y] + lut[256 + cb] + lut[512 + cr]) >> 16) << 16)
+             | (clamp((lut[768 + y] + lut[1024 + cb] + lut[1280 + cr]) >> 16) << 8)
+             | clamp((lut[1536 + y] + lut[1792 + cb] + lut[2048 + cr]) >> 16);
+    }
+
+    private static int rctToRGB(int y, int cb, int cr) {
+        int g = y - ((cb + cr - 256) >> 2);
+        return (clamp(cr - 128 + g) << 16) | (clamp(g) << 8)
+                | clamp(cb - 128 + g);
+    }
+
+    private static int clamp(int v) {
+        // branch-free, out of range values are frequent in saturated colors
+        v &= ~(v >> 31);
+        return (v | ((255 - v) >> 31)) & 0xff;
+    }
+
+    /**
+     * Converts {@code length} pixel-interleaved YBR pixels of {@code src},
+     * starting at {@code srcPos}, to packed RGB values in {@code dest},
+     * starting at {@code destPos}.
+     */
+    public void convert(byte[] src, int srcPos, int[] dest, int destPos,
+            int length) {
+        for (int i = srcPos, j = destPos, end = destPos + length; j < end; i += 3)
+            dest[j++] = toRGB(src[i] & 0xff, src[i + 1] & 0xff, src[i + 2] & 0xff);
+    }
+
+    /**
+     * Converts rows {@code y0} to {@code y1} (exclusive) of a subsampled
+     * frame with width {@code w} to packed RGB values in {@code dest}, with
+     * scanline stride {@code w}. {@code w} - and for
+     * {@link ColorSubsampling#YBR_XXX_420}, also {@code y0} - must be even.
+     */
+    public void convert(byte[] src, ColorSubsampling subsampling, int w,
+            int y0, int y1, int[] dest) {
+        for (int y = y0; y < y1; y++) {
+            int d = y * w;
+            int s = subsampling.indexOfY(0, y, w);
+            if (subsampling == ColorSubsampling.YBR_XXX_420 && (y & 1) != 0) {
+                // Y only row, reuse Cb, Cr of previous row
+                for (int x = 0, br = subsampling.indexOfBR(0, y - 1, w);
+                        x < w; x += 2, br += 4) {
+                    int cb = src[br] & 0xff;
+                    int cr = src[br + 1] & 0xff;
+                    dest[d++] = toRGB(src[s++] & 0xff, cb, cr);
+                    dest[d++] = toRGB(src[s++] & 0xff, cb, cr);
+                }
+            } else {
+                for (int x = 0; x < w; x += 2, s += 4) {
+                    int cb = src[s + 2] & 0xff;
+                    int cr = src[s + 3] & 0xff;
+                    dest[d++] = toRGB(src[s] & 0xff, cb, cr);
+                    dest[d++] = toRGB(src[s + 1] & 0xff, cb, cr);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts 8 bit YBR image to {@link BufferedImage#TYPE_INT_RGB}, if its
+     * raster is backed by pixel-interleaved or by subsampled YBR pixel data,
+     * which is accessible by this converter.
+     *
+     * @param bi YBR image
+     * @param pool pool for converting bands of rows in parallel or
+     *             {@code null}
+     * @return converted image or {@code null}, if the raster of {@code bi}
+     *         is not supported
+     */
+    public static BufferedImage convertToIntRGB(BufferedImage bi,
+            ForkJoinPool pool) {
+        if (!(bi.getColorModel().getColorSpace() instanceof YBRColorSpace))
+            return null;
+
+        WritableRaster raster = bi.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        if (!(db instanceof DataBufferByte) || db.getNumBanks() != 1
+                || db.getOffset() != 0
+                || raster.getSampleModelTranslateX() != 0
+                || raster.getSampleModelTranslateY() != 0
+                || sm.getWidth() != w || sm.getHeight() != h)
+            return null;
+
+        ColorSubsampling subsampling = null;
+        if (sm instanceof SampledComponentSampleModel) {
+            subsampling = ((SampledComponentColorModel) bi.getColorModel())
+                    .getColorSubsampling();
+            if ((w & 1) != 0
+                    || subsampling == ColorSubsampling.YBR_XXX_420 && (h & 1) != 0)
+                return null;
+        } else if (!(bi.getColorModel() instanceof ComponentColorModel
+                && isPixelInterleaved(sm)))
+            return null;
+
+        YBRConverter conv = valueOf(
+                ((YBRColorSpace) bi.getColorModel().getColorSpace()).getYBR());
+        BufferedImage intRGB = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        byte[] src = ((DataBufferByte) db).getData();
+        int[] dest = ((DataBufferInt) intRGB.getRaster().getDataBuffer()).getData();
+        if (pool != null && h >= MIN_ROWS_PER_TASK * 2)
+            pool.invoke(new ConvertTask(conv, src, subsampling, w, 0, h, dest));
+        else
+            conv.convertRows(src, subsampling, w, 0, h, dest);
+        return intRGB;
+    }
+
+    private void convertRows(byte[] src, ColorSubsampling subsampling, int w,
+            int y0, int y1, int[] dest) {
+        if (subsampling != null)
+            convert(src, subsampling, w, y0, y1, dest);
+        else
+            convert(src, y0 * w * 3, dest, y0 * w, (y1 - y0) * w);
+    }
+
+    private static boolean isPixelInterleaved(SampleModel sm) {
+        if (!(sm instanceof PixelInterleavedSampleModel)
+                || sm.getDataType() != DataBuffer.TYPE_BYTE)
+            return false;
+
+        PixelInterleavedSampleModel pism = (PixelInterleavedSampleModel) sm;
+        int[] offsets = pism.getBandOffsets();
+        return pism.getPixelStride() == 3
+                && pism.getScanlineStride() == sm.getWidth() * 3
+                && offsets.length == 3
+                && offsets[0] == 0 && offsets[1] == 1 && offsets[2] == 2;
+    }
+
+    private static final class ConvertTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -5406658398405395453L;
+
+        private final YBRConverter conv;
+        private final byte[] src;
+        private final ColorSubsampling subsampling;
+        private final int w;
+        private final int y0;
+        private final int y1;
+        private final int[] dest;
+
+        ConvertTask(YBRConverter conv, byte[] src,
+                ColorSubsampling subsampling, int w, int y0, int y1,
+                int[] dest) {
+            this.conv = conv;
+            this.src = src;
+            this.subsampling = subsampling;
+            this.w = w;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.dest = dest;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = y1 - y0;
+            if (rows >= MIN_ROWS_PER_TASK * 2) {
+                // split on even row, to keep 4:2:0 row pairs together
+                int mid = (y0 + rows / 2) & ~1;
+                invokeAll(
+                        new ConvertTask(conv, src, subsampling, w, y0, mid, dest),
+                        new ConvertTask(conv, src, subsampling, w, mid, y1, dest));
+            } else {
+                conv.convertRows(src, subsampling, w, y0, y1, dest);
+            }
+        }
+    }
+}
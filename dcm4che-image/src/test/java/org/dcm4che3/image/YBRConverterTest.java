@@ -0,0 +1,147 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+import static org.junit.Assert.*;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.dcm4che3.data.Attributes;
+import org.junit.Test;
+
+public class YBRConverterTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 160;
+
+    @Test
+    public void testConvertYBRFull() {
+        assertConvertedWithin1(createImage(
+                ColorModelFactory.createYBRFullColorModel(8,
+                        DataBuffer.TYPE_BYTE, new Attributes())));
+    }
+
+    @Test
+    public void testConvertYBRPartial() {
+        assertConvertedWithin1(createImage(new ComponentColorModel(
+                new YBRColorSpace(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                        YBR.PARTIAL),
+                new int[] { 8, 8, 8 }, false, false, Transparency.OPAQUE,
+                DataBuffer.TYPE_BYTE)));
+    }
+
+    @Test
+    public void testConvertYBRFull422() {
+        assertConvertedWithin1(createImage(createYBRColorModel(
+                YBR.FULL, ColorSubsampling.YBR_XXX_422)));
+    }
+
+    @Test
+    public void testConvertYBRPartial422() {
+        assertConvertedWithin1(createImage(createYBRColorModel(
+                YBR.PARTIAL, ColorSubsampling.YBR_XXX_422)));
+    }
+
+    @Test
+    public void testConvertYBRFull420() {
+        assertConvertedWithin1(createImage(createYBRColorModel(
+                YBR.FULL, ColorSubsampling.YBR_XXX_420)));
+    }
+
+    @Test
+    public void testConvertYBRPartial420() {
+        assertConvertedWithin1(createImage(createYBRColorModel(
+                YBR.PARTIAL, ColorSubsampling.YBR_XXX_420)));
+    }
+
+    private static ColorModel createYBRColorModel(YBR ybr,
+            ColorSubsampling subsampling) {
+        return ColorModelFactory.createYBRColorModel(8, DataBuffer.TYPE_BYTE,
+                new Attributes(), ybr, subsampling);
+    }
+
+    private static BufferedImage createImage(ColorModel cm) {
+        SampleModel sm = cm.createCompatibleSampleModel(WIDTH, HEIGHT);
+        DataBuffer db = sm.createDataBuffer();
+        new Random(42).nextBytes(((DataBufferByte) db).getData());
+        WritableRaster raster = Raster.createWritableRaster(sm, db, null);
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    private static void assertConvertedWithin1(BufferedImage bi) {
+        BufferedImage intRGB = YBRConverter.convertToIntRGB(bi, null);
+        assertNotNull(intRGB);
+        ColorModel cm = bi.getColorModel();
+        Raster raster = bi.getRaster();
+        Object pixel = null;
+        for (int y = 0; y < HEIGHT; y++)
+            for (int x = 0; x < WIDTH; x++) {
+                pixel = raster.getDataElements(x, y, pixel);
+                int expected = cm.getRGB(pixel);
+                int actual = intRGB.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int d = ((expected >> shift) & 0xff)
+                            - ((actual >> shift) & 0xff);
+                    if (d < -1 || d > 1)
+                        fail("pixel[" + x + "," + y + "]: expected "
+                                + Integer.toHexString(expected) + " but was "
+                                + Integer.toHexString(actual));
+                }
+            }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BufferedImage parallel = YBRConverter.convertToIntRGB(bi, pool);
+            assertArrayEquals(
+                    intRGB.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH),
+                    parallel.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
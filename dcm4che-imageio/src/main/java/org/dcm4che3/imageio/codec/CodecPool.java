@@ -0,0 +1,238 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of idle codec instances - {@link javax.imageio.ImageReader} or
+ * {@link javax.imageio.ImageWriter} - by their configuration, which avoids
+ * the lookup of the codec in the service registry and its instantiation
+ * for each processed object.
+ * <p>
+ * Released instances are reset and kept until more than
+ * {@link #getMaxIdlePerKey()} instances of the same configuration are idle,
+ * or they were not borrowed for {@link #getMaxIdleTime()} ms. Idle instances
+ * exceeding the maximal idle time are only disposed on invocation of
+ * {@link #borrow}, {@link #release} or {@link #evictIdle()}.
+ */
+public abstract class CodecPool<K, C> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CodecPool.class);
+
+    public static final int DEF_MAX_IDLE_PER_KEY = 4;
+    public static final long DEF_MAX_IDLE_TIME = 60000L;
+
+    private static final class Idle<C> {
+        final C codec;
+        final long since;
+
+        Idle(C codec, long since) {
+            this.codec = codec;
+            this.since = since;
+        }
+    }
+
+    private final HashMap<K, ArrayDeque<Idle<C>>> idle =
+            new HashMap<K, ArrayDeque<Idle<C>>>();
+    private volatile int maxIdlePerKey = DEF_MAX_IDLE_PER_KEY;
+    private volatile long maxIdleTime = DEF_MAX_IDLE_TIME;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong disposed = new AtomicLong();
+
+    protected abstract C create(K key);
+
+    protected abstract void reset(C codec);
+
+    protected abstract void dispose(C codec);
+
+    public final int getMaxIdlePerKey() {
+        return maxIdlePerKey;
+    }
+
+    /**
+     * Sets the maximal number of idle instances per configuration. 0 disables
+     * pooling: released instances are disposed immediately.
+     */
+    public final void setMaxIdlePerKey(int maxIdlePerKey) {
+        if (maxIdlePerKey < 0)
+            throw new IllegalArgumentException("maxIdlePerKey: " + maxIdlePerKey);
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    public final long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public final void setMaxIdleTime(long maxIdleTime) {
+        if (maxIdleTime <= 0)
+            throw new IllegalArgumentException("maxIdleTime: " + maxIdleTime);
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    public long getDisposedCount() {
+        return disposed.get();
+    }
+
+    public synchronized int getIdleCount() {
+        int count = 0;
+        for (ArrayDeque<Idle<C>> deque : idle.values())
+            count += deque.size();
+        return count;
+    }
+
+    public C borrow(K key) {
+        List<C> evicted = new ArrayList<C>(0);
+        C codec = null;
+        synchronized (this) {
+            ArrayDeque<Idle<C>> deque = idle.get(key);
+            if (deque != null) {
+                evict(deque, System.currentTimeMillis(), evicted);
+                Idle<C> head = deque.pollFirst();
+                if (head != null)
+                    codec = head.codec;
+                if (deque.isEmpty())
+                    idle.remove(key);
+            }
+        }
+        disposeAll(evicted);
+        if (codec != null) {
+            reused.incrementAndGet();
+            return codec;
+        }
+        codec = create(key);
+        created.incrementAndGet();
+        return codec;
+    }
+
+    public void release(K key, C codec) {
+        if (codec == null)
+            return;
+
+        try {
+            reset(codec);
+        } catch (RuntimeException e) {
+            LOG.info("Failed to reset {} - dispose it", codec, e);
+            disposeQuietly(codec);
+            return;
+        }
+        List<C> evicted = new ArrayList<C>(1);
+        synchronized (this) {
+            ArrayDeque<Idle<C>> deque = idle.get(key);
+            if (deque == null)
+                idle.put(key, deque = new ArrayDeque<Idle<C>>());
+            long now = System.currentTimeMillis();
+            // most recently released instances are borrowed first, so
+            // instances at the tail are the ones idle for the longest time
+            deque.addFirst(new Idle<C>(codec, now));
+            while (deque.size() > maxIdlePerKey)
+                evicted.add(deque.pollLast().codec);
+            evict(deque, now, evicted);
+            if (deque.isEmpty())
+                idle.remove(key);
+        }
+        disposeAll(evicted);
+    }
+
+    /**
+     * Disposes all instances idle for longer than {@link #getMaxIdleTime()}.
+     */
+    public void evictIdle() {
+        List<C> evicted = new ArrayList<C>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Iterator<ArrayDeque<Idle<C>>> iter = idle.values().iterator();
+                    iter.hasNext();) {
+                ArrayDeque<Idle<C>> deque = iter.next();
+                evict(deque, now, evicted);
+                if (deque.isEmpty())
+                    iter.remove();
+            }
+        }
+        disposeAll(evicted);
+    }
+
+    public void clear() {
+        List<C> evicted = new ArrayList<C>();
+        synchronized (this) {
+            for (ArrayDeque<Idle<C>> deque : idle.values())
+                for (Idle<C> entry : deque)
+                    evicted.add(entry.codec);
+            idle.clear();
+        }
+        disposeAll(evicted);
+    }
+
+    private void evict(ArrayDeque<Idle<C>> deque, long now, List<C> evicted) {
+        Idle<C> tail;
+        while ((tail = deque.peekLast()) != null
+                && now - tail.since > maxIdleTime)
+            evicted.add(deque.pollLast().codec);
+    }
+
+    private void disposeAll(List<C> codecs) {
+        for (C codec : codecs)
+            disposeQuietly(codec);
+    }
+
+    private void disposeQuietly(C codec) {
+        try {
+            dispose(codec);
+        } catch (RuntimeException e) {
+            LOG.info("Failed to dispose {}", codec, e);
+        }
+        disposed.incrementAndGet();
+    }
+}
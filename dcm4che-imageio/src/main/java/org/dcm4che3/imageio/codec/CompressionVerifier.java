@@ -0,0 +1,433 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.dcm4che3.util.Property;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies lossy compressed frames by decompressing them and comparing the
+ * decompressed pixel values with the original pixel values.
+ * <p>
+ * Which frames are verified is controlled by the compression parameters
+ * {@code verifyFrameInterval} - verify only every n-th frame - and
+ * {@code verifyFrameSampleRate} - verify only a random sample of the frames
+ * with given probability. The first frame is always verified. If an
+ * {@link Executor} is set, frames are verified by the executor concurrently
+ * to the compression of the next frame; a verification failure is then
+ * reported on compression of the next frame or by {@link #awaitPending()}.
+ */
+class CompressionVerifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressionVerifier.class);
+
+    private final ImageReaderFactory.ImageReaderParam param;
+    private final int maxPixelValueError;
+    private final int avgPixelValueBlockSize;
+    private final int frameInterval;
+    private final double frameSampleRate;
+    private ImageReader verifier;
+    private ImageReadParam verifyParam;
+    private BufferedImage bi2;
+    private Executor executor;
+    private FutureTask<BufferedImage> pending;
+    private int[] diffs;
+    private int[] blockDiffs;
+
+    private int verifiedFrames;
+    private int skippedFrames;
+    private int maxError;
+    private long sumError;
+    private long numErrors;
+
+    CompressionVerifier(ImageReaderFactory.ImageReaderParam param,
+            int maxPixelValueError, int avgPixelValueBlockSize,
+            int frameInterval, double frameSampleRate) {
+        if (avgPixelValueBlockSize < 1)
+            throw new IllegalArgumentException(
+                    "avgPixelValueBlockSize: " + avgPixelValueBlockSize);
+        if (frameInterval < 1)
+            throw new IllegalArgumentException(
+                    "verifyFrameInterval: " + frameInterval);
+        if (frameSampleRate <= 0 || frameSampleRate > 1)
+            throw new IllegalArgumentException(
+                    "verifyFrameSampleRate: " + frameSampleRate);
+        this.param = param;
+        this.maxPixelValueError = maxPixelValueError;
+        this.avgPixelValueBlockSize = avgPixelValueBlockSize;
+        this.frameInterval = frameInterval;
+        this.frameSampleRate = frameSampleRate;
+        this.verifier = ImageReaderFactory.borrowImageReader(param);
+        this.verifyParam = verifier.getDefaultReadParam();
+        LOG.debug("Verifier: {}", verifier.getClass().getName());
+    }
+
+    static CompressionVerifier create(String tsuid, Property[] params) {
+        int maxPixelValueError = -1;
+        int avgPixelValueBlockSize = 1;
+        int frameInterval = 1;
+        double frameSampleRate = 1;
+        for (Property property : params) {
+            String name = property.getName();
+            if (name.equals("maxPixelValueError"))
+                maxPixelValueError = ((Number) property.getValue()).intValue();
+            else if (name.equals("avgPixelValueBlockSize"))
+                avgPixelValueBlockSize = ((Number) property.getValue()).intValue();
+            else if (name.equals("verifyFrameInterval"))
+                frameInterval = ((Number) property.getValue()).intValue();
+            else if (name.equals("verifyFrameSampleRate"))
+                frameSampleRate = ((Number) property.getValue()).doubleValue();
+        }
+        if (maxPixelValueError < 0)
+            return null;
+
+        ImageReaderFactory.ImageReaderParam readerParam =
+                ImageReaderFactory.getImageReaderParam(tsuid);
+        if (readerParam == null)
+            throw new UnsupportedOperationException(
+                    "Unsupported Transfer Syntax: " + tsuid);
+
+        return new CompressionVerifier(readerParam, maxPixelValueError,
+                avgPixelValueBlockSize, frameInterval, frameSampleRate);
+    }
+
+    static boolean isVerifyParam(String name) {
+        return name.equals("maxPixelValueError")
+                || name.equals("avgPixelValueBlockSize")
+                || name.equals("verifyFrameInterval")
+                || name.equals("verifyFrameSampleRate");
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    boolean isAsync() {
+        return executor != null;
+    }
+
+    boolean isSelected(int index) {
+        boolean selected = index == 0
+                || index % frameInterval == 0
+                    && (frameSampleRate >= 1
+                        || ThreadLocalRandom.current().nextDouble() < frameSampleRate);
+        if (!selected)
+            incrementSkippedFrames();
+        return selected;
+    }
+
+    /**
+     * Verifies the compressed frame read from {@code iis} against the
+     * original pixel data in {@code bi} by the calling thread.
+     */
+    void verify(ImageInputStream iis, BufferedImage bi, int index)
+            throws IOException {
+        verifier.setInput(iis);
+        verifyParam.setDestination(bi2);
+        long start = System.currentTimeMillis();
+        bi2 = verifier.read(0, verifyParam);
+        int maxDiff = maxDiff(bi.getRaster(), bi2.getRaster());
+        long end = System.currentTimeMillis();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Verified compressed frame #{} in {} ms - max pixel value error: {}",
+                    new Object[] { index + 1, end - start, maxDiff });
+        if (maxDiff > maxPixelValueError)
+            throw new CompressionVerificationException(maxDiff);
+    }
+
+    /**
+     * Submits the verification of the compressed frame {@code data} against
+     * the original pixel data in {@code bi} to the executor, after waiting
+     * for the completion of the verification of the previous frame.
+     *
+     * @return image with the same layout as {@code bi}, which is not
+     *         accessed by the pending verification and may be used to
+     *         hold the pixel data of the next frame
+     */
+    BufferedImage verifyAsync(final byte[] data, final BufferedImage bi,
+            final int index) throws IOException {
+        BufferedImage spare = awaitPending();
+        if (spare == null || !isCompatible(spare, bi))
+            spare = new BufferedImage(bi.getColorModel(),
+                    bi.getRaster().createCompatibleWritableRaster(),
+                    bi.isAlphaPremultiplied(), null);
+        pending = new FutureTask<BufferedImage>(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    verify(new MemoryCacheImageInputStream(
+                            new ByteArrayInputStream(data)), bi, index);
+                } catch (IOException e) {
+                    throw new VerificationFailure(e);
+                }
+            }
+        }, bi);
+        executor.execute(pending);
+        return spare;
+    }
+
+    private static boolean isCompatible(BufferedImage bi1, BufferedImage bi2) {
+        return bi1.getColorModel().equals(bi2.getColorModel())
+                && bi1.getSampleModel().equals(bi2.getSampleModel());
+    }
+
+    /**
+     * Waits for the completion of a pending verification.
+     *
+     * @return the image, which was held by the completed verification,
+     *         or {@code null} if there was no pending verification
+     * @throws CompressionVerificationException
+     *         if the verification of the frame failed
+     */
+    BufferedImage awaitPending() throws IOException {
+        FutureTask<BufferedImage> task = pending;
+        if (task == null)
+            return null;
+
+        pending = null;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof VerificationFailure)
+                        throw (IOException) cause.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the completion of a pending verification, ignoring its
+     * outcome, and returns the verifier to the pool.
+     */
+    void dispose() {
+        try {
+            awaitPending();
+        } catch (Exception ignore) {
+        }
+        if (verifier != null)
+            ImageReaderFactory.releaseImageReader(param, verifier);
+        verifier = null;
+        bi2 = null;
+    }
+
+    synchronized int getVerifiedFrames() {
+        return verifiedFrames;
+    }
+
+    synchronized int getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Returns the maximal pixel value error - or maximal error of the
+     * average pixel value of blocks - of all verified frames.
+     */
+    synchronized int getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Returns the average absolute pixel value error - or average error of
+     * the average pixel value of blocks - of all verified frames.
+     */
+    synchronized double getAverageError() {
+        return numErrors > 0 ? (double) sumError / numErrors : 0;
+    }
+
+    private synchronized void incrementSkippedFrames() {
+        skippedFrames++;
+    }
+
+    private synchronized void record(int maxDiff, long sumDiff, long numDiffs) {
+        verifiedFrames++;
+        if (maxError < maxDiff)
+            maxError = maxDiff;
+        sumError += sumDiff;
+        numErrors += numDiffs;
+    }
+
+    int maxDiff(Raster raster, Raster raster2) {
+        ComponentSampleModel csm =
+                (ComponentSampleModel) raster.getSampleModel();
+        ComponentSampleModel csm2 =
+                (ComponentSampleModel) raster2.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        DataBuffer db2 = raster2.getDataBuffer();
+        int w = csm.getWidth();
+        int h = csm.getHeight();
+        int blockSize = avgPixelValueBlockSize;
+        int blocksPerRow = w / blockSize;
+        int blockRows = h / blockSize;
+        if (diffs == null || diffs.length < w)
+            diffs = new int[w];
+        if (blockSize > 1 && (blockDiffs == null || blockDiffs.length < blocksPerRow))
+            blockDiffs = new int[blocksPerRow];
+        int[] diffs = this.diffs;
+        int[] blockDiffs = this.blockDiffs;
+        int blockArea = blockSize * blockSize;
+        int diff, maxDiff = 0;
+        long sumDiff = 0;
+        for (int b = 0; b < csm.getNumBands(); b++) {
+            if (blockSize == 1) {
+                for (int y = 0; y < h; y++) {
+                    rowDiffs(csm, db, csm2, db2, b, y, w, diffs);
+                    for (int x = 0; x < w; x++) {
+                        diff = Math.abs(diffs[x]);
+                        sumDiff += diff;
+                        if (maxDiff < diff)
+                            maxDiff = diff;
+                    }
+                }
+            } else {
+                for (int by = 0, y = 0; by < blockRows; by++) {
+                    Arrays.fill(blockDiffs, 0, blocksPerRow, 0);
+                    for (int j = 0; j < blockSize; j++, y++) {
+                        rowDiffs(csm, db, csm2, db2, b, y, w, diffs);
+                        for (int bx = 0, x = 0; bx < blocksPerRow; bx++)
+                            for (int i = 0; i < blockSize; i++)
+                                blockDiffs[bx] += diffs[x++];
+                    }
+                    for (int bx = 0; bx < blocksPerRow; bx++) {
+                        diff = Math.abs(blockDiffs[bx]) / blockArea;
+                        sumDiff += diff;
+                        if (maxDiff < diff)
+                            maxDiff = diff;
+                    }
+                }
+            }
+        }
+        int bands = csm.getNumBands();
+        record(maxDiff, sumDiff, blockSize == 1
+                ? (long) w * h * bands
+                : (long) blocksPerRow * blockRows * bands);
+        return maxDiff;
+    }
+
+    /**
+     * Stores the differences of the original and decompressed sample values
+     * of band {@code b} in row {@code y} in {@code diffs}.
+     */
+    private static void rowDiffs(ComponentSampleModel csm, DataBuffer db,
+            ComponentSampleModel csm2, DataBuffer db2, int b, int y, int w,
+            int[] diffs) {
+        int bank = csm.getBankIndices()[b];
+        int bank2 = csm2.getBankIndices()[b];
+        int i = db.getOffsets()[bank] + y * csm.getScanlineStride()
+                + csm.getBandOffsets()[b];
+        int i2 = db2.getOffsets()[bank2] + y * csm2.getScanlineStride()
+                + csm2.getBandOffsets()[b];
+        int pixelStride = csm.getPixelStride();
+        int pixelStride2 = csm2.getPixelStride();
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE: {
+            byte[] data = ((DataBufferByte) db).getData(bank);
+            byte[] data2 = ((DataBufferByte) db2).getData(bank2);
+            for (int x = 0; x < w; x++, i += pixelStride, i2 += pixelStride2)
+                diffs[x] = (data[i] & 0xff) - (data2[i2] & 0xff);
+            break;
+        }
+        case DataBuffer.TYPE_USHORT: {
+            short[] data = ((DataBufferUShort) db).getData(bank);
+            short[] data2 = shorts(db2, bank2);
+            for (int x = 0; x < w; x++, i += pixelStride, i2 += pixelStride2)
+                diffs[x] = (data[i] & 0xffff) - (data2[i2] & 0xffff);
+            break;
+        }
+        case DataBuffer.TYPE_SHORT: {
+            short[] data = ((DataBufferShort) db).getData(bank);
+            short[] data2 = shorts(db2, bank2);
+            for (int x = 0; x < w; x++, i += pixelStride, i2 += pixelStride2)
+                diffs[x] = data[i] - data2[i2];
+            break;
+        }
+        default:
+            throw new UnsupportedOperationException(
+                    "Unsupported Datatype: " + db.getDataType());
+        }
+    }
+
+    private static short[] shorts(DataBuffer db, int bank) {
+        return db instanceof DataBufferShort
+                ? ((DataBufferShort) db).getData(bank)
+                : ((DataBufferUShort) db).getData(bank);
+    }
+
+    private static class VerificationFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        VerificationFailure(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -38,22 +38,19 @@
 package org.dcm4che3.imageio.codec;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
-import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
+import java.util.concurrent.Executor;
 
 import javax.imageio.IIOImage;
-import javax.imageio.ImageReadParam;
-import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.FileImageInputStream;
@@ -72,6 +69,7 @@ import org.dcm4che3.imageio.codec.jpeg.PatchJPEGLSImageOutputStream;
 import org.dcm4che3.io.DicomEncodingOptions;
 import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.PixelDataUtils;
 import org.dcm4che3.util.Property;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,18 +84,15 @@ public class Compressor extends Decompressor implements Closeable {
 
     private BulkData pixeldata;
     private VR.Holder pixeldataVR = new VR.Holder();
+    private ImageWriterFactory.ImageWriterParam compressorParam;
     private ImageWriter compressor;
-    private ImageReader verifier;
+    private CompressionVerifier verifier;
+    private Executor verificationExecutor;
     private PatchJPEGLS patchJPEGLS;
     private ImageWriteParam compressParam;
     private ImageInputStream iis;
     private IOException ex;
     private int[] embeddedOverlays;
-    private int maxPixelValueError = -1;
-    private int avgPixelValueBlockSize = 1;
-    private BufferedImage bi2;
-
-    private ImageReadParam verifyParam;
 
     public Compressor(Attributes dataset, String from) {
         super(dataset, from);
@@ -134,19 +129,16 @@ public class Compressor extends Decompressor implements Closeable {
             throw new UnsupportedOperationException(
                     "Unsupported Transfer Syntax: " + tsuid);
 
-        this.compressor = ImageWriterFactory.getImageWriter(param);
+        this.compressorParam = param;
+        this.compressor = ImageWriterFactory.borrowImageWriter(param);
         LOG.debug("Compressor: {}", compressor.getClass().getName());
         this.patchJPEGLS = param.patchJPEGLS;
 
         this.compressParam = compressor.getDefaultWriteParam();
         int count = 0;
-        for (Property property : cat(param.getImageWriteParams(), params)) {
-            String name = property.getName();
-            if (name.equals("maxPixelValueError"))
-                this.maxPixelValueError = ((Number) property.getValue()).intValue();
-            else if (name.equals("avgPixelValueBlockSize"))
-                this.avgPixelValueBlockSize = ((Number) property.getValue()).intValue();
-            else {
+        Property[] allParams = cat(param.getImageWriteParams(), params);
+        for (Property property : allParams) {
+            if (!CompressionVerifier.isVerifyParam(property.getName())) {
                 if (count++ == 0)
                     compressParam.setCompressionMode(
                             ImageWriteParam.MODE_EXPLICIT);
@@ -154,20 +146,12 @@ public class Compressor extends Decompressor implements Closeable {
             }
         }
 
-        if (maxPixelValueError >= 0) {
-            ImageReaderFactory.ImageReaderParam readerParam =
-                    ImageReaderFactory.getImageReaderParam(tsuid);
-            if (readerParam == null)
-                throw new UnsupportedOperationException(
-                        "Unsupported Transfer Syntax: " + tsuid);
-
-            this.verifier = ImageReaderFactory.getImageReader(readerParam);
-            this.verifyParam = verifier.getDefaultReadParam();
-            LOG.debug("Verifier: {}", verifier.getClass().getName());
-        }
+        this.verifier = CompressionVerifier.create(tsuid, allParams);
+        if (verifier != null)
+            verifier.setExecutor(verificationExecutor);
 
         TransferSyntaxType tstype = TransferSyntaxType.forUID(tsuid);
-        if (decompressor == null || super.tstype == TransferSyntaxType.RLE)
+        if (pixeldataFragments == null || super.tstype == TransferSyntaxType.RLE)
             bi = createBufferedImage(
                     Math.min(bitsStored, tstype.getMaxBitsStored()),
                     super.tstype == TransferSyntaxType.RLE || banded,
@@ -183,7 +167,7 @@ public class Compressor extends Decompressor implements Closeable {
         }
         if (samples > 1) {
             dataset.setString(Tag.PhotometricInterpretation, VR.CS, 
-                    (decompressor != null ? pmi.decompress() : pmi)
+                    (pixeldataFragments != null ? pmi.decompress() : pmi)
                             .compress(tsuid).toString());
             dataset.setInt(Tag.PlanarConfiguration, VR.US, 
                     tstype.getPlanarConfiguration());
@@ -195,6 +179,41 @@ public class Compressor extends Decompressor implements Closeable {
         return true;
     }
 
+    public Executor getVerificationExecutor() {
+        return verificationExecutor;
+    }
+
+    /**
+     * Sets the executor used to verify compressed frames concurrently to
+     * the compression of the next frame. If no executor is set, frames
+     * are verified by the compressing thread. Must be set before
+     * {@link #compress}.
+     */
+    public void setVerificationExecutor(Executor verificationExecutor) {
+        this.verificationExecutor = verificationExecutor;
+    }
+
+    /**
+     * Returns the number of compressed frames, which were verified.
+     */
+    public int getVerifiedFrames() {
+        return verifier != null ? verifier.getVerifiedFrames() : 0;
+    }
+
+    /**
+     * Returns the maximal pixel value error of verified frames.
+     */
+    public int getMaxPixelValueError() {
+        return verifier != null ? verifier.getMaxError() : 0;
+    }
+
+    /**
+     * Returns the average absolute pixel value error of verified frames.
+     */
+    public double getAvgPixelValueError() {
+        return verifier != null ? verifier.getAverageError() : 0;
+    }
+
     private Property[] cat(Property[] a, Property[] b) {
         if (a.length == 0)
             return b;
@@ -217,13 +236,12 @@ public class Compressor extends Decompressor implements Closeable {
         super.dispose();
 
         if (compressor != null)
-            compressor.dispose();
+            ImageWriterFactory.releaseImageWriter(compressorParam, compressor);
 
         if (verifier != null)
             verifier.dispose();
 
         compressor = null;
-        verifier = null;
     }
 
     private class CompressedFrame implements Value {
@@ -344,7 +362,7 @@ public class Compressor extends Decompressor implements Closeable {
         if (iis == null)
             iis = new FileImageInputStream(file);
 
-        if (decompressor != null)
+        if (pixeldataFragments != null)
             return decompressFrame(iis, frameIndex);
 
         iis.setByteOrder(pixeldata.bigEndian()
@@ -378,116 +396,23 @@ public class Compressor extends Decompressor implements Closeable {
         if (verifier == null)
             return;
 
-        cache.seek(0);
-        verifier.setInput(cache);
-        verifyParam.setDestination(bi2);
-        long start = System.currentTimeMillis();
-        bi2 = verifier.read(0, verifyParam);
-        int maxDiff = maxDiff(bi.getRaster(), bi2.getRaster());
-        long end = System.currentTimeMillis();
-        if (LOG.isDebugEnabled())
-            LOG.debug("Verified compressed frame #{} in {} ms - max pixel value error: {}",
-                    new Object[] { index + 1, end - start, maxDiff });
-        if (maxDiff > maxPixelValueError)
-            throw new CompressionVerificationException(maxDiff);
-
-    }
-
-    private int maxDiff(WritableRaster raster, WritableRaster raster2) {
-        ComponentSampleModel csm = 
-                (ComponentSampleModel) raster.getSampleModel();
-        ComponentSampleModel csm2 = 
-                (ComponentSampleModel) raster2.getSampleModel();
-        DataBuffer db = raster.getDataBuffer();
-        DataBuffer db2 = raster2.getDataBuffer();
-        int blockSize = avgPixelValueBlockSize;
-        if (blockSize > 1) {
-            int w = csm.getWidth();
-            int h = csm.getHeight();
-            int maxY = (h / blockSize - 1) * blockSize;
-            int maxX = (w / blockSize - 1) * blockSize;
-            int[] samples = new int[blockSize * blockSize];
-            int diff, maxDiff = 0;
-            for (int b = 0; b < csm.getNumBands(); b++)
-                for (int y = 0; y < maxY; y += blockSize) {
-                    for (int x = 0; x < maxX; x += blockSize) {
-                        if (maxDiff < (diff = Math.abs(
-                                sum(csm.getSamples(
-                                    x, y, blockSize, blockSize, b, samples, db))
-                              - sum(csm2.getSamples(
-                                    x, y, blockSize, blockSize, b, samples, db2)))))
-                            maxDiff = diff;
-                    }
-                }
-            return maxDiff / samples.length;
-        }
-        switch (db.getDataType()) {
-        case DataBuffer.TYPE_BYTE:
-            return maxDiff(csm, ((DataBufferByte) db).getBankData(),
-                  csm2, ((DataBufferByte) db2).getBankData());
-        case DataBuffer.TYPE_USHORT:
-            return maxDiff(csm, ((DataBufferUShort) db).getData(),
-                  csm2, ((DataBufferUShort) db2).getData());
-        case DataBuffer.TYPE_SHORT:
-            return maxDiff(csm, ((DataBufferShort) db).getData(),
-                  csm2, ((DataBufferShort) db2).getData());
-        default:
-            throw new UnsupportedOperationException(
-                    "Unsupported Datatype: " + db.getDataType());
-        }
-    }
-
-    private int sum(int[] samples) {
-        int sum = 0;
-        for (int sample : samples)
-            sum += sample;
-        return sum;
-    }
-
-    private int maxDiff(ComponentSampleModel csm, short[] data,
-                        ComponentSampleModel csm2, short[] data2) {
-        int w = csm.getWidth() * csm.getPixelStride();
-        int h = csm.getHeight();
-        int stride = csm.getScanlineStride();
-        int stride2 = csm2.getScanlineStride();
-        int diff, maxDiff = 0;
-        for (int y = 0; y < h; y++) {
-            for (int j = w, i = y * stride, i2 = y * stride2; j-- > 0; i++, i2++) {
-                if (maxDiff < (diff = Math.abs(data[i] - data2[i2])))
-                    maxDiff = diff;
+        if (verifier.isSelected(index)) {
+            cache.seek(0);
+            if (verifier.isAsync()) {
+                byte[] data = new byte[(int) cache.length()];
+                cache.readFully(data);
+                bi = verifier.verifyAsync(data, bi, index);
+            } else {
+                verifier.verify(cache, bi, index);
             }
         }
-        return maxDiff;
-    }
-
-    private int maxDiff(ComponentSampleModel csm, byte[][] banks,
-                        ComponentSampleModel csm2, byte[][] banks2) {
-        int w = csm.getWidth();
-        int h = csm.getHeight();
-        int bands = csm.getNumBands();
-        int stride = csm.getScanlineStride();
-        int pixelStride = csm.getPixelStride();
-        int[] bankIndices = csm.getBankIndices();
-        int[] bandOffsets = csm.getBandOffsets();
-        int stride2 = csm2.getScanlineStride();
-        int pixelStride2 = csm2.getPixelStride();
-        int[] bankIndices2 = csm2.getBankIndices();
-        int[] bandOffsets2 = csm2.getBandOffsets();
-        int diff, maxDiff = 0;
-        for (int b = 0; b < bands; b++) {
-            byte[] bank = banks[bankIndices[b]];
-            byte[] bank2 = banks2[bankIndices2[b]];
-            int off = bandOffsets[b];
-            int off2 = bandOffsets2[b];
-            for (int y = 0; y < h; y++) {
-                for (int x = w, i = y * stride + off, i2 = y * stride2 + off2;
-                        x-- > 0; i += pixelStride, i2 += pixelStride2) {
-                    if (maxDiff < (diff = Math.abs(bank[i] - bank2[i2])))
-                        maxDiff = diff;
-                }
-            }
+        if (index == frames - 1) {
+            verifier.awaitPending();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Verified {} of {} compressed frames - max pixel value error: {}, average: {}",
+                        new Object[] { verifier.getVerifiedFrames(), frames,
+                        verifier.getMaxError(), verifier.getAverageError() });
         }
-        return maxDiff;
     }
 
     private void nullifyUnusedBits(int bitsStored, BufferedImage bi) {
@@ -503,9 +428,7 @@ public class Compressor extends Decompressor implements Closeable {
     }
 
     private void nullifyUnusedBits(int bitsStored, short[] data) {
-        int mask = (1<<bitsStored)-1;
-        for (int i = 0; i < data.length; i++)
-            data[i] &= mask;
+        PixelDataUtils.maskShorts(data, 0, data.length, bitsStored);
     }
 
     private void extractEmbeddedOverlays(int frameIndex, BufferedImage bi) {
@@ -103,6 +103,7 @@ public class Decompressor {
     protected int frameLength;
     protected int length;
     protected BufferedImage bi;
+    protected ImageReaderFactory.ImageReaderParam decompressorParam;
     protected ImageReader decompressor;
     protected ImageReadParam readParam;
     protected PatchJPEGLS patchJpegLS;
@@ -153,7 +154,8 @@ public class Decompressor {
                 throw new UnsupportedOperationException(
                         "Unsupported Transfer Syntax: " + tsuid);
 
-            this.decompressor = ImageReaderFactory.getImageReader(param);
+            this.decompressorParam = param;
+            this.decompressor = ImageReaderFactory.borrowImageReader(param);
             LOG.debug("Decompressor: {}", decompressor.getClass().getName());
             this.readParam = decompressor.getDefaultReadParam();
             this.patchJpegLS = param.patchJPEGLS;
@@ -163,14 +165,18 @@ public class Decompressor {
     }
 
     public void dispose() {
+        releaseDecompressor();
+    }
+
+    private void releaseDecompressor() {
         if (decompressor != null)
-            decompressor.dispose();
+            ImageReaderFactory.releaseImageReader(decompressorParam, decompressor);
 
         decompressor = null;
     }
 
     public boolean decompress() {
-        if (decompressor == null)
+        if (pixeldataFragments == null)
             return false;
  
         if (tstype == TransferSyntaxType.RLE)
@@ -264,7 +270,7 @@ public class Decompressor {
                 out.write(0);
         } finally {
             try { iis.close(); } catch (IOException ignore) {}
-            decompressor.dispose();
+            releaseDecompressor();
         }
     }
 
@@ -281,6 +287,8 @@ public class Decompressor {
     @SuppressWarnings("resource")
     protected BufferedImage decompressFrame(ImageInputStream iis, int index)
             throws IOException {
+        if (decompressor == null)
+            decompressor = ImageReaderFactory.borrowImageReader(decompressorParam);
         SegmentedInputImageStream siis =
                 new SegmentedInputImageStream(iis, pixeldataFragments, index);
         decompressor.setInput(patchJpegLS != null
@@ -212,6 +212,41 @@ public class ImageReaderFactory implements Serializable {
         return getDefault().contains(tsuid);
     }
 
+    private static final CodecPool<ImageReaderParam, ImageReader> pool =
+            new CodecPool<ImageReaderParam, ImageReader>() {
+        @Override
+        protected ImageReader create(ImageReaderParam param) {
+            return getImageReader(param);
+        }
+
+        @Override
+        protected void reset(ImageReader reader) {
+            reader.reset();
+        }
+
+        @Override
+        protected void dispose(ImageReader reader) {
+            reader.dispose();
+        }
+    };
+
+    public static CodecPool<ImageReaderParam, ImageReader> getImageReaderPool() {
+        return pool;
+    }
+
+    /**
+     * Returns an idle reader for the specified configuration from the pool,
+     * or a new one if there is none. The reader shall be returned by
+     * {@link #releaseImageReader} - instead of disposing it - after use.
+     */
+    public static ImageReader borrowImageReader(ImageReaderParam param) {
+        return pool.borrow(param);
+    }
+
+    public static void releaseImageReader(ImageReaderParam param, ImageReader reader) {
+        pool.release(param, reader);
+    }
+
     public static ImageReader getImageReader(ImageReaderParam param) {
         return Boolean.getBoolean("org.dcm4che3.imageio.codec.useServiceLoader")
                 ? getImageReaderFromServiceLoader(param)
@@ -231,6 +231,41 @@ public class ImageWriterFactory implements Serializable {
         return getDefault().get(tsuid);
     }
 
+    private static final CodecPool<ImageWriterParam, ImageWriter> pool =
+            new CodecPool<ImageWriterParam, ImageWriter>() {
+        @Override
+        protected ImageWriter create(ImageWriterParam param) {
+            return getImageWriter(param);
+        }
+
+        @Override
+        protected void reset(ImageWriter writer) {
+            writer.reset();
+        }
+
+        @Override
+        protected void dispose(ImageWriter writer) {
+            writer.dispose();
+        }
+    };
+
+    public static CodecPool<ImageWriterParam, ImageWriter> getImageWriterPool() {
+        return pool;
+    }
+
+    /**
+     * Returns an idle writer for the specified configuration from the pool,
+     * or a new one if there is none. The writer shall be returned by
+     * {@link #releaseImageWriter} - instead of disposing it - after use.
+     */
+    public static ImageWriter borrowImageWriter(ImageWriterParam param) {
+        return pool.borrow(param);
+    }
+
+    public static void releaseImageWriter(ImageWriterParam param, ImageWriter writer) {
+        pool.release(param, writer);
+    }
+
     public static ImageWriter getImageWriter(ImageWriterParam param) {
         return Boolean.getBoolean("org.dcm4che3.imageio.codec.useServiceLoader")
                 ? getImageWriterFromServiceLoader(param)
@@ -51,6 +51,7 @@ import org.dcm4che3.io.DicomInputHandler;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.PixelDataUtils;
 import org.dcm4che3.util.Property;
 import org.dcm4che3.util.SafeClose;
 import org.dcm4che3.util.StreamUtils;
@@ -64,6 +65,7 @@ import java.awt.color.ColorSpace;
 import java.awt.image.*;
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -99,10 +101,6 @@ public class Transcoder implements Closeable {
 
     private TransferSyntaxType destTransferSyntaxType;
 
-    private int maxPixelValueError = -1;
-
-    private int avgPixelValueBlockSize = 1;
-
     private DicomOutputStream dos;
 
     private Attributes postPixelData;
@@ -125,13 +123,12 @@ public class Transcoder implements Closeable {
 
     private ImageWriteParam compressParam;
 
-    private ImageReader verifier;
+    private CompressionVerifier verifier;
 
-    private ImageReadParam verifyParam;
+    private Executor verificationExecutor;
 
     private BufferedImage bi;
 
-    private BufferedImage bi2;
 
     private String pixelDataBulkDataURI;
 
@@ -255,7 +252,7 @@ public class Transcoder implements Closeable {
             throw new UnsupportedOperationException(
                     "Unsupported Transfer Syntax: " + srcTransferSyntax);
 
-        this.decompressor = ImageReaderFactory.getImageReader(decompressorParam);
+        this.decompressor = ImageReaderFactory.borrowImageReader(decompressorParam);
         this.decompressParam = decompressor.getDefaultReadParam();
     }
 
@@ -265,7 +262,7 @@ public class Transcoder implements Closeable {
             throw new UnsupportedOperationException(
                     "Unsupported Transfer Syntax: " + tsuid);
 
-        this.compressor = ImageWriterFactory.getImageWriter(compressorParam);
+        this.compressor = ImageWriterFactory.borrowImageWriter(compressorParam);
         LOG.debug("Compressor: {}", compressor.getClass().getName());
 
         this.compressParam = compressor.getDefaultWriteParam();
@@ -273,40 +270,68 @@ public class Transcoder implements Closeable {
 
     public void setCompressParams(Property[] imageWriteParams) {
         int count = 0;
-        for (Property property : cat(compressorParam.getImageWriteParams(), imageWriteParams)) {
-            String name = property.getName();
-            if (name.equals("maxPixelValueError"))
-                this.maxPixelValueError = ((Number) property.getValue()).intValue();
-            else if (name.equals("avgPixelValueBlockSize"))
-                this.avgPixelValueBlockSize = ((Number) property.getValue()).intValue();
-            else {
+        Property[] params = cat(compressorParam.getImageWriteParams(), imageWriteParams);
+        for (Property property : params) {
+            if (!CompressionVerifier.isVerifyParam(property.getName())) {
                 if (count++ == 0)
                     compressParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
                 property.setAt(compressParam);
             }
         }
-        if (maxPixelValueError >= 0) {
-            ImageReaderFactory.ImageReaderParam readerParam =
-                    ImageReaderFactory.getImageReaderParam(destTransferSyntax);
-            if (readerParam == null)
-                throw new UnsupportedOperationException(
-                        "Unsupported Transfer Syntax: " + destTransferSyntax);
-
-            this.verifier = ImageReaderFactory.getImageReader(readerParam);
-            this.verifyParam = verifier.getDefaultReadParam();
-            LOG.debug("Verifier: {}", verifier.getClass().getName());
-        }
+        if (verifier != null)
+            verifier.dispose();
+        this.verifier = CompressionVerifier.create(destTransferSyntax, params);
+        if (verifier != null)
+            verifier.setExecutor(verificationExecutor);
+    }
+
+    public Executor getVerificationExecutor() {
+        return verificationExecutor;
+    }
+
+    /**
+     * Sets the executor used to verify compressed frames concurrently to
+     * the compression of the next frame. If no executor is set, frames
+     * are verified by the transcoding thread.
+     */
+    public void setVerificationExecutor(Executor verificationExecutor) {
+        this.verificationExecutor = verificationExecutor;
+        if (verifier != null)
+            verifier.setExecutor(verificationExecutor);
+    }
+
+    /**
+     * Returns the number of compressed frames, which were verified.
+     */
+    public int getVerifiedFrames() {
+        return verifier != null ? verifier.getVerifiedFrames() : 0;
+    }
+
+    /**
+     * Returns the maximal pixel value error of verified frames.
+     */
+    public int getMaxPixelValueError() {
+        return verifier != null ? verifier.getMaxError() : 0;
+    }
+
+    /**
+     * Returns the average absolute pixel value error of verified frames.
+     */
+    public double getAvgPixelValueError() {
+        return verifier != null ? verifier.getAverageError() : 0;
     }
 
 
     @Override
     public void close() throws IOException {
         if (decompressor != null)
-            decompressor.dispose();
+            ImageReaderFactory.releaseImageReader(decompressorParam, decompressor);
         if (compressor != null)
-            compressor.dispose();
+            ImageWriterFactory.releaseImageWriter(compressorParam, compressor);
         if (verifier != null)
             verifier.dispose();
+        decompressor = null;
+        compressor = null;
         if (closeInputStream)
             SafeClose.close(dis);
         if (deleteBulkDataFiles)
@@ -438,6 +463,13 @@ public class Transcoder implements Closeable {
             nullifyUnusedBits();
             compressFrame(i);
         }
+        if (verifier != null) {
+            verifier.awaitPending();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Verified {} of {} compressed frames - max pixel value error: {}, average: {}",
+                        new Object[] { verifier.getVerifiedFrames(), imageDescriptor.getFrames(),
+                        verifier.getMaxError(), verifier.getAverageError() });
+        }
         dis.skipFully(padding);
         dos.writeHeader(Tag.SequenceDelimitationItem, null, 0);
     }
@@ -495,9 +527,7 @@ public class Transcoder implements Closeable {
     }
 
     private void nullifyUnusedBits(short[] data) {
-        int mask = (1<<imageDescriptor.getBitsStored())-1;
-        for (int i = 0; i < data.length; i++)
-            data[i] &= mask;
+        PixelDataUtils.maskShorts(data, 0, data.length, imageDescriptor.getBitsStored());
     }
 
     private BufferedImage decompressFrame(int frameIndex) throws IOException {
@@ -576,31 +606,12 @@ public class Transcoder implements Closeable {
         while (len > 0) {
             int nelts = Math.min(len, b.length/2);
             dis.readFully(b, 0, nelts * 2);
-            toShorts(b, s, off, nelts, dis.bigEndian());
+            PixelDataUtils.bytesToShorts(b, 0, s, off, nelts, dis.bigEndian());
             off += nelts;
             len -= nelts;
         }
     }
 
-    private void toShorts(byte[] b, short[] s, int off, int len, boolean bigEndian) {
-        int boff = 0;
-        if (bigEndian) {
-            for (int j = 0; j < len; j++) {
-                int b0 = b[boff];
-                int b1 = b[boff + 1] & 0xff;
-                s[off + j] = (short)((b0 << 8) | b1);
-                boff += 2;
-            }
-        } else {
-            for (int j = 0; j < len; j++) {
-                int b0 = b[boff + 1];
-                int b1 = b[boff] & 0xff;
-                s[off + j] = (short)((b0 << 8) | b1);
-                boff += 2;
-            }
-        }
-    }
-
     private byte[] buffer() {
         if (buffer == null)
             buffer = new byte[BUFFER_SIZE];
@@ -656,11 +667,7 @@ public class Transcoder implements Closeable {
         int stride = ((ComponentSampleModel) sm).getScanlineStride();
         byte[] b = new byte[w * 2];
         for (int y = 0; y < h; ++y) {
-            for (int i = 0, j = y * stride; i < b.length;) {
-                short s = data[j++];
-                b[i++] = (byte) s;
-                b[i++] = (byte) (s >> 8);
-            }
+            PixelDataUtils.shortsToBytes(data, y * stride, b, 0, w, false);
             dos.write(b);
         }
     }
@@ -751,121 +758,20 @@ public class Transcoder implements Closeable {
 
     private void verify(ImageOutputStream cache, int index)
             throws IOException {
-        if (verifier == null)
+        if (verifier == null || !verifier.isSelected(index))
             return;
 
         long prevStreamPosition = cache.getStreamPosition();
         int prevBitOffset = cache.getBitOffset();
         cache.seek(0);
-        verifier.setInput(cache);
-        verifyParam.setDestination(bi2);
-        long start = System.currentTimeMillis();
-        bi2 = verifier.read(0, verifyParam);
-        int maxDiff = maxDiff(bi.getRaster(), bi2.getRaster());
-        long end = System.currentTimeMillis();
-        if (LOG.isDebugEnabled())
-            LOG.debug("Verified compressed frame #{} in {} ms - max pixel value error: {}",
-                    new Object[] { index + 1, end - start, maxDiff });
-        if (maxDiff > maxPixelValueError)
-            throw new CompressionVerificationException(maxDiff);
+        if (verifier.isAsync()) {
+            byte[] data = new byte[(int) prevStreamPosition];
+            cache.readFully(data);
+            bi = verifier.verifyAsync(data, bi, index);
+        } else {
+            verifier.verify(cache, bi, index);
+        }
         cache.seek(prevStreamPosition);
         cache.setBitOffset(prevBitOffset);
     }
-
-    private int maxDiff(WritableRaster raster, WritableRaster raster2) {
-        ComponentSampleModel csm =
-                (ComponentSampleModel) raster.getSampleModel();
-        ComponentSampleModel csm2 =
-                (ComponentSampleModel) raster2.getSampleModel();
-        DataBuffer db = raster.getDataBuffer();
-        DataBuffer db2 = raster2.getDataBuffer();
-        int blockSize = avgPixelValueBlockSize;
-        if (blockSize > 1) {
-            int w = csm.getWidth();
-            int h = csm.getHeight();
-            int maxY = (h / blockSize - 1) * blockSize;
-            int maxX = (w / blockSize - 1) * blockSize;
-            int[] samples = new int[blockSize * blockSize];
-            int diff, maxDiff = 0;
-            for (int b = 0; b < csm.getNumBands(); b++)
-                for (int y = 0; y < maxY; y += blockSize) {
-                    for (int x = 0; x < maxX; x += blockSize) {
-                        if (maxDiff < (diff = Math.abs(
-                                sum(csm.getSamples(
-                                        x, y, blockSize, blockSize, b, samples, db))
-                                        - sum(csm2.getSamples(
-                                        x, y, blockSize, blockSize, b, samples, db2)))))
-                            maxDiff = diff;
-                    }
-                }
-            return maxDiff / samples.length;
-        }
-        switch (db.getDataType()) {
-            case DataBuffer.TYPE_BYTE:
-                return maxDiff(csm, ((DataBufferByte) db).getBankData(),
-                        csm2, ((DataBufferByte) db2).getBankData());
-            case DataBuffer.TYPE_USHORT:
-                return maxDiff(csm, ((DataBufferUShort) db).getData(),
-                        csm2, ((DataBufferUShort) db2).getData());
-            case DataBuffer.TYPE_SHORT:
-                return maxDiff(csm, ((DataBufferShort) db).getData(),
-                        csm2, ((DataBufferShort) db2).getData());
-            default:
-                throw new UnsupportedOperationException(
-                        "Unsupported Datatype: " + db.getDataType());
-        }
-    }
-
-    private int sum(int[] samples) {
-        int sum = 0;
-        for (int sample : samples)
-            sum += sample;
-        return sum;
-    }
-
-    private int maxDiff(ComponentSampleModel csm, short[] data,
-                        ComponentSampleModel csm2, short[] data2) {
-        int w = csm.getWidth() * csm.getPixelStride();
-        int h = csm.getHeight();
-        int stride = csm.getScanlineStride();
-        int stride2 = csm2.getScanlineStride();
-        int diff, maxDiff = 0;
-        for (int y = 0; y < h; y++) {
-            for (int j = w, i = y * stride, i2 = y * stride2; j-- > 0; i++, i2++) {
-                if (maxDiff < (diff = Math.abs(data[i] - data2[i2])))
-                    maxDiff = diff;
-            }
-        }
-        return maxDiff;
-    }
-
-    private int maxDiff(ComponentSampleModel csm, byte[][] banks,
-                        ComponentSampleModel csm2, byte[][] banks2) {
-        int w = csm.getWidth();
-        int h = csm.getHeight();
-        int bands = csm.getNumBands();
-        int stride = csm.getScanlineStride();
-        int pixelStride = csm.getPixelStride();
-        int[] bankIndices = csm.getBankIndices();
-        int[] bandOffsets = csm.getBandOffsets();
-        int stride2 = csm2.getScanlineStride();
-        int pixelStride2 = csm2.getPixelStride();
-        int[] bankIndices2 = csm2.getBankIndices();
-        int[] bandOffsets2 = csm2.getBandOffsets();
-        int diff, maxDiff = 0;
-        for (int b = 0; b < bands; b++) {
-            byte[] bank = banks[bankIndices[b]];
-            byte[] bank2 = banks2[bankIndices2[b]];
-            int off = bandOffsets[b];
-            int off2 = bandOffsets2[b];
-            for (int y = 0; y < h; y++) {
-                for (int x = w, i = y * stride + off, i2 = y * stride2 + off2;
-                     x-- > 0; i += pixelStride, i2 += pixelStride2) {
-                    if (maxDiff < (diff = Math.abs(bank[i] - bank2[i2])))
-                        maxDiff = diff;
-                }
-            }
-        }
-        return maxDiff;
-    }
 }
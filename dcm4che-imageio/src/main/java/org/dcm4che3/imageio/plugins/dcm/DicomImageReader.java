@@ -122,6 +122,8 @@ public class DicomImageReader extends ImageReader {
 
     private int height;
 
+    private ImageReaderParam decompressorParam;
+
     private ImageReader decompressor;
 
     private boolean rle;
@@ -633,7 +635,8 @@ public class DicomImageReader extends ImageReader {
                 if (param == null)
                     throw new UnsupportedOperationException("Unsupported Transfer Syntax: " + tsuid);
                 this.rle = tsuid.equals(UID.RLELossless);
-                this.decompressor = ImageReaderFactory.getImageReader(param);
+                this.decompressorParam = param;
+                this.decompressor = ImageReaderFactory.borrowImageReader(param);
                 this.patchJpegLS = param.patchJPEGLS;
             }
         }
@@ -666,9 +669,10 @@ public class DicomImageReader extends ImageReader {
         width = 0;
         height = 0;
         if (decompressor != null) {
-            decompressor.dispose();
+            ImageReaderFactory.releaseImageReader(decompressorParam, decompressor);
             decompressor = null;
         }
+        decompressorParam = null;
         patchJpegLS = null;
         pmi = null;
     }
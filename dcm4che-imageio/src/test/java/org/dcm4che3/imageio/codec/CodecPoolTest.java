@@ -0,0 +1,144 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CodecPoolTest {
+
+    private static class Codec {
+        final String key;
+        boolean reset;
+        boolean disposed;
+
+        Codec(String key) {
+            this.key = key;
+        }
+    }
+
+    private final List<Codec> disposed = new ArrayList<Codec>();
+
+    private final CodecPool<String, Codec> pool = new CodecPool<String, Codec>() {
+        @Override
+        protected Codec create(String key) {
+            return new Codec(key);
+        }
+
+        @Override
+        protected void reset(Codec codec) {
+            codec.reset = true;
+        }
+
+        @Override
+        protected void dispose(Codec codec) {
+            codec.disposed = true;
+            disposed.add(codec);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        pool.setMaxIdlePerKey(2);
+    }
+
+    @Test
+    public void testReuse() {
+        Codec codec = pool.borrow("a");
+        pool.release("a", codec);
+        assertTrue(codec.reset);
+        assertSame(codec, pool.borrow("a"));
+        assertNotSame(codec, pool.borrow("a"));
+        Codec other = pool.borrow("b");
+        assertEquals("b", other.key);
+        assertEquals(3, pool.getCreatedCount());
+        assertEquals(1, pool.getReusedCount());
+    }
+
+    @Test
+    public void testMaxIdlePerKey() {
+        Codec c1 = pool.borrow("a");
+        Codec c2 = pool.borrow("a");
+        Codec c3 = pool.borrow("a");
+        pool.release("a", c1);
+        pool.release("a", c2);
+        pool.release("a", c3);
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1, pool.getDisposedCount());
+        assertTrue(c1.disposed);
+        assertSame(c3, pool.borrow("a"));
+        assertSame(c2, pool.borrow("a"));
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+        pool.setMaxIdleTime(1);
+        Codec codec = pool.borrow("a");
+        pool.release("a", codec);
+        Thread.sleep(10);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(codec.disposed);
+        assertNotSame(codec, pool.borrow("a"));
+    }
+
+    @Test
+    public void testDisabled() {
+        pool.setMaxIdlePerKey(0);
+        Codec codec = pool.borrow("a");
+        pool.release("a", codec);
+        assertTrue(codec.disposed);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testClear() {
+        Codec c1 = pool.borrow("a");
+        Codec c2 = pool.borrow("b");
+        pool.release("a", c1);
+        pool.release("b", c2);
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(2, disposed.size());
+    }
+}
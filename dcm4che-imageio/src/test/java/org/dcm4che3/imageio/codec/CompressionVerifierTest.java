@@ -0,0 +1,262 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferShort;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CompressionVerifierTest {
+
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+
+    private final Random random = new Random(42);
+    private CompressionVerifier verifier;
+
+    @After
+    public void tearDown() {
+        if (verifier != null)
+            verifier.dispose();
+    }
+
+    @Test
+    public void testMaxDiffByteGray() {
+        assertMaxDiff(BufferedImage.TYPE_BYTE_GRAY, 255, 10);
+    }
+
+    @Test
+    public void testMaxDiffByteInterleaved() {
+        assertMaxDiff(BufferedImage.TYPE_3BYTE_BGR, 255, 10);
+    }
+
+    @Test
+    public void testMaxDiffUShort() {
+        assertMaxDiff(BufferedImage.TYPE_USHORT_GRAY, 4095, 100);
+    }
+
+    @Test
+    public void testMaxDiffShort() {
+        for (int blockSize : new int[] { 1, 2, 4, 8 }) {
+            WritableRaster raster = shortRaster();
+            WritableRaster raster2 = shortRaster();
+            fill(raster, raster2, 2048, 100, -2048);
+            assertMaxDiff(raster, raster2, blockSize);
+        }
+    }
+
+    @Test
+    public void testMaxDiffBandedToInterleaved() {
+        for (int blockSize : new int[] { 1, 3 }) {
+            WritableRaster raster = Raster.createBandedRaster(
+                    DataBuffer.TYPE_BYTE, WIDTH, HEIGHT, 3, null);
+            WritableRaster raster2 = Raster.createInterleavedRaster(
+                    DataBuffer.TYPE_BYTE, WIDTH, HEIGHT, 3, null);
+            fill(raster, raster2, 255, 10, 0);
+            assertMaxDiff(raster, raster2, blockSize);
+        }
+    }
+
+    @Test
+    public void testFrameInterval() {
+        verifier = createVerifier(1, 3, 1);
+        for (int i = 0; i < 10; i++)
+            assertEquals("frame #" + i, i % 3 == 0, verifier.isSelected(i));
+        assertEquals(6, verifier.getSkippedFrames());
+    }
+
+    @Test
+    public void testFrameSampleRate() {
+        verifier = createVerifier(1, 1, 0.5);
+        assertTrue(verifier.isSelected(0));
+        int selected = 0;
+        for (int i = 1; i <= 1000; i++)
+            if (verifier.isSelected(i))
+                selected++;
+        assertTrue("selected: " + selected, selected > 400 && selected < 600);
+        assertEquals(1000 - selected, verifier.getSkippedFrames());
+    }
+
+    @Test
+    public void testFrameIntervalAndSampleRate() {
+        verifier = createVerifier(1, 2, 0.5);
+        int selected = 0;
+        for (int i = 1; i <= 2000; i++)
+            if (verifier.isSelected(i)) {
+                assertEquals(0, i % 2);
+                selected++;
+            }
+        assertTrue("selected: " + selected, selected > 400 && selected < 600);
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        BufferedImage bi = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = bi.getRaster();
+        for (int y = 0; y < HEIGHT; y++)
+            for (int x = 0; x < WIDTH; x++)
+                raster.setSample(x, y, 0, (x * 7 + y * 3) & 0xff);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(bi, "jpeg", out));
+        byte[] jpeg = out.toByteArray();
+        int expected = reference(raster,
+                ImageIO.read(new ByteArrayInputStream(jpeg)).getRaster(), 1)[0];
+        assertTrue(expected > 0);
+
+        verifier = createVerifier(expected, 1, 1, 1);
+        verifier.verify(new MemoryCacheImageInputStream(
+                new ByteArrayInputStream(jpeg)), bi, 0);
+        assertEquals(1, verifier.getVerifiedFrames());
+        assertEquals(expected, verifier.getMaxError());
+
+        verifier.dispose();
+        verifier = createVerifier(expected - 1, 1, 1, 1);
+        try {
+            verifier.verify(new MemoryCacheImageInputStream(
+                    new ByteArrayInputStream(jpeg)), bi, 0);
+            fail("CompressionVerificationException expected");
+        } catch (CompressionVerificationException e) {
+            assertEquals(expected, e.getMaxError());
+        }
+    }
+
+    private static CompressionVerifier createVerifier(int blockSize,
+            int frameInterval, double frameSampleRate) {
+        return createVerifier(0, blockSize, frameInterval, frameSampleRate);
+    }
+
+    private static CompressionVerifier createVerifier(int maxPixelValueError,
+            int blockSize, int frameInterval, double frameSampleRate) {
+        return new CompressionVerifier(
+                new ImageReaderFactory.ImageReaderParam("jpeg", null, null),
+                maxPixelValueError, blockSize, frameInterval, frameSampleRate);
+    }
+
+    private void assertMaxDiff(int imageType, int maxValue, int maxError) {
+        for (int blockSize : new int[] { 1, 2, 4, 8 }) {
+            WritableRaster raster =
+                    new BufferedImage(WIDTH, HEIGHT, imageType).getRaster();
+            WritableRaster raster2 =
+                    new BufferedImage(WIDTH, HEIGHT, imageType).getRaster();
+            fill(raster, raster2, maxValue, maxError, 0);
+            assertMaxDiff(raster, raster2, blockSize);
+        }
+    }
+
+    private void assertMaxDiff(Raster raster, Raster raster2, int blockSize) {
+        CompressionVerifier verifier = createVerifier(blockSize, 1, 1);
+        try {
+            int[] expected = reference(raster, raster2, blockSize);
+            assertEquals("blockSize: " + blockSize, expected[0],
+                    verifier.maxDiff(raster, raster2));
+            assertEquals("blockSize: " + blockSize,
+                    (double) expected[1] / expected[2],
+                    verifier.getAverageError(), 1e-9);
+        } finally {
+            verifier.dispose();
+        }
+    }
+
+    private void fill(WritableRaster raster, WritableRaster raster2,
+            int maxValue, int maxError, int minValue) {
+        int range = maxValue - minValue + 1;
+        for (int b = 0; b < raster.getNumBands(); b++)
+            for (int y = 0; y < HEIGHT; y++)
+                for (int x = 0; x < WIDTH; x++) {
+                    int v = minValue + random.nextInt(range);
+                    int v2 = v + random.nextInt(2 * maxError + 1) - maxError;
+                    raster.setSample(x, y, b, v);
+                    raster2.setSample(x, y, b,
+                            Math.max(minValue, Math.min(maxValue, v2)));
+                }
+    }
+
+    private static WritableRaster shortRaster() {
+        return Raster.createWritableRaster(
+                new ComponentSampleModel(DataBuffer.TYPE_SHORT, WIDTH, HEIGHT,
+                        1, WIDTH, new int[] { 0 }),
+                new DataBufferShort(WIDTH * HEIGHT), new Point());
+    }
+
+    /**
+     * Calculates the maximal error, the sum of errors and the number of
+     * compared values by {@link Raster#getSamples}, as the verification
+     * did before it was switched to row by row differences.
+     */
+    private static int[] reference(Raster raster, Raster raster2,
+            int blockSize) {
+        int area = blockSize * blockSize;
+        int[] samples = new int[area];
+        int maxDiff = 0, sumDiff = 0, num = 0;
+        for (int b = 0; b < raster.getNumBands(); b++)
+            for (int y = 0; y + blockSize <= raster.getHeight(); y += blockSize)
+                for (int x = 0; x + blockSize <= raster.getWidth(); x += blockSize) {
+                    int diff = Math.abs(
+                            sum(raster.getSamples(x, y, blockSize, blockSize, b, samples))
+                          - sum(raster2.getSamples(x, y, blockSize, blockSize, b, samples)))
+                            / area;
+                    maxDiff = Math.max(maxDiff, diff);
+                    sumDiff += diff;
+                    num++;
+                }
+        return new int[] { maxDiff, sumDiff, num };
+    }
+
+    private static int sum(int[] samples) {
+        int sum = 0;
+        for (int sample : samples)
+            sum += sample;
+        return sum;
+    }
+}
@@ -41,14 +41,19 @@ package org.dcm4che3.json;
 import org.dcm4che3.data.*;
 import org.dcm4che3.data.PersonName.Group;
 import org.dcm4che3.util.Base64;
+import org.dcm4che3.util.StringPool;
 import org.dcm4che3.util.TagUtils;
 
+import javax.json.JsonException;
 import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParser.Event;
 import javax.json.stream.JsonParsingException;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 
@@ -64,12 +69,21 @@ public class JSONReader {
 
     }
 
+    private static final int BASE64_CHUNK_LENGTH = 8192;
+
     private final JsonParser parser;
     private boolean skipBulkDataURI;
+    private StringPool stringPool;
     private Attributes fmi;
     private Event event;
     private String s;
-    private final ByteArrayOutputStream bout = new ByteArrayOutputStream(64);
+    private final char[] base64 = new char[BASE64_CHUNK_LENGTH];
+    private int inlineBinaryThreshold = -1;
+    private String blkFilePrefix = "blk";
+    private String blkFileSuffix;
+    private File blkDirectory;
+    private ArrayList<File> blkFiles;
+    private byte[] blkBuf;
     private final EnumMap<Group, String> pnGroups = new EnumMap<>(PersonName.Group.class);
 
     public JSONReader(JsonParser parser) {
@@ -84,6 +98,76 @@ public class JSONReader {
         this.skipBulkDataURI = skipBulkDataURI;
     }
 
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Sets the pool used to share repeated string values between parsed
+     * data sets.
+     *
+     * @param stringPool pool of canonical string values or {@code null}
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    public int getInlineBinaryThreshold() {
+        return inlineBinaryThreshold;
+    }
+
+    /**
+     * Sets the maximal length of decoded inline binary values held in
+     * memory. Longer values are decoded into temporary files referenced by
+     * {@link BulkData}, which have to be deleted by the caller after use.
+     * <p>
+     * That only bounds the memory retained by the parsed data set: the
+     * {@code JsonParser} still returns each InlineBinary value as one
+     * Base64 {@code String}, so the peak memory during parsing grows with
+     * the largest value.
+     *
+     * @param inlineBinaryThreshold maximal length in bytes or -1 to keep
+     *                              all values in memory
+     * @see #getBulkDataFiles()
+     */
+    public void setInlineBinaryThreshold(int inlineBinaryThreshold) {
+        if (inlineBinaryThreshold < -1)
+            throw new IllegalArgumentException("inlineBinaryThreshold: "
+                    + inlineBinaryThreshold);
+        this.inlineBinaryThreshold = inlineBinaryThreshold;
+    }
+
+    public String getBulkDataFilePrefix() {
+        return blkFilePrefix;
+    }
+
+    public void setBulkDataFilePrefix(String blkFilePrefix) {
+        this.blkFilePrefix = blkFilePrefix;
+    }
+
+    public String getBulkDataFileSuffix() {
+        return blkFileSuffix;
+    }
+
+    public void setBulkDataFileSuffix(String blkFileSuffix) {
+        this.blkFileSuffix = blkFileSuffix;
+    }
+
+    public File getBulkDataDirectory() {
+        return blkDirectory;
+    }
+
+    public void setBulkDataDirectory(File blkDirectory) {
+        this.blkDirectory = blkDirectory;
+    }
+
+    public List<File> getBulkDataFiles() {
+        if (blkFiles != null)
+            return blkFiles;
+        else
+            return Collections.emptyList();
+    }
+
     public Attributes getFileMetaInformation() {
         return fmi;
     }
@@ -169,7 +253,11 @@ public class JSONReader {
                     el.values = readValues();
                     break;
                 case "InlineBinary":
-                    el.bytes = readInlineBinary();
+                    Object inlineBinary = readInlineBinary();
+                    if (inlineBinary instanceof BulkData)
+                        el.bulkData = (BulkData) inlineBinary;
+                    else
+                        el.bytes = (byte[]) inlineBinary;
                     break;
                 case "BulkDataURI":
                     el.bulkDataURI = valueString();
@@ -206,7 +294,7 @@ public class JSONReader {
             case UI:
             case UR:
             case UT:
-                attrs.setString(tag, el.vr, el.toStrings());
+                attrs.setString(tag, el.vr, el.toStrings(stringPool));
                 break;
             case DS:
             case FL:
@@ -231,6 +319,8 @@ public class JSONReader {
             case UN:
                 if (el.bytes != null)
                     attrs.setBytes(tag, el.vr, el.bytes);
+                else if (el.bulkData != null)
+                    attrs.setValue(tag, el.vr, el.bulkData);
                 else if (el.bulkDataURI != null) {
                     if (!skipBulkDataURI)
                         attrs.setValue(tag, el.vr, new BulkData(null, el.bulkDataURI, false));
@@ -327,20 +417,71 @@ public class JSONReader {
         return sb.toString();
     }
 
-    private byte[] readInlineBinary() {
-        char[] base64 = valueString().toCharArray();
-        bout.reset();
+    /**
+     * Decodes the next InlineBinary value into a byte array, or into a
+     * temporary file if it exceeds {@link #getInlineBinaryThreshold()}.
+     * The Base64 value is decoded in chunks, but
+     * {@link #valueString()} still holds the whole encoded value as one
+     * {@code String}, so memory is not bounded while it is decoded.
+     */
+    private Object readInlineBinary() {
+        String value = valueString();
+        int len = value.length();
+        int length = decodedLength(value);
+        if (inlineBinaryThreshold >= 0 && length > inlineBinaryThreshold)
+            return spillInlineBinary(value);
+
+        byte[] b = new byte[length];
+        int n = 0;
+        for (int off = 0; off < len; off += BASE64_CHUNK_LENGTH) {
+            int chunkLen = Math.min(len - off, BASE64_CHUNK_LENGTH);
+            value.getChars(off, off + chunkLen, base64, 0);
+            n += Base64.decode(base64, 0, chunkLen, b, n);
+        }
+        return b;
+    }
+
+    private static int decodedLength(String base64) {
+        int len = base64.length();
+        while (len > 0 && base64.charAt(len - 1) == '=')
+            len--;
+        int r = len & 3;
+        return len / 4 * 3 + (r == 0 ? 0 : r - 1);
+    }
+
+    /**
+     * Decodes the Base64 value chunk by chunk into a temporary file. Only
+     * the decoded bytes are kept out of memory; the encoded {@code value}
+     * is held until the method returns.
+     */
+    private BulkData spillInlineBinary(String value) {
+        if (blkBuf == null)
+            blkBuf = new byte[BASE64_CHUNK_LENGTH / 4 * 3 + 3];
+        int len = value.length();
+        long length = 0;
         try {
-            Base64.decode(base64, 0, base64.length, bout);
+            File blkFile = File.createTempFile(blkFilePrefix, blkFileSuffix, blkDirectory);
+            if (blkFiles == null)
+                blkFiles = new ArrayList<>();
+            blkFiles.add(blkFile);
+            try (OutputStream out = new FileOutputStream(blkFile)) {
+                for (int off = 0; off < len; off += BASE64_CHUNK_LENGTH) {
+                    int chunkLen = Math.min(len - off, BASE64_CHUNK_LENGTH);
+                    value.getChars(off, off + chunkLen, base64, 0);
+                    int n = Base64.decode(base64, 0, chunkLen, blkBuf, 0);
+                    out.write(blkBuf, 0, n);
+                    length += n;
+                }
+            }
+            return new BulkData(blkFile.toURI().toString(), 0, (int) length, false);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new JsonException("Failed to spill InlineBinary to file", e);
         }
-        return bout.toByteArray();
     }
 
     private Object readDataFragment() {
         next();
-        byte[] bytes = null;
+        Object bytes = null;
         String bulkDataURI = null;
         while (next() != Event.KEY_NAME) {
             switch (getString()) {
@@ -366,17 +507,21 @@ public class JSONReader {
         VR vr;
         List<Object> values;
         byte[] bytes;
+        BulkData bulkData;
         String bulkDataURI;
 
         boolean isEmpty() {
-            return (values == null || values.isEmpty()) && (bytes == null || bytes.length == 0) && bulkDataURI == null;
+            return (values == null || values.isEmpty()) && (bytes == null || bytes.length == 0)
+                    && bulkData == null && bulkDataURI == null;
         }
 
-        String[] toStrings() {
+        String[] toStrings(StringPool pool) {
             String[] ss = new String[values.size()];
             for (int i = 0; i < ss.length; i++) {
                 Object value = values.get(i);
-                ss[i] = value != null ? value.toString() : null;
+                ss[i] = value != null
+                        ? (pool != null ? pool.intern(value.toString()) : value.toString())
+                        : null;
             }
             return ss;
         }
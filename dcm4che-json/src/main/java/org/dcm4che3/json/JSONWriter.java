@@ -38,11 +38,18 @@
 
 package org.dcm4che3.json;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
@@ -57,6 +64,7 @@ import org.dcm4che3.data.VR;
 import org.dcm4che3.io.DicomInputHandler;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.util.Base64;
+import org.dcm4che3.util.IntHashMap;
 import org.dcm4che3.util.StringUtils;
 import org.dcm4che3.util.TagUtils;
 import org.slf4j.Logger;
@@ -70,8 +78,11 @@ public class JSONWriter implements DicomInputHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(JSONWriter.class);
 
+    private static final int PARALLEL_CHUNK_SIZE = 16;
+
     private final JsonGenerator gen;
     private final Deque<Boolean> hasItems = new ArrayDeque<Boolean>();
+    private final IntHashMap<String> tagStrings = new IntHashMap<String>();
     private String replaceBulkDataURI;
 
     public JSONWriter(JsonGenerator gen) {
@@ -110,7 +121,7 @@ public class JSONWriter implements DicomInputHandler {
         if (TagUtils.isGroupLength(tag))
             return;
 
-        gen.writeStartObject(TagUtils.toHexString(tag));
+        gen.writeStartObject(tagString(tag));
         gen.write("vr", vr.name());
         if (value instanceof Value)
             writeValue((Value) value, attrs.bigEndian());
@@ -120,6 +131,87 @@ public class JSONWriter implements DicomInputHandler {
         gen.writeEnd();
     }
 
+    private String tagString(int tag) {
+        String s = tagStrings.get(tag);
+        if (s == null)
+            tagStrings.put(tag, s = TagUtils.toHexString(tag));
+        return s;
+    }
+
+    /**
+     * Writes the specified data sets as JSON array to {@code out}, encoding
+     * them concurrently by tasks of {@code pool}. The data sets must not be
+     * modified until this method returns.
+     *
+     * @param datasets           data sets to encode
+     * @param factory            factory of the {@code JsonGenerator}s used
+     *                           for encoding each data set
+     * @param out                UTF-8 encoded output
+     * @param replaceBulkDataURI URI replacing URIs of bulk data or
+     *                           {@code null}
+     * @param pool               pool executing the encoding tasks
+     */
+    public static void writeDatasets(List<Attributes> datasets,
+            JsonGeneratorFactory factory, OutputStream out,
+            String replaceBulkDataURI, ForkJoinPool pool) throws IOException {
+        byte[][] encoded = new byte[datasets.size()][];
+        pool.invoke(new EncodeTask(datasets, factory, replaceBulkDataURI,
+                encoded, 0, encoded.length));
+        out.write('[');
+        for (int i = 0; i < encoded.length; i++) {
+            if (i > 0)
+                out.write(',');
+            out.write(encoded[i]);
+        }
+        out.write(']');
+    }
+
+    private static class EncodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Attributes> datasets;
+        private final JsonGeneratorFactory factory;
+        private final String replaceBulkDataURI;
+        private final byte[][] encoded;
+        private final int from;
+        private final int to;
+
+        EncodeTask(List<Attributes> datasets, JsonGeneratorFactory factory,
+                String replaceBulkDataURI, byte[][] encoded, int from, int to) {
+            this.datasets = datasets;
+            this.factory = factory;
+            this.replaceBulkDataURI = replaceBulkDataURI;
+            this.encoded = encoded;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new EncodeTask(datasets, factory, replaceBulkDataURI,
+                                encoded, from, mid),
+                        new EncodeTask(datasets, factory, replaceBulkDataURI,
+                                encoded, mid, to));
+                return;
+            }
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(4096);
+            for (int i = from; i < to; i++) {
+                bout.reset();
+                JsonGenerator gen = factory.createGenerator(bout,
+                        StandardCharsets.UTF_8);
+                JSONWriter writer = new JSONWriter(gen);
+                writer.setReplaceBulkDataURI(replaceBulkDataURI);
+                writer.write(datasets.get(i));
+                gen.close();
+                encoded[i] = bout.toByteArray();
+            }
+        }
+    }
+
     private void writeValue(Value value, boolean bigEndian) {
         if (value.isEmpty())
             return;
@@ -160,7 +252,7 @@ public class JSONWriter implements DicomInputHandler {
         } else if (dis.isExcludeBulkData()) {
             dis.readValue(dis, attrs);
         } else {
-            gen.writeStartObject(TagUtils.toHexString(tag));
+            gen.writeStartObject(tagString(tag));
             gen.write("vr", vr.name());
             if (vr == VR.SQ || len == -1) {
                 hasItems.addLast(false);
@@ -0,0 +1,108 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4che3.json;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.json.Json;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.util.Base64;
+import org.dcm4che3.util.StreamUtils;
+import org.junit.Test;
+
+public class JSONReaderTest {
+
+    private static final int TAG = 0x00091002;
+    private static final byte[] DATA = new byte[10000];
+    static {
+        for (int i = 0; i < DATA.length; i++)
+            DATA[i] = (byte) (i * 31);
+    }
+
+    @Test
+    public void testKeepInlineBinaryInMemory() {
+        JSONReader reader = newReader();
+        Attributes attrs = reader.readDataset(null);
+        assertArrayEquals(DATA, (byte[]) attrs.getValue(TAG));
+        assertTrue(reader.getBulkDataFiles().isEmpty());
+    }
+
+    @Test
+    public void testInlineBinaryBelowThreshold() {
+        JSONReader reader = newReader();
+        reader.setInlineBinaryThreshold(DATA.length);
+        Attributes attrs = reader.readDataset(null);
+        assertArrayEquals(DATA, (byte[]) attrs.getValue(TAG));
+        assertTrue(reader.getBulkDataFiles().isEmpty());
+    }
+
+    @Test
+    public void testSpillInlineBinary() throws Exception {
+        JSONReader reader = newReader();
+        reader.setInlineBinaryThreshold(DATA.length - 1);
+        Attributes attrs = reader.readDataset(null);
+        assertEquals(1, reader.getBulkDataFiles().size());
+        File file = reader.getBulkDataFiles().get(0);
+        try {
+            BulkData bulkData = (BulkData) attrs.getValue(TAG);
+            assertEquals(DATA.length, bulkData.length());
+            assertEquals(file, bulkData.getFile());
+            byte[] b = new byte[DATA.length];
+            try (InputStream in = bulkData.openStream()) {
+                StreamUtils.readFully(in, b, 0, b.length);
+                assertEquals(-1, in.read());
+            }
+            assertArrayEquals(DATA, b);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static JSONReader newReader() {
+        char[] base64 = new char[(DATA.length * 4 / 3 + 3) & ~3];
+        Base64.encode(DATA, 0, DATA.length, base64, 0);
+        String json = "{\"00091002\":{\"vr\":\"OB\",\"InlineBinary\":\""
+                + new String(base64) + "\"}}";
+        return new JSONReader(Json.createParser(new StringReader(json)));
+    }
+}
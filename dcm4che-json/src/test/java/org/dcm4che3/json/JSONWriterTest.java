@@ -38,12 +38,19 @@
 
 package org.dcm4che3.json;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.json.Json;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
@@ -114,4 +121,38 @@ public class JSONWriterTest {
         assertEquals(RESULT, writer.toString());
     }
 
+    @Test
+    public void testWriteDatasets() throws Exception {
+        List<Attributes> datasets = new ArrayList<Attributes>();
+        for (int i = 0; i < 50; i++) {
+            Attributes dataset = new Attributes();
+            dataset.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + i);
+            dataset.setString(Tag.PatientName, VR.PN, "Name^" + i);
+            dataset.setInt(Tag.InstanceNumber, VR.IS, i);
+            dataset.setBytes("PRIVATE", 0x00090002, VR.OB, BYTE01);
+            dataset.setValue(Tag.OverlayData, VR.OW,
+                    new BulkData(null, "file:/OverlayData" + i, false));
+            datasets.add(dataset);
+        }
+        JsonGeneratorFactory factory = Json.createGeneratorFactory(null);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        JsonGenerator gen = factory.createGenerator(expected,
+                StandardCharsets.UTF_8);
+        JSONWriter writer = new JSONWriter(gen);
+        writer.setReplaceBulkDataURI("file:/replaced");
+        gen.writeStartArray();
+        for (Attributes dataset : datasets)
+            writer.write(dataset);
+        gen.writeEnd();
+        gen.close();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            JSONWriter.writeDatasets(datasets, factory, actual,
+                    "file:/replaced", pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
 }
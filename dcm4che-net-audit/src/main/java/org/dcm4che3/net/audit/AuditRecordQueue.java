@@ -0,0 +1,167 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue between the receivers of Audit Records and the
+ * {@link AuditRecordHandler} of an {@link AuditRecordRepository}. Queued
+ * records are delivered in batches by one task executed by the device's
+ * executor while the queue is not empty.
+ */
+class AuditRecordQueue implements Runnable {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(AuditRecordQueue.class);
+
+    private final AuditRecordRepository arr;
+    private final BlockingQueue<AuditRecord> queue;
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    AuditRecordQueue(AuditRecordRepository arr, int capacity) {
+        this.arr = arr;
+        this.queue = new ArrayBlockingQueue<AuditRecord>(capacity);
+    }
+
+    /**
+     * Queues received Audit Record for delivery to the Audit Record Handler.
+     *
+     * @param record
+     *            received Audit Record
+     * @param block
+     *            wait for space in the queue, if it is full; otherwise
+     *            drop the record
+     * @return {@code false} if the record was dropped
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    boolean add(AuditRecord record, boolean block)
+            throws InterruptedException {
+        received.incrementAndGet();
+        if (block)
+            queue.put(record);
+        else if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (delivering.compareAndSet(false, true))
+            arr.getDevice().execute(this);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        List<AuditRecord> batch =
+                new ArrayList<AuditRecord>(arr.getMaxBatchSize());
+        for (;;) {
+            queue.drainTo(batch, arr.getMaxBatchSize());
+            if (batch.isEmpty()) {
+                delivering.set(false);
+                // recheck to not miss records queued after drainTo
+                if (queue.isEmpty() || !delivering.compareAndSet(false, true))
+                    return;
+                continue;
+            }
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    private void deliver(List<AuditRecord> batch) {
+        AuditRecordHandler handler = arr.getAuditRecordHandler();
+        if (handler == null) {
+            LOG.error("AuditRecordHandler removed - drop {} Audit Records",
+                    batch.size());
+            dropped.addAndGet(batch.size());
+            return;
+        }
+        batches.incrementAndGet();
+        if (handler instanceof AuditRecordBatchHandler) {
+            try {
+                ((AuditRecordBatchHandler) handler).onMessages(batch);
+            } catch (Throwable e) {
+                LOG.warn("Failed to process {} Audit Records:", batch.size(), e);
+            }
+        } else {
+            for (AuditRecord record : batch) {
+                try {
+                    handler.onMessage(record.getData(), record.getXMLOffset(),
+                            record.getXMLLength(), record.getConnection(),
+                            record.getFrom());
+                } catch (Throwable e) {
+                    LOG.warn("Failed to process Audit Record received from {}:",
+                            record.getFrom(), e);
+                }
+            }
+        }
+        delivered.addAndGet(batch.size());
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    long getReceived() {
+        return received.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getDelivered() {
+        return delivered.get();
+    }
+
+    long getBatches() {
+        return batches.get();
+    }
+}
@@ -40,6 +40,7 @@ package org.dcm4che3.net.audit;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.dcm4che3.net.Connection;
@@ -53,6 +54,9 @@ public class AuditRecordRepository extends DeviceExtension {
 
     private static final long serialVersionUID = -2279487409324427161L;
 
+    public static final int DEFAULT_RECEIVE_QUEUE_CAPACITY = 10000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
     static {
         Connection.registerTCPProtocolHandler(
                 Connection.Protocol.SYSLOG_TLS, SyslogProtocolHandler.INSTANCE);
@@ -64,7 +68,11 @@ public class AuditRecordRepository extends DeviceExtension {
 
     private final List<Connection> conns = new ArrayList<Connection>(1);
 
+    private int receiveQueueCapacity = DEFAULT_RECEIVE_QUEUE_CAPACITY;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
     private transient AuditRecordHandler handler;
+    private transient AuditRecordQueue queue;
 
     public boolean isInstalled() {
         return device != null && device.isInstalled() 
@@ -108,6 +116,91 @@ public class AuditRecordRepository extends DeviceExtension {
         this.handler = handler;
     }
 
+    public final int getReceiveQueueCapacity() {
+        return receiveQueueCapacity;
+    }
+
+    /**
+     * Set the maximal number of received Audit Records waiting for
+     * processing by the Audit Record Handler. Audit Records received by UDP
+     * are dropped, if the limit is reached. Receive of Audit Records by TCP
+     * is suspended, until the Audit Record Handler has processed queued
+     * records. Changes are not effective after receive of the first Audit
+     * Record.
+     *
+     * @param capacity
+     *            maximal number of received Audit Records waiting for
+     *            processing
+     */
+    public final void setReceiveQueueCapacity(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+
+        this.receiveQueueCapacity = capacity;
+    }
+
+    public final int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Set the maximal number of received Audit Records passed by one
+     * invocation of {@link AuditRecordBatchHandler#onMessages} to the Audit
+     * Record Handler.
+     *
+     * @param maxBatchSize
+     *            maximal number of Audit Records delivered together
+     */
+    public final void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize: " + maxBatchSize);
+
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return number of received Audit Records waiting for processing
+     */
+    public int getQueueSize() {
+        AuditRecordQueue q = queue;
+        return q != null ? q.size() : 0;
+    }
+
+    /**
+     * @return number of received Audit Records
+     */
+    public long getReceivedCount() {
+        AuditRecordQueue q = queue;
+        return q != null ? q.getReceived() : 0L;
+    }
+
+    /**
+     * @return number of received Audit Records dropped because of a full
+     *         receive queue or the removal of the Audit Record Handler
+     *         before their delivery
+     */
+    public long getDroppedCount() {
+        AuditRecordQueue q = queue;
+        return q != null ? q.getDropped() : 0L;
+    }
+
+    /**
+     * @return number of Audit Records delivered to the Audit Record Handler
+     */
+    public long getDeliveredCount() {
+        AuditRecordQueue q = queue;
+        return q != null ? q.getDelivered() : 0L;
+    }
+
+    /**
+     * @return number of batches of Audit Records delivered to the Audit
+     *         Record Handler
+     */
+    public long getDeliveredBatchCount() {
+        AuditRecordQueue q = queue;
+        return q != null ? q.getBatches() : 0L;
+    }
+
     @Override
     public void reconfigure(DeviceExtension from)  {
         reconfigure((AuditRecordRepository) from);
@@ -115,14 +208,58 @@ public class AuditRecordRepository extends DeviceExtension {
 
     private void reconfigure(AuditRecordRepository from) {
         setInstalled(from.installed);
+        setReceiveQueueCapacity(from.receiveQueueCapacity);
+        setMaxBatchSize(from.maxBatchSize);
         device.reconfigureConnections(conns, from.conns);
     }
 
-    public void onMessage(byte[] data, int xmlOffset, int xmlLength,
-            Connection conn, InetAddress from) {
+    /**
+     * Queues received Audit Record for processing by the Audit Record Handler.
+     *
+     * @param record
+     *            received Audit Record
+     * @param block
+     *            wait for space in the receive queue, if it is full;
+     *            otherwise drop the record
+     * @return {@code false} if the record was dropped
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @throws IllegalStateException
+     *             if no Audit Record Handler is initialized
+     */
+    boolean onReceive(AuditRecord record, boolean block)
+            throws InterruptedException {
         if (handler == null)
             throw new IllegalStateException("No AuditRecordHandler initialized");
 
-        handler.onMessage(data, xmlOffset, xmlLength, conn, from);
+        return receiveQueue().add(record, block);
+    }
+
+    /**
+     * Queues received Audit Record for processing by the Audit Record Handler,
+     * waiting for space in the receive queue, if it is full.
+     *
+     * @deprecated Audit Records are queued by the Syslog receivers of this
+     *             Audit Record Repository, so the Audit Record Handler is
+     *             invoked by a thread of the device's executor.
+     */
+    @Deprecated
+    public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+            Connection conn, InetAddress from) {
+        // copy XML, because the caller may reuse the buffer
+        byte[] xml = Arrays.copyOfRange(data, xmlOffset, xmlOffset + xmlLength);
+        try {
+            onReceive(new AuditRecord(xml, 0, xmlLength, conn, from), true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while waiting for space in receive queue", e);
+        }
+    }
+
+    private synchronized AuditRecordQueue receiveQueue() {
+        if (queue == null)
+            queue = new AuditRecordQueue(this, receiveQueueCapacity);
+        return queue;
     }
 }
@@ -38,6 +38,7 @@
 
 package org.dcm4che3.net.audit;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -45,6 +46,7 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.Arrays;
 
 import org.dcm4che3.net.Connection;
 import org.dcm4che3.net.TCPProtocolHandler;
@@ -67,11 +69,29 @@ enum SyslogProtocolHandler implements TCPProtocolHandler, UDPProtocolHandler {
     private static Logger LOG = LoggerFactory.getLogger(SyslogProtocolHandler.class);
 
     @Override
-    public void onAccept(Connection conn, Socket s) throws IOException {
-        InputStream in = s.getInputStream();
+    public void onAccept(final Connection conn, final Socket s)
+            throws IOException {
+        s.setSoTimeout(conn.getIdleTimeout());
+        conn.getDevice().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    receive(conn, s);
+                } catch (Throwable e) {
+                    LOG.warn("Exception on accepted connection {}:", s, e);
+                } finally {
+                    conn.close(s);
+                }
+            }
+        });
+    }
+
+    private void receive(Connection conn, Socket s)
+            throws IOException, InterruptedException {
+        InputStream in = new BufferedInputStream(s.getInputStream(), INIT_MSG_LEN);
         byte[] data = new byte[INIT_MSG_LEN];
         int length;
-        s.setSoTimeout(conn.getIdleTimeout());
         while ((length = readMessageLength(in, s)) > 0) {
             if (length > MAX_MSG_LEN) {
                 LOG.warn("Message length: {} received from {} exceeds limit {}",
@@ -88,9 +108,8 @@ enum SyslogProtocolHandler implements TCPProtocolHandler, UDPProtocolHandler {
             }
             LOG.info("Received Syslog message of {} bytes from {}",
                     length, s);
-            onMessage(data, 0, length, conn, s.getInetAddress());
+            onMessage(data, 0, length, conn, s.getInetAddress(), true);
         }
-        conn.close(s);
     }
 
     private int readMessageLength(InputStream in, Socket s) throws IOException {
@@ -130,12 +149,17 @@ enum SyslogProtocolHandler implements TCPProtocolHandler, UDPProtocolHandler {
     public void onReceive(Connection conn, DatagramPacket packet) {
         LOG.info("Received UDP Syslog message of {} bytes from {}", 
                 packet.getLength(), packet.getAddress());
-        onMessage(packet.getData(), packet.getOffset(), packet.getLength(), 
-                conn, packet.getAddress());
+        try {
+            onMessage(packet.getData(), packet.getOffset(), packet.getLength(),
+                    conn, packet.getAddress(), false);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e); // not thrown without blocking
+        }
     }
 
     private void onMessage(byte[] data, int offset, int length,
-            Connection conn, InetAddress from) {
+            Connection conn, InetAddress from, boolean block)
+            throws InterruptedException {
         AuditRecordRepository arr = conn.getDevice()
                 .getDeviceExtension(AuditRecordRepository.class);
         if (LOG.isDebugEnabled()) {
@@ -144,7 +168,10 @@ enum SyslogProtocolHandler implements TCPProtocolHandler, UDPProtocolHandler {
         int xmlOffset = indexOfXML(data, offset, Math.min(MAX_MSG_PREFIX, length));
         if (xmlOffset != -1) {
             int xmlLength = length - xmlOffset + offset;
-            arr.onMessage(data, xmlOffset, xmlLength, conn, from);
+            // copy XML, because the receive buffer is reused for the next message
+            byte[] xml = Arrays.copyOfRange(data, xmlOffset, xmlOffset + xmlLength);
+            if (!arr.onReceive(new AuditRecord(xml, 0, xmlLength, conn, from), block))
+                LOG.debug("Receive queue full - drop message from {}", from);
         } else {
             LOG.warn("Ignore unexpected message from {}: {}", from,
                     prompt(data, MAX_MSG_PREFIX));
@@ -0,0 +1,236 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4che3.net.audit;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AuditRecordQueueTest {
+
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+    private final List<Integer> batchSizes = new ArrayList<Integer>();
+    private final List<Integer> records = new ArrayList<Integer>();
+    private AuditRecordRepository arr;
+    private Connection conn;
+
+    @Before
+    public void setUp() {
+        Device device = new Device("arr");
+        device.setExecutor(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        conn = new Connection("syslog", "localhost", 0);
+        conn.setProtocol(Connection.Protocol.SYSLOG_UDP);
+        device.addConnection(conn);
+        arr = new AuditRecordRepository();
+        device.addDeviceExtension(arr);
+        arr.addConnection(conn);
+        arr.setReceiveQueueCapacity(4);
+        arr.setMaxBatchSize(2);
+    }
+
+    @Test
+    public void testBatchHandler() throws Exception {
+        arr.setAuditRecordHandler(new AuditRecordBatchHandler() {
+
+            @Override
+            public void onMessages(List<AuditRecord> batch) {
+                batchSizes.add(batch.size());
+                for (AuditRecord record : batch)
+                    records.add((int) record.getData()[0]);
+            }
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                fail("onMessage invoked on AuditRecordBatchHandler");
+            }
+        });
+        for (int i = 0; i < 3; i++)
+            assertTrue(arr.onReceive(record(i), false));
+        assertEquals(1, tasks.size());
+        assertEquals(3, arr.getQueueSize());
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(2, 1), batchSizes);
+        assertEquals(Arrays.asList(0, 1, 2), records);
+        assertEquals(3, arr.getDeliveredCount());
+        assertEquals(2, arr.getDeliveredBatchCount());
+        assertEquals(0, arr.getQueueSize());
+    }
+
+    @Test
+    public void testRecordHandler() throws Exception {
+        arr.setAuditRecordHandler(new AuditRecordHandler() {
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                records.add((int) data[xmlOffset]);
+            }
+        });
+        for (int i = 0; i < 3; i++)
+            assertTrue(arr.onReceive(record(i), false));
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(0, 1, 2), records);
+        assertEquals(3, arr.getDeliveredCount());
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        arr.setAuditRecordHandler(new AuditRecordHandler() {
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                records.add((int) data[xmlOffset]);
+            }
+        });
+        for (int i = 0; i < 4; i++)
+            assertTrue(arr.onReceive(record(i), false));
+        assertFalse(arr.onReceive(record(4), false));
+        assertEquals(5, arr.getReceivedCount());
+        assertEquals(1, arr.getDroppedCount());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(0, 1, 2, 3), records);
+        assertTrue(arr.onReceive(record(5), false));
+        assertEquals(2, tasks.size());
+    }
+
+    @Test
+    public void testBlockWhenFull() throws Exception {
+        arr.setAuditRecordHandler(new AuditRecordHandler() {
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                records.add((int) data[xmlOffset]);
+            }
+        });
+        for (int i = 0; i < 4; i++)
+            assertTrue(arr.onReceive(record(i), false));
+        Thread receiver = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    arr.onReceive(record(4), true);
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        receiver.start();
+        while (receiver.getState() != Thread.State.WAITING)
+            Thread.sleep(10);
+        assertEquals(4, arr.getQueueSize());
+        assertEquals(0, arr.getDroppedCount());
+        tasks.get(0).run();
+        receiver.join(5000);
+        assertFalse(receiver.isAlive());
+        assertEquals(0, arr.getDroppedCount());
+        assertEquals(5, arr.getReceivedCount());
+        assertEquals(5, arr.getDeliveredCount() + arr.getQueueSize());
+    }
+
+    @Test
+    public void testNoHandler() throws Exception {
+        try {
+            arr.onReceive(record(0), false);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, arr.getReceivedCount());
+    }
+
+    @Test
+    public void testHandlerRemovedBeforeDelivery() throws Exception {
+        arr.setAuditRecordHandler(new AuditRecordHandler() {
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                records.add((int) data[xmlOffset]);
+            }
+        });
+        assertTrue(arr.onReceive(record(0), false));
+        arr.setAuditRecordHandler(null);
+        tasks.get(0).run();
+        assertEquals(1, arr.getDroppedCount());
+        assertEquals(0, arr.getDeliveredCount());
+        assertTrue(records.isEmpty());
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testOnMessage() throws Exception {
+        arr.setAuditRecordHandler(new AuditRecordHandler() {
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                assertEquals(1, xmlLength);
+                records.add((int) data[xmlOffset]);
+            }
+        });
+        byte[] data = { 7, 8, 9 };
+        arr.onMessage(data, 1, 1, conn, null);
+        data[1] = 0;
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(Arrays.asList(8), records);
+        assertEquals(1, arr.getDeliveredCount());
+    }
+
+    private AuditRecord record(int i) {
+        return new AuditRecord(new byte[] { (byte) i }, 0, 1, conn, null);
+    }
+}
@@ -0,0 +1,169 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4che3.net.audit;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyslogProtocolHandlerTest {
+
+    private static final byte[] MSG = ("<85>1 2017-10-19T00:00:00Z localhost"
+            + " test - - - <?xml version=\"1.0\"?><AuditMessage/>").getBytes();
+    private static final int XML_OFFSET = 48;
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final AtomicInteger handled = new AtomicInteger();
+    private ExecutorService executor;
+    private AuditRecordRepository arr;
+    private Connection conn;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        Device device = new Device("arr");
+        device.setExecutor(executor);
+        conn = new Connection("syslog", "localhost", 0);
+        conn.setProtocol(Connection.Protocol.SYSLOG_TLS);
+        device.addConnection(conn);
+        arr = new AuditRecordRepository();
+        device.addDeviceExtension(arr);
+        arr.addConnection(conn);
+        arr.setReceiveQueueCapacity(1);
+        arr.setMaxBatchSize(1);
+        arr.setAuditRecordHandler(new AuditRecordHandler() {
+
+            @Override
+            public void onMessage(byte[] data, int xmlOffset, int xmlLength,
+                    Connection conn, InetAddress from) {
+                assertEquals(new String(MSG, XML_OFFSET, MSG.length - XML_OFFSET),
+                        new String(data, xmlOffset, xmlLength));
+                entered.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                }
+                handled.incrementAndGet();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testUDPDropWhenFull() throws Exception {
+        SyslogProtocolHandler.INSTANCE.onReceive(conn, packet());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        SyslogProtocolHandler.INSTANCE.onReceive(conn, packet());
+        SyslogProtocolHandler.INSTANCE.onReceive(conn, packet());
+        SyslogProtocolHandler.INSTANCE.onReceive(conn, packet());
+        assertEquals(4, arr.getReceivedCount());
+        assertEquals(2, arr.getDroppedCount());
+        assertEquals(1, arr.getQueueSize());
+        gate.countDown();
+        awaitDelivered(2);
+        assertEquals(2, handled.get());
+    }
+
+    @Test
+    public void testTCPBlockWhenFull() throws Exception {
+        ServerSocket ss = new ServerSocket(0);
+        try {
+            Socket sender = new Socket(ss.getInetAddress(), ss.getLocalPort());
+            try {
+                SyslogProtocolHandler.INSTANCE.onAccept(conn, ss.accept());
+                OutputStream out = sender.getOutputStream();
+                for (int i = 0; i < 4; i++) {
+                    out.write((MSG.length + " ").getBytes());
+                    out.write(MSG);
+                }
+                out.flush();
+                assertTrue(entered.await(5, TimeUnit.SECONDS));
+                long timeout = System.currentTimeMillis() + 5000;
+                while (arr.getReceivedCount() < 3
+                        && System.currentTimeMillis() < timeout)
+                    Thread.sleep(10);
+                Thread.sleep(100);
+                // 1 record in the handler, 1 queued, receiver waits with 3rd
+                assertEquals(3, arr.getReceivedCount());
+                assertEquals(1, arr.getQueueSize());
+                assertEquals(0, arr.getDroppedCount());
+                gate.countDown();
+                awaitDelivered(4);
+                assertEquals(0, arr.getDroppedCount());
+                assertEquals(4, handled.get());
+            } finally {
+                sender.close();
+            }
+        } finally {
+            ss.close();
+        }
+    }
+
+    private DatagramPacket packet() {
+        return new DatagramPacket(MSG.clone(), MSG.length,
+                InetAddress.getLoopbackAddress(), 514);
+    }
+
+    private void awaitDelivered(long count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (arr.getDeliveredCount() < count
+                && System.currentTimeMillis() < timeout)
+            Thread.sleep(10);
+        assertEquals(count, arr.getDeliveredCount());
+    }
+}
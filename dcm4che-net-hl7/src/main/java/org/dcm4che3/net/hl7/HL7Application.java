@@ -49,9 +49,11 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.dcm4che3.hl7.ERRSegment;
 import org.dcm4che3.hl7.HL7Exception;
+import org.dcm4che3.hl7.HL7Message;
 import org.dcm4che3.hl7.HL7Segment;
 import org.dcm4che3.hl7.MLLPConnection;
 import org.dcm4che3.net.CompatibleConnection;
@@ -304,6 +306,42 @@ public class HL7Application implements Serializable {
         return new MLLPConnection(sock);
     }
 
+    /**
+     * Sends a message to the remote HL7 Application over a pooled connection
+     * and waits for its acknowledgment.
+     *
+     * @see HL7DeviceExtension#getHL7ConnectionPool()
+     */
+    public UnparsedHL7Message send(HL7Application remote, byte[] data)
+            throws IOException, IncompatibleConnectionException, GeneralSecurityException {
+        return connectionPool().send(this, remote, data);
+    }
+
+    /**
+     * Sends a message to the remote HL7 Application over a pooled connection
+     * by the executor of the Device. Messages to the same remote HL7
+     * Application are sent in the order of invocation.
+     *
+     * @return the future acknowledgment
+     * @see HL7DeviceExtension#getHL7ConnectionPool()
+     */
+    public Future<UnparsedHL7Message> sendAsync(HL7Application remote, byte[] data) {
+        return connectionPool().sendAsync(this, remote, data);
+    }
+
+    public Future<UnparsedHL7Message> sendAsync(HL7Application remote, HL7Message msg) {
+        return sendAsync(remote, msg.getBytes(hl7SendingCharacterSet));
+    }
+
+    private HL7ConnectionPool connectionPool() {
+        checkDevice();
+        checkInstalled();
+        HL7DeviceExtension ext = device.getDeviceExtension(HL7DeviceExtension.class);
+        if (ext == null)
+            throw new IllegalStateException("No HL7 Device Extension");
+        return ext.getHL7ConnectionPool();
+    }
+
     public CompatibleConnection findCompatibelConnection(HL7Application remote)
             throws IncompatibleConnectionException {
         for (Connection remoteConn : remote.conns)
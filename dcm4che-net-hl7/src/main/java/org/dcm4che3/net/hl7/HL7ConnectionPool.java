@@ -0,0 +1,553 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.hl7.HL7MessageView;
+import org.dcm4che3.hl7.MLLPConnection;
+import org.dcm4che3.net.IncompatibleConnectionException;
+import org.dcm4che3.util.SafeClose;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of persistent outbound MLLP connections, kept per pair of sending
+ * and receiving HL7 Application.
+ * <p>
+ * Idle connections are reused for subsequent messages to the same
+ * destination, after checking that they were not closed by the receiver
+ * if they were idle for longer than {@link #getValidationInterval()}, and
+ * closed after {@link #getMaxIdleTime()}. Messages sent asynchronously
+ * to the same destination are sent in the order of their submission, each
+ * after the acknowledgment of the previous message was received.
+ */
+public class HL7ConnectionPool {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(HL7ConnectionPool.class);
+
+    private final LinkedHashMap<String, Destination> destinations =
+            new LinkedHashMap<String, Destination>();
+    private int maxIdlePerDestination = 4;
+    private int maxIdleTime = 60000;
+    private int validationInterval = 5000;
+    private ScheduledFuture<?> evictor;
+    private volatile boolean closed;
+
+    public final int getMaxIdlePerDestination() {
+        return maxIdlePerDestination;
+    }
+
+    /**
+     * Sets the maximal number of idle connections kept per destination;
+     * {@code 0} disables the reuse of connections.
+     */
+    public final void setMaxIdlePerDestination(int maxIdlePerDestination) {
+        if (maxIdlePerDestination < 0)
+            throw new IllegalArgumentException(
+                    "maxIdlePerDestination: " + maxIdlePerDestination);
+        this.maxIdlePerDestination = maxIdlePerDestination;
+    }
+
+    public final int getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * Sets the time in ms after which idle connections are closed.
+     */
+    public final void setMaxIdleTime(int maxIdleTime) {
+        if (maxIdleTime <= 0)
+            throw new IllegalArgumentException("maxIdleTime: " + maxIdleTime);
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public final int getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * Sets the idle time in ms after which a connection is checked for
+     * being closed by the receiver before it is reused.
+     */
+    public final void setValidationInterval(int validationInterval) {
+        if (validationInterval < 0)
+            throw new IllegalArgumentException(
+                    "validationInterval: " + validationInterval);
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Sends a message from {@code local} to {@code remote} and waits for
+     * its acknowledgment. If writing the message to a reused connection
+     * fails - typically because the receiver closed the connection
+     * meanwhile - the message is sent again over a new connection. A
+     * message is never sent again after it was written completely, because
+     * the receiver may have already processed it.
+     *
+     * @return the acknowledgment
+     */
+    public UnparsedHL7Message send(HL7Application local, HL7Application remote,
+            byte[] data) throws IOException, IncompatibleConnectionException,
+            GeneralSecurityException {
+        return destinationOf(local, remote).send(data);
+    }
+
+    /**
+     * Sends a message from {@code local} to {@code remote} by the executor
+     * of the Device. Messages to the same destination are sent in the order
+     * of invocations of this method.
+     *
+     * @return the future acknowledgment
+     */
+    public Future<UnparsedHL7Message> sendAsync(HL7Application local,
+            HL7Application remote, final byte[] data) {
+        final Destination dest = destinationOf(local, remote);
+        FutureTask<UnparsedHL7Message> task =
+                new FutureTask<UnparsedHL7Message>(
+                        new Callable<UnparsedHL7Message>() {
+                            @Override
+                            public UnparsedHL7Message call() throws Exception {
+                                return dest.send(data);
+                            }
+                        });
+        dest.enqueue(task);
+        return task;
+    }
+
+    public synchronized Collection<Destination> getDestinations() {
+        return new ArrayList<Destination>(destinations.values());
+    }
+
+    public synchronized Destination getDestination(String localName,
+            String remoteName) {
+        return destinations.get(keyOf(localName, remoteName));
+    }
+
+    /**
+     * Closes connections idle for longer than {@link #getMaxIdleTime()}.
+     *
+     * @return number of remaining idle connections
+     */
+    public int evictIdle() {
+        long idleSince = System.currentTimeMillis() - maxIdleTime;
+        int remaining = 0;
+        for (Destination dest : getDestinations())
+            remaining += dest.evictIdle(idleSince);
+        return remaining;
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed when the
+     * message sent over them was acknowledged, instead of returning them
+     * to the pool.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (evictor != null) {
+                evictor.cancel(false);
+                evictor = null;
+            }
+        }
+        for (Destination dest : getDestinations())
+            dest.evictIdle(Long.MAX_VALUE);
+    }
+
+    public final boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized Destination destinationOf(HL7Application local,
+            HL7Application remote) {
+        String key = keyOf(local.getApplicationName(),
+                remote.getApplicationName());
+        Destination dest = destinations.get(key);
+        if (dest == null)
+            destinations.put(key, dest = new Destination(local, remote));
+        return dest;
+    }
+
+    private static String keyOf(String localName, String remoteName) {
+        return localName + "->" + remoteName;
+    }
+
+    private synchronized void scheduleEviction(final HL7Application local) {
+        if (closed || evictor != null
+                || local.getDevice().getScheduledExecutor() == null)
+            return;
+
+        evictor = local.getDevice().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (HL7ConnectionPool.this) {
+                    evictor = null;
+                }
+                if (evictIdle() > 0)
+                    scheduleEviction(local);
+            }
+        }, maxIdleTime, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isAlive(MLLPConnection mllp) {
+        Socket sock = mllp.getSocket();
+        if (sock.isClosed() || sock.isInputShutdown()
+                || mllp.hasBufferedMessage())
+            return false;
+
+        try {
+            int soTimeout = sock.getSoTimeout();
+            sock.setSoTimeout(1);
+            try {
+                InputStream in = sock.getInputStream();
+                // any input on an idle connection is unexpected
+                in.read();
+                return false;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } finally {
+                sock.setSoTimeout(soTimeout);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static class PooledConnection {
+        final MLLPConnection mllp;
+        long lastUsed;
+
+        PooledConnection(MLLPConnection mllp) {
+            this.mllp = mllp;
+        }
+    }
+
+    /**
+     * Connections and statistics of messages from one sending to one
+     * receiving HL7 Application.
+     */
+    public class Destination {
+
+        private final HL7Application local;
+        private final HL7Application remote;
+        private final ArrayDeque<PooledConnection> idle =
+                new ArrayDeque<PooledConnection>();
+        private final ArrayDeque<FutureTask<UnparsedHL7Message>> queue =
+                new ArrayDeque<FutureTask<UnparsedHL7Message>>();
+        private boolean draining;
+        private long opened;
+        private long reused;
+        private long sent;
+        private long rejected;
+        private long failed;
+        private long bytesSent;
+        private long responseNanos;
+
+        private final Runnable drainer = new Runnable() {
+            @Override
+            public void run() {
+                FutureTask<UnparsedHL7Message> task;
+                while ((task = nextTask()) != null)
+                    task.run();
+            }
+        };
+
+        Destination(HL7Application local, HL7Application remote) {
+            this.local = local;
+            this.remote = remote;
+        }
+
+        public String getSendingApplicationName() {
+            return local.getApplicationName();
+        }
+
+        public String getReceivingApplicationName() {
+            return remote.getApplicationName();
+        }
+
+        public synchronized int getIdleConnections() {
+            return idle.size();
+        }
+
+        public synchronized int getQueuedMessages() {
+            return queue.size();
+        }
+
+        public synchronized long getOpenedConnections() {
+            return opened;
+        }
+
+        public synchronized long getReusedConnections() {
+            return reused;
+        }
+
+        /**
+         * Returns the number of acknowledged messages, including rejected
+         * messages.
+         */
+        public synchronized long getSentMessages() {
+            return sent;
+        }
+
+        /**
+         * Returns the number of messages acknowledged with other
+         * acknowledgment code than {@code AA} or {@code CA}.
+         */
+        public synchronized long getRejectedMessages() {
+            return rejected;
+        }
+
+        public synchronized long getFailedMessages() {
+            return failed;
+        }
+
+        public synchronized long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Returns the average time in ms from sending a message until
+         * receiving its acknowledgment.
+         */
+        public synchronized double getAverageResponseTime() {
+            return sent > 0 ? responseNanos / (sent * 1000000.) : 0.;
+        }
+
+        UnparsedHL7Message send(byte[] data) throws IOException,
+                IncompatibleConnectionException, GeneralSecurityException {
+            PooledConnection conn = borrow();
+            boolean reuse = conn != null;
+            if (!reuse)
+                conn = open();
+            boolean released = false;
+            try {
+                long start = System.nanoTime();
+                try {
+                    write(conn, data);
+                } catch (IOException e) {
+                    if (!reuse) {
+                        failed();
+                        throw e;
+                    }
+                    LOG.info("{}: failed to send message over reused connection"
+                            + " - resend message over new connection: {}",
+                            conn.mllp.getSocket(), e.getMessage());
+                    conn = open();
+                    start = System.nanoTime();
+                    try {
+                        write(conn, data);
+                    } catch (IOException e2) {
+                        failed();
+                        throw e2;
+                    }
+                }
+                UnparsedHL7Message ack;
+                try {
+                    byte[] b = conn.mllp.readMessage();
+                    if (b == null)
+                        throw new EOFException("Connection closed by receiver");
+                    ack = new UnparsedHL7Message(b);
+                } catch (IOException e) {
+                    failed();
+                    throw e;
+                }
+                acknowledged(ack, data.length, System.nanoTime() - start);
+                release(conn);
+                released = true;
+                return ack;
+            } finally {
+                if (!released)
+                    SafeClose.close(conn.mllp);
+            }
+        }
+
+        private void write(PooledConnection conn, byte[] data)
+                throws IOException {
+            try {
+                conn.mllp.writeMessage(data);
+            } catch (IOException e) {
+                SafeClose.close(conn.mllp);
+                throw e;
+            }
+        }
+
+        private PooledConnection open() throws IOException,
+                IncompatibleConnectionException, GeneralSecurityException {
+            PooledConnection conn = new PooledConnection(local.connect(remote));
+            synchronized (this) {
+                opened++;
+            }
+            return conn;
+        }
+
+        private PooledConnection borrow() {
+            PooledConnection conn;
+            while ((conn = poll()) != null) {
+                if (System.currentTimeMillis() - conn.lastUsed
+                        < validationInterval || isAlive(conn.mllp)) {
+                    synchronized (this) {
+                        reused++;
+                    }
+                    return conn;
+                }
+                LOG.debug("{}: discard connection closed by receiver",
+                        conn.mllp.getSocket());
+                SafeClose.close(conn.mllp);
+            }
+            return null;
+        }
+
+        private synchronized PooledConnection poll() {
+            return idle.pollFirst();
+        }
+
+        private void release(PooledConnection conn) {
+            conn.lastUsed = System.currentTimeMillis();
+            synchronized (this) {
+                if (!closed && idle.size() < maxIdlePerDestination) {
+                    idle.addFirst(conn);
+                    conn = null;
+                }
+            }
+            if (conn != null)
+                SafeClose.close(conn.mllp);
+            else
+                scheduleEviction(local);
+        }
+
+        int evictIdle(long idleSince) {
+            ArrayList<PooledConnection> evicted =
+                    new ArrayList<PooledConnection>();
+            int remaining;
+            synchronized (this) {
+                for (Iterator<PooledConnection> it = idle.descendingIterator();
+                        it.hasNext();) {
+                    PooledConnection conn = it.next();
+                    if (conn.lastUsed > idleSince)
+                        break;
+                    it.remove();
+                    evicted.add(conn);
+                }
+                remaining = idle.size();
+            }
+            for (PooledConnection conn : evicted)
+                SafeClose.close(conn.mllp);
+            return remaining;
+        }
+
+        private synchronized void acknowledged(UnparsedHL7Message ack,
+                int length, long nanos) {
+            sent++;
+            bytesSent += length;
+            responseNanos += nanos;
+            if (!isAccepted(ack))
+                rejected++;
+        }
+
+        private synchronized void failed() {
+            failed++;
+        }
+
+        private boolean isAccepted(UnparsedHL7Message ack) {
+            try {
+                HL7MessageView view = ack.view();
+                int msa = view.indexOf("MSA");
+                return msa > 0 && (view.fieldEquals(msa, 1, "AA")
+                        || view.fieldEquals(msa, 1, "CA"));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        void enqueue(FutureTask<UnparsedHL7Message> task) {
+            synchronized (this) {
+                queue.add(task);
+                if (draining)
+                    return;
+                draining = true;
+            }
+            try {
+                local.getDevice().execute(drainer);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    queue.remove(task);
+                    draining = false;
+                }
+                throw e;
+            }
+        }
+
+        private synchronized FutureTask<UnparsedHL7Message> nextTask() {
+            FutureTask<UnparsedHL7Message> task = queue.poll();
+            if (task == null)
+                draining = false;
+            return task;
+        }
+
+        @Override
+        public String toString() {
+            return getSendingApplicationName() + "->"
+                    + getReceivingApplicationName()
+                    + "[sent=" + getSentMessages()
+                    + ", rejected=" + getRejectedMessages()
+                    + ", failed=" + getFailedMessages()
+                    + ", queued=" + getQueuedMessages()
+                    + ", opened=" + getOpenedConnections()
+                    + ", reused=" + getReusedConnections()
+                    + ", idle=" + getIdleConnections()
+                    + ", avgResponseTime=" + getAverageResponseTime()
+                    + "ms]";
+        }
+    }
+}
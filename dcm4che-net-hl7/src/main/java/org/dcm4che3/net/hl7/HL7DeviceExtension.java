@@ -65,6 +65,8 @@ public class HL7DeviceExtension extends DeviceExtension {
 
     private transient HL7MessageListener hl7MessageListener;
 
+    private transient HL7ConnectionPool hl7ConnectionPool;
+
     @Override
     public void verifyNotUsed(Connection conn) {
         for (HL7Application app : hl7apps.values())
@@ -126,6 +128,29 @@ public class HL7DeviceExtension extends DeviceExtension {
         this.hl7MessageListener = listener;
     }
 
+    /**
+     * Returns the pool of outbound connections used by
+     * {@link HL7Application#send} and {@link HL7Application#sendAsync}.
+     * It is closed by {@link org.dcm4che3.net.Device#unbindConnections()};
+     * a new pool is created on the next invocation.
+     */
+    public synchronized HL7ConnectionPool getHL7ConnectionPool() {
+        if (hl7ConnectionPool == null)
+            hl7ConnectionPool = new HL7ConnectionPool();
+        return hl7ConnectionPool;
+    }
+
+    @Override
+    public void unbindConnections() {
+        HL7ConnectionPool pool;
+        synchronized (this) {
+            pool = hl7ConnectionPool;
+            hl7ConnectionPool = null;
+        }
+        if (pool != null)
+            pool.close();
+    }
+
     byte[] onMessage(Connection conn, Socket s, UnparsedHL7Message msg) throws HL7Exception {
         HL7Application hl7App = getHL7Application(msg.msh().getReceivingApplicationWithFacility(), true);
         if (hl7App == null)
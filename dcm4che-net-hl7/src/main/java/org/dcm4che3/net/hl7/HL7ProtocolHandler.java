@@ -66,7 +66,8 @@ enum HL7ProtocolHandler implements TCPProtocolHandler {
             } catch (HL7Exception e) {
                 data = HL7Message.makeACK(msg.msh(), e).getBytes(null);
             }
-            mllp.writeMessage(data);
+            // coalesce responses to pipelined messages
+            mllp.writeMessage(data, 0, data.length, !mllp.hasBufferedMessage());
         }
         conn.close(s);
     }
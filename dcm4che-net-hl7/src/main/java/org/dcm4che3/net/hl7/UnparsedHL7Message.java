@@ -40,10 +40,10 @@
 
 package org.dcm4che3.net.hl7;
 
+import org.dcm4che3.hl7.HL7MessageView;
 import org.dcm4che3.hl7.HL7Segment;
 
 import java.io.Serializable;
-import java.text.ParsePosition;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -54,8 +54,8 @@ public class UnparsedHL7Message implements Serializable {
     private static final AtomicInteger prevSerialNo = new AtomicInteger();
     private final int serialNo;
     private final byte[] data;
+    private transient HL7MessageView view;
     private transient HL7Segment msh;
-    private transient int mshLength;
 
     public UnparsedHL7Message(byte[] data) {
         this.serialNo = prevSerialNo.incrementAndGet();
@@ -63,20 +63,23 @@ public class UnparsedHL7Message implements Serializable {
     }
 
     public HL7Segment msh() {
-        init();
+        if (msh == null)
+            msh = view().msh();
         return msh;
     }
 
-    public int getSerialNo() {
-        return serialNo;
+    /**
+     * Returns a lazy, zero-copy view of the message, which decodes segments
+     * and fields only on access.
+     */
+    public HL7MessageView view() {
+        if (view == null)
+            view = new HL7MessageView(data, null);
+        return view;
     }
 
-    private void init() {
-        if (msh == null) {
-            ParsePosition pos = new ParsePosition(0);
-            msh = HL7Segment.parseMSH(data, data.length, pos);
-            mshLength = pos.getIndex();
-        }
+    public int getSerialNo() {
+        return serialNo;
     }
 
     public byte[] data() {
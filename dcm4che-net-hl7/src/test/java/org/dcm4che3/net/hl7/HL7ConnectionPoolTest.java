@@ -0,0 +1,346 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.hl7.HL7Message;
+import org.dcm4che3.hl7.HL7Segment;
+import org.dcm4che3.hl7.MLLPConnection;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HL7ConnectionPoolTest {
+
+    private enum Mode { ACCEPT, REJECT, CLOSE_AFTER_ACK, CLOSE_BEFORE_ACK }
+
+    /**
+     * MLLP receiver, acknowledging received messages according to
+     * {@link #mode}.
+     */
+    private static class Receiver implements Runnable {
+        final ServerSocket ss;
+        final ExecutorService executor;
+        final List<String> received =
+                Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger closed = new AtomicInteger();
+        volatile Mode mode = Mode.ACCEPT;
+        volatile CountDownLatch ackLatch;
+
+        Receiver(ExecutorService executor) throws IOException {
+            this.ss = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket s = ss.accept();
+                    accepted.incrementAndGet();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(s);
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        private void serve(Socket s) {
+            try {
+                MLLPConnection mllp = new MLLPConnection(s);
+                byte[] b;
+                while ((b = mllp.readMessage()) != null) {
+                    HL7Segment msh = HL7Segment.parseMSH(b, b.length);
+                    received.add(msh.getMessageControlID());
+                    Mode mode = this.mode;
+                    if (mode == Mode.CLOSE_BEFORE_ACK)
+                        break;
+                    CountDownLatch ackLatch = this.ackLatch;
+                    if (ackLatch != null)
+                        ackLatch.await();
+                    mllp.writeMessage(HL7Message.makeACK(msh,
+                            mode == Mode.REJECT ? "AR" : "AA", null)
+                            .getBytes(null));
+                    if (mode == Mode.CLOSE_AFTER_ACK)
+                        break;
+                }
+            } catch (IOException e) {
+                // connection reset
+            } catch (InterruptedException e) {
+                // shutdown
+            } finally {
+                try {
+                    s.close();
+                } catch (IOException ignore) {
+                }
+                closed.incrementAndGet();
+            }
+        }
+    }
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Receiver receiver;
+    private Device device;
+    private HL7Application local;
+    private HL7Application remote;
+    private HL7ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        receiver = new Receiver(executor);
+        executor.execute(receiver);
+
+        device = new Device("hl7snd");
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        HL7DeviceExtension ext = new HL7DeviceExtension();
+        device.addDeviceExtension(ext);
+        Connection conn = new Connection();
+        conn.setProtocol(Connection.Protocol.HL7);
+        conn.setResponseTimeout(5000);
+        device.addConnection(conn);
+        local = new HL7Application("SND|SF");
+        local.addConnection(conn);
+        ext.addHL7Application(local);
+        pool = ext.getHL7ConnectionPool();
+
+        Device remoteDevice = new Device("hl7rcv");
+        HL7DeviceExtension remoteExt = new HL7DeviceExtension();
+        remoteDevice.addDeviceExtension(remoteExt);
+        Connection remoteConn = new Connection();
+        remoteConn.setProtocol(Connection.Protocol.HL7);
+        remoteConn.setHostname("localhost");
+        remoteConn.setPort(receiver.ss.getLocalPort());
+        remoteDevice.addConnection(remoteConn);
+        remote = new HL7Application("RCV|RF");
+        remote.addConnection(remoteConn);
+        remoteExt.addHL7Application(remote);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        device.unbindConnections();
+        receiver.ss.close();
+        executor.shutdownNow();
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        for (int i = 0; i < 3; i++)
+            local.send(remote, message(i));
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(1, receiver.accepted.get());
+        assertEquals(1, dest.getOpenedConnections());
+        assertEquals(2, dest.getReusedConnections());
+        assertEquals(3, dest.getSentMessages());
+        assertEquals(0, dest.getRejectedMessages());
+        assertEquals(1, dest.getIdleConnections());
+        assertEquals(messageIDs(3), receiver.received);
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        local.send(remote, message(0));
+        receiver.mode = Mode.REJECT;
+        local.send(remote, message(1));
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(2, dest.getSentMessages());
+        assertEquals(1, dest.getRejectedMessages());
+        assertEquals(0, dest.getFailedMessages());
+    }
+
+    @Test
+    public void testValidateIdleConnection() throws Exception {
+        pool.setValidationInterval(0);
+        receiver.mode = Mode.CLOSE_AFTER_ACK;
+        local.send(remote, message(0));
+        awaitClosed(1);
+        receiver.mode = Mode.ACCEPT;
+        local.send(remote, message(1));
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(2, receiver.accepted.get());
+        assertEquals(2, dest.getOpenedConnections());
+        assertEquals(0, dest.getReusedConnections());
+        assertEquals(0, dest.getFailedMessages());
+        assertEquals(messageIDs(2), receiver.received);
+    }
+
+    @Test
+    public void testNoResendAfterWrite() throws Exception {
+        local.send(remote, message(0));
+        receiver.mode = Mode.CLOSE_BEFORE_ACK;
+        try {
+            local.send(remote, message(1));
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(1, receiver.accepted.get());
+        assertEquals(1, dest.getOpenedConnections());
+        assertEquals(1, dest.getSentMessages());
+        assertEquals(1, dest.getFailedMessages());
+        assertEquals(0, dest.getIdleConnections());
+        assertEquals(messageIDs(2), receiver.received);
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+        pool.setMaxIdleTime(100);
+        local.send(remote, message(0));
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(1, dest.getIdleConnections());
+        awaitClosed(1);
+        assertEquals(0, dest.getIdleConnections());
+        assertEquals(0, pool.evictIdle());
+        local.send(remote, message(1));
+        assertEquals(2, dest.getOpenedConnections());
+    }
+
+    @Test
+    public void testSendAsyncInOrder() throws Exception {
+        List<Future<UnparsedHL7Message>> acks =
+                new ArrayList<Future<UnparsedHL7Message>>();
+        for (int i = 0; i < 50; i++)
+            acks.add(local.sendAsync(remote, message(i)));
+        for (int i = 0; i < 50; i++)
+            assertEquals(messageID(i), acks.get(i).get(5, TimeUnit.SECONDS)
+                    .view().getField(1, 2, null));
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(messageIDs(50), receiver.received);
+        assertEquals(1, dest.getOpenedConnections());
+        assertEquals(50, dest.getSentMessages());
+        assertEquals(0, dest.getQueuedMessages());
+    }
+
+    @Test
+    public void testUnbindConnectionsClosesPool() throws Exception {
+        local.send(remote, message(0));
+        assertEquals(1, destination().getIdleConnections());
+        device.unbindConnections();
+        assertEquals(0, destination().getIdleConnections());
+        awaitClosed(1);
+    }
+
+    @Test
+    public void testReleaseAfterClose() throws Exception {
+        receiver.ackLatch = new CountDownLatch(1);
+        Future<UnparsedHL7Message> ack = local.sendAsync(remote, message(0));
+        long end = System.currentTimeMillis() + 5000;
+        while (receiver.received.isEmpty()) {
+            assertTrue("message not received",
+                    System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+        device.unbindConnections();
+        assertTrue(pool.isClosed());
+        receiver.ackLatch.countDown();
+        ack.get(5, TimeUnit.SECONDS);
+        awaitClosed(1);
+        HL7ConnectionPool.Destination dest = destination();
+        assertEquals(1, dest.getSentMessages());
+        assertEquals(0, dest.getIdleConnections());
+    }
+
+    @Test
+    public void testCloseOnRuntimeException() throws Exception {
+        try {
+            local.send(remote, null);
+            fail("NullPointerException expected");
+        } catch (NullPointerException expected) {
+        }
+        awaitClosed(1);
+        assertEquals(0, destination().getIdleConnections());
+    }
+
+    private HL7ConnectionPool.Destination destination() {
+        return pool.getDestination("SND|SF", "RCV|RF");
+    }
+
+    private void awaitClosed(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (receiver.closed.get() < count) {
+            assertTrue("connection not closed",
+                    System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private static byte[] message(int i) {
+        return ("MSH|^~\\&|SND|SF|RCV|RF|20171019||ADT^A01^ADT_A01|"
+                + messageID(i) + "|P|2.5\r").getBytes();
+    }
+
+    private static String messageID(int i) {
+        return "MSG" + i;
+    }
+
+    private static List<String> messageIDs(int n) {
+        List<String> list = new ArrayList<String>(n);
+        for (int i = 0; i < n; i++)
+            list.add(messageID(i));
+        return list;
+    }
+}
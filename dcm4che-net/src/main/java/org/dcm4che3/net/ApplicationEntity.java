@@ -97,7 +97,14 @@ public class ApplicationEntity implements Serializable {
     private final LinkedHashMap<String, TransferCapability> scpTCs = new LinkedHashMap<>();
     private final LinkedHashMap<Class<? extends AEExtension>,AEExtension> extensions = new LinkedHashMap<>();
 
+    private int negotiationCacheSize = DEF_NEGOTIATION_CACHE_SIZE;
+
     private transient DimseRQHandler dimseRQHandler;
+    private transient volatile NegotiationCache negotiationCache;
+    private transient volatile boolean negotiateOverridden;
+    private transient AssociationMonitor associationMonitor;
+
+    public static final int DEF_NEGOTIATION_CACHE_SIZE = 0;
 
     public ApplicationEntity() {
     }
@@ -428,6 +435,73 @@ public class ApplicationEntity implements Serializable {
         this.dimseRQHandler = dimseRQHandler;
     }
 
+    public AssociationMonitor getAssociationMonitor() {
+        AssociationMonitor monitor = associationMonitor;
+        if (monitor != null)
+            return monitor;
+
+        Device device = this.device;
+        return device != null
+                ? device.getAssociationMonitor()
+                : null;
+    }
+
+    public final void setAssociationMonitor(AssociationMonitor monitor) {
+        this.associationMonitor = monitor;
+    }
+
+    public final int getNegotiationCacheSize() {
+        return negotiationCacheSize;
+    }
+
+    /**
+     * Set the maximal number of different A-ASSOCIATE-RQs for which the
+     * negotiated Presentation Contexts, Role Selections and Extended
+     * Negotiations are cached, so a repeated A-ASSOCIATE-RQ with equal
+     * proposed Presentation Contexts is accepted without negotiating them
+     * again against the Transfer Capabilities of this AE.
+     * <p>
+     * Cached results are keyed only by the proposed Presentation Contexts,
+     * Role Selections and Extended Negotiations, not by the Calling or
+     * Called AE Title. Therefore the cache is bypassed for subclasses
+     * overriding {@link #negotiate(AAssociateRQ, AAssociateAC,
+     * PresentationContext)}, whose results may depend on other fields of
+     * the A-ASSOCIATE-RQ. Caching is disabled by default.
+     *
+     * @param negotiationCacheSize
+     *                maximal number of cached negotiation results; 0 disables
+     *                caching
+     */
+    public void setNegotiationCacheSize(int negotiationCacheSize) {
+        if (negotiationCacheSize < 0)
+            throw new IllegalArgumentException("negotiationCacheSize: "
+                    + negotiationCacheSize);
+        this.negotiationCacheSize = negotiationCacheSize;
+        NegotiationCache cache = negotiationCache;
+        if (cache != null)
+            cache.setMaxSize(negotiationCacheSize);
+    }
+
+    public long getNegotiationCacheHitCount() {
+        NegotiationCache cache = negotiationCache;
+        return cache != null ? cache.getHitCount() : 0L;
+    }
+
+    public long getNegotiationCacheMissCount() {
+        NegotiationCache cache = negotiationCache;
+        return cache != null ? cache.getMissCount() : 0L;
+    }
+
+    /**
+     * Invalidate cached negotiation results. Invoked on any change of the
+     * Transfer Capabilities of this AE.
+     */
+    public void invalidateNegotiationCache() {
+        NegotiationCache cache = negotiationCache;
+        if (cache != null)
+            cache.invalidate();
+    }
+
     private void checkInstalled() {
         if (!isInstalled())
             throw new IllegalStateException("Not installed");
@@ -474,6 +548,7 @@ public class ApplicationEntity implements Serializable {
                 ? scuTCs : scpTCs).put(tc.getSopClass(), tc);
         if (prev != null && prev != tc)
             prev.setApplicationEntity(null);
+        invalidateNegotiationCache();
         return prev;
     }
 
@@ -481,8 +556,10 @@ public class ApplicationEntity implements Serializable {
             TransferCapability.Role role) {
         TransferCapability tc = (role == TransferCapability.Role.SCU ? scuTCs : scpTCs)
                         .remove(sopClass);
-        if (tc != null)
+        if (tc != null) {
             tc.setApplicationEntity(null);
+            invalidateNegotiationCache();
+        }
         return tc;
     }
 
@@ -504,6 +581,49 @@ public class ApplicationEntity implements Serializable {
         return (role == TransferCapability.Role.SCU ? scuTCs : scpTCs).get(sopClass);
     }
 
+    void negotiate(AAssociateRQ rq, AAssociateAC ac) {
+        NegotiationCache cache = negotiationCacheSize > 0
+                ? negotiationCache()
+                : null;
+        if (cache == null) {
+            for (PresentationContext rqpc : rq.getPresentationContexts())
+                ac.addPresentationContext(negotiate(rq, ac, rqpc));
+            return;
+        }
+        String key = NegotiationCache.keyOf(rq);
+        if (cache.applyTo(key, ac))
+            return;
+
+        int version = cache.version();
+        for (PresentationContext rqpc : rq.getPresentationContexts())
+            ac.addPresentationContext(negotiate(rq, ac, rqpc));
+        cache.put(key, version, ac);
+    }
+
+    private NegotiationCache negotiationCache() {
+        NegotiationCache cache = negotiationCache;
+        if (cache == null && !negotiateOverridden)
+            synchronized (this) {
+                if ((cache = negotiationCache) == null
+                        && !(negotiateOverridden = overridesNegotiate()))
+                    negotiationCache = cache =
+                            new NegotiationCache(negotiationCacheSize);
+            }
+        return cache;
+    }
+
+    private boolean overridesNegotiate() {
+        for (Class<?> c = getClass(); c != ApplicationEntity.class;
+                c = c.getSuperclass())
+            try {
+                c.getDeclaredMethod("negotiate", AAssociateRQ.class,
+                        AAssociateAC.class, PresentationContext.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+            }
+        return false;
+    }
+
     protected PresentationContext negotiate(AAssociateRQ rq, AAssociateAC ac,
            PresentationContext rqpc) {
        String as = rqpc.getAbstractSyntax();
@@ -675,6 +795,7 @@ public class ApplicationEntity implements Serializable {
         scuTCs.putAll(src.scuTCs);
         scpTCs.clear();
         scpTCs.putAll(src.scpTCs);
+        invalidateNegotiationCache();
     }
 
     private void reconfigureAEExtensions(ApplicationEntity from) {
@@ -43,6 +43,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerArray;
@@ -58,6 +59,7 @@ import org.dcm4che3.net.pdu.AAssociateRQ;
 import org.dcm4che3.net.pdu.CommonExtendedNegotiation;
 import org.dcm4che3.net.pdu.PresentationContext;
 import org.dcm4che3.net.pdu.RoleSelection;
+import org.dcm4che3.util.ConcurrentIntHashMap;
 import org.dcm4che3.util.IntHashMap;
 import org.dcm4che3.util.SafeClose;
 import org.slf4j.Logger;
@@ -75,6 +77,7 @@ public class Association {
     private final AtomicInteger messageID = new AtomicInteger();
     private final AtomicIntegerArray dimseCounters = new AtomicIntegerArray(46);
     private final long connectTime;
+    private final long connectNanos;
     private final int serialNo;
     private final boolean requestor;
     private String name;
@@ -93,13 +96,17 @@ public class Association {
 
     private HashMap<String, Object> properties;
     private int maxOpsInvoked;
+    private volatile Semaphore opsInvokedLimiter;
+    private volatile boolean closed;
     private int maxPDULength;
     private int performing;
     private Timeout timeout;
-    private final IntHashMap<DimseRSPHandler> rspHandlerForMsgId =
-            new IntHashMap<DimseRSPHandler>();
-    private final IntHashMap<CancelRQHandler> cancelHandlerForMsgId =
-            new IntHashMap<CancelRQHandler>();
+    private final ConcurrentIntHashMap<DimseRSPHandler> rspHandlerForMsgId =
+            new ConcurrentIntHashMap<DimseRSPHandler>();
+    private final ArrayDeque<PendingInvoke> pendingInvokes =
+            new ArrayDeque<PendingInvoke>();
+    private final ConcurrentIntHashMap<CancelRQHandler> cancelHandlerForMsgId =
+            new ConcurrentIntHashMap<CancelRQHandler>();
     private final HashMap<String,HashMap<String,PresentationContext>> pcMap =
             new HashMap<String,HashMap<String,PresentationContext>>();
     private final LinkedList<AssociationListener> listeners = new LinkedList<>();
@@ -107,6 +114,7 @@ public class Association {
     Association(ApplicationEntity ae, Connection local, Socket sock)
             throws IOException {
         this.connectTime = System.currentTimeMillis();
+        this.connectNanos = System.nanoTime();
         this.serialNo = prevSerialNo.incrementAndGet();
         this.ae = ae;
         this.requestor = ae != null;
@@ -164,6 +172,20 @@ public class Association {
         dimseCounters.getAndIncrement(23 + dimse.ordinal());
     }
 
+    AssociationMonitor getAssociationMonitor() {
+        ApplicationEntity ae = this.ae;
+        return ae != null
+                ? ae.getAssociationMonitor()
+                : device.getAssociationMonitor();
+    }
+
+    private void onAssociationEstablished() {
+        AssociationMonitor monitor = getAssociationMonitor();
+        if (monitor != null)
+            monitor.onAssociationEstablished(this,
+                    System.nanoTime() - connectNanos);
+    }
+
     @Override
     public String toString() {
         return name;
@@ -307,6 +329,10 @@ public class Association {
         return conn.isPackPDV();
     }
 
+    int getPendingRSPCoalesceDelay() {
+        return conn.getPendingRSPCoalesceDelay();
+    }
+
     public void release() throws IOException {
         state.writeAReleaseRQ(this);
     }
@@ -421,19 +447,21 @@ public class Association {
 
     private void startTimeout(final int msgID, int timeout) {
         if (timeout > 0) {
-            synchronized (rspHandlerForMsgId) {
-                DimseRSPHandler rspHandler = rspHandlerForMsgId.get(msgID);
-                if (rspHandler != null) {
-                    rspHandler.setTimeout(Timeout.start(this,
-                        "{}: start " + msgID + ":DIMSE-RSP timeout of {}ms",
-                        "{}: " + msgID + ":DIMSE-RSP timeout expired",
-                        "{}: stop " + msgID + ":DIMSE-RSP timeout",
-                        timeout));
-                }
+            DimseRSPHandler rspHandler = rspHandlerForMsgId.get(msgID);
+            if (rspHandler != null) {
+                rspHandler.setTimeout(startRSPTimeout(msgID, timeout));
             }
         }
     }
 
+    private Timeout startRSPTimeout(int msgID, int timeout) {
+        return Timeout.start(this,
+                "{}: start " + msgID + ":DIMSE-RSP timeout of {}ms",
+                "{}: " + msgID + ":DIMSE-RSP timeout expired",
+                "{}: stop " + msgID + ":DIMSE-RSP timeout",
+                timeout);
+    }
+
     private synchronized void stopTimeout() {
         if (timeout != null) {
             timeout.stop();
@@ -529,19 +557,34 @@ public class Association {
     }
 
     private void onClose() {
+        closed = true;
         stopTimeout();
-        synchronized (rspHandlerForMsgId) {
-            IntHashMap.Visitor<DimseRSPHandler> visitor =
-                    new IntHashMap.Visitor<DimseRSPHandler>() {
+        Semaphore limiter = opsInvokedLimiter;
+        opsInvokedLimiter = null;
+        if (limiter != null) // release threads blocked by maxOpsInvoked
+            limiter.release(maxOpsInvoked + limiter.getQueueLength());
+        synchronized (pendingInvokes) {
+            // handlers of pending invokes are notified below
+            pendingInvokes.clear();
+        }
+        final ArrayList<DimseRSPHandler> outstanding =
+                new ArrayList<DimseRSPHandler>(rspHandlerForMsgId.size());
+        IntHashMap.Visitor<DimseRSPHandler> visitor =
+                new IntHashMap.Visitor<DimseRSPHandler>() {
 
-                @Override
-                public boolean visit(int key, DimseRSPHandler value) {
-                    value.onClose(Association.this);
-                    return true;
-                }
-            };
-            rspHandlerForMsgId.accept(visitor);
-            rspHandlerForMsgId.clear();
+            @Override
+            public boolean visit(int key, DimseRSPHandler value) {
+                outstanding.add(value);
+                return true;
+            }
+        };
+        rspHandlerForMsgId.accept(visitor);
+        // handlers added concurrently - by threads released by the limiter -
+        // are notified by closedAfterAdd(); the removal decides who notifies
+        for (DimseRSPHandler rspHandler : outstanding)
+            if (rspHandlerForMsgId.remove(rspHandler.getMessageID()) == rspHandler)
+                rspHandler.onClose(this);
+        synchronized (rspHandlerForMsgId) {
             rspHandlerForMsgId.notifyAll();
         }
         if (ae != null)
@@ -566,9 +609,11 @@ public class Association {
             ac = device.getAssociationHandler().negotiate(this, rq);
             initPCMap();
             maxOpsInvoked = ac.getMaxOpsPerformed();
+            initOpsInvokedLimiter();
             maxPDULength = Association.minZeroAsMax(
                     rq.getMaxPDULength(), conn.getSendPDULength());
             write(ac);
+            onAssociationEstablished();
         } catch (AAssociateRJ e) {
             write(e);
         }
@@ -585,10 +630,18 @@ public class Association {
         this.ac = ac;
         initPCMap();
         maxOpsInvoked = ac.getMaxOpsInvoked();
+        initOpsInvokedLimiter();
         maxPDULength = Association.minZeroAsMax(
                 ac.getMaxPDULength(), conn.getSendPDULength());
         enterState(State.Sta6);
         startIdleTimeout();
+        onAssociationEstablished();
+    }
+
+    private void initOpsInvokedLimiter() {
+        opsInvokedLimiter = maxOpsInvoked > 0
+                ? new Semaphore(maxOpsInvoked)
+                : null;
     }
 
     void onAAssociateRJ(AAssociateRJ rj) throws IOException {
@@ -723,6 +776,11 @@ public class Association {
         else {
             incReceivedCount(dimse);
             removeDimseRSPHandler(msgId);
+            AssociationMonitor monitor = getAssociationMonitor();
+            if (monitor != null && rspHandler.getRQDimse() != null)
+                monitor.onDimseRSPReceived(this, rspHandler.getRQDimse(),
+                        rspHandler.getRQSOPClassUID(), status,
+                        System.nanoTime() - rspHandler.getInvokeNanos());
             if (rspHandlerForMsgId.isEmpty() && performing == 0)
                 startIdleOrReleaseTimeout();
         }
@@ -737,28 +795,105 @@ public class Association {
 
     private void addDimseRSPHandler(DimseRSPHandler rspHandler)
             throws InterruptedException {
-        synchronized (rspHandlerForMsgId) {
-            while (maxOpsInvoked > 0
-                    && rspHandlerForMsgId.size() >= maxOpsInvoked)
-                rspHandlerForMsgId.wait();
-            rspHandlerForMsgId.put(rspHandler.getMessageID(), rspHandler);
+        if (rspHandlerForMsgId.containsKey(rspHandler.getMessageID()))
+            throw new IllegalStateException(
+                    "Message ID already in use: " + rspHandler.getMessageID());
+        Semaphore limiter = opsInvokedLimiter;
+        if (limiter != null && !limiter.tryAcquire()) {
+            long waitStart = System.nanoTime();
+            limiter.acquire();
+            AssociationMonitor monitor = getAssociationMonitor();
+            if (monitor != null)
+                monitor.onMaxOpsInvokedWait(this,
+                        System.nanoTime() - waitStart);
+        }
+        if (rspHandlerForMsgId.putIfAbsent(rspHandler.getMessageID(),
+                rspHandler) != null) {
+            releaseOpsInvoked();
+            throw new IllegalStateException(
+                    "Message ID already in use: " + rspHandler.getMessageID());
         }
+        closedAfterAdd(rspHandler);
+    }
+
+    /**
+     * Notifies {@code rspHandler} by {@link DimseRSPHandler#onClose}, if it
+     * was added after {@link #onClose()} collected the outstanding handlers.
+     *
+     * @return {@code true} if the association is already closed
+     */
+    private boolean closedAfterAdd(DimseRSPHandler rspHandler) {
+        if (!closed)
+            return false;
+        if (rspHandlerForMsgId.remove(rspHandler.getMessageID()) == rspHandler)
+            rspHandler.onClose(this);
+        return true;
     }
 
     private DimseRSPHandler getDimseRSPHandler(int msgId) {
-        synchronized (rspHandlerForMsgId ) {
-            return rspHandlerForMsgId.get(msgId);
-        }
+        return rspHandlerForMsgId.get(msgId);
     }
 
     private DimseRSPHandler removeDimseRSPHandler(int msgId) {
-        synchronized (rspHandlerForMsgId ) {
-            DimseRSPHandler tmp = rspHandlerForMsgId.remove(msgId);
-            rspHandlerForMsgId.notifyAll();
-            return tmp;
+        DimseRSPHandler tmp = rspHandlerForMsgId.remove(msgId);
+        if (tmp != null) {
+            releaseOpsInvoked();
+            if (rspHandlerForMsgId.isEmpty())
+                synchronized (rspHandlerForMsgId) {
+                    rspHandlerForMsgId.notifyAll();
+                }
+        }
+        return tmp;
+    }
+
+    private void releaseOpsInvoked() {
+        Semaphore limiter = opsInvokedLimiter;
+        if (limiter != null) {
+            limiter.release();
+            dispatchPendingInvoke(limiter);
         }
     }
 
+    private void dispatchPendingInvoke(Semaphore limiter) {
+        PendingInvoke invoke;
+        synchronized (pendingInvokes) {
+            if (pendingInvokes.isEmpty() || !limiter.tryAcquire())
+                return;
+            invoke = pendingInvokes.poll();
+        }
+        try {
+            device.execute(invoke);
+        } catch (RuntimeException e) {
+            LOG.warn("{}: failed to dispatch queued DIMSE request - abort association:",
+                    name, e);
+            limiter.release();
+            abort();
+            DimseRSPHandler rspHandler = invoke.rspHandler;
+            if (rspHandlerForMsgId.remove(rspHandler.getMessageID()) == rspHandler)
+                rspHandler.onClose(this);
+        }
+    }
+
+    boolean withdraw(DimseRSPHandler rspHandler) {
+        synchronized (pendingInvokes) {
+            Iterator<PendingInvoke> iter = pendingInvokes.iterator();
+            while (true) {
+                if (!iter.hasNext())
+                    return false;
+                if (iter.next().rspHandler == rspHandler) {
+                    iter.remove();
+                    break;
+                }
+            }
+        }
+        rspHandlerForMsgId.remove(rspHandler.getMessageID());
+        if (rspHandlerForMsgId.isEmpty())
+            synchronized (rspHandlerForMsgId) {
+                rspHandlerForMsgId.notifyAll();
+            }
+        return true;
+    }
+
     void cancel(PresentationContext pc, int msgId) throws IOException {
         Attributes cmd = Commands.mkCCancelRQ(msgId);
         encoder.writeDIMSE(pc, cmd, null);
@@ -812,15 +947,11 @@ public class Association {
     }
 
     public void addCancelRQHandler(int msgId, CancelRQHandler handler) {
-        synchronized (cancelHandlerForMsgId) {
-            cancelHandlerForMsgId.put(msgId, handler);
-        }
+        cancelHandlerForMsgId.put(msgId, handler);
     }
 
     public CancelRQHandler removeCancelRQHandler(int msgId) {
-        synchronized (cancelHandlerForMsgId) {
-            return cancelHandlerForMsgId.remove(msgId);
-        }
+        return cancelHandlerForMsgId.remove(msgId);
     }
 
     private void initPCMap() {
@@ -1042,6 +1173,109 @@ public class Association {
         return rsp;
     }
 
+    public AsyncDimseRSP cstoreAsync(String cuid, String iuid, int priority,
+            DataWriter data, String tsuid) throws IOException {
+        return cstoreAsync(cuid, cuid, iuid, priority, data, tsuid);
+    }
+
+    public AsyncDimseRSP cstoreAsync(String asuid, String cuid, String iuid,
+            int priority, DataWriter data, String tsuid) throws IOException {
+        PresentationContext pc = pcFor(asuid, tsuid);
+        checkIsSCU(cuid);
+        AsyncDimseRSP rsp = new AsyncDimseRSP(nextMessageID());
+        Attributes cstorerq = Commands.mkCStoreRQ(rsp.getMessageID(),
+                cuid, iuid, priority);
+        invokeAsync(pc, cstorerq, data, rsp, conn.getResponseTimeout());
+        return rsp;
+    }
+
+    public AsyncDimseRSP cstoreAsync(String cuid, String iuid, int priority,
+            String moveOriginatorAET, int moveOriginatorMsgId,
+            DataWriter data, String tsuid) throws IOException {
+        return cstoreAsync(cuid, cuid, iuid, priority, moveOriginatorAET,
+                moveOriginatorMsgId, data, tsuid);
+    }
+
+    public AsyncDimseRSP cstoreAsync(String asuid, String cuid, String iuid,
+            int priority, String moveOriginatorAET, int moveOriginatorMsgId,
+            DataWriter data, String tsuid) throws IOException {
+        PresentationContext pc = pcFor(asuid, tsuid);
+        AsyncDimseRSP rsp = new AsyncDimseRSP(nextMessageID());
+        Attributes cstorerq = Commands.mkCStoreRQ(rsp.getMessageID(),
+                cuid, iuid, priority, moveOriginatorAET, moveOriginatorMsgId);
+        invokeAsync(pc, cstorerq, data, rsp, conn.getResponseTimeout());
+        return rsp;
+    }
+
+    public DimseRSPPublisher cfindAsync(String cuid, int priority,
+            Attributes data, String tsuid) throws IOException {
+        return cfindAsync(cuid, cuid, priority, data, tsuid,
+                DimseRSPPublisher.DEF_MAX_BUFFERED);
+    }
+
+    public DimseRSPPublisher cfindAsync(String asuid, String cuid,
+            int priority, Attributes data, String tsuid, int maxBuffered)
+            throws IOException {
+        PresentationContext pc = pcFor(asuid, tsuid);
+        checkIsSCU(cuid);
+        DimseRSPPublisher rsp =
+                new DimseRSPPublisher(nextMessageID(), maxBuffered);
+        Attributes cfindrq =
+                Commands.mkCFindRQ(rsp.getMessageID(), cuid, priority);
+        invokeAsync(pc, cfindrq, new DataWriterAdapter(data), rsp,
+                conn.getResponseTimeout());
+        return rsp;
+    }
+
+    public AsyncDimseRSP cgetAsync(String cuid, int priority,
+            Attributes data, String tsuid) throws IOException {
+        return cgetAsync(cuid, cuid, priority, data, tsuid);
+    }
+
+    public AsyncDimseRSP cgetAsync(String asuid, String cuid, int priority,
+            Attributes data, String tsuid) throws IOException {
+        PresentationContext pc = pcFor(asuid, tsuid);
+        checkIsSCU(cuid);
+        AsyncDimseRSP rsp = new AsyncDimseRSP(nextMessageID());
+        Attributes cgetrq = Commands.mkCGetRQ(rsp.getMessageID(),
+                cuid, priority);
+        invokeAsync(pc, cgetrq, new DataWriterAdapter(data), rsp,
+                conn.getRetrieveTimeout());
+        return rsp;
+    }
+
+    public AsyncDimseRSP cmoveAsync(String cuid, int priority,
+            Attributes data, String tsuid, String destination)
+            throws IOException {
+        return cmoveAsync(cuid, cuid, priority, data, tsuid, destination);
+    }
+
+    public AsyncDimseRSP cmoveAsync(String asuid, String cuid, int priority,
+            Attributes data, String tsuid, String destination)
+            throws IOException {
+        PresentationContext pc = pcFor(asuid, tsuid);
+        checkIsSCU(cuid);
+        AsyncDimseRSP rsp = new AsyncDimseRSP(nextMessageID());
+        Attributes cmoverq = Commands.mkCMoveRQ(rsp.getMessageID(),
+                cuid, priority, destination);
+        invokeAsync(pc, cmoverq, new DataWriterAdapter(data), rsp,
+                conn.getRetrieveTimeout());
+        return rsp;
+    }
+
+    public AsyncDimseRSP cechoAsync() throws IOException {
+        return cechoAsync(UID.VerificationSOPClass);
+    }
+
+    public AsyncDimseRSP cechoAsync(String cuid) throws IOException {
+        PresentationContext pc = pcFor(cuid, null);
+        checkIsSCU(cuid);
+        AsyncDimseRSP rsp = new AsyncDimseRSP(nextMessageID());
+        Attributes cechorq = Commands.mkCEchoRQ(rsp.getMessageID(), cuid);
+        invokeAsync(pc, cechorq, null, rsp, conn.getResponseTimeout());
+        return rsp;
+    }
+
     public void neventReport(String cuid, String iuid, int eventTypeId,
             Attributes data, String tsuid, DimseRSPHandler rspHandler)
             throws IOException, InterruptedException {
@@ -1251,12 +1485,98 @@ public class Association {
             throws IOException, InterruptedException {
         stopTimeout();
         checkException();
+        rspHandler.setAssociation(this);
         rspHandler.setPC(pc);
+        Dimse dimse = Dimse.valueOf(cmd.getInt(Tag.CommandField, 0));
+        rspHandler.setRQ(dimse, cmd.getString(dimse.tagOfSOPClassUID()));
         addDimseRSPHandler(rspHandler);
         encoder.writeDIMSE(pc, cmd, data);
         startTimeout(rspHandler.getMessageID(), rspTimeout);
     }
 
+    /**
+     * Invokes the DIMSE request without blocking the calling thread if the
+     * number of outstanding requests reached the negotiated maximal number of
+     * asynchronous operations. In that case, the request is queued and sent
+     * by a thread of the device executor after an outstanding operation
+     * completed, so {@code data} must remain valid until then. Failures to
+     * send a queued request abort the association and are reported to
+     * {@code rspHandler} by {@link DimseRSPHandler#onClose}.
+     *
+     * @throws IllegalStateException
+     *             if no executor is configured for the device or if the
+     *             Message ID of {@code rspHandler} is already in use
+     */
+    public void invokeAsync(PresentationContext pc, Attributes cmd,
+            DataWriter data, DimseRSPHandler rspHandler, int rspTimeout)
+            throws IOException {
+        if (device.getExecutor() == null)
+            throw new IllegalStateException("executor not initialized");
+
+        stopTimeout();
+        checkException();
+        rspHandler.setAssociation(this);
+        rspHandler.setPC(pc);
+        Dimse dimse = Dimse.valueOf(cmd.getInt(Tag.CommandField, 0));
+        rspHandler.setRQ(dimse, cmd.getString(dimse.tagOfSOPClassUID()));
+        PendingInvoke invoke =
+                new PendingInvoke(pc, cmd, data, rspHandler, rspTimeout);
+        Semaphore limiter = opsInvokedLimiter;
+        synchronized (pendingInvokes) {
+            if (rspHandlerForMsgId.putIfAbsent(rspHandler.getMessageID(),
+                    rspHandler) != null)
+                throw new IllegalStateException(
+                        "Message ID already in use: " + rspHandler.getMessageID());
+            if (!closed && limiter != null
+                    && (!pendingInvokes.isEmpty() || !limiter.tryAcquire())) {
+                pendingInvokes.add(invoke);
+                return;
+            }
+        }
+        if (closedAfterAdd(rspHandler))
+            return;
+        invoke.write();
+    }
+
+    private final class PendingInvoke implements Runnable {
+        final PresentationContext pc;
+        final Attributes cmd;
+        final DataWriter data;
+        final DimseRSPHandler rspHandler;
+        final int rspTimeout;
+        final long queuedNanos = System.nanoTime();
+
+        PendingInvoke(PresentationContext pc, Attributes cmd, DataWriter data,
+                DimseRSPHandler rspHandler, int rspTimeout) {
+            this.pc = pc;
+            this.cmd = cmd;
+            this.data = data;
+            this.rspHandler = rspHandler;
+            this.rspTimeout = rspTimeout;
+        }
+
+        void write() throws IOException {
+            encoder.writeDIMSE(pc, cmd, data);
+            int msgID = rspHandler.getMessageID();
+            if (rspTimeout > 0 && rspHandlerForMsgId.get(msgID) == rspHandler)
+                rspHandler.setTimeoutUnlessRSPReceived(
+                        startRSPTimeout(msgID, rspTimeout));
+        }
+
+        @Override
+        public void run() {
+            AssociationMonitor monitor = getAssociationMonitor();
+            if (monitor != null)
+                monitor.onMaxOpsInvokedWait(Association.this,
+                        System.nanoTime() - queuedNanos);
+            try {
+                write();
+            } catch (IOException e) {
+                onIOException(e);
+            }
+        }
+    }
+
     static int minZeroAsMax(int i1, int i2) {
         return i1 == 0 ? i2 : i2 == 0 ? i1 : Math.min(i1, i2);
     }
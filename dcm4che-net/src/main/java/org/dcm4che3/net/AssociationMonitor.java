@@ -0,0 +1,84 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+/**
+ * Receives notifications about established associations, completed DIMSE
+ * operations and transferred P-DATA-TF PDUs and PDVs, to collect
+ * performance metrics. Invoked by the threads reading or writing PDUs, so
+ * implementations have to be thread-safe and should return quickly.
+ *
+ * @see Device#setAssociationMonitor(AssociationMonitor)
+ * @see ApplicationEntity#setAssociationMonitor(AssociationMonitor)
+ * @see DimseStatistics
+ */
+public interface AssociationMonitor {
+
+    /**
+     * @param as established association
+     * @param nanos time from connection establishment to sending or
+     *        receiving the A-ASSOCIATE-AC in ns
+     */
+    void onAssociationEstablished(Association as, long nanos);
+
+    /**
+     * @param as association
+     * @param dimse DIMSE request
+     * @param cuid SOP Class UID of the request
+     * @param status status of the final response
+     * @param nanos time from sending the request to receiving the final
+     *        response in ns
+     */
+    void onDimseRSPReceived(Association as, Dimse dimse, String cuid,
+            int status, long nanos);
+
+    /**
+     * @param as association
+     * @param nanos time blocked in sending a DIMSE request, because the
+     *        maximal number of outstanding operations was reached, in ns
+     */
+    void onMaxOpsInvokedWait(Association as, long nanos);
+
+    void onPDataTFSent(Association as, int pdulen);
+
+    void onPDataTFReceived(Association as, int pdulen);
+
+    void onPDVSent(Association as, int pdvlen);
+
+    void onPDVReceived(Association as, int pdvlen);
+}
@@ -0,0 +1,206 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+
+/**
+ * Future of the final response of a DIMSE request invoked by one of the
+ * {@code c*Async} methods of {@link Association}. Instead of blocking on
+ * {@link #get()}, callers may register a {@link Listener}, which is notified
+ * by the thread receiving the final response or closing the association.
+ */
+public class AsyncDimseRSP extends DimseRSPHandler
+        implements Future<Attributes> {
+
+    public interface Listener {
+        void onComplete(AsyncDimseRSP rsp);
+    }
+
+    private final List<Listener> listeners = new ArrayList<Listener>(1);
+    private Attributes command;
+    private Attributes dataset;
+    private IOException ex;
+    private boolean done;
+    private boolean cancelled;
+
+    public AsyncDimseRSP(int msgID) {
+        super(msgID);
+    }
+
+    @Override
+    public void onDimseRSP(Association as, Attributes cmd, Attributes data) {
+        super.onDimseRSP(as, cmd, data);
+        synchronized (this) {
+            command = cmd;
+            dataset = data;
+            if (Status.isPending(cmd.getInt(Tag.Status, 0)))
+                return;
+        }
+        complete(null, false);
+    }
+
+    @Override
+    public void onClose(Association as) {
+        super.onClose(as);
+        IOException e = as.getException();
+        complete(e != null ? e
+                : new IOException("Association to " + as.getRemoteAET()
+                        + " released before receive of outstanding DIMSE RSP"),
+                false);
+    }
+
+    private void complete(IOException e, boolean cancel) {
+        Listener[] ls;
+        synchronized (this) {
+            if (done)
+                return;
+            done = true;
+            ex = e;
+            cancelled = cancel;
+            ls = listeners.toArray(new Listener[listeners.size()]);
+            listeners.clear();
+            notifyAll();
+        }
+        for (Listener l : ls)
+            l.onComplete(this);
+    }
+
+    /**
+     * Register listener to be notified on receive of the final response.
+     * If the response was already received, the listener is notified
+     * immediately by the calling thread.
+     */
+    public void addListener(Listener listener) {
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.onComplete(this);
+    }
+
+    /**
+     * Returns the command of the last received - pending or final - response.
+     */
+    public synchronized final Attributes getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the dataset of the last received - pending or final - response.
+     */
+    public synchronized final Attributes getDataset() {
+        return dataset;
+    }
+
+    public synchronized final IOException getException() {
+        return ex;
+    }
+
+    public synchronized final int getStatus() {
+        return command != null ? command.getInt(Tag.Status, -1) : -1;
+    }
+
+    /**
+     * Withdraws the request, if it was not yet sent because the number of
+     * outstanding requests reached the negotiated maximal number of
+     * asynchronous operations. Requests already sent cannot be withdrawn, use
+     * {@link #cancel(Association)} to request the SCP to cancel the
+     * operation.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Association as = getAssociation();
+        if (as == null || !as.withdraw(this))
+            return false;
+
+        complete(null, true);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized Attributes get()
+            throws InterruptedException, ExecutionException {
+        while (!done)
+            wait();
+        return result();
+    }
+
+    @Override
+    public synchronized Attributes get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        long remaining;
+        while (!done) {
+            if ((remaining = end - System.nanoTime()) <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    private Attributes result() throws ExecutionException {
+        if (cancelled)
+            throw new CancellationException();
+        if (ex != null)
+            throw new ExecutionException(ex);
+        return command;
+    }
+}
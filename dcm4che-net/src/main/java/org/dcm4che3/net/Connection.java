@@ -130,6 +130,7 @@ public class Connection implements Serializable {
     private int maxOpsPerformed = SYNCHRONOUS_MODE;
     private int maxOpsInvoked = SYNCHRONOUS_MODE;
     private boolean packPDV = true;
+    private int pendingRSPCoalesceDelay;
     private boolean tcpNoDelay = true;
     private boolean tlsNeedClientAuth = true;
     private String[] tlsCipherSuites = {};
@@ -649,6 +650,31 @@ public class Connection implements Serializable {
         this.packPDV = packPDV;
     }
 
+    /**
+     * Get the maximal delay in ms, by which sending of pending DIMSE
+     * responses is deferred, to pack them together with following DIMSE
+     * messages into one P-DATA-TF PDU. A value of 0 - the default -
+     * disables packing of several DIMSE messages into one P-DATA-TF PDU.
+     * <p>
+     * Although permitted by the DICOM Upper Layer Protocol, some peers -
+     * including previous versions of this library - only decode the first
+     * DIMSE message of a P-DATA-TF PDU and silently ignore the following
+     * ones. Only enable packing for connections to peers known to decode
+     * several DIMSE messages per P-DATA-TF PDU.
+     *
+     * @return maximal delay in ms or 0
+     */
+    public final int getPendingRSPCoalesceDelay() {
+        return pendingRSPCoalesceDelay;
+    }
+
+    public final void setPendingRSPCoalesceDelay(int delay) {
+        if (delay < 0)
+            throw new IllegalArgumentException("delay: " + delay);
+
+        this.pendingRSPCoalesceDelay = delay;
+    }
+
     /**
      * Determine if this network connection is using Nagle's algorithm as part
      * of its network communication.
@@ -1140,6 +1166,7 @@ public class Connection implements Serializable {
         setMaxOpsPerformed(from.maxOpsPerformed);
         setMaxOpsPerformed(from.maxOpsInvoked);
         setPackPDV(from.packPDV);
+        setPendingRSPCoalesceDelay(from.pendingRSPCoalesceDelay);
         setTcpNoDelay(from.tcpNoDelay);
         setTlsNeedClientAuth(from.tlsNeedClientAuth);
         setTlsCipherSuites(from.tlsCipherSuites);
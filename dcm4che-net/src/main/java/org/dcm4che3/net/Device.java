@@ -60,8 +60,10 @@ import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 
+import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Code;
 import org.dcm4che3.data.Issuer;
+import org.dcm4che3.net.pdu.PresentationContext;
 import org.dcm4che3.util.StringUtils;
 
 /**
@@ -128,6 +130,8 @@ public class Device implements Serializable {
     private transient AssociationHandler associationHandler = new AssociationHandler();
     private transient DimseRQHandler dimseRQHandler;
     private transient ConnectionMonitor connectionMonitor;
+    private transient AssociationMonitor associationMonitor;
+    private transient DimseRQScheduler dimseRQScheduler;
 
     private transient final List<Association> associations = new ArrayList<>();
 
@@ -728,6 +732,22 @@ public class Device implements Serializable {
         this.connectionMonitor = connectionMonitor;
     }
 
+    public AssociationMonitor getAssociationMonitor() {
+        return associationMonitor;
+    }
+
+    public void setAssociationMonitor(AssociationMonitor associationMonitor) {
+        this.associationMonitor = associationMonitor;
+    }
+
+    public DimseRQScheduler getDimseRQScheduler() {
+        return dimseRQScheduler;
+    }
+
+    public void setDimseRQScheduler(DimseRQScheduler dimseRQScheduler) {
+        this.dimseRQScheduler = dimseRQScheduler;
+    }
+
     public void bindConnections() throws IOException, GeneralSecurityException {
         for (Connection con : conns)
             con.bind();
@@ -754,6 +774,8 @@ public class Device implements Serializable {
     public void unbindConnections() {
         for (Connection con : conns)
             con.unbind();
+        for (DeviceExtension ext : extensions.values())
+            ext.unbindConnections();
     }
 
     public final Executor getExecutor() {
@@ -1043,6 +1065,31 @@ public class Device implements Serializable {
         executor.execute(command);
     }
 
+    /**
+     * Executes a task performing a DIMSE request received on the specified
+     * association. If a {@link DimseRQScheduler} is configured, the
+     * execution is scheduled according the priority of the DIMSE request
+     * and the concurrency limits of the scheduler, and a failure response is
+     * sent, if the executor rejects the task.
+     *
+     * @param as
+     *            association on which the DIMSE request was received
+     * @param pc
+     *            presentation context of the DIMSE request
+     * @param rq
+     *            command of the DIMSE request
+     * @param command
+     *            task performing the DIMSE request
+     */
+    public void execute(Association as, PresentationContext pc, Attributes rq,
+            Runnable command) {
+        DimseRQScheduler scheduler = dimseRQScheduler;
+        if (scheduler != null)
+            scheduler.execute(as, pc, rq, command);
+        else
+            execute(command);
+    }
+
     public ScheduledFuture<?> schedule(Runnable command, long delay,
             TimeUnit unit) {
         if (scheduledExecutor == null)
@@ -64,4 +64,10 @@ public class DeviceExtension implements Serializable {
     public void verifyNotUsed(Connection conn) { }
 
     public void reconfigure(DeviceExtension from) { }
+
+    /**
+     * Invoked by {@link Device#unbindConnections()}, to release resources
+     * of the extension, like outbound connections kept open.
+     */
+    public void unbindConnections() { }
 }
@@ -0,0 +1,482 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.util.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the execution of tasks performing DIMSE requests - like
+ * C-FIND, C-MOVE and C-GET - by the {@link Device}'s executor, ordered by
+ * the {@link Priority} of the DIMSE request.
+ * <p>
+ * The number of concurrently executed tasks may be limited in total by
+ * {@link #setMaxActive} and per calling AE by {@link #setMaxActivePerAE}.
+ * Queued tasks of the same priority are dispatched round robin between
+ * calling AEs, so one AE with many queued requests cannot starve other AEs.
+ * Long running tasks may invoke {@link #yieldToHigherPriority} between
+ * sub-operations to give way to queued tasks with higher priority. A
+ * yielding task passes its remaining work as continuation and returns, so
+ * no executor thread is blocked while a task is suspended and the device's
+ * executor may be bounded.
+ */
+public class DimseRQScheduler implements DimseRQSchedulerMXBean {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(DimseRQScheduler.class);
+
+    private static final String[] PRIORITY_NAMES = { "HIGH", "NORMAL", "LOW" };
+
+    private final FairQueue[] queues = {
+            new FairQueue(), new FairQueue(), new FairQueue() };
+    private final Histogram[] waitTime = {
+            new Histogram(), new Histogram(), new Histogram() };
+    private final HashMap<String, int[]> activePerAE =
+            new HashMap<String, int[]>();
+    private final HashMap<Thread, Entry> running = new HashMap<Thread, Entry>();
+    private int active;
+    private int maxActive;
+    private int maxActivePerAE;
+    private ObjectName objectName;
+
+    public final synchronized int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * Set the maximal number of concurrently executed tasks.
+     *
+     * @param maxActive
+     *            maximal number of concurrently executed tasks or 0 for
+     *            no limit
+     */
+    public final void setMaxActive(int maxActive) {
+        if (maxActive < 0)
+            throw new IllegalArgumentException("maxActive: " + maxActive);
+
+        synchronized (this) {
+            this.maxActive = maxActive;
+        }
+        dispatch();
+    }
+
+    public final synchronized int getMaxActivePerAE() {
+        return maxActivePerAE;
+    }
+
+    /**
+     * Set the maximal number of concurrently executed tasks for requests
+     * received from one calling AE.
+     *
+     * @param maxActivePerAE
+     *            maximal number of concurrently executed tasks per calling
+     *            AE or 0 for no limit
+     */
+    public final void setMaxActivePerAE(int maxActivePerAE) {
+        if (maxActivePerAE < 0)
+            throw new IllegalArgumentException("maxActivePerAE: "
+                    + maxActivePerAE);
+
+        synchronized (this) {
+            this.maxActivePerAE = maxActivePerAE;
+        }
+        dispatch();
+    }
+
+    /**
+     * Schedules the execution of a task performing a DIMSE request received
+     * on the specified association by the executor of the association's
+     * device. If the executor rejects the task, a failure response is sent
+     * for the DIMSE request.
+     *
+     * @param as
+     *            association on which the DIMSE request was received
+     * @param pc
+     *            presentation context of the DIMSE request
+     * @param rq
+     *            command of the DIMSE request
+     * @param task
+     *            task performing the DIMSE request
+     */
+    public void execute(Association as, PresentationContext pc, Attributes rq,
+            Runnable task) {
+        enqueue(new Entry(as, pc, rq,
+                rankOf(rq.getInt(Tag.Priority, Priority.NORMAL)), task), false);
+    }
+
+    private void enqueue(Entry entry, boolean first) {
+        synchronized (this) {
+            queues[entry.rank].add(entry, first);
+        }
+        dispatch();
+    }
+
+    /**
+     * Queues the continuation of the task executed by the calling thread
+     * before all other waiting tasks of the same priority and calling AE, if
+     * tasks with higher priority are waiting for execution, which could be
+     * dispatched by releasing the execution slot hold by the calling task.
+     * On {@code true}, the calling task must return without further work;
+     * its execution slot is released on return and {@code continuation} is
+     * executed, when it is dispatched again according its priority.
+     *
+     * @param continuation
+     *            remaining work of the calling task
+     * @return {@code true} if {@code continuation} was queued, {@code false}
+     *         if the calling thread does not execute a task scheduled by
+     *         this scheduler or if no task with higher priority is waiting
+     */
+    public boolean yieldToHigherPriority(Runnable continuation) {
+        synchronized (this) {
+            Entry entry = running.get(Thread.currentThread());
+            if (entry == null || !higherPriorityWaiting(entry))
+                return false;
+
+            queues[entry.rank].add(new Entry(entry, continuation), true);
+            return true;
+        }
+    }
+
+    private boolean higherPriorityWaiting(Entry entry) {
+        for (int rank = 0; rank < entry.rank; rank++)
+            if (queues[rank].hasEligible(entry.aet))
+                return true;
+        return false;
+    }
+
+    private void dispatch() {
+        boolean rejected;
+        do {
+            ArrayList<Entry> dispatched = new ArrayList<Entry>();
+            synchronized (this) {
+                while (maxActive == 0 || active < maxActive) {
+                    Entry entry = pollEligible();
+                    if (entry == null)
+                        break;
+
+                    acquire(entry);
+                    waitTime[entry.rank].record(
+                            toMicros(System.nanoTime() - entry.queued));
+                    dispatched.add(entry);
+                }
+            }
+            rejected = false;
+            for (Entry entry : dispatched)
+                if (!entry.submit())
+                    rejected = true; // slot released: dispatch next entry
+        } while (rejected);
+    }
+
+    private Entry pollEligible() {
+        for (FairQueue queue : queues) {
+            Entry entry = queue.pollEligible();
+            if (entry != null)
+                return entry;
+        }
+        return null;
+    }
+
+    private void acquire(Entry entry) {
+        active++;
+        int[] count = activePerAE.get(entry.aet);
+        if (count == null)
+            activePerAE.put(entry.aet, count = new int[1]);
+        count[0]++;
+    }
+
+    private void release(Entry entry) {
+        active--;
+        int[] count = activePerAE.get(entry.aet);
+        if (--count[0] == 0)
+            activePerAE.remove(entry.aet);
+    }
+
+    private boolean isQuotaExceeded(String aet) {
+        if (maxActivePerAE == 0)
+            return false;
+
+        int[] count = activePerAE.get(aet);
+        return count != null && count[0] >= maxActivePerAE;
+    }
+
+    private static int rankOf(int priority) {
+        switch (priority) {
+        case Priority.HIGH:
+            return 0;
+        case Priority.LOW:
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public synchronized int getQueueSize() {
+        int size = 0;
+        for (FairQueue queue : queues)
+            size += queue.size;
+        return size;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getQueueSizePerPriority() {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        for (int rank = 0; rank < queues.length; rank++)
+            map.put(PRIORITY_NAMES[rank], queues[rank].size);
+        return map;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getQueueSizePerAE() {
+        Map<String, Integer> map = new TreeMap<String, Integer>();
+        for (FairQueue queue : queues)
+            for (Map.Entry<String, ArrayDeque<Entry>> e
+                    : queue.queuePerAE.entrySet()) {
+                Integer size = map.get(e.getKey());
+                map.put(e.getKey(), e.getValue().size()
+                        + (size != null ? size : 0));
+            }
+        return map;
+    }
+
+    @Override
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getActiveCountPerAE() {
+        Map<String, Integer> map = new TreeMap<String, Integer>();
+        for (Map.Entry<String, int[]> e : activePerAE.entrySet())
+            map.put(e.getKey(), e.getValue()[0]);
+        return map;
+    }
+
+    @Override
+    public Map<String, Histogram> getWaitTimePerPriority() {
+        Map<String, Histogram> map = new LinkedHashMap<String, Histogram>();
+        for (int rank = 0; rank < waitTime.length; rank++)
+            map.put(PRIORITY_NAMES[rank], waitTime[rank]);
+        return map;
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : waitTime)
+            histogram.reset();
+    }
+
+    public ObjectName registerMBean(Device device) throws JMException {
+        return registerMBean(new ObjectName(DimseStatistics.DOMAIN
+                + ":type=DimseRQScheduler,device="
+                + ObjectName.quote(device.getDeviceName())));
+    }
+
+    public synchronized ObjectName registerMBean(ObjectName name)
+            throws JMException {
+        if (objectName != null)
+            throw new IllegalStateException("Already registered as " + objectName);
+
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        objectName = name;
+        return name;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName == null)
+            return;
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+
+    private final class Entry implements Runnable {
+        final Association as;
+        final PresentationContext pc;
+        final Attributes rq;
+        final String aet;
+        final int rank;
+        final Runnable task;
+        final boolean continuation;
+        final long queued = System.nanoTime();
+
+        Entry(Association as, PresentationContext pc, Attributes rq, int rank,
+                Runnable task) {
+            this.as = as;
+            this.pc = pc;
+            this.rq = rq;
+            this.aet = String.valueOf(as.getRemoteAET());
+            this.rank = rank;
+            this.task = task;
+            this.continuation = false;
+        }
+
+        Entry(Entry suspended, Runnable continuation) {
+            this.as = suspended.as;
+            this.pc = suspended.pc;
+            this.rq = suspended.rq;
+            this.aet = suspended.aet;
+            this.rank = suspended.rank;
+            this.task = continuation;
+            this.continuation = true;
+        }
+
+        /**
+         * @return {@code false} if the executor rejected the task and its
+         *         execution slot was released
+         */
+        boolean submit() {
+            try {
+                as.getDevice().execute(this);
+                return true;
+            } catch (RuntimeException e) {
+                synchronized (DimseRQScheduler.this) {
+                    release(this);
+                }
+                if (continuation) {
+                    // the operation already in progress cannot be answered
+                    // by a failure response, and running it by the calling
+                    // thread may block the reader thread of an association
+                    LOG.warn("{}: Failed to execute continuation of {} - abort association",
+                            as, task, e);
+                    as.abort();
+                } else {
+                    LOG.warn("{}: Failed to execute {}", as, task, e);
+                    as.tryWriteDimseRSP(pc, failureRSP(rq));
+                }
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            Entry caller;
+            synchronized (DimseRQScheduler.this) {
+                caller = running.put(thread, this);
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (DimseRQScheduler.this) {
+                    if (caller != null)
+                        running.put(thread, caller);
+                    else
+                        running.remove(thread);
+                    release(this);
+                }
+                dispatch();
+            }
+        }
+    }
+
+    private static Attributes failureRSP(Attributes rq) {
+        Dimse dimse = Dimse.valueOf(rq.getInt(Tag.CommandField, 0));
+        return Commands.mkRSP(rq, dimse == Dimse.C_FIND_RQ
+                        ? Status.OutOfResources
+                        : Status.UnableToProcess,
+                dimse);
+    }
+
+    /**
+     * Queues of entries of one priority, served round robin between
+     * calling AEs.
+     */
+    private final class FairQueue {
+        final LinkedHashMap<String, ArrayDeque<Entry>> queuePerAE =
+                new LinkedHashMap<String, ArrayDeque<Entry>>();
+        int size;
+
+        void add(Entry entry, boolean first) {
+            ArrayDeque<Entry> queue = queuePerAE.get(entry.aet);
+            if (queue == null)
+                queuePerAE.put(entry.aet, queue = new ArrayDeque<Entry>());
+            if (first)
+                queue.addFirst(entry);
+            else
+                queue.addLast(entry);
+            size++;
+        }
+
+        boolean hasEligible(String releasingAET) {
+            for (String aet : queuePerAE.keySet())
+                if (aet.equals(releasingAET) || !isQuotaExceeded(aet))
+                    return true;
+            return false;
+        }
+
+        Entry pollEligible() {
+            for (Iterator<Map.Entry<String, ArrayDeque<Entry>>> iter =
+                    queuePerAE.entrySet().iterator(); iter.hasNext();) {
+                Map.Entry<String, ArrayDeque<Entry>> e = iter.next();
+                if (isQuotaExceeded(e.getKey()))
+                    continue;
+
+                // move served AE to the end of the round robin order
+                iter.remove();
+                ArrayDeque<Entry> queue = e.getValue();
+                Entry entry = queue.poll();
+                if (!queue.isEmpty())
+                    queuePerAE.put(e.getKey(), queue);
+                size--;
+                return entry;
+            }
+            return null;
+        }
+    }
+}
@@ -50,30 +50,77 @@ import org.dcm4che3.net.pdu.PresentationContext;
 public class DimseRSPHandler {
 
     private final int msgId;
+    private Association as;
     private PresentationContext pc;
     private Timeout timeout;
+    private Dimse dimse;
+    private String cuid;
+    private long invokeNanos;
+    private boolean rspReceived;
 
     public DimseRSPHandler(int msgId) {
         this.msgId = msgId;
     }
 
+    final void setAssociation(Association as) {
+        this.as = as;
+    }
+
+    final Association getAssociation() {
+        return as;
+    }
+
     final void setPC(PresentationContext pc) {
         this.pc = pc;
     }
 
+    final void setRQ(Dimse dimse, String cuid) {
+        this.dimse = dimse;
+        this.cuid = cuid;
+        this.invokeNanos = System.nanoTime();
+    }
+
+    final Dimse getRQDimse() {
+        return dimse;
+    }
+
+    final String getRQSOPClassUID() {
+        return cuid;
+    }
+
+    final long getInvokeNanos() {
+        return invokeNanos;
+    }
+
     public final int getMessageID() {
         return msgId;
     }
 
-    final void setTimeout(Timeout timeout) {
+    final synchronized void setTimeout(Timeout timeout) {
         this.timeout = timeout;
     }
 
+    /**
+     * Sets the response timeout started by the thread which sent the
+     * request. If the thread reading from the association already received
+     * a response, the timeout is stopped, so it cannot expire while a
+     * subclass holds off the reader thread.
+     */
+    final synchronized void setTimeoutUnlessRSPReceived(Timeout timeout) {
+        if (rspReceived)
+            timeout.stop();
+        else
+            this.timeout = timeout;
+    }
+
     public void cancel(Association as) throws IOException {
         as.cancel(pc, msgId);
     }
 
     public void onDimseRSP(Association as, Attributes cmd, Attributes data) {
+        synchronized (this) {
+            rspReceived = true;
+        }
         stopTimeout(as);
     }
 
@@ -81,7 +128,7 @@ public class DimseRSPHandler {
         stopTimeout(as);
     }
 
-    private void stopTimeout(Association as) {
+    private synchronized void stopTimeout(Association as) {
         if (timeout != null) {
             timeout.stop();
             timeout = null;
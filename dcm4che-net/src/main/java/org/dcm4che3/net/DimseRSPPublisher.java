@@ -0,0 +1,276 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+
+/**
+ * Publishes the pending responses of a DIMSE request - typically a C-FIND -
+ * invoked by {@link Association#cfindAsync} to one {@link Subscriber}, which
+ * signals its demand by {@link Subscription#request(long)}.
+ * <p>
+ * Responses received in excess of the demand are buffered up to
+ * {@code maxBuffered}. If the buffer is full, the thread reading from the
+ * association waits until the subscriber requests more responses, which
+ * throttles the SCP by TCP flow control. As that also holds off responses
+ * of other operations on the same association, subscribers should request
+ * responses ahead of processing them. If the subscriber does not request
+ * further responses within the response timeout of the connection, it is
+ * notified by {@link Subscriber#onError} and the operation is canceled by a
+ * C-CANCEL-RQ.
+ */
+public class DimseRSPPublisher extends DimseRSPHandler {
+
+    public static final int DEF_MAX_BUFFERED = 64;
+
+    public interface Subscriber {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(Attributes cmd, Attributes data);
+
+        void onComplete(Attributes cmd, Attributes data);
+
+        void onError(IOException e);
+    }
+
+    public interface Subscription {
+        void request(long n);
+
+        void cancel();
+    }
+
+    private static final class Entry {
+        final Attributes command;
+        final Attributes dataset;
+        final boolean pending;
+
+        Entry(Attributes command, Attributes dataset) {
+            this.command = command;
+            this.dataset = dataset;
+            this.pending = Status.isPending(command.getInt(Tag.Status, 0));
+        }
+    }
+
+    private final int maxBuffered;
+    private final ArrayDeque<Entry> buffer = new ArrayDeque<Entry>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private Subscriber subscriber;
+    private boolean subscribed;
+    private long requested;
+    private boolean finished;
+    private boolean terminated;
+    private IOException ex;
+
+    private final Subscription subscription = new Subscription() {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                throw new IllegalArgumentException("n: " + n);
+            synchronized (DimseRSPPublisher.this) {
+                requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                DimseRSPPublisher.this.notifyAll();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            DimseRSPPublisher.this.cancel();
+        }
+    };
+
+    public DimseRSPPublisher(int msgID) {
+        this(msgID, DEF_MAX_BUFFERED);
+    }
+
+    public DimseRSPPublisher(int msgID, int maxBuffered) {
+        super(msgID);
+        if (maxBuffered <= 0)
+            throw new IllegalArgumentException("maxBuffered: " + maxBuffered);
+        this.maxBuffered = maxBuffered;
+    }
+
+    public void subscribe(Subscriber s) {
+        synchronized (this) {
+            if (subscribed)
+                throw new IllegalStateException("Already subscribed");
+            subscribed = true;
+        }
+        s.onSubscribe(subscription);
+        synchronized (this) {
+            subscriber = s;
+        }
+        drain();
+    }
+
+    @Override
+    public void onDimseRSP(Association as, Attributes cmd, Attributes data) {
+        super.onDimseRSP(as, cmd, data);
+        Entry entry = new Entry(cmd, data);
+        boolean expired = false;
+        synchronized (this) {
+            if (terminated || ex != null)
+                return;
+            if (entry.pending && !awaitCapacity(
+                    as.getConnection().getResponseTimeout())) {
+                expired = true;
+                ex = new IOException("Subscriber did not request further "
+                        + "responses from " + as.getRemoteAET()
+                        + " within the response timeout");
+                buffer.clear();
+            } else {
+                if (terminated)
+                    return;
+                buffer.add(entry);
+                finished = !entry.pending;
+            }
+        }
+        drain();
+        if (expired)
+            try {
+                cancel(as);
+            } catch (IOException e) {
+                // failure to send the C-CANCEL RQ aborts the association
+            }
+    }
+
+    /**
+     * Waits until the buffer has space for another pending response.
+     *
+     * @param timeout maximal time to wait in ms; 0 waits without limit
+     * @return {@code false} if the timeout expired
+     */
+    private boolean awaitCapacity(int timeout) {
+        long end = System.currentTimeMillis() + timeout;
+        try {
+            while (buffer.size() >= maxBuffered && !terminated) {
+                if (timeout <= 0) {
+                    wait();
+                } else {
+                    long remaining = end - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        return false;
+                    wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    @Override
+    public void onClose(Association as) {
+        super.onClose(as);
+        synchronized (this) {
+            if (finished || terminated || ex != null)
+                return;
+            ex = as.getException();
+            if (ex == null)
+                ex = new IOException("Association to " + as.getRemoteAET()
+                        + " released before receive of outstanding DIMSE RSP");
+            buffer.clear();
+            notifyAll();
+        }
+        drain();
+    }
+
+    private void cancel() {
+        synchronized (this) {
+            if (terminated)
+                return;
+            terminated = true;
+            buffer.clear();
+            notifyAll();
+            if (finished)
+                return;
+        }
+        Association as = getAssociation();
+        if (as == null || as.withdraw(this))
+            return;
+        try {
+            cancel(as);
+        } catch (IOException e) {
+            // failure to send the C-CANCEL RQ aborts the association
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0)
+            return;
+
+        int missed = 1;
+        do {
+            Subscriber s;
+            Entry entry;
+            IOException e;
+            while (true) {
+                synchronized (this) {
+                    s = subscriber;
+                    if (s == null || terminated)
+                        break;
+                    e = ex;
+                    entry = e == null ? buffer.peek() : null;
+                    if (e == null && (entry == null
+                            || entry.pending && requested == 0))
+                        break;
+                    if (e != null || !entry.pending) {
+                        terminated = true;
+                    } else if (requested != Long.MAX_VALUE) {
+                        requested--;
+                    }
+                    buffer.poll();
+                    notifyAll();
+                }
+                if (e != null)
+                    s.onError(e);
+                else if (entry.pending)
+                    s.onNext(entry.command, entry.dataset);
+                else
+                    s.onComplete(entry.command, entry.dataset);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,244 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.dcm4che3.util.Histogram;
+
+/**
+ * {@link AssociationMonitor}, which collects histograms of association
+ * setup times, of DIMSE response times by DIMSE request and SOP Class, of
+ * wait times caused by the maximal number of outstanding operations and of
+ * PDV sizes, together with the P-DATA-TF traffic by remote AE Title.
+ * Times are recorded in &micro;s. May be registered as MXBean on the
+ * platform MBean server to access the collected data over JMX.
+ */
+public class DimseStatistics implements AssociationMonitor,
+        DimseStatisticsMXBean {
+
+    public static final String DOMAIN = "org.dcm4che3.net";
+
+    private final Histogram associationSetupTime = new Histogram();
+    private final ConcurrentHashMap<String, Histogram> dimseRSPTime =
+            new ConcurrentHashMap<String, Histogram>();
+    private final Histogram maxOpsInvokedWaitTime = new Histogram();
+    private final Histogram sentPDVSize = new Histogram();
+    private final Histogram receivedPDVSize = new Histogram();
+    private final ConcurrentHashMap<String, Traffic> traffic =
+            new ConcurrentHashMap<String, Traffic>();
+    private ObjectName objectName;
+
+    @Override
+    public void onAssociationEstablished(Association as, long nanos) {
+        associationSetupTime.record(toMicros(nanos));
+    }
+
+    @Override
+    public void onDimseRSPReceived(Association as, Dimse dimse, String cuid,
+            int status, long nanos) {
+        String key = cuid != null ? dimse.name() + ' ' + cuid : dimse.name();
+        Histogram histogram = dimseRSPTime.get(key);
+        if (histogram == null) {
+            Histogram prev = dimseRSPTime.putIfAbsent(key,
+                    histogram = new Histogram());
+            if (prev != null)
+                histogram = prev;
+        }
+        histogram.record(toMicros(nanos));
+    }
+
+    @Override
+    public void onMaxOpsInvokedWait(Association as, long nanos) {
+        maxOpsInvokedWaitTime.record(toMicros(nanos));
+    }
+
+    @Override
+    public void onPDataTFSent(Association as, int pdulen) {
+        trafficOf(as).sent(pdulen);
+    }
+
+    @Override
+    public void onPDataTFReceived(Association as, int pdulen) {
+        trafficOf(as).received(pdulen);
+    }
+
+    @Override
+    public void onPDVSent(Association as, int pdvlen) {
+        sentPDVSize.record(pdvlen);
+    }
+
+    @Override
+    public void onPDVReceived(Association as, int pdvlen) {
+        receivedPDVSize.record(pdvlen);
+    }
+
+    @Override
+    public Histogram getAssociationSetupTime() {
+        return associationSetupTime;
+    }
+
+    @Override
+    public Map<String, Histogram> getDimseRSPTime() {
+        return dimseRSPTime;
+    }
+
+    @Override
+    public Histogram getMaxOpsInvokedWaitTime() {
+        return maxOpsInvokedWaitTime;
+    }
+
+    @Override
+    public Histogram getSentPDVSize() {
+        return sentPDVSize;
+    }
+
+    @Override
+    public Histogram getReceivedPDVSize() {
+        return receivedPDVSize;
+    }
+
+    @Override
+    public Map<String, Traffic> getTraffic() {
+        return traffic;
+    }
+
+    @Override
+    public void reset() {
+        associationSetupTime.reset();
+        dimseRSPTime.clear();
+        maxOpsInvokedWaitTime.reset();
+        sentPDVSize.reset();
+        receivedPDVSize.reset();
+        traffic.clear();
+    }
+
+    public ObjectName registerMBean(Device device) throws JMException {
+        return registerMBean(new ObjectName(DOMAIN
+                + ":type=DimseStatistics,device="
+                + ObjectName.quote(device.getDeviceName())));
+    }
+
+    public ObjectName registerMBean(ApplicationEntity ae) throws JMException {
+        return registerMBean(new ObjectName(DOMAIN
+                + ":type=DimseStatistics,device="
+                + ObjectName.quote(ae.getDevice().getDeviceName())
+                + ",ae=" + ObjectName.quote(ae.getAETitle())));
+    }
+
+    public synchronized ObjectName registerMBean(ObjectName name)
+            throws JMException {
+        if (objectName != null)
+            throw new IllegalStateException("Already registered as " + objectName);
+
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        objectName = name;
+        return name;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName == null)
+            return;
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+
+    private Traffic trafficOf(Association as) {
+        String key = String.valueOf(as.getRemoteAET());
+        Traffic value = traffic.get(key);
+        if (value == null) {
+            Traffic prev = traffic.putIfAbsent(key, value = new Traffic());
+            if (prev != null)
+                value = prev;
+        }
+        return value;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public static class Traffic {
+        private final AtomicLong pdusSent = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong pdusReceived = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        void sent(int pdulen) {
+            pdusSent.incrementAndGet();
+            bytesSent.addAndGet(pdulen + 6);
+        }
+
+        void received(int pdulen) {
+            pdusReceived.incrementAndGet();
+            bytesReceived.addAndGet(pdulen + 6);
+        }
+
+        public long getPDataTFSent() {
+            return pdusSent.get();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public long getPDataTFReceived() {
+            return pdusReceived.get();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        @Override
+        public String toString() {
+            return "Traffic[sent=" + getPDataTFSent() + " PDUs/"
+                    + getBytesSent() + " bytes, received="
+                    + getPDataTFReceived() + " PDUs/"
+                    + getBytesReceived() + " bytes]";
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+
+/**
+ * Forwards a data set received on one association as data of a DIMSE
+ * message on another association, without decoding it. PDV payload is
+ * passed through, only the PDV and PDU headers are re-encoded according
+ * the Presentation Context ID and the maximal PDU length negotiated for
+ * the outgoing association.
+ */
+public class ForwardingDataWriter implements DataWriter {
+
+    private final PDVInputStream in;
+    private final String tsuid;
+
+    /**
+     * @param in    the data set as received
+     * @param tsuid the Transfer Syntax of the received data set
+     */
+    public ForwardingDataWriter(PDVInputStream in, String tsuid) {
+        if (in == null)
+            throw new NullPointerException("in");
+        if (tsuid == null)
+            throw new NullPointerException("tsuid");
+        this.in = in;
+        this.tsuid = tsuid;
+    }
+
+    @Override
+    public void writeTo(PDVOutputStream out, String tsuid) throws IOException {
+        if (!tsuid.equals(this.tsuid))
+            throw new IllegalArgumentException("Transfer Syntax " + tsuid
+                    + " differs from Transfer Syntax " + this.tsuid
+                    + " of the forwarded data set");
+        if (in instanceof PDUDecoder && out instanceof PDUEncoder)
+            ((PDUDecoder) in).forwardTo((PDUEncoder) out);
+        else
+            in.copyTo(out);
+    }
+
+}
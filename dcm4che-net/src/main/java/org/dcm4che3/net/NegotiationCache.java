@@ -0,0 +1,182 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dcm4che3.net.pdu.AAssociateAC;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.CommonExtendedNegotiation;
+import org.dcm4che3.net.pdu.ExtendedNegotiation;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.pdu.RoleSelection;
+import org.dcm4che3.util.TagUtils;
+
+/**
+ * LRU cache of the Presentation Contexts, Role Selections and Extended
+ * Negotiations accepted by an {@link ApplicationEntity} for a particular
+ * A-ASSOCIATE-RQ. Any change of the Transfer Capabilities of the
+ * Application Entity invalidates the whole cache.
+ */
+class NegotiationCache {
+
+    private final LinkedHashMap<String, Result> map;
+    private int maxSize;
+    private int version;
+    private long hits;
+    private long misses;
+
+    public NegotiationCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > NegotiationCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        if (map.size() > maxSize)
+            map.clear();
+    }
+
+    public synchronized int version() {
+        return version;
+    }
+
+    public synchronized void invalidate() {
+        version++;
+        map.clear();
+    }
+
+    /**
+     * Adds the result of a previous negotiation of an equal A-ASSOCIATE-RQ
+     * to {@code ac}.
+     *
+     * @return {@code false} if there is no cached result for {@code key}
+     */
+    public boolean applyTo(String key, AAssociateAC ac) {
+        Result result;
+        synchronized (this) {
+            result = map.get(key);
+            if (result == null) {
+                misses++;
+                return false;
+            }
+            hits++;
+        }
+        for (PresentationContext pc : result.pcs)
+            ac.addPresentationContext(pc);
+        for (RoleSelection rs : result.rss)
+            ac.addRoleSelection(rs);
+        for (ExtendedNegotiation extNeg : result.extNegs)
+            ac.addExtendedNegotiation(extNeg);
+        return true;
+    }
+
+    /**
+     * Caches the result of the negotiation of an A-ASSOCIATE-RQ, if the
+     * Transfer Capabilities did not change since {@link #version()}
+     * returned {@code version}.
+     */
+    public void put(String key, int version, AAssociateAC ac) {
+        Result result = new Result(ac);
+        synchronized (this) {
+            if (this.version == version)
+                map.put(key, result);
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the key identifying the Presentation Contexts, Role Selections,
+     * Extended and Common Extended Negotiations of an A-ASSOCIATE-RQ. The
+     * Calling and Called AE Titles are not part of the key, because the
+     * negotiation by {@link ApplicationEntity} does not depend on them.
+     */
+    public static String keyOf(AAssociateRQ rq) {
+        StringBuilder sb = new StringBuilder(
+                rq.getNumberOfPresentationContexts() * 64);
+        for (PresentationContext pc : rq.getPresentationContexts()) {
+            sb.append(pc.getPCID()).append(':').append(pc.getAbstractSyntax());
+            for (String ts : pc.getTransferSyntaxes())
+                sb.append('|').append(ts);
+            sb.append('\n');
+        }
+        for (RoleSelection rs : rq.getRoleSelections())
+            sb.append("R:").append(rs.getSOPClassUID())
+                .append(rs.isSCU() ? ":1" : ":0")
+                .append(rs.isSCP() ? ":1\n" : ":0\n");
+        for (ExtendedNegotiation extNeg : rq.getExtendedNegotiations()) {
+            sb.append("X:").append(extNeg.getSOPClassUID()).append(':')
+                .append(TagUtils.toHexString(extNeg.getInformation()))
+                .append('\n');
+        }
+        for (CommonExtendedNegotiation extNeg : rq.getCommonExtendedNegotiations()) {
+            sb.append("C:").append(extNeg.getSOPClassUID())
+                .append(':').append(extNeg.getServiceClassUID());
+            for (String cuid : extNeg.getRelatedGeneralSOPClassUIDs())
+                sb.append('|').append(cuid);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static class Result {
+        final PresentationContext[] pcs;
+        final RoleSelection[] rss;
+        final ExtendedNegotiation[] extNegs;
+
+        Result(AAssociateAC ac) {
+            pcs = ac.getPresentationContexts().toArray(
+                    new PresentationContext[ac.getNumberOfPresentationContexts()]);
+            rss = ac.getRoleSelections().toArray(new RoleSelection[0]);
+            extNegs = ac.getExtendedNegotiations().toArray(new ExtendedNegotiation[0]);
+        }
+    }
+}
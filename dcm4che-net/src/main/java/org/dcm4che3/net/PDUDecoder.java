@@ -174,6 +174,9 @@ class PDUDecoder extends PDVInputStream {
             return;
         case PDUType.P_DATA_TF:
             readPDU();
+            AssociationMonitor monitor = as.getAssociationMonitor();
+            if (monitor != null)
+                monitor.onPDataTFReceived(as, pdulen);
             as.onPDataTF();
             return;
         case PDUType.A_ASSOCIATE_RJ:
@@ -423,6 +426,13 @@ class PDUDecoder extends PDVInputStream {
         if (pcid != - 1)
             return; // already inside decodeDIMSE
 
+        // one P-DATA-TF PDU may contain PDVs of several DIMSE messages
+        do {
+            decodeNextDIMSE();
+        } while (hasRemaining());
+    }
+
+    private void decodeNextDIMSE() throws IOException {
         nextPDV(PDVType.COMMAND, -1);
 
         PresentationContext pc = as.getPresentationContext(pcid);
@@ -525,6 +535,9 @@ class PDUDecoder extends PDVInputStream {
         this.pdvmch = get();
         Association.LOG.trace("{} >> PDV[len={}, pcid={}, mch={}]",
                 new Object[] { as, pdvlen, pcid, pdvmch } );
+        AssociationMonitor monitor = as.getAssociationMonitor();
+        if (monitor != null)
+            monitor.onPDVReceived(as, pdvlen);
         if ((pdvmch & PDVType.COMMAND) != expectedPDVType)
             abort(AAbort.UNEXPECTED_PDU_PARAMETER, UNEXPECTED_PDV_TYPE);
         if (expectedPCID != -1 && pcid != expectedPCID)
@@ -627,4 +640,19 @@ class PDUDecoder extends PDVInputStream {
             pos = pdvend;
         }
     }
+
+    /**
+     * Forwards the remaining PDV payload of the current message to
+     * {@code out}, without intermediate copies for PDUs which can be
+     * re-emitted as a whole.
+     */
+    void forwardTo(PDUEncoder out) throws IOException {
+        if (th != Thread.currentThread())
+            throw new IllegalStateException("Entered by wrong thread");
+        while (!isLastPDV()) {
+            out.writePDVPayload(buf, pos, pdvend - pos,
+                    (pdvmch & PDVType.LAST) != 0);
+            pos = pdvend;
+        }
+    }
 }
@@ -42,6 +42,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
@@ -75,6 +77,9 @@ class PDUEncoder extends PDVOutputStream {
     private int maxpdulen;
     private Thread th;
     private Object dimseLock = new Object();
+    private boolean coalescing;
+    private volatile FlushTask scheduledFlush;
+    private volatile boolean aborted;
 
     public PDUEncoder(Association as, OutputStream out) {
         this.as = as;
@@ -97,14 +102,17 @@ class PDUEncoder extends PDVOutputStream {
     }
 
     public void writeAReleaseRQ() throws IOException {
+        flushCoalescedPDataTF();
         write(PDUType.A_RELEASE_RQ, 0, 0, 0);
     }
 
     public void writeAReleaseRP() throws IOException {
+        flushCoalescedPDataTF();
         write(PDUType.A_RELEASE_RP, 0, 0, 0);
     }
 
     public void write(AAbort aa) throws IOException {
+        discardCoalescedPDataTF();
         write(PDUType.A_ABORT, 0, aa.getSource(), aa.getReason());
     }
 
@@ -124,8 +132,15 @@ class PDUEncoder extends PDVOutputStream {
     }
 
     private synchronized void writePDU(int pdulen) throws IOException {
+        writePDU(pdulen, null, 0, 0);
+    }
+
+    private synchronized void writePDU(int pdulen, byte[] b, int off, int len)
+            throws IOException {
         try {
-            out.write(buf, 0, 6 + pdulen);
+            out.write(buf, 0, 6 + pdulen - len);
+            if (len > 0)
+                out.write(b, off, len);
             out.flush();
         } catch (IOException e) {
             as.onIOException(e);
@@ -311,18 +326,45 @@ class PDUEncoder extends PDVOutputStream {
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        writePDVPayload(b, off, len, true);
+    }
+
+    /**
+     * Writes PDV payload. Complete PDUs are sent directly from {@code b}
+     * without copying the payload into the PDU buffer. If {@code last} is
+     * {@code false}, further payload will follow before {@link #close()},
+     * so also the final bytes of {@code b} may be sent directly, if they
+     * fill a whole PDU.
+     */
+    void writePDVPayload(byte[] b, int off, int len, boolean last)
+            throws IOException {
         checkThread();
         int pos = off;
         int remaining = len;
         while (remaining > 0) {
             flushPDataTF();
-            int write = Math.min(remaining, free());
-            put(b, pos, write);
-            pos += write;
-            remaining -= write;
+            int free = free();
+            if (pdvpos == 6 && this.pos == 12
+                    && (remaining > free || !last && remaining == free)) {
+                writeDirect(b, pos, free);
+                pos += free;
+                remaining -= free;
+            } else {
+                int write = Math.min(remaining, free);
+                put(b, pos, write);
+                pos += write;
+                remaining -= write;
+            }
         }
     }
 
+    private void writeDirect(byte[] b, int off, int len) throws IOException {
+        pos += len;
+        encodePDVHeader(PDVType.PENDING);
+        pos -= len;
+        writePDataTF(len, b, off);
+    }
+
     @Override
     public void close() {
         checkThread();
@@ -381,17 +423,29 @@ class PDUEncoder extends PDVOutputStream {
         pos = endpos;
         Association.LOG.trace("{} << PDV[len={}, pcid={}, mch={}]",
                 new Object[] { as, pdvlen, pdvpcid, (pdvcmd | last) });
+        AssociationMonitor monitor = as.getAssociationMonitor();
+        if (monitor != null)
+            monitor.onPDVSent(as, pdvlen);
     }
 
     public void writePDataTF() throws IOException {
-        int pdulen = pos - 6;
+        writePDataTF(0, null, 0);
+    }
+
+    private void writePDataTF(int len, byte[] b, int off) throws IOException {
+        coalescing = false;
+        cancelScheduledFlush();
+        int pdulen = pos - 6 + len;
         pos = 0;
         put(PDUType.P_DATA_TF);
         put(0);
         putInt(pdulen);
         Association.LOG.trace("{} << P-DATA-TF[len={}]",
                 new Object[] { as, pdulen });
-        writePDU(pdulen);
+        writePDU(pdulen, b, off, len);
+        AssociationMonitor monitor = as.getAssociationMonitor();
+        if (monitor != null)
+            monitor.onPDataTFSent(as, pdulen);
     }
 
     public void writeDIMSE(PresentationContext pc, Attributes cmd,
@@ -421,7 +475,7 @@ class PDUEncoder extends PDVOutputStream {
             cmdout.writeCommand(cmd);
             cmdout.close();
             if (dataWriter != null) {
-                if (!as.isPackPDV()) {
+                if (!as.isPackPDV() || free() <= 6) {
                     as.writePDataTF();
                 } else {
                     pdvpos = pos;
@@ -431,8 +485,107 @@ class PDUEncoder extends PDVOutputStream {
                 dataWriter.writeTo(this, tsuid);
                 close();
             }
-            as.writePDataTF();
+            if (coalesce(dimse, cmd)) {
+                pdvpos = pos;
+                pos += 6;
+                coalescing = true;
+                scheduleFlush();
+            } else {
+                as.writePDataTF();
+            }
             this.th = null;
         }
     }
+
+    /**
+     * Returns {@code true} if sending of the just encoded pending DIMSE-RSP
+     * shall be deferred to pack it together with following DIMSE messages
+     * into one P-DATA-TF PDU. Peers which only decode the first DIMSE
+     * message of a P-DATA-TF PDU lose the following ones, see
+     * {@link Connection#getPendingRSPCoalesceDelay()}.
+     */
+    private boolean coalesce(Dimse dimse, Attributes cmd) {
+        return !aborted
+                && as.getPendingRSPCoalesceDelay() > 0
+                && dimse.isRSP()
+                && Status.isPending(cmd.getInt(Tag.Status, -1))
+                && free() > 6
+                && as.getDevice().getScheduledExecutor() != null;
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush != null)
+            return;
+
+        FlushTask task = new FlushTask();
+        task.future = as.getDevice().schedule(task,
+                as.getPendingRSPCoalesceDelay(), TimeUnit.MILLISECONDS);
+        scheduledFlush = task;
+    }
+
+    /**
+     * Cancels the flush scheduled for deferred pending DIMSE-RSPs, after
+     * they were sent together with a following DIMSE message, so it does
+     * not cut short the delay of the next deferred DIMSE-RSP.
+     */
+    private void cancelScheduledFlush() {
+        FlushTask task = scheduledFlush;
+        if (task != null) {
+            scheduledFlush = null;
+            task.future.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the flush scheduled for deferred pending DIMSE-RSPs and
+     * discards them, so they are not sent after an A-ABORT. Does not wait
+     * for a thread currently encoding a DIMSE message, which may be blocked
+     * by the peer.
+     */
+    private void discardCoalescedPDataTF() {
+        aborted = true;
+        FlushTask task = scheduledFlush;
+        if (task != null)
+            task.future.cancel(false);
+    }
+
+    private final class FlushTask implements Runnable {
+        ScheduledFuture<?> future;
+
+        @Override
+        public void run() {
+            synchronized (dimseLock) {
+                if (scheduledFlush != this || aborted)
+                    return; // cancelled after it was started
+
+                try {
+                    flushCoalescedPDataTF();
+                } catch (IOException e) {
+                    Association.LOG.info("{}: failed to send coalesced P-DATA-TF: {}",
+                            as, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends pending DIMSE-RSPs deferred for packing with following DIMSE
+     * messages into one P-DATA-TF PDU.
+     *
+     * @throws IOException
+     */
+    void flushCoalescedPDataTF() throws IOException {
+        synchronized (dimseLock) {
+            cancelScheduledFlush();
+            if (!coalescing)
+                return;
+
+            coalescing = false;
+            if (aborted)
+                return;
+
+            pos = pdvpos; // discard reserved PDV header
+            as.writePDataTF();
+        }
+    }
 }
@@ -176,6 +176,7 @@ public class TransferCapability implements Serializable {
             if (ts.isEmpty())
                 throw new IllegalArgumentException("empty transferSyntax");
         this.transferSyntaxes = transferSyntaxes;
+        invalidateNegotiationCache();
     }
 
     public boolean containsTransferSyntax(String ts) {
@@ -191,6 +192,7 @@ public class TransferCapability implements Serializable {
 
     public void setQueryOptions(EnumSet<QueryOption> queryOptions) {
         this.queryOptions = queryOptions;
+        invalidateNegotiationCache();
     }
 
     public EnumSet<QueryOption> getQueryOptions() {
@@ -199,6 +201,13 @@ public class TransferCapability implements Serializable {
 
     public void setStorageOptions(StorageOptions storageOptions) {
         this.storageOptions = storageOptions;
+        invalidateNegotiationCache();
+    }
+
+    private void invalidateNegotiationCache() {
+        ApplicationEntity ae = this.ae;
+        if (ae != null)
+            ae.invalidateNegotiationCache();
     }
 
     public StorageOptions getStorageOptions() {
@@ -63,7 +63,7 @@ public class BasicCFindSCP extends AbstractDicomService {
             throw new DicomServiceException(Status.UnrecognizedOperation);
 
         QueryTask queryTask = calculateMatches(as, pc, rq, keys);
-        as.getApplicationEntity().getDevice().execute(queryTask);
+        as.getApplicationEntity().getDevice().execute(as, pc, rq, queryTask);
     }
 
     protected QueryTask calculateMatches(Association as, PresentationContext pc,
@@ -65,7 +65,8 @@ public class BasicCGetSCP extends AbstractDicomService {
 
         RetrieveTask retrieveTask = calculateMatches(as, pc, cmd, keys);
         if (retrieveTask != null)
-            as.getApplicationEntity().getDevice().execute(retrieveTask);
+            as.getApplicationEntity().getDevice().execute(as, pc, cmd,
+                    retrieveTask);
         else
             as.tryWriteDimseRSP(pc, Commands.mkCGetRSP(cmd, Status.Success));
     }
@@ -54,6 +54,7 @@ import org.dcm4che3.net.Association;
 import org.dcm4che3.net.Commands;
 import org.dcm4che3.net.DataWriter;
 import org.dcm4che3.net.Dimse;
+import org.dcm4che3.net.DimseRQScheduler;
 import org.dcm4che3.net.DimseRSPHandler;
 import org.dcm4che3.net.InputStreamDataWriter;
 import org.dcm4che3.net.Status;
@@ -88,6 +89,7 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements RetrieveTas
     protected Object outstandingRSPLock = new Object();
 
     private ScheduledFuture<?> writePendingRSP;
+    private Iterator<T> remaining;
 
 
     public BasicRetrieveTask(Dimse rq, 
@@ -157,55 +159,105 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements RetrieveTas
     @Override
     public void run() {
         rqas.addCancelRQHandler(msgId, this);
+        boolean yielded = false;
         try {
             if (pendingRSPInterval > 0)
                 startWritePendingRSP();
-            for (Iterator<T> iter = insts.iterator(); iter.hasNext();) {
-                T inst = iter.next();
-                if (canceled) {
-                    status = Status.Cancel;
-                    break;
-                }
-                if (pendingRSP)
-                    writePendingRSP();
-                String tsuid;
-                DataWriter dataWriter;
-                try {
-                    tsuid = selectTransferSyntaxFor(storeas, inst);
-                    dataWriter = createDataWriter(inst, tsuid);
-                } catch (Exception e) {
-                    status = Status.OneOrMoreFailures;
-                    LOG.info("{}: Unable to retrieve {}/{} to {}", rqas,
-                            UID.nameOf(inst.cuid), UID.nameOf(inst.tsuid),
-                            storeas.getRemoteAET(), e);
-                    failed.add(inst);
-                    continue;
-                }
-                try {
-                    cstore(storeas, inst, tsuid, dataWriter);
-                } catch (Exception e) {
-                    status = Status.UnableToPerformSubOperations;
-                    LOG.warn("{}: Unable to perform sub-operation on association to {}",
-                            rqas, storeas.getRemoteAET(), e);
-                    failed.add(inst);
-                    while (iter.hasNext())
-                        failed.add(iter.next());
-                }
-            }
-            waitForOutstandingCStoreRSP(storeas);
-            if (isCMove())
-                releaseStoreAssociation(storeas);
-            stopWritePendingRSP();
-            writeRSP(status);
+            remaining = insts.iterator();
+            yielded = performSubOperations();
         } finally {
-            rqas.removeCancelRQHandler(msgId);
+            if (!yielded)
+                onDone();
+        }
+    }
+
+    /**
+     * Performs the remaining sub-operations and sends the final response.
+     *
+     * @return {@code true} if the task yielded to queued DIMSE requests with
+     *         higher priority and will be continued later
+     */
+    private boolean performSubOperations() {
+        Iterator<T> iter = remaining;
+        while (iter.hasNext()) {
+            if (canceled) {
+                status = Status.Cancel;
+                break;
+            }
+            if (pendingRSP)
+                writePendingRSP();
+            if (yieldToHigherPriority())
+                return true;
+            T inst = iter.next();
+            String tsuid;
+            DataWriter dataWriter;
             try {
-                close();
-            } catch (Throwable e) {
-                LOG.warn("Exception thrown by {}.close()",
-                        getClass().getName(), e);
+                tsuid = selectTransferSyntaxFor(storeas, inst);
+                dataWriter = createDataWriter(inst, tsuid);
+            } catch (Exception e) {
+                status = Status.OneOrMoreFailures;
+                LOG.info("{}: Unable to retrieve {}/{} to {}", rqas,
+                        UID.nameOf(inst.cuid), UID.nameOf(inst.tsuid),
+                        storeas.getRemoteAET(), e);
+                failed.add(inst);
+                continue;
+            }
+            try {
+                cstore(storeas, inst, tsuid, dataWriter);
+            } catch (Exception e) {
+                status = Status.UnableToPerformSubOperations;
+                LOG.warn("{}: Unable to perform sub-operation on association to {}",
+                        rqas, storeas.getRemoteAET(), e);
+                failed.add(inst);
+                while (iter.hasNext())
+                    failed.add(iter.next());
             }
         }
+        waitForOutstandingCStoreRSP(storeas);
+        if (isCMove())
+            releaseStoreAssociation(storeas);
+        stopWritePendingRSP();
+        writeRSP(status);
+        return false;
+    }
+
+    private void onDone() {
+        rqas.removeCancelRQHandler(msgId);
+        try {
+            close();
+        } catch (Throwable e) {
+            LOG.warn("Exception thrown by {}.close()",
+                    getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Gives way to queued DIMSE requests with higher priority before
+     * performing the next sub-operation, if the task was scheduled by the
+     * {@link DimseRQScheduler} of the device. The remaining sub-operations
+     * are then performed by a continuation, after the requests with higher
+     * priority were dispatched.
+     *
+     * @return {@code true} if the remaining sub-operations are performed by
+     *         a continuation queued by the {@link DimseRQScheduler}
+     */
+    protected boolean yieldToHigherPriority() {
+        DimseRQScheduler scheduler =
+                rqas.getApplicationEntity().getDevice().getDimseRQScheduler();
+        return scheduler != null
+                && scheduler.yieldToHigherPriority(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        boolean yielded = false;
+                        try {
+                            yielded = performSubOperations();
+                        } finally {
+                            if (!yielded)
+                                onDone();
+                        }
+                    }
+                });
     }
 
     private void startWritePendingRSP() {
@@ -0,0 +1,129 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import org.dcm4che3.net.pdu.AAssociateAC;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.pdu.RoleSelection;
+import org.junit.Test;
+
+public class ApplicationEntityTest {
+
+    private static final String CT = "1.2.840.10008.5.1.4.1.1.2";
+    private static final String MR = "1.2.840.10008.5.1.4.1.1.4";
+    private static final String IVR_LE = "1.2.840.10008.1.2";
+    private static final String EVR_LE = "1.2.840.10008.1.2.1";
+
+    @Test
+    public void testNegotiationCache() {
+        ApplicationEntity ae = new ApplicationEntity("STORESCP");
+        ae.setNegotiationCacheSize(32);
+        TransferCapability tc = new TransferCapability(null, CT,
+                TransferCapability.Role.SCP, IVR_LE);
+        ae.addTransferCapability(tc);
+
+        AAssociateAC ac1 = negotiate(ae);
+        assertEquals(PresentationContext.ACCEPTANCE,
+                ac1.getPresentationContext(1).getResult());
+        assertEquals(PresentationContext.ABSTRACT_SYNTAX_NOT_SUPPORTED,
+                ac1.getPresentationContext(3).getResult());
+        assertTrue(ac1.getRoleSelectionFor(CT).isSCU());
+
+        AAssociateAC ac2 = negotiate(ae);
+        assertEquals(1, ae.getNegotiationCacheHitCount());
+        assertSame(ac1.getPresentationContext(1), ac2.getPresentationContext(1));
+        assertSame(ac1.getRoleSelectionFor(CT), ac2.getRoleSelectionFor(CT));
+
+        tc.setTransferSyntaxes(EVR_LE);
+        AAssociateAC ac3 = negotiate(ae);
+        assertEquals(1, ae.getNegotiationCacheHitCount());
+        assertEquals(EVR_LE, ac3.getPresentationContext(1).getTransferSyntax());
+
+        ae.addTransferCapability(new TransferCapability(null, MR,
+                TransferCapability.Role.SCP, IVR_LE));
+        AAssociateAC ac4 = negotiate(ae);
+        assertEquals(PresentationContext.ACCEPTANCE,
+                ac4.getPresentationContext(3).getResult());
+    }
+
+    @Test
+    public void testNegotiationCacheDisabled() {
+        ApplicationEntity ae = new ApplicationEntity("STORESCP");
+        assertEquals(0, ae.getNegotiationCacheSize());
+        ae.addTransferCapability(new TransferCapability(null, CT,
+                TransferCapability.Role.SCP, IVR_LE));
+        negotiate(ae);
+        negotiate(ae);
+        assertEquals(0, ae.getNegotiationCacheHitCount());
+    }
+
+    @Test
+    public void testNegotiationCacheBypassedIfNegotiateOverridden() {
+        final int[] invoked = new int[1];
+        ApplicationEntity ae = new ApplicationEntity("STORESCP") {
+
+            @Override
+            protected PresentationContext negotiate(AAssociateRQ rq,
+                    AAssociateAC ac, PresentationContext rqpc) {
+                invoked[0]++;
+                return super.negotiate(rq, ac, rqpc);
+            }
+        };
+        ae.setNegotiationCacheSize(32);
+        ae.addTransferCapability(new TransferCapability(null, CT,
+                TransferCapability.Role.SCP, IVR_LE));
+        negotiate(ae);
+        negotiate(ae);
+        assertEquals(4, invoked[0]);
+        assertEquals(0, ae.getNegotiationCacheHitCount());
+        assertEquals(0, ae.getNegotiationCacheMissCount());
+    }
+
+    private static AAssociateAC negotiate(ApplicationEntity ae) {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.addPresentationContext(new PresentationContext(1, CT, EVR_LE, IVR_LE));
+        rq.addPresentationContext(new PresentationContext(3, MR, IVR_LE));
+        rq.addRoleSelection(new RoleSelection(CT, true, false));
+        AAssociateAC ac = new AAssociateAC();
+        ae.negotiate(rq, ac);
+        return ac;
+    }
+}
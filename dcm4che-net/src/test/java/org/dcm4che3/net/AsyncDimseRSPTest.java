@@ -0,0 +1,418 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.DicomServiceException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AsyncDimseRSPTest {
+
+    private static final String FIND_CUID =
+            UID.StudyRootQueryRetrieveInformationModelFIND;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduledExecutor;
+    private static Device acceptor;
+    private static Device requestor;
+    private static final AtomicInteger echoed = new AtomicInteger();
+    private static volatile CountDownLatch gate;
+    private static volatile int numPending;
+    private Association as;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        requestor = createDevice("REQUESTOR", 0);
+        acceptor = createDevice("ACCEPTOR", 11118);
+        ApplicationEntity ae = aeOf(acceptor);
+        ae.addTransferCapability(new TransferCapability(null,
+                UID.VerificationSOPClass, TransferCapability.Role.SCP, TSUID));
+        ae.addTransferCapability(new TransferCapability(null, FIND_CUID,
+                TransferCapability.Role.SCP, TSUID));
+        ae.setDimseRQHandler(new TestSCP());
+        acceptor.bindConnections();
+    }
+
+    private static Device createDevice(String aet, int port) {
+        Device device = new Device(aet);
+        ApplicationEntity ae = new ApplicationEntity(aet);
+        Connection conn = new Connection(null, "localhost", port);
+        device.addApplicationEntity(ae);
+        device.addConnection(conn);
+        ae.addConnection(conn);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        return device;
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Thread.sleep(100);
+        acceptor.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        echoed.set(0);
+        gate = new CountDownLatch(0);
+        numPending = 0;
+        requestor.listConnections().get(0).setResponseTimeout(0);
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(UID.VerificationSOPClass, TSUID);
+        aarq.addPresentationContextFor(FIND_CUID, TSUID);
+        as = aeOf(requestor).connect(aeOf(acceptor), aarq);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        gate.countDown();
+        if (as.isReadyForDataTransfer()) {
+            as.release();
+            as.waitForSocketClose();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testQueuePastMaxOpsInvoked() throws Exception {
+        gate = new CountDownLatch(1);
+        final List<AsyncDimseRSP> completed =
+                Collections.synchronizedList(new ArrayList<AsyncDimseRSP>());
+        AsyncDimseRSP.Listener listener = new AsyncDimseRSP.Listener() {
+
+            @Override
+            public void onComplete(AsyncDimseRSP rsp) {
+                completed.add(rsp);
+            }
+        };
+        AsyncDimseRSP[] rsps = new AsyncDimseRSP[3];
+        for (int i = 0; i < rsps.length; i++) {
+            rsps[i] = as.cechoAsync();
+            rsps[i].addListener(listener);
+        }
+        awaitEchoed(1);
+        Thread.sleep(100);
+        assertEquals(1, echoed.get());
+        for (AsyncDimseRSP rsp : rsps)
+            assertFalse(rsp.isDone());
+        gate.countDown();
+        for (AsyncDimseRSP rsp : rsps)
+            assertEquals(Status.Success,
+                    rsp.get(2, TimeUnit.SECONDS).getInt(Tag.Status, -1));
+        assertEquals(3, echoed.get());
+        while (completed.size() < rsps.length)
+            Thread.sleep(10); // listeners notified after waiting threads
+        assertArrayEquals(rsps, completed.toArray());
+    }
+
+    @Test(timeout = 5000)
+    public void testWithdrawQueuedRequest() throws Exception {
+        gate = new CountDownLatch(1);
+        AsyncDimseRSP sent = as.cechoAsync();
+        AsyncDimseRSP queued = as.cechoAsync();
+        AsyncDimseRSP next = as.cechoAsync();
+        awaitEchoed(1);
+        assertFalse(sent.cancel(true));
+        assertTrue(queued.cancel(true));
+        assertTrue(queued.isDone());
+        assertTrue(queued.isCancelled());
+        try {
+            queued.get();
+            fail("CancellationException expected");
+        } catch (CancellationException expected) {
+        }
+        gate.countDown();
+        assertEquals(Status.Success, next.get(2, TimeUnit.SECONDS)
+                .getInt(Tag.Status, -1));
+        assertTrue(sent.isDone());
+        assertFalse(sent.isCancelled());
+        assertEquals(2, echoed.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testCompleteOnClose() throws Exception {
+        gate = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(2);
+        AsyncDimseRSP.Listener listener = new AsyncDimseRSP.Listener() {
+
+            @Override
+            public void onComplete(AsyncDimseRSP rsp) {
+                closed.countDown();
+            }
+        };
+        AsyncDimseRSP sent = as.cechoAsync();
+        AsyncDimseRSP queued = as.cechoAsync();
+        sent.addListener(listener);
+        queued.addListener(listener);
+        awaitEchoed(1);
+        as.abort();
+        assertTrue(closed.await(2, TimeUnit.SECONDS));
+        for (AsyncDimseRSP rsp : new AsyncDimseRSP[] { sent, queued }) {
+            assertNotNull(rsp.getException());
+            try {
+                rsp.get();
+                fail("ExecutionException expected");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testAbortOnRejectedDispatch() throws Exception {
+        gate = new CountDownLatch(1);
+        AsyncDimseRSP sent = as.cechoAsync();
+        AsyncDimseRSP queued = as.cechoAsync();
+        awaitEchoed(1);
+        requestor.setExecutor(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        try {
+            gate.countDown();
+            assertEquals(Status.Success, sent.get(2, TimeUnit.SECONDS)
+                    .getInt(Tag.Status, -1));
+            try {
+                queued.get(2, TimeUnit.SECONDS);
+                fail("ExecutionException expected");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+            assertFalse(as.isReadyForDataTransfer());
+            assertEquals(1, echoed.get());
+        } finally {
+            requestor.setExecutor(executor);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testInvokeAsyncWithoutExecutor() throws Exception {
+        requestor.setExecutor(null);
+        try {
+            as.cechoAsync();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        } finally {
+            requestor.setExecutor(executor);
+        }
+        assertEquals(Status.Success, as.cechoAsync().get(2, TimeUnit.SECONDS)
+                .getInt(Tag.Status, -1));
+    }
+
+    @Test(timeout = 5000)
+    public void testPublisherBackPressure() throws Exception {
+        numPending = 10;
+        CountingPublisher publisher = new CountingPublisher(as, 2);
+        TestSubscriber subscriber = new TestSubscriber(1);
+        publisher.subscribe(subscriber);
+        as.invokeAsync(as.pcFor(FIND_CUID, TSUID),
+                Commands.mkCFindRQ(publisher.getMessageID(), FIND_CUID,
+                        Priority.NORMAL),
+                new DataWriterAdapter(keys()), publisher, 0);
+        // 1 delivered, 2 buffered, 1 held off by the waiting reader thread
+        while (publisher.arrived.get() < 4)
+            Thread.sleep(10);
+        Thread.sleep(200);
+        assertEquals(4, publisher.arrived.get());
+        assertEquals(1, subscriber.next.get());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.done.await(2, TimeUnit.SECONDS));
+        assertEquals(10, subscriber.next.get());
+        assertEquals(Status.Success, subscriber.status);
+        assertNull(subscriber.error);
+    }
+
+    @Test(timeout = 5000)
+    public void testPublisherTimeout() throws Exception {
+        numPending = 10;
+        requestor.listConnections().get(0).setResponseTimeout(300);
+        as.release();
+        as.waitForSocketClose();
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(UID.VerificationSOPClass, TSUID);
+        aarq.addPresentationContextFor(FIND_CUID, TSUID);
+        as = aeOf(requestor).connect(aeOf(acceptor), aarq);
+        DimseRSPPublisher publisher = as.cfindAsync(FIND_CUID, FIND_CUID,
+                Priority.NORMAL, keys(), TSUID, 1);
+        TestSubscriber subscriber = new TestSubscriber(1);
+        long start = System.nanoTime();
+        publisher.subscribe(subscriber);
+        assertTrue(subscriber.done.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start
+                >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertNotNull(subscriber.error);
+        assertEquals(1, subscriber.next.get());
+        assertEquals(-1, subscriber.status);
+        // remaining responses are discarded, the association stays usable
+        assertEquals(Status.Success, as.cechoAsync().get(2, TimeUnit.SECONDS)
+                .getInt(Tag.Status, -1));
+    }
+
+    private static void awaitEchoed(int count) throws InterruptedException {
+        while (echoed.get() < count)
+            Thread.sleep(10);
+    }
+
+    private static Attributes keys() {
+        Attributes keys = new Attributes(1);
+        keys.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+        return keys;
+    }
+
+    private static ApplicationEntity aeOf(Device device) {
+        return device.getApplicationEntities().iterator().next();
+    }
+
+    private static final class CountingPublisher extends DimseRSPPublisher {
+        final AtomicInteger arrived = new AtomicInteger();
+
+        CountingPublisher(Association as, int maxBuffered) {
+            super(as.nextMessageID(), maxBuffered);
+        }
+
+        @Override
+        public void onDimseRSP(Association as, Attributes cmd,
+                Attributes data) {
+            if (Status.isPending(cmd.getInt(Tag.Status, -1)))
+                arrived.incrementAndGet();
+            super.onDimseRSP(as, cmd, data);
+        }
+    }
+
+    private static final class TestSubscriber
+            implements DimseRSPPublisher.Subscriber {
+        final long initialRequest;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile DimseRSPPublisher.Subscription subscription;
+        volatile int status = -1;
+        volatile IOException error;
+
+        TestSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(DimseRSPPublisher.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Attributes cmd, Attributes data) {
+            next.incrementAndGet();
+        }
+
+        @Override
+        public void onComplete(Attributes cmd, Attributes data) {
+            status = cmd.getInt(Tag.Status, -1);
+            done.countDown();
+        }
+
+        @Override
+        public void onError(IOException e) {
+            error = e;
+            done.countDown();
+        }
+    }
+
+    private static final class TestSCP implements DimseRQHandler {
+
+        @Override
+        public void onDimseRQ(Association as, PresentationContext pc,
+                Dimse dimse, Attributes cmd, PDVInputStream data)
+                throws IOException {
+            switch (dimse) {
+            case C_ECHO_RQ:
+                echoed.incrementAndGet();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                as.writeDimseRSP(pc, Commands.mkEchoRSP(cmd, Status.Success));
+                break;
+            case C_FIND_RQ:
+                Attributes keys = data.readDataset(pc.getTransferSyntax());
+                for (int i = 0; i < numPending; i++)
+                    as.writeDimseRSP(pc,
+                            Commands.mkCFindRSP(cmd, Status.Pending), keys);
+                as.writeDimseRSP(pc, Commands.mkCFindRSP(cmd, Status.Success));
+                break;
+            default:
+                throw new DicomServiceException(Status.UnrecognizedOperation);
+            }
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+}
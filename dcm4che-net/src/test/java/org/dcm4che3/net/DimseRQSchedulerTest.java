@@ -0,0 +1,347 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DimseRQSchedulerTest {
+
+    private static final String CUID =
+            UID.StudyRootQueryRetrieveInformationModelFIND;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduledExecutor;
+    private static Device acceptor;
+    private static Device requestor;
+    private static volatile boolean reject;
+    private static volatile DimseRQScheduler scheduler;
+    private static volatile List<String> executed;
+    private static volatile CountDownLatch gate;
+    private Association asA;
+    private Association asB;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        requestor = new Device("REQUESTOR");
+        Connection conn = new Connection(null, "localhost", 0);
+        conn.setMaxOpsInvoked(0);
+        requestor.addConnection(conn);
+        requestor.addApplicationEntity(newAE("A", conn));
+        requestor.addApplicationEntity(newAE("B", conn));
+        requestor.setExecutor(executor);
+        requestor.setScheduledExecutor(scheduledExecutor);
+
+        acceptor = new Device("ACCEPTOR");
+        conn = new Connection(null, "localhost", 11115);
+        conn.setMaxOpsPerformed(0);
+        acceptor.addConnection(conn);
+        ApplicationEntity ae = newAE("SCHEDULER", conn);
+        ae.addTransferCapability(new TransferCapability(null, CUID,
+                TransferCapability.Role.SCP, TSUID));
+        ae.setDimseRQHandler(new ScheduledFindSCP());
+        acceptor.addApplicationEntity(ae);
+        acceptor.setExecutor(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                if (reject)
+                    throw new RejectedExecutionException();
+                executor.execute(command);
+            }
+        });
+        acceptor.setScheduledExecutor(scheduledExecutor);
+        acceptor.bindConnections();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Thread.sleep(100);
+        acceptor.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new DimseRQScheduler();
+        executed = Collections.synchronizedList(new ArrayList<String>());
+        gate = new CountDownLatch(1);
+        acceptor.setDimseRQScheduler(scheduler);
+        asA = connect("A");
+        asB = connect("B");
+    }
+
+    private static ApplicationEntity newAE(String aet, Connection conn) {
+        ApplicationEntity ae = new ApplicationEntity(aet);
+        ae.addConnection(conn);
+        return ae;
+    }
+
+    private static Association connect(String aet) throws Exception {
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(CUID, TSUID);
+        return requestor.getApplicationEntity(aet).connect(
+                acceptor.getApplicationEntity("SCHEDULER"), aarq);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        gate.countDown();
+        reject = false;
+        release(asA);
+        release(asB);
+    }
+
+    private static void release(Association as) throws Exception {
+        if (as == null)
+            return;
+
+        if (as.isReadyForDataTransfer())
+            as.release();
+        as.waitForSocketClose();
+    }
+
+    @Test(timeout = 5000)
+    public void testPriorityOrder() throws Exception {
+        scheduler.setMaxActive(1);
+        DimseRSP blocking = find(asA, Priority.NORMAL, "BLOCK*");
+        awaitExecuted(1);
+        DimseRSP low = find(asA, Priority.LOW, "LOW");
+        DimseRSP normal = find(asA, Priority.NORMAL, "NORMAL");
+        DimseRSP high = find(asA, Priority.HIGH, "HIGH");
+        awaitQueueSize(3);
+        gate.countDown();
+        complete(blocking, low, normal, high);
+        assertEquals(Arrays.asList("BLOCK*", "HIGH", "NORMAL", "LOW"),
+                executed);
+    }
+
+    @Test(timeout = 5000)
+    public void testRoundRobinBetweenAEs() throws Exception {
+        scheduler.setMaxActive(1);
+        DimseRSP blocking = find(asA, Priority.NORMAL, "BLOCK*");
+        awaitExecuted(1);
+        DimseRSP a1 = find(asA, Priority.NORMAL, "A1");
+        DimseRSP a2 = find(asA, Priority.NORMAL, "A2");
+        DimseRSP a3 = find(asA, Priority.NORMAL, "A3");
+        awaitQueueSize(3);
+        DimseRSP b1 = find(asB, Priority.NORMAL, "B1");
+        DimseRSP b2 = find(asB, Priority.NORMAL, "B2");
+        awaitQueueSize(5);
+        gate.countDown();
+        complete(blocking, a1, a2, a3, b1, b2);
+        assertEquals(Arrays.asList("BLOCK*", "A1", "B1", "A2", "B2", "A3"),
+                executed);
+    }
+
+    @Test(timeout = 5000)
+    public void testMaxActivePerAE() throws Exception {
+        scheduler.setMaxActivePerAE(1);
+        DimseRSP blocking = find(asA, Priority.NORMAL, "BLOCK*");
+        awaitExecuted(1);
+        DimseRSP a1 = find(asA, Priority.NORMAL, "A1");
+        DimseRSP b1 = find(asB, Priority.NORMAL, "B1");
+        complete(b1);
+        while (scheduler.getActiveCount() > 1)
+            Thread.sleep(10); // B1 releases its slot after sending the RSP
+        assertEquals(Arrays.asList("BLOCK*", "B1"), executed);
+        assertEquals(1, scheduler.getQueueSize());
+        assertEquals(Collections.singletonMap("A", 1),
+                scheduler.getActiveCountPerAE());
+        gate.countDown();
+        complete(blocking, a1);
+        assertEquals(Arrays.asList("BLOCK*", "B1", "A1"), executed);
+    }
+
+    @Test(timeout = 5000)
+    public void testYieldToHigherPriority() throws Exception {
+        scheduler.setMaxActive(1);
+        DimseRSP yielding = find(asA, Priority.LOW, "YIELD*");
+        awaitExecuted(1);
+        DimseRSP high = find(asB, Priority.HIGH, "HIGH");
+        awaitQueueSize(1);
+        gate.countDown();
+        complete(yielding, high);
+        assertEquals(Arrays.asList("YIELD*", "HIGH", "YIELD*'"), executed);
+        assertFalse("not called by scheduled task",
+                scheduler.yieldToHigherPriority(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        fail();
+                    }
+                }));
+    }
+
+    @Test(timeout = 5000)
+    public void testRejectedExecution() throws Exception {
+        reject = true;
+        DimseRSP rsp = find(asA, Priority.NORMAL, "REJECTED");
+        assertTrue(rsp.next());
+        assertEquals(Status.OutOfResources,
+                rsp.getCommand().getInt(Tag.Status, -1));
+        assertFalse(rsp.next());
+        assertTrue(executed.isEmpty());
+        assertEquals(0, scheduler.getActiveCount());
+        assertEquals(0, scheduler.getQueueSize());
+    }
+
+    @Test(timeout = 5000)
+    public void testRejectedContinuation() throws Exception {
+        scheduler.setMaxActive(1);
+        DimseRSP yielding = find(asA, Priority.LOW, "YIELD*");
+        awaitExecuted(1);
+        DimseRSP high = find(asB, Priority.HIGH, "REJECT");
+        awaitQueueSize(1);
+        gate.countDown();
+        complete(high);
+        try {
+            complete(yielding);
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        asA = null; // aborted by the scheduler
+        assertEquals(Arrays.asList("YIELD*", "REJECT"), executed);
+        while (scheduler.getActiveCount() > 0)
+            Thread.sleep(10);
+        assertEquals(0, scheduler.getQueueSize());
+    }
+
+    private static DimseRSP find(Association as, int priority, String label)
+            throws Exception {
+        Attributes keys = new Attributes(2);
+        keys.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+        keys.setString(Tag.PatientID, VR.LO, label);
+        return as.cfind(CUID, priority, keys, TSUID, 0);
+    }
+
+    private static void awaitExecuted(int size) throws InterruptedException {
+        while (executed.size() < size)
+            Thread.sleep(10);
+    }
+
+    private static void awaitQueueSize(int size) throws InterruptedException {
+        while (scheduler.getQueueSize() < size)
+            Thread.sleep(10);
+    }
+
+    private static void complete(DimseRSP... rsps) throws Exception {
+        for (DimseRSP rsp : rsps) {
+            while (rsp.next())
+                assertEquals(Status.Success,
+                        rsp.getCommand().getInt(Tag.Status, -1));
+        }
+    }
+
+    private static final class ScheduledFindSCP implements DimseRQHandler {
+
+        @Override
+        public void onDimseRQ(final Association as, final PresentationContext pc,
+                Dimse dimse, final Attributes cmd, PDVInputStream data)
+                throws IOException {
+            final String label = data.readDataset(pc.getTransferSyntax())
+                    .getString(Tag.PatientID);
+            scheduler.execute(as, pc, cmd, new Runnable() {
+
+                @Override
+                public void run() {
+                    executed.add(label);
+                    if (label.endsWith("*"))
+                        await();
+                    if (label.equals("REJECT"))
+                        reject = true; // reject continuation of YIELD*
+                    if (label.startsWith("YIELD")
+                            && scheduler.yieldToHigherPriority(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    executed.add(label + '\'');
+                                    writeRSP(as, pc, cmd);
+                                }
+                            }))
+                        return;
+                    writeRSP(as, pc, cmd);
+                }
+            });
+        }
+
+        private void await() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeRSP(Association as, PresentationContext pc,
+                Attributes cmd) {
+            as.tryWriteDimseRSP(pc, Commands.mkCFindRSP(cmd, Status.Success));
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.DicomServiceException;
+import org.dcm4che3.util.Histogram;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DimseStatisticsTest {
+
+    private static final String CUID = UID.CTImageStorage;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduledExecutor;
+    private static Device acceptor;
+    private static Device requestor;
+    private static volatile CountDownLatch gate = new CountDownLatch(0);
+    private DimseStatistics stats;
+    private Association as;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        requestor = createDevice("REQUESTOR", 0);
+        acceptor = createDevice("ACCEPTOR", 11120);
+        ApplicationEntity ae = aeOf(acceptor);
+        ae.addTransferCapability(new TransferCapability(null, CUID,
+                TransferCapability.Role.SCP, TSUID));
+        ae.addTransferCapability(new TransferCapability(null,
+                UID.VerificationSOPClass, TransferCapability.Role.SCP, TSUID));
+        ae.setDimseRQHandler(new SCP());
+        acceptor.listConnections().get(0).setMaxOpsPerformed(0);
+        acceptor.bindConnections();
+    }
+
+    private static Device createDevice(String aet, int port) {
+        Device device = new Device(aet);
+        ApplicationEntity ae = new ApplicationEntity(aet);
+        Connection conn = new Connection(null, "localhost", port);
+        device.addApplicationEntity(ae);
+        device.addConnection(conn);
+        ae.addConnection(conn);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        return device;
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Thread.sleep(100);
+        acceptor.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+        stats = new DimseStatistics();
+        requestor.setAssociationMonitor(stats);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        gate.countDown();
+        if (as != null && as.isReadyForDataTransfer()) {
+            as.release();
+            as.waitForSocketClose();
+        }
+        requestor.setAssociationMonitor(null);
+        stats.unregisterMBean();
+    }
+
+    @Test(timeout = 10000)
+    public void testDimseCounters() throws Exception {
+        connect(0);
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++)
+            store(new StoreRSPHandler(as.nextMessageID(), done),
+                    "1.2.3." + (i + 1));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        as.cecho().next();
+        as.waitForOutstandingRSP();
+
+        assertEquals(1, stats.getAssociationSetupTime().getCount());
+        assertEquals(2, stats.getDimseRSPTime().size());
+        assertEquals(3, stats.getDimseRSPTime()
+                .get(Dimse.C_STORE_RQ.name() + ' ' + CUID).getCount());
+        assertEquals(1, stats.getDimseRSPTime()
+                .get(Dimse.C_ECHO_RQ.name() + ' ' + UID.VerificationSOPClass)
+                .getCount());
+        assertEquals(0, stats.getMaxOpsInvokedWaitTime().getCount());
+        // command and data set of each C-STORE-RQ, command of C-ECHO-RQ
+        assertEquals(7, stats.getSentPDVSize().getCount());
+        assertEquals(4, stats.getReceivedPDVSize().getCount());
+
+        DimseStatistics.Traffic traffic = stats.getTraffic().get("ACCEPTOR");
+        assertNotNull(traffic);
+        assertEquals(1, stats.getTraffic().size());
+        assertTrue(traffic.getPDataTFSent() >= 4);
+        assertTrue(traffic.getBytesSent() > traffic.getPDataTFSent() * 6);
+        assertEquals(4, traffic.getPDataTFReceived());
+        assertTrue(traffic.getBytesReceived() > 4 * 6);
+
+        stats.reset();
+        assertEquals(0, stats.getAssociationSetupTime().getCount());
+        assertTrue(stats.getDimseRSPTime().isEmpty());
+        assertEquals(0, stats.getSentPDVSize().getCount());
+        assertTrue(stats.getTraffic().isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testMaxOpsInvokedWait() throws Exception {
+        gate = new CountDownLatch(1);
+        connect(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        store(new StoreRSPHandler(as.nextMessageID(), done), "1.2.3.1");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    store(new StoreRSPHandler(as.nextMessageID(), done),
+                            "1.2.3.2");
+                } catch (Exception e) {
+                    as.abort();
+                }
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, stats.getMaxOpsInvokedWaitTime().getCount());
+        gate.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        as.waitForOutstandingRSP();
+
+        Histogram waitTime = stats.getMaxOpsInvokedWaitTime();
+        assertEquals(1, waitTime.getCount());
+        assertTrue("waited " + waitTime.getMax() + "us",
+                waitTime.getMax() >= TimeUnit.MILLISECONDS.toMicros(50));
+        assertEquals(2, stats.getDimseRSPTime()
+                .get(Dimse.C_STORE_RQ.name() + ' ' + CUID).getCount());
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = stats.registerMBean(requestor);
+        assertEquals(new ObjectName(DimseStatistics.DOMAIN
+                + ":type=DimseStatistics,device=\"REQUESTOR\""), name);
+        assertTrue(server.isRegistered(name));
+        stats.onMaxOpsInvokedWait(null, TimeUnit.MILLISECONDS.toNanos(2));
+        CompositeData waitTime = (CompositeData)
+                server.getAttribute(name, "MaxOpsInvokedWaitTime");
+        assertEquals(1L, waitTime.get("count"));
+        try {
+            stats.registerMBean(aeOf(requestor));
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        }
+        server.invoke(name, "reset", null, null);
+        assertEquals(0, stats.getMaxOpsInvokedWaitTime().getCount());
+        stats.unregisterMBean();
+        assertFalse(server.isRegistered(name));
+        stats.unregisterMBean();
+
+        ObjectName aeName = stats.registerMBean(aeOf(requestor));
+        assertEquals(new ObjectName(DimseStatistics.DOMAIN
+                + ":type=DimseStatistics,device=\"REQUESTOR\""
+                + ",ae=\"REQUESTOR\""), aeName);
+        assertTrue(server.isRegistered(aeName));
+        stats.unregisterMBean();
+        assertFalse(server.isRegistered(aeName));
+    }
+
+    private void connect(int maxOpsInvoked) throws Exception {
+        requestor.listConnections().get(0).setMaxOpsInvoked(maxOpsInvoked);
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(CUID, TSUID);
+        aarq.addPresentationContextFor(UID.VerificationSOPClass, TSUID);
+        as = aeOf(requestor).connect(aeOf(acceptor), aarq);
+    }
+
+    private void store(DimseRSPHandler rspHandler, String iuid)
+            throws Exception {
+        Attributes attrs = new Attributes(2);
+        attrs.setString(Tag.SOPClassUID, VR.UI, CUID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, iuid);
+        as.cstore(CUID, iuid, Priority.NORMAL, new DataWriterAdapter(attrs),
+                TSUID, rspHandler);
+    }
+
+    private static ApplicationEntity aeOf(Device device) {
+        return device.getApplicationEntities().iterator().next();
+    }
+
+    private static final class StoreRSPHandler extends DimseRSPHandler {
+        final CountDownLatch done;
+
+        StoreRSPHandler(int msgId, CountDownLatch done) {
+            super(msgId);
+            this.done = done;
+        }
+
+        @Override
+        public void onDimseRSP(Association as, Attributes cmd,
+                Attributes data) {
+            super.onDimseRSP(as, cmd, data);
+            done.countDown();
+        }
+    }
+
+    private static final class SCP implements DimseRQHandler {
+
+        @Override
+        public void onDimseRQ(Association as, PresentationContext pc,
+                Dimse dimse, Attributes cmd, PDVInputStream data)
+                throws IOException {
+            switch (dimse) {
+            case C_ECHO_RQ:
+                as.writeDimseRSP(pc, Commands.mkEchoRSP(cmd, Status.Success));
+                return;
+            case C_STORE_RQ:
+                data.readDataset(pc.getTransferSyntax());
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                as.writeDimseRSP(pc, Commands.mkCStoreRSP(cmd, Status.Success));
+                return;
+            default:
+                throw new DicomServiceException(Status.UnrecognizedOperation);
+            }
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+}
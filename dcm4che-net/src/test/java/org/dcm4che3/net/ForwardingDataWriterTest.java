@@ -0,0 +1,279 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ForwardingDataWriterTest {
+
+    private static final String CUID = UID.CTImageStorage;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+    private static final byte[] DATA = new byte[100000];
+    static {
+        for (int i = 0; i < DATA.length; i++)
+            DATA[i] = (byte) (i * 31);
+    }
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduledExecutor;
+    private static Device requestor;
+    private static Device forwarder;
+    private static Device sink;
+    private static final PDULengths pduLengths = new PDULengths();
+    private static volatile byte[] received;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        requestor = createDevice("REQUESTOR", 0, null);
+        forwarder = createDevice("FORWARDER", 11116, new ForwardSCP());
+        forwarder.setAssociationMonitor(pduLengths);
+        sink = createDevice("SINK", 11117, new SinkSCP());
+        forwarder.bindConnections();
+        sink.bindConnections();
+    }
+
+    private static Device createDevice(String aet, int port,
+            DimseRQHandler handler) {
+        Device device = new Device(aet);
+        ApplicationEntity ae = new ApplicationEntity(aet);
+        Connection conn = new Connection(null, "localhost", port);
+        // start data of each DIMSE message in a new P-DATA-TF PDU, so the
+        // forwarder receives and re-emits complete PDUs
+        conn.setPackPDV(false);
+        device.addApplicationEntity(ae);
+        device.addConnection(conn);
+        ae.addConnection(conn);
+        if (handler != null) {
+            ae.addTransferCapability(new TransferCapability(null, CUID,
+                    TransferCapability.Role.SCP, TSUID));
+            ae.setDimseRQHandler(handler);
+        }
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        return device;
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Thread.sleep(100);
+        forwarder.unbindConnections();
+        sink.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+        pduLengths.clear();
+        received = null;
+    }
+
+    @Test(timeout = 10000)
+    public void testEqualMaxPDULength() throws Exception {
+        forward(Connection.DEF_MAX_PDU_LENGTH);
+    }
+
+    @Test(timeout = 10000)
+    public void testSmallerMaxPDULength() throws Exception {
+        forward(4096);
+    }
+
+    @Test(timeout = 10000)
+    public void testLargerMaxPDULength() throws Exception {
+        forward(65536);
+    }
+
+    private void forward(int maxPDULength) throws Exception {
+        forwarder.listConnections().get(0).setSendPDULength(maxPDULength);
+        sink.listConnections().get(0).setReceivePDULength(maxPDULength);
+        Association as = connect(requestor, forwarder);
+        try {
+            DimseRSP rsp = as.cstore(CUID, "1.2.3.4", Priority.NORMAL,
+                    new DataWriter() {
+
+                        @Override
+                        public void writeTo(PDVOutputStream out, String tsuid)
+                                throws IOException {
+                            out.write(DATA);
+                        }
+                    }, TSUID);
+            assertTrue(rsp.next());
+            assertEquals(Status.Success,
+                    rsp.getCommand().getInt(Tag.Status, -1));
+        } finally {
+            as.release();
+            as.waitForSocketClose();
+        }
+        assertArrayEquals(DATA, received);
+        List<Integer> lengths = pduLengths.get();
+        // command PDU, data PDUs filled up to the max PDU length, last PDU
+        int last = lengths.size() - 1;
+        for (int i = 1; i < last; i++)
+            assertEquals("PDU #" + i, maxPDULength, lengths.get(i).intValue());
+        int payload = 0;
+        for (int i = 1; i <= last; i++)
+            payload += lengths.get(i) - 6;
+        assertEquals(DATA.length, payload);
+    }
+
+    private static Association connect(Device from, Device to)
+            throws Exception {
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(CUID, TSUID);
+        return aeOf(from).connect(aeOf(to), aarq);
+    }
+
+    private static ApplicationEntity aeOf(Device device) {
+        return device.getApplicationEntities().iterator().next();
+    }
+
+    private static final class ForwardSCP implements DimseRQHandler {
+
+        @Override
+        public void onDimseRQ(Association as, PresentationContext pc,
+                Dimse dimse, Attributes cmd, PDVInputStream data)
+                throws IOException {
+            int status;
+            try {
+                Association out = connect(forwarder, sink);
+                try {
+                    DimseRSP rsp = out.cstore(
+                            cmd.getString(Tag.AffectedSOPClassUID),
+                            cmd.getString(Tag.AffectedSOPInstanceUID),
+                            cmd.getInt(Tag.Priority, 0),
+                            new ForwardingDataWriter(data, pc.getTransferSyntax()),
+                            pc.getTransferSyntax());
+                    rsp.next();
+                    status = rsp.getCommand().getInt(Tag.Status, -1);
+                } finally {
+                    out.release();
+                }
+            } catch (Exception e) {
+                status = Status.ProcessingFailure;
+            }
+            as.writeDimseRSP(pc, Commands.mkCStoreRSP(cmd, status));
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+
+    private static final class SinkSCP implements DimseRQHandler {
+
+        @Override
+        public void onDimseRQ(Association as, PresentationContext pc,
+                Dimse dimse, Attributes cmd, PDVInputStream data)
+                throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            data.copyTo(out);
+            received = out.toByteArray();
+            as.writeDimseRSP(pc, Commands.mkCStoreRSP(cmd, Status.Success));
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+
+    /**
+     * Records the lengths of P-DATA-TF PDUs sent by the forwarder to the
+     * sink.
+     */
+    private static final class PDULengths implements AssociationMonitor {
+        private final List<Integer> lengths = new ArrayList<Integer>();
+
+        synchronized void clear() {
+            lengths.clear();
+        }
+
+        synchronized List<Integer> get() {
+            return new ArrayList<Integer>(lengths);
+        }
+
+        @Override
+        public void onAssociationEstablished(Association as, long nanos) {
+        }
+
+        @Override
+        public void onDimseRSPReceived(Association as, Dimse dimse,
+                String cuid, int status, long nanos) {
+        }
+
+        @Override
+        public void onMaxOpsInvokedWait(Association as, long nanos) {
+        }
+
+        @Override
+        public synchronized void onPDataTFSent(Association as, int pdulen) {
+            if ("SINK".equals(as.getCalledAET()))
+                lengths.add(pdulen);
+        }
+
+        @Override
+        public void onPDataTFReceived(Association as, int pdulen) {
+        }
+
+        @Override
+        public void onPDVSent(Association as, int pdvlen) {
+        }
+
+        @Override
+        public void onPDVReceived(Association as, int pdvlen) {
+        }
+    }
+}
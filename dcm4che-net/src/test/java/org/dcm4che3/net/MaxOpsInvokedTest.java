@@ -0,0 +1,232 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.DicomServiceException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MaxOpsInvokedTest {
+
+    private static final String CUID = UID.CTImageStorage;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+    private static final int NUM_REQUESTS = 2000;
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduledExecutor;
+    private static Device acceptor;
+    private static Device requestor;
+    private static final AtomicInteger stored = new AtomicInteger();
+    private static volatile CountDownLatch gate = new CountDownLatch(0);
+    private Association as;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        requestor = createDevice("REQUESTOR", 0);
+        acceptor = createDevice("ACCEPTOR", 11119);
+        ApplicationEntity ae = aeOf(acceptor);
+        ae.addTransferCapability(new TransferCapability(null, CUID,
+                TransferCapability.Role.SCP, TSUID));
+        ae.setDimseRQHandler(new StoreSCP());
+        acceptor.listConnections().get(0).setMaxOpsPerformed(0);
+        acceptor.bindConnections();
+    }
+
+    private static Device createDevice(String aet, int port) {
+        Device device = new Device(aet);
+        ApplicationEntity ae = new ApplicationEntity(aet);
+        Connection conn = new Connection(null, "localhost", port);
+        device.addApplicationEntity(ae);
+        device.addConnection(conn);
+        ae.addConnection(conn);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        return device;
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Thread.sleep(100);
+        acceptor.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        gate.countDown();
+        if (as != null && as.isReadyForDataTransfer()) {
+            as.release();
+            as.waitForSocketClose();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testStoreWithMaxOpsInvoked1() throws Exception {
+        storeAll(1);
+    }
+
+    @Test(timeout = 30000)
+    public void testStoreWithMaxOpsInvoked16() throws Exception {
+        storeAll(16);
+    }
+
+    @Test(timeout = 30000)
+    public void testStoreWithMaxOpsInvoked64() throws Exception {
+        storeAll(64);
+    }
+
+    @Test(timeout = 5000)
+    public void testDuplicateMessageID() throws Exception {
+        gate = new CountDownLatch(1);
+        connect(2);
+        StoreRSPHandler first = new StoreRSPHandler(as.nextMessageID(),
+                new CountDownLatch(1));
+        store(first, "1.2.3.1");
+        try {
+            store(new StoreRSPHandler(first.getMessageID(),
+                    new CountDownLatch(1)), "1.2.3.2");
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        }
+        gate.countDown();
+        assertTrue(first.done.await(2, TimeUnit.SECONDS));
+        assertEquals(1, first.success.get());
+        as.waitForOutstandingRSP();
+    }
+
+    private void storeAll(int maxOpsInvoked) throws Exception {
+        stored.set(0);
+        connect(maxOpsInvoked);
+        assertEquals(maxOpsInvoked, as.getAAssociateAC().getMaxOpsInvoked());
+        CountDownLatch done = new CountDownLatch(NUM_REQUESTS);
+        StoreRSPHandler[] rspHandlers = new StoreRSPHandler[NUM_REQUESTS];
+        for (int i = 0; i < NUM_REQUESTS; i++) {
+            rspHandlers[i] = new StoreRSPHandler(as.nextMessageID(), done);
+            store(rspHandlers[i], "1.2.3." + (i + 1));
+        }
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        as.waitForOutstandingRSP();
+        for (StoreRSPHandler rspHandler : rspHandlers)
+            assertEquals(1, rspHandler.success.get());
+        assertEquals(NUM_REQUESTS, stored.get());
+    }
+
+    private void connect(int maxOpsInvoked) throws Exception {
+        requestor.listConnections().get(0).setMaxOpsInvoked(maxOpsInvoked);
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(CUID, TSUID);
+        as = aeOf(requestor).connect(aeOf(acceptor), aarq);
+    }
+
+    private void store(DimseRSPHandler rspHandler, String iuid)
+            throws Exception {
+        Attributes attrs = new Attributes(2);
+        attrs.setString(Tag.SOPClassUID, VR.UI, CUID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, iuid);
+        as.cstore(CUID, iuid, Priority.NORMAL, new DataWriterAdapter(attrs),
+                TSUID, rspHandler);
+    }
+
+    private static ApplicationEntity aeOf(Device device) {
+        return device.getApplicationEntities().iterator().next();
+    }
+
+    private static final class StoreRSPHandler extends DimseRSPHandler {
+        final CountDownLatch done;
+        final AtomicInteger success = new AtomicInteger();
+
+        StoreRSPHandler(int msgId, CountDownLatch done) {
+            super(msgId);
+            this.done = done;
+        }
+
+        @Override
+        public void onDimseRSP(Association as, Attributes cmd,
+                Attributes data) {
+            super.onDimseRSP(as, cmd, data);
+            if (cmd.getInt(Tag.Status, -1) == Status.Success)
+                success.incrementAndGet();
+            done.countDown();
+        }
+    }
+
+    private static final class StoreSCP implements DimseRQHandler {
+
+        @Override
+        public void onDimseRQ(Association as, PresentationContext pc,
+                Dimse dimse, Attributes cmd, PDVInputStream data)
+                throws IOException {
+            if (dimse != Dimse.C_STORE_RQ)
+                throw new DicomServiceException(Status.UnrecognizedOperation);
+
+            data.readDataset(pc.getTransferSyntax());
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stored.incrementAndGet();
+            as.writeDimseRSP(pc, Commands.mkCStoreRSP(cmd, Status.Success));
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PendingRSPCoalesceTest {
+
+    private static final int DELAY = 400;
+    private static final String CUID =
+            UID.StudyRootQueryRetrieveInformationModelFIND;
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduledExecutor;
+    private static Device acceptor;
+    private static Device requestor;
+    private static final PendingFindSCP findSCP = new PendingFindSCP();
+    private static final PDataTFCounter counter = new PDataTFCounter();
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        requestor = createDevice("REQUESTOR", 0);
+        acceptor = createDevice("ACCEPTOR", 11113);
+        acceptor.listConnections().get(0).setPendingRSPCoalesceDelay(DELAY);
+        acceptor.setAssociationMonitor(counter);
+        acceptor.bindConnections();
+    }
+
+    private static Device createDevice(String aet, int port) {
+        Device device = new Device(aet);
+        ApplicationEntity ae = new ApplicationEntity(aet);
+        Connection conn = new Connection(null, "localhost", port);
+        device.addApplicationEntity(ae);
+        device.addConnection(conn);
+        ae.addConnection(conn);
+        if (port > 0) {
+            ae.addTransferCapability(new TransferCapability(null, CUID,
+                    TransferCapability.Role.SCP, UID.ImplicitVRLittleEndian));
+            ae.setDimseRQHandler(findSCP);
+        }
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        return device;
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Thread.sleep(100);
+        acceptor.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+        findSCP.numPending = 0;
+        findSCP.delayPending = 0;
+        findSCP.delayFinal = 0;
+        findSCP.abort = false;
+    }
+
+    @Test(timeout = 5000)
+    public void testPendingRSPsPackedIntoOnePDataTF() throws Exception {
+        Association as = connect();
+        try {
+            findSCP.numPending = 3;
+            counter.reset();
+            assertEquals(4, countRSPs(as.cfind(CUID, Priority.NORMAL,
+                    keys(), UID.ImplicitVRLittleEndian, 0)));
+            while (counter.pdus.get() == 0)
+                Thread.sleep(10); // counted after the PDU was sent
+            assertEquals(7, counter.pdvs.get());
+            assertEquals(1, counter.pdus.get());
+        } finally {
+            as.release();
+            as.waitForSocketClose();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testStaleFlushCancelled() throws Exception {
+        Association as = connect();
+        try {
+            findSCP.numPending = 1;
+            assertEquals(2, countRSPs(as.cfind(CUID, Priority.NORMAL,
+                    keys(), UID.ImplicitVRLittleEndian, 0)));
+            // flush scheduled for the first pending RSP would fire while
+            // the pending RSP of the second request is deferred
+            findSCP.delayPending = DELAY / 2;
+            findSCP.delayFinal = DELAY * 2;
+            DimseRSP rsp = as.cfind(CUID, Priority.NORMAL,
+                    keys(), UID.ImplicitVRLittleEndian, 0);
+            assertTrue(rsp.next());
+            long deferred = System.nanoTime() - findSCP.pendingSent;
+            assertTrue("pending RSP sent after "
+                    + TimeUnit.NANOSECONDS.toMillis(deferred) + " ms",
+                    deferred >= TimeUnit.MILLISECONDS.toNanos(DELAY * 3 / 4));
+            assertEquals(1, countRSPs(rsp));
+        } finally {
+            as.release();
+            as.waitForSocketClose();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testDeferredRSPsDiscardedOnAbort() throws Exception {
+        Association as = connect();
+        findSCP.numPending = 2;
+        findSCP.abort = true;
+        counter.reset();
+        DimseRSP rsp = as.cfind(CUID, Priority.NORMAL,
+                keys(), UID.ImplicitVRLittleEndian, 0);
+        try {
+            countRSPs(rsp);
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        Thread.sleep(DELAY * 3 / 2); // flush would have fired
+        assertEquals(0, counter.pdus.get());
+        assertEquals(4, counter.pdvs.get()); // encoded, but never sent
+    }
+
+    private Association connect() throws Exception {
+        AAssociateRQ aarq = new AAssociateRQ();
+        aarq.addPresentationContextFor(CUID, UID.ImplicitVRLittleEndian);
+        return aeOf(requestor).connect(aeOf(acceptor), aarq);
+    }
+
+    private static Attributes keys() {
+        Attributes keys = new Attributes(1);
+        keys.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+        return keys;
+    }
+
+    private static int countRSPs(DimseRSP rsp) throws Exception {
+        int count = 0;
+        while (rsp.next())
+            count++;
+        return count;
+    }
+
+    private static ApplicationEntity aeOf(Device device) {
+        return device.getApplicationEntities().iterator().next();
+    }
+
+    private static final class PendingFindSCP implements DimseRQHandler {
+        volatile int numPending;
+        volatile int delayPending;
+        volatile int delayFinal;
+        volatile boolean abort;
+        volatile long pendingSent;
+
+        @Override
+        public void onDimseRQ(Association as, PresentationContext pc,
+                Dimse dimse, Attributes cmd, PDVInputStream data)
+                throws IOException {
+            Attributes keys = data.readDataset(pc.getTransferSyntax());
+            sleep(delayPending);
+            pendingSent = System.nanoTime();
+            for (int i = 0; i < numPending; i++)
+                as.writeDimseRSP(pc,
+                        Commands.mkCFindRSP(cmd, Status.Pending), keys);
+            if (abort) {
+                as.abort();
+                return;
+            }
+            sleep(delayFinal);
+            as.writeDimseRSP(pc, Commands.mkCFindRSP(cmd, Status.Success));
+        }
+
+        private static void sleep(int millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onClose(Association as) {
+        }
+    }
+
+    private static final class PDataTFCounter implements AssociationMonitor {
+        final AtomicInteger pdus = new AtomicInteger();
+        final AtomicInteger pdvs = new AtomicInteger();
+
+        void reset() {
+            pdus.set(0);
+            pdvs.set(0);
+        }
+
+        @Override
+        public void onAssociationEstablished(Association as, long nanos) {
+        }
+
+        @Override
+        public void onDimseRSPReceived(Association as, Dimse dimse,
+                String cuid, int status, long nanos) {
+        }
+
+        @Override
+        public void onMaxOpsInvokedWait(Association as, long nanos) {
+        }
+
+        @Override
+        public void onPDataTFSent(Association as, int pdulen) {
+            pdus.incrementAndGet();
+        }
+
+        @Override
+        public void onPDataTFReceived(Association as, int pdulen) {
+        }
+
+        @Override
+        public void onPDVSent(Association as, int pdvlen) {
+            pdvs.incrementAndGet();
+        }
+
+        @Override
+        public void onPDVReceived(Association as, int pdvlen) {
+        }
+    }
+}
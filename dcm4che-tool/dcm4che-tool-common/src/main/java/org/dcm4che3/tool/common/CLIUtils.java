@@ -45,6 +45,7 @@ import java.security.GeneralSecurityException;
 import java.text.MessageFormat;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.zip.Deflater;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -575,6 +576,14 @@ public class CLIUtils {
                 .withDescription(rb.getString("undef-item-len"))
                 .create(null));
         opts.addOptionGroup(itemlenGroup);
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("level")
+                .withDescription(rb.getString("deflate-level"))
+                .withLongOpt("deflate-level")
+                .create(null));
+        opts.addOption(null, "deflate-filtered", false,
+                rb.getString("deflate-filtered"));
     }
 
     public static DicomEncodingOptions encodingOptionsOf(CommandLine cl)
@@ -583,12 +592,21 @@ public class CLIUtils {
                 || cl.hasOption("expl-seq-len") && cl.hasOption("undef-seq-len"))
                 throw new ParseException(
                         rb.getString("conflicting-enc-opts"));
+        int deflateLevel = getIntOption(cl, "deflate-level",
+                Deflater.DEFAULT_COMPRESSION);
+        if (deflateLevel < Deflater.DEFAULT_COMPRESSION
+                || deflateLevel > Deflater.BEST_COMPRESSION)
+            throw new ParseException(rb.getString("invalid-deflate-level"));
         return new DicomEncodingOptions(
                 cl.hasOption("group-len"),
                 !cl.hasOption("expl-seq-len"),
                 cl.hasOption("undef-seq-len"),
                 !cl.hasOption("expl-item-len"),
-                cl.hasOption("undef-item-len"));
+                cl.hasOption("undef-item-len"),
+                deflateLevel,
+                cl.hasOption("deflate-filtered")
+                        ? Deflater.FILTERED
+                        : Deflater.DEFAULT_STRATEGY);
     }
 
     public static int[] toTags(String[] tagOrKeywords) {
@@ -175,6 +175,20 @@ public class Dcm2Dcm {
                 .withDescription(rb.getString("verify-block"))
                 .withLongOpt("verify-block")
                 .create());
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("n")
+                .withType(PatternOptionBuilder.NUMBER_VALUE)
+                .withDescription(rb.getString("verify-frames"))
+                .withLongOpt("verify-frames")
+                .create());
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("rate")
+                .withType(PatternOptionBuilder.NUMBER_VALUE)
+                .withDescription(rb.getString("verify-sample"))
+                .withLongOpt("verify-sample")
+                .create());
         opts.addOption(OptionBuilder
                 .hasArg()
                 .withArgName("quality")
@@ -220,6 +234,14 @@ public class Dcm2Dcm {
                 main.addCompressionParam("avgPixelValueBlockSize",
                         cl.getParsedOptionValue("verify-block"));
 
+            if (cl.hasOption("verify-frames"))
+                main.addCompressionParam("verifyFrameInterval",
+                        cl.getParsedOptionValue("verify-frames"));
+
+            if (cl.hasOption("verify-sample"))
+                main.addCompressionParam("verifyFrameSampleRate",
+                        cl.getParsedOptionValue("verify-sample"));
+
             if (cl.hasOption("q"))
                 main.addCompressionParam("compressionQuality",
                         cl.getParsedOptionValue("q"));
@@ -97,6 +97,7 @@ public class DcmDir {
     private File file;
     private DicomDirReader in;
     private DicomDirWriter out;
+    private DicomDirWriter.Batch batch;
     private RecordFactory recFact;
 
     private String csv;
@@ -258,6 +259,7 @@ public class DcmDir {
                                 ? cl.getOptionValue("csv-quote").charAt(0) : '\"';
                         num = main.readCSVFile(num);
                     }
+                    main.commit();
                     main.close();
                     long end = System.currentTimeMillis();
                     System.out.println();
@@ -385,6 +387,7 @@ public class DcmDir {
         SafeClose.close(in);
         in = null;
         out = null;
+        batch = null;
     }
 
     private void openForReadOnly(File file) throws IOException {
@@ -508,60 +511,62 @@ public class DcmDir {
         String pid = dataset.getString(Tag.PatientID, null);
         String styuid = dataset.getString(Tag.StudyInstanceUID, null);
         String seruid = dataset.getString(Tag.SeriesInstanceUID, null);
+        if (batch == null)
+            batch = out.newBatch();
 
         if (styuid != null) {
             if (pid == null) {
                 dataset.setString(Tag.PatientID, VR.LO, pid = styuid);
                 prompt = prompt == 'F' ? 'P' : 'p';
             }
-            Attributes patRec = in.findPatientRecord(pid);
+            Attributes patRec = batch.findPatientRecord(pid);
             if (patRec == null) {
                 patRec = recFact.createRecord(RecordType.PATIENT, null,
                         dataset, null, null);
-                out.addRootDirectoryRecord(patRec);
+                batch.addRootDirectoryRecord(patRec);
                 num++;
             }
-            Attributes studyRec = in.findStudyRecord(patRec, styuid);
+            Attributes studyRec = batch.findStudyRecord(patRec, styuid);
             if (studyRec == null) {
                 studyRec = recFact.createRecord(RecordType.STUDY, null,
                         dataset, null, null);
-                out.addLowerDirectoryRecord(patRec, studyRec);
+                batch.addLowerDirectoryRecord(patRec, studyRec);
                 num++;
             }
 
             if (seruid != null) {
-                Attributes seriesRec = in.findSeriesRecord(studyRec, seruid);
+                Attributes seriesRec = batch.findSeriesRecord(studyRec, seruid);
                 if (seriesRec == null) {
                     seriesRec = recFact.createRecord(RecordType.SERIES, null,
                             dataset, null, null);
-                    out.addLowerDirectoryRecord(studyRec, seriesRec);
+                    batch.addLowerDirectoryRecord(studyRec, seriesRec);
                     num++;
                 }
 
                 if (iuid != null) {
                     Attributes instRec;
                     if (checkDuplicate) {
-                        instRec = in.findLowerInstanceRecord(seriesRec, false, iuid);
+                        instRec = batch.findLowerInstanceRecord(seriesRec, iuid);
                         if (instRec != null) {
                             System.out.print('-');
                             return 0;
                         }
                     }
                     instRec = recFact.createRecord(dataset, fmi, fileIDs);
-                    out.addLowerDirectoryRecord(seriesRec, instRec);
+                    batch.addLowerDirectoryRecord(seriesRec, instRec);
                     num++;
                 }
             }
         } else {
             if (iuid != null) {
                 if (checkDuplicate) {
-                    if (in.findRootInstanceRecord(false, iuid) != null) {
+                    if (batch.findRootInstanceRecord(iuid) != null) {
                         System.out.print('-');
                         return 0;
                     }
                 }
                 Attributes instRec = recFact.createRecord(dataset, fmi, fileIDs);
-                out.addRootDirectoryRecord(instRec);
+                batch.addRootDirectoryRecord(instRec);
                 prompt = prompt == 'F' ? 'R' : 'r';
                 num++;
             }
@@ -639,7 +644,10 @@ public class DcmDir {
 
     public void commit() throws IOException {
         checkOut();
-        out.commit();
+        if (batch != null)
+            batch.commit();
+        else
+            out.commit();
     }
 
     private int purge() throws IOException {
@@ -68,6 +68,7 @@ import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.dcm4che3.media.DicomDirReader;
 import org.dcm4che3.media.DicomDirWriter;
+import org.dcm4che3.media.RecordCache;
 import org.dcm4che3.media.RecordFactory;
 import org.dcm4che3.media.RecordType;
 import org.dcm4che3.net.ApplicationEntity;
@@ -145,6 +146,9 @@ public class DcmQRSCP {
     private final FilesetInfo fsInfo = new FilesetInfo();
     private DicomDirReader ddReader;
     private DicomDirWriter ddWriter;
+    private int groupCommitDelay;
+    private int groupCommitSize = 100;
+    private volatile GroupCommitter groupCommitter;
     private HashMap<String, Connection> remoteConnections = new HashMap<String, Connection>();
 
     private final class CStoreSCPImpl extends BasicCStoreSCP {
@@ -554,6 +558,33 @@ public class DcmQRSCP {
         this.delayCFind = delayCFind;
     }
 
+    public final int getGroupCommitDelay() {
+        return groupCommitDelay;
+    }
+
+    /**
+     * Enables group commit of directory records of received objects, if
+     * {@code groupCommitDelay} &gt; 0. Records are then collected and written
+     * to the DICOMDIR by one commit after the specified delay since the first
+     * pending record, or when {@link #getGroupCommitSize()} records are
+     * pending. The C-STORE RSP is not sent before the record of the received
+     * object was committed. Storage Commitment Requests commit pending
+     * records before the result is calculated.
+     *
+     * @param groupCommitDelay delay in ms or 0 to commit each record
+     */
+    public final void setGroupCommitDelay(int groupCommitDelay) {
+        this.groupCommitDelay = groupCommitDelay;
+    }
+
+    public final int getGroupCommitSize() {
+        return groupCommitSize;
+    }
+
+    public final void setGroupCommitSize(int groupCommitSize) {
+        this.groupCommitSize = groupCommitSize;
+    }
+
     public final void setRecordFactory(RecordFactory recFact) {
         this.recFact = recFact;
     }
@@ -579,6 +610,7 @@ public class DcmQRSCP {
         addStgCmtOptions(opts);
         addSendingPendingOptions(opts);
         addDelayCFindOptions(opts);
+        addGroupCommitOptions(opts);
         addRemoteConnectionsOption(opts);
         return CLIUtils.parseComandLine(args, opts, rb, DcmQRSCP.class);
     }
@@ -623,6 +655,22 @@ public class DcmQRSCP {
                 .create());
     }
 
+    @SuppressWarnings("static-access")
+    private static void addGroupCommitOptions(Options opts) {
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("ms")
+                .withDescription(rb.getString("group-commit"))
+                .withLongOpt("group-commit")
+                .create());
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("no")
+                .withDescription(rb.getString("group-commit-size"))
+                .withLongOpt("group-commit-size")
+                .create());
+    }
+
     @SuppressWarnings("static-access")
     private static void addDicomDirOption(Options opts) {
         opts.addOption(OptionBuilder
@@ -696,6 +744,7 @@ public class DcmQRSCP {
             configureStgCmt(main, cl);
             configureSendPending(main, cl);
             configureDelayCFind(main, cl);
+            configureGroupCommit(main, cl);
             configureRemoteConnections(main, cl);
             ExecutorService executorService = Executors.newCachedThreadPool();
             ScheduledExecutorService scheduledExecutorService = 
@@ -751,6 +800,13 @@ public class DcmQRSCP {
                 main.setDelayCFind(Integer.parseInt(cl.getOptionValue("delay-cfind")));
     }
 
+    private static void configureGroupCommit(DcmQRSCP main, CommandLine cl) {
+        if (cl.hasOption("group-commit"))
+                main.setGroupCommitDelay(Integer.parseInt(cl.getOptionValue("group-commit")));
+        if (cl.hasOption("group-commit-size"))
+                main.setGroupCommitSize(Integer.parseInt(cl.getOptionValue("group-commit-size")));
+    }
+
     private static void configureTransferCapability(DcmQRSCP main, CommandLine cl)
             throws IOException {
         ApplicationEntity ae = main.ae;
@@ -844,14 +900,22 @@ public class DcmQRSCP {
          return ddWriter;
     }
 
-    private void openDicomDir() throws IOException {
+    synchronized GroupCommitter getGroupCommitter() {
+        if (groupCommitter == null && groupCommitDelay > 0)
+            groupCommitter = new GroupCommitter(ddWriter, recFact, device,
+                    groupCommitDelay, groupCommitSize);
+        return groupCommitter;
+    }
+
+    void openDicomDir() throws IOException {
         if (!dicomDir.exists())
             DicomDirWriter.createEmptyDirectory(dicomDir,
                     UIDUtils.createUIDIfNull(fsInfo.getFilesetUID()),
                     fsInfo.getFilesetID(),
                     fsInfo.getDescriptorFile(), 
                     fsInfo.getDescriptorFileCharset());
-        ddReader = ddWriter = DicomDirWriter.open(dicomDir);
+        ddReader = ddWriter = DicomDirWriter.open(dicomDir,
+                RecordCache.DEF_MAX_SIZE);
     }
 
     private void openDicomDirForReadOnly() throws IOException {
@@ -915,8 +979,19 @@ public class DcmQRSCP {
         }
     }
 
+    /**
+     * Calculates the Storage Commitment result from the DICOMDIR, after
+     * committing pending directory records of received objects.
+     */
     public Attributes calculateStorageCommitmentResult(String calledAET,
             Attributes actionInfo) throws DicomServiceException {
+        GroupCommitter groupCommitter = this.groupCommitter;
+        if (groupCommitter != null)
+            try {
+                groupCommitter.commit();
+            } catch (IOException e) {
+                throw new DicomServiceException(Status.ProcessingFailure, e);
+            }
         Sequence requestSeq = actionInfo.getSequence(Tag.ReferencedSOPSequence);
         int size = requestSeq.size();
         String[] sopIUIDs = new String[size];
@@ -972,6 +1047,10 @@ public class DcmQRSCP {
 
     boolean addDicomDirRecords(Association as, Attributes ds, Attributes fmi,
             File f) throws IOException {
+        GroupCommitter groupCommitter = getGroupCommitter();
+        if (groupCommitter != null)
+            return groupCommitter.add(ds, fmi, f);
+
         DicomDirWriter ddWriter = getDicomDirWriter();
         RecordFactory recFact = getRecordFactory();
         String pid = ds.getString(Tag.PatientID, null);
@@ -980,34 +1059,38 @@ public class DcmQRSCP {
         String iuid = fmi.getString(Tag.MediaStorageSOPInstanceUID, null);
         if (pid == null)
             ds.setString(Tag.PatientID, VR.LO, pid = styuid);
-    
-        Attributes patRec = ddWriter.findPatientRecord(pid);
-        if (patRec == null) {
-            patRec = recFact.createRecord(RecordType.PATIENT, null,
-                    ds, null, null);
-            ddWriter.addRootDirectoryRecord(patRec);
-        }
-        Attributes studyRec = ddWriter.findStudyRecord(patRec, styuid);
-        if (studyRec == null) {
-            studyRec = recFact.createRecord(RecordType.STUDY, null,
-                    ds, null, null);
-            ddWriter.addLowerDirectoryRecord(patRec, studyRec);
-        }
-        Attributes seriesRec = ddWriter.findSeriesRecord(studyRec, seruid);
-        if (seriesRec == null) {
-            seriesRec = recFact.createRecord(RecordType.SERIES, null,
-                    ds, null, null);
-            ddWriter.addLowerDirectoryRecord(studyRec, seriesRec);
+
+        // records are only valid until the next commit, which may trim the
+        // record cache, so find and add them atomically
+        synchronized (ddWriter) {
+            Attributes patRec = ddWriter.findPatientRecord(pid);
+            if (patRec == null) {
+                patRec = recFact.createRecord(RecordType.PATIENT, null,
+                        ds, null, null);
+                ddWriter.addRootDirectoryRecord(patRec);
+            }
+            Attributes studyRec = ddWriter.findStudyRecord(patRec, styuid);
+            if (studyRec == null) {
+                studyRec = recFact.createRecord(RecordType.STUDY, null,
+                        ds, null, null);
+                ddWriter.addLowerDirectoryRecord(patRec, studyRec);
+            }
+            Attributes seriesRec = ddWriter.findSeriesRecord(studyRec, seruid);
+            if (seriesRec == null) {
+                seriesRec = recFact.createRecord(RecordType.SERIES, null,
+                        ds, null, null);
+                ddWriter.addLowerDirectoryRecord(studyRec, seriesRec);
+            }
+            Attributes instRec = 
+                    ddWriter.findLowerInstanceRecord(seriesRec, false, iuid);
+            if (instRec != null)
+                return false;
+
+            instRec = recFact.createRecord(ds, fmi, ddWriter.toFileIDs(f));
+            ddWriter.addLowerDirectoryRecord(seriesRec, instRec);
+            ddWriter.commit();
+            return true;
         }
-        Attributes instRec = 
-                ddWriter.findLowerInstanceRecord(seriesRec, false, iuid);
-        if (instRec != null)
-            return false;
-    
-        instRec = recFact.createRecord(ds, fmi, ddWriter.toFileIDs(f));
-        ddWriter.addLowerDirectoryRecord(seriesRec, instRec);
-        ddWriter.commit();
-        return true;
     }
 
     private static Attributes refSOP(String iuid, String cuid, int failureReason) {
@@ -0,0 +1,202 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.tool.dcmqrscp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.media.DicomDirWriter;
+import org.dcm4che3.media.RecordFactory;
+import org.dcm4che3.media.RecordType;
+import org.dcm4che3.net.Device;
+
+/**
+ * Collects directory records of received objects in a
+ * {@link DicomDirWriter.Batch}, which is committed after the configured
+ * delay since the first pending record or when the configured number of
+ * pending records is reached, whichever comes first.
+ * <p>
+ * {@link #add} returns not before the batch containing the record was
+ * committed, so the C-STORE RSP is not sent before the record is written to
+ * the DICOMDIR, at the cost of delaying the response by up to the configured
+ * delay. A fresh batch is started by each commit.
+ */
+class GroupCommitter {
+
+    private final DicomDirWriter ddWriter;
+    private final RecordFactory recFact;
+    private final Device device;
+    private final int delay;
+    private final int maxSize;
+    private Group group;
+    private ScheduledFuture<?> scheduledCommit;
+
+    private final class Group {
+        final DicomDirWriter.Batch batch = ddWriter.newBatch();
+        boolean committed;
+        IOException exception;
+    }
+
+    private final Runnable commitTask = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                commit();
+            } catch (IOException e) {
+                DcmQRSCP.LOG.warn("Failed to commit " + ddWriter.getFile(), e);
+            }
+        }
+    };
+
+    private final Runnable scheduledCommitTask = new Runnable() {
+
+        @Override
+        public void run() {
+            // do not block the scheduler by writing the DICOMDIR
+            device.execute(commitTask);
+        }
+    };
+
+    GroupCommitter(DicomDirWriter ddWriter, RecordFactory recFact,
+            Device device, int delay, int maxSize) {
+        this.ddWriter = ddWriter;
+        this.recFact = recFact;
+        this.device = device;
+        this.delay = delay;
+        this.maxSize = maxSize;
+        this.group = new Group();
+    }
+
+    synchronized boolean add(Attributes ds, Attributes fmi, File f)
+            throws IOException {
+        Group g = group;
+        boolean added = add(g.batch, ds, fmi, f);
+        if (added && g.batch.size() >= maxSize)
+            commit();
+        else if (added && scheduledCommit == null)
+            scheduledCommit = device.schedule(scheduledCommitTask, delay,
+                    TimeUnit.MILLISECONDS);
+        awaitCommit(g);
+        return added;
+    }
+
+    /**
+     * @return number of pending records, not yet committed
+     */
+    synchronized int size() {
+        return group.batch.size();
+    }
+
+    private boolean add(DicomDirWriter.Batch batch, Attributes ds,
+            Attributes fmi, File f) throws IOException {
+        String pid = ds.getString(Tag.PatientID, null);
+        String styuid = ds.getString(Tag.StudyInstanceUID, null);
+        String seruid = ds.getString(Tag.SeriesInstanceUID, null);
+        String iuid = fmi.getString(Tag.MediaStorageSOPInstanceUID, null);
+        if (pid == null)
+            ds.setString(Tag.PatientID, VR.LO, pid = styuid);
+
+        Attributes patRec = batch.findPatientRecord(pid);
+        if (patRec == null)
+            patRec = batch.addRootDirectoryRecord(recFact.createRecord(
+                    RecordType.PATIENT, null, ds, null, null));
+        Attributes studyRec = batch.findStudyRecord(patRec, styuid);
+        if (studyRec == null)
+            studyRec = batch.addLowerDirectoryRecord(patRec,
+                    recFact.createRecord(RecordType.STUDY, null, ds, null, null));
+        Attributes seriesRec = batch.findSeriesRecord(studyRec, seruid);
+        if (seriesRec == null)
+            seriesRec = batch.addLowerDirectoryRecord(studyRec,
+                    recFact.createRecord(RecordType.SERIES, null, ds, null, null));
+        if (batch.findLowerInstanceRecord(seriesRec, iuid) != null)
+            return false;
+
+        batch.addLowerDirectoryRecord(seriesRec,
+                recFact.createRecord(ds, fmi, ddWriter.toFileIDs(f)));
+        return true;
+    }
+
+    private void awaitCommit(Group g) throws IOException {
+        try {
+            while (!g.committed && g.batch.size() > 0)
+                wait();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (g.exception != null)
+            throw new IOException("Failed to commit " + ddWriter.getFile(),
+                    g.exception);
+    }
+
+    /**
+     * Writes all pending records to the DICOMDIR. Returns after a concurrent
+     * commit of pending records by another thread has completed.
+     */
+    synchronized void commit() throws IOException {
+        if (scheduledCommit != null) {
+            scheduledCommit.cancel(false);
+            scheduledCommit = null;
+        }
+        Group g = group;
+        if (g.batch.size() == 0)
+            return;
+
+        group = new Group();
+        try {
+            g.batch.commit();
+        } catch (IOException e) {
+            g.exception = e;
+            try {
+                ddWriter.rollback();
+            } catch (IOException e2) {
+                DcmQRSCP.LOG.warn("Failed to rollback " + ddWriter.getFile(), e2);
+            }
+            throw e;
+        } finally {
+            g.committed = true;
+            notifyAll();
+        }
+    }
+}
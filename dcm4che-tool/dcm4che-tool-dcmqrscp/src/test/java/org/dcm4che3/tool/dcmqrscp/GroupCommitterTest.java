@@ -0,0 +1,189 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * J4Care.
+ * Portions created by the Initial Developer are Copyright (C) 2017
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.tool.dcmqrscp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.media.DicomDirReader;
+import org.dcm4che3.media.RecordFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroupCommitterTest {
+
+    private static final String CT = UID.CTImageStorage;
+
+    private final File dir = new File("target/test-out/dcmqrscp");
+    private final File dicomDir = new File(dir, "DICOMDIR");
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private DcmQRSCP qrscp;
+
+    @Before
+    public void setUp() throws Exception {
+        dicomDir.delete();
+        dir.mkdirs();
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        qrscp = new DcmQRSCP();
+        qrscp.getDevice().setExecutor(executor);
+        qrscp.getDevice().setScheduledExecutor(scheduledExecutor);
+        qrscp.setDicomDirectory(dicomDir);
+        qrscp.setRecordFactory(new RecordFactory());
+        qrscp.setGroupCommitDelay(60000);
+        qrscp.openDicomDir();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+        qrscp.getDicomDirWriter().close();
+    }
+
+    @Test
+    public void testRecordsVisibleAfterStorageCommitment() throws Exception {
+        Future<Boolean> add1 = add("1.2.3.1");
+        Future<Boolean> add2 = add("1.2.3.2");
+        awaitPending(5);
+        assertFalse(add1.isDone());
+        assertFalse(add2.isDone());
+        assertFalse(isVisible("1.2.3.1"));
+        assertFalse(isVisible("1.2.3.2"));
+
+        Attributes eventInfo = qrscp.calculateStorageCommitmentResult(
+                "DCMQRSCP", actionInfo("1.2.3.1", "1.2.3.2"));
+        assertEquals(2, eventInfo.getSequence(Tag.ReferencedSOPSequence).size());
+        assertNull(eventInfo.getSequence(Tag.FailedSOPSequence));
+        assertTrue(add1.get(5, TimeUnit.SECONDS));
+        assertTrue(add2.get(5, TimeUnit.SECONDS));
+        assertTrue(isVisible("1.2.3.1"));
+        assertTrue(isVisible("1.2.3.2"));
+    }
+
+    @Test
+    public void testCommitOnGroupCommitSize() throws Exception {
+        qrscp.setGroupCommitSize(5);
+        Future<Boolean> add1 = add("1.2.3.1");
+        awaitPending(4);
+        assertFalse(isVisible("1.2.3.1"));
+        assertTrue(add("1.2.3.2").get(5, TimeUnit.SECONDS));
+        assertTrue(add1.get(5, TimeUnit.SECONDS));
+        assertTrue(isVisible("1.2.3.1"));
+        assertTrue(isVisible("1.2.3.2"));
+        assertFalse(add("1.2.3.1").get(5, TimeUnit.SECONDS));
+        Future<Boolean> add3 = add("1.2.3.3");
+        awaitPending(1);
+        assertFalse(isVisible("1.2.3.3"));
+        qrscp.calculateStorageCommitmentResult("DCMQRSCP",
+                actionInfo("1.2.3.3"));
+        assertTrue(add3.get(5, TimeUnit.SECONDS));
+        assertTrue(isVisible("1.2.3.3"));
+    }
+
+    private Future<Boolean> add(final String iuid) {
+        return executor.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                Attributes ds = new Attributes();
+                ds.setString(Tag.PatientID, VR.LO, "P1");
+                ds.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3");
+                ds.setString(Tag.SeriesInstanceUID, VR.UI, "1.2.3.0");
+                ds.setString(Tag.SOPClassUID, VR.UI, CT);
+                ds.setString(Tag.SOPInstanceUID, VR.UI, iuid);
+                Attributes fmi = Attributes.createFileMetaInformation(iuid, CT,
+                        UID.ExplicitVRLittleEndian);
+                return qrscp.addDicomDirRecords(null, ds, fmi,
+                        new File(dir, iuid));
+            }
+        });
+    }
+
+    private void awaitPending(int numRecords) throws Exception {
+        GroupCommitter groupCommitter = qrscp.getGroupCommitter();
+        long end = System.currentTimeMillis() + 5000;
+        while (groupCommitter.size() < numRecords) {
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean isVisible(String iuid) throws Exception {
+        DicomDirReader reader = new DicomDirReader(dicomDir);
+        try {
+            Attributes patRec = reader.findPatientRecord("P1");
+            Attributes studyRec = patRec != null
+                    ? reader.findStudyRecord(patRec, "1.2.3") : null;
+            Attributes seriesRec = studyRec != null
+                    ? reader.findSeriesRecord(studyRec, "1.2.3.0") : null;
+            return seriesRec != null
+                    && reader.findLowerInstanceRecord(seriesRec, false, iuid) != null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Attributes actionInfo(String... iuids) {
+        Attributes actionInfo = new Attributes(2);
+        actionInfo.setString(Tag.TransactionUID, VR.UI, "1.2.3.4.5");
+        Sequence refSOPSeq = actionInfo.newSequence(Tag.ReferencedSOPSequence,
+                iuids.length);
+        for (String iuid : iuids) {
+            Attributes refSOP = new Attributes(2);
+            refSOP.setString(Tag.ReferencedSOPClassUID, VR.UI, CT);
+            refSOP.setString(Tag.ReferencedSOPInstanceUID, VR.UI, iuid);
+            refSOPSeq.add(refSOP);
+        }
+        return actionInfo;
+    }
+}
@@ -51,6 +51,7 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.IOD;
+import org.dcm4che3.data.IODValidator;
 import org.dcm4che3.data.ValidationResult;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.tool.common.CLIUtils;
@@ -65,10 +66,10 @@ public class DcmValidate {
     private static ResourceBundle rb =
             ResourceBundle.getBundle("org.dcm4che3.tool.dcmvalidate.messages");
 
-    private IOD iod;
+    private IODValidator validator;
 
     public final void setIOD(IOD iod) {
-        this.iod = iod;
+        this.validator = iod.validator();
     }
 
     @SuppressWarnings("unchecked")
@@ -106,14 +107,14 @@ public class DcmValidate {
     }
 
     public void validate(File file) {
-        if (iod == null)
+        if (validator == null)
             throw new IllegalStateException("IOD net initialized");
         DicomInputStream dis = null;
         try {
             System.out.print("Validate: " + file + " ... ");
             dis = new DicomInputStream(file);
             Attributes attrs = dis.readDataset(-1, -1);
-            ValidationResult result = attrs.validate(iod);
+            ValidationResult result = validator.validate(attrs);
             if (result.isValid())
                 System.out.println("OK");
             else {
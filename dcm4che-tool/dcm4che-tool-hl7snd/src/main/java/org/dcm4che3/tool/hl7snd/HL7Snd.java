@@ -76,6 +76,7 @@ public class HL7Snd extends Device {
 
     private Socket sock;
     private MLLPConnection mllp;
+    private int window = 1;
 
     public HL7Snd() throws IOException {
         super("hl7snd");
@@ -87,6 +88,7 @@ public class HL7Snd extends Device {
         Options opts = new Options();
         addConnectOption(opts);
         addBindOption(opts);
+        addWindowOption(opts);
         CLIUtils.addResponseTimeoutOption(opts);
         CLIUtils.addSocketOptions(opts);
         CLIUtils.addTLSOptions(opts);
@@ -121,6 +123,16 @@ public class HL7Snd extends Device {
                 .create("b"));
     }
 
+    @SuppressWarnings("static-access")
+    private static void addWindowOption(Options opts) {
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("no")
+                .withDescription(rb.getString("window"))
+                .withLongOpt("window")
+                .create(null));
+    }
+
     private static void configureConnect(Connection conn, CommandLine cl)
             throws MissingOptionException, ParseException {
         if (!cl.hasOption("c"))
@@ -148,6 +160,7 @@ public class HL7Snd extends Device {
             HL7Snd main = new HL7Snd();
             configureConnect(main.remote, cl);
             configureBind(main.conn, cl);
+            main.setWindow(CLIUtils.getIntOption(cl, "window", 1));
             CLIUtils.configure(main.conn, cl);
             main.remote.setTlsProtocols(main.conn.getTlsProtocols());
             main.remote.setTlsCipherSuites(main.conn.getTlsCipherSuites());
@@ -168,6 +181,20 @@ public class HL7Snd extends Device {
         }
     }
 
+    public final int getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the maximal number of messages sent without awaiting their
+     * acknowledgment; {@code 1} by default.
+     */
+    public final void setWindow(int window) {
+        if (window <= 0)
+            throw new IllegalArgumentException("window: " + window);
+        this.window = window;
+    }
+
     public void open() throws IOException, IncompatibleConnectionException, GeneralSecurityException {
         sock = conn.connect(remote);
         sock.setSoTimeout(conn.getResponseTimeout());
@@ -179,11 +206,24 @@ public class HL7Snd extends Device {
     }
 
     public void sendFiles(List<String> pathnames) throws IOException {
+        int outstanding = 0;
         for (String pathname : pathnames) {
-            mllp.writeMessage(readFile(pathname));
-            if (mllp.readMessage() == null)
-                throw new IOException("Connection closed by receiver");
+            if (outstanding == window) {
+                readAcknowledgment();
+                outstanding--;
+            }
+            byte[] b = readFile(pathname);
+            mllp.writeMessage(b, 0, b.length, window == 1);
+            outstanding++;
         }
+        while (outstanding-- > 0)
+            readAcknowledgment();
+    }
+
+    private void readAcknowledgment() throws IOException {
+        mllp.flush();
+        if (mllp.readMessage() == null)
+            throw new IOException("Connection closed by receiver");
     }
 
     private byte[] readFile(String pathname) throws IOException {
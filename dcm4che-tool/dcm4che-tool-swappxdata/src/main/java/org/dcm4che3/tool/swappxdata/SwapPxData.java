@@ -45,12 +45,13 @@ import org.dcm4che3.data.BulkData;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.io.DicomInputStream;
-import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.PixelDataUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -58,6 +59,10 @@ import java.util.ArrayList;
  */
 public class SwapPxData {
 
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    private final ForkJoinPool pool = new ForkJoinPool();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
     private int updated;
     private int skipped;
     private int failed;
@@ -72,6 +77,7 @@ public class SwapPxData {
         for (String path : args) {
             inst.processFileOrDirectory(new File(path));
         }
+        inst.pool.shutdown();
         long stop = System.currentTimeMillis();
         System.out.println();
         log(inst.updated, " files updated");
@@ -121,11 +127,17 @@ public class SwapPxData {
     }
 
     private void toggleEndian(RandomAccessFile raf, BulkData bulkData) throws IOException {
-        byte[] b = new byte[bulkData.length()];
-        raf.seek(bulkData.offset());
-        raf.readFully(b);
-        raf.seek(bulkData.offset());
-        raf.write(ByteUtils.swapShorts(b, 0, b.length));
+        long pos = bulkData.offset();
+        int remaining = bulkData.length() & ~1;
+        while (remaining > 0) {
+            int len = Math.min(remaining, buffer.length);
+            raf.seek(pos);
+            raf.readFully(buffer, 0, len);
+            raf.seek(pos);
+            raf.write(PixelDataUtils.swapShorts(buffer, 0, len, pool), 0, len);
+            pos += len;
+            remaining -= len;
+        }
     }
 
 }
@@ -44,6 +44,7 @@ import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
 
@@ -80,6 +81,7 @@ public class Xml2Dcm {
     private String blkFileSuffix;
     private File blkDirectory;
     private Attributes blkAttrs;
+    private int inlineBinaryThreshold = -1;
     private String tsuid;
     private boolean withfmi;
     private boolean nofmi;
@@ -108,6 +110,10 @@ public class Xml2Dcm {
         this.blkDirectory = blkDirectory;
     }
 
+    public final void setInlineBinaryThreshold(int inlineBinaryThreshold) {
+        this.inlineBinaryThreshold = inlineBinaryThreshold;
+    }
+
     public final void setBulkDataAttributes(Attributes blkAttrs) {
         this.blkAttrs = blkAttrs;
     }
@@ -201,6 +207,12 @@ public class Xml2Dcm {
                  .withArgName("xml-file")
                  .withDescription(rb.getString("blk-spec"))
                  .create("X"));
+         opts.addOption(OptionBuilder
+                 .withLongOpt("inline-bin-threshold")
+                 .hasArg()
+                 .withArgName("length")
+                 .withDescription(rb.getString("inline-bin-threshold"))
+                 .create());
      }
 
      @SuppressWarnings("static-access")
@@ -298,6 +310,10 @@ public class Xml2Dcm {
             xml2dcm.setBulkDataDirectory(tempDir);
         }
         xml2dcm.setConcatenateBulkDataFiles(cl.hasOption("c"));
+        if (cl.hasOption("inline-bin-threshold")) {
+            xml2dcm.setInlineBinaryThreshold(
+                    Integer.parseInt(cl.getOptionValue("inline-bin-threshold")));
+        }
         if (cl.hasOption("X")) {
             xml2dcm.setBulkDataAttributes(
                     parseXML(cl.getOptionValue("X")));
@@ -349,7 +365,24 @@ public class Xml2Dcm {
         if (dataset == null)
             dataset = new Attributes();
         ContentHandlerAdapter ch = new ContentHandlerAdapter(dataset);
-        parseXML(fname, ch);
+        ch.setInlineBinaryThreshold(inlineBinaryThreshold);
+        ch.setBulkDataDirectory(blkDirectory);
+        ch.setBulkDataFilePrefix(blkFilePrefix);
+        ch.setBulkDataFileSuffix(blkFileSuffix);
+        try {
+            parseXML(fname, ch);
+        } finally {
+            ch.discardIncompleteBulkDataFile();
+            List<File> xmlBlkFiles = ch.getBulkDataFiles();
+            if (!xmlBlkFiles.isEmpty()) {
+                if (bulkDataFiles == null || bulkDataFiles.isEmpty())
+                    bulkDataFiles = xmlBlkFiles;
+                else {
+                    bulkDataFiles = new ArrayList<File>(bulkDataFiles);
+                    bulkDataFiles.addAll(xmlBlkFiles);
+                }
+            }
+        }
         Attributes fmi2 = ch.getFileMetaInformation();
         if (fmi2 != null)
             fmi = fmi2;